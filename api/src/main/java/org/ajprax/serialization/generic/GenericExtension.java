@@ -1,5 +1,15 @@
 package org.ajprax.serialization.generic;
 
+import java.nio.ByteBuffer;
+
 public interface GenericExtension<TAG> extends GenericValue<byte[]> {
   TAG getTag();
+
+  /**
+   * @return A read-only view of the value bytes. Extensions decoded from a ByteBuffer may share
+   *     the buffer's storage, in which case the view is only valid as long as the buffer is.
+   */
+  default ByteBuffer getValueBuffer() {
+    return ByteBuffer.wrap(getValue()).asReadOnlyBuffer();
+  }
 }
@@ -12,4 +12,16 @@ public interface GenericRecord extends GenericValue<ImmutableMap<String, Object>
   default <T> T get(String fieldName) {
     return (T) getValue().get(fieldName);
   }
+
+  /**
+   * Get a field value by its index in the record Schema. See {@link Schema#getFieldIndex(String)}.
+   *
+   * @param fieldIndex Index of the field.
+   * @param <T> Type of the field value.
+   * @return The value of the field.
+   */
+  @SuppressWarnings("unchecked")
+  default <T> T get(int fieldIndex) {
+    return (T) getValue().values().asList().get(fieldIndex);
+  }
 }
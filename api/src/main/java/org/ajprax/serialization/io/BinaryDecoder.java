@@ -1,3 +1,95 @@
 package org.ajprax.serialization.io;
 
-public interface BinaryDecoder<U> extends Decoder<byte[], U> { }
+import java.nio.ByteBuffer;
+
+import org.ajprax.serialization.io.impl.BinaryDecoderFactory;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Decodes values from the compact binary form written by {@link BinaryEncoder}. Must be created
+ * with the same Schema which was used to encode.
+ *
+ * EXTENSION values are not copied out of the input, they share its storage until their
+ * {@link org.ajprax.serialization.generic.GenericExtension#getValue()} is called. The input must
+ * not change while such values are in use.
+ */
+public interface BinaryDecoder<U> extends Decoder<byte[], U> {
+  static <T> BinaryDecoder<T> forSchema(
+      final Schema schema
+  ) {
+    return BinaryDecoderFactory.INSTANCE.forSchema(schema);
+  }
+
+  /**
+   * Create a decoder which reads values encoded with an older or newer version of a Schema. The
+   * reader Schema may differ from the writer Schema by:
+   * <ul>
+   *   <li>RECORD fields which the writer does not have, which must be OPTIONAL and are decoded as
+   *       empty.</li>
+   *   <li>RECORD fields which the reader does not have, which are skipped.</li>
+   *   <li>Wider integers or floats, e.g. SIGNED_64 for SIGNED_32 or FLOAT_64 for FLOAT_32.</li>
+   *   <li>ENUM symbols, which are matched by name. Decoding a symbol the reader does not have
+   *       fails.</li>
+   *   <li>UNION branches, which are matched to the reader branch which is equal to, or else is the
+   *       first which can read, the writer branch. A writer Schema which is not a UNION may be read
+   *       as a branch of a reader UNION. Decoding a writer branch with no match fails.</li>
+   *   <li>OPTIONAL in place of a Schema which is not OPTIONAL.</li>
+   * </ul>
+   * Decoders are compiled once per pair of Schema fingerprints and cached.
+   *
+   * @param writerSchema Schema with which the values were encoded.
+   * @param readerSchema Schema of the decoded values.
+   * @param <T> Type of the decoded values.
+   * @return A BinaryDecoder which reads values of the writer Schema as values of the reader Schema.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  static <T> BinaryDecoder<T> forSchemas(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    return BinaryDecoderFactory.INSTANCE.forSchemas(writerSchema, readerSchema);
+  }
+
+  /**
+   * Create a decoder which decodes the fields of RECORD values only when they are first read. A
+   * decoded record finds where each field starts by skipping over the encoded fields and keeps a
+   * view of its encoded bytes, so the input must not change while the record is in use. RECORD
+   * fields of such records are decoded lazily as well.
+   *
+   * @param schema Schema of the decoded values.
+   * @param <T> Type of the decoded values.
+   * @return A BinaryDecoder which decodes record fields on first use.
+   */
+  static <T> BinaryDecoder<T> lazyForSchema(
+      final Schema schema
+  ) {
+    return BinaryDecoderFactory.INSTANCE.lazyForSchema(schema);
+  }
+
+  /**
+   * Decode a single value from a ByteBuffer, heap or direct, starting at the buffer's position.
+   * The position is advanced past the value and any following bytes are left unread, so several
+   * values may be decoded from one buffer in turn.
+   *
+   * @param input Buffer from which to read.
+   * @return The decoded value.
+   */
+  U decodeFrom(ByteBuffer input);
+
+  /**
+   * Create a decoder which reads values encoded with this decoder's Schema as values of a
+   * projection of it. Fields of the encoded records which the projection omits, including any
+   * nested ARRAY, MAP or UNION values they contain, are skipped over without being decoded.
+   *
+   * A projection is equal to the encoded Schema, or is a RECORD with the same name whose fields are
+   * a subset of the encoded fields and are themselves projections, or is an ARRAY, FIXED_SIZE_ARRAY,
+   * SET, MAP, UNION or OPTIONAL of projections.
+   *
+   * @param readerSchema Schema of the decoded values.
+   * @param <T> Type of the decoded values.
+   * @return A BinaryDecoder which reads this decoder's encoded form as values of the reader Schema.
+   * @throws IllegalArgumentException if the reader Schema is not a projection of this decoder's
+   *     Schema.
+   */
+  <T> BinaryDecoder<T> withProjection(Schema readerSchema);
+}
@@ -1,3 +1,51 @@
 package org.ajprax.serialization.io;
 
-public interface BinaryEncoder<T> extends Encoder<T, byte[]> { }
+import java.nio.ByteBuffer;
+
+import org.ajprax.serialization.io.impl.BinaryEncoderFactory;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Encodes values to a compact binary form. The binary form does not include the Schema or any
+ * field names, so the same Schema must be used to decode it.
+ */
+public interface BinaryEncoder<T> extends Encoder<T, byte[]> {
+  static <T> BinaryEncoder<T> forSchema(
+      final Schema schema
+  ) {
+    return BinaryEncoderFactory.INSTANCE.forSchema(schema);
+  }
+
+  /**
+   * Encode a value using a context's reusable output buffer.
+   *
+   * @param input Value to encode.
+   * @param context Scratch state to reuse.
+   * @return A new byte array containing the encoded value.
+   */
+  byte[] encode(T input, EncoderContext context);
+
+  /**
+   * Encode a value into a ByteBuffer, heap or direct, starting at the buffer's position. On success
+   * the position is advanced past the written bytes.
+   *
+   * @param input Value to encode.
+   * @param output Buffer into which to write the encoded value.
+   * @throws java.nio.BufferOverflowException if the encoded value does not fit in the buffer's
+   *     remaining bytes. The buffer's position is unchanged, but bytes after it may have been
+   *     overwritten.
+   * @throws IllegalArgumentException if the buffer is read-only.
+   */
+  void encodeTo(T input, ByteBuffer output);
+
+  /**
+   * Encode a value into a ByteBuffer as by {@link #encodeTo(Object, ByteBuffer)}, using a
+   * context's output buffer for buffers without an accessible backing array rather than a per
+   * thread buffer.
+   *
+   * @param input Value to encode.
+   * @param output Buffer into which to write the encoded value.
+   * @param context Scratch state to reuse.
+   */
+  void encodeTo(T input, ByteBuffer output, EncoderContext context);
+}
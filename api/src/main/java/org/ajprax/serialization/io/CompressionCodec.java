@@ -0,0 +1,60 @@
+package org.ajprax.serialization.io;
+
+import java.nio.ByteBuffer;
+
+import org.ajprax.serialization.io.impl.CompressionCodecFactory;
+
+/**
+ * Compresses blocks of encoded values. Codecs are identified in compressed data by their id, so a
+ * codec's id and format must never change once data has been written with it.
+ *
+ * Built in codecs are "none" (id 0), which stores blocks as they are, "deflate" (id 1), which
+ * uses {@link java.util.zip.Deflater}, and "lz" (id 2), a fast LZ77 codec in the style of LZ4.
+ * Further codecs are discovered with {@link java.util.ServiceLoader} and should use ids from 64.
+ *
+ * Codecs are thread safe.
+ */
+public interface CompressionCodec {
+  static CompressionCodec forName(
+      final String name
+  ) {
+    return CompressionCodecFactory.INSTANCE.forName(name);
+  }
+
+  static CompressionCodec forId(
+      final int id
+  ) {
+    return CompressionCodecFactory.INSTANCE.forId(id);
+  }
+
+  /**
+   * @return The id, between 0 and 255, which identifies this codec in compressed data.
+   */
+  int getId();
+
+  /**
+   * @return The name of this codec.
+   */
+  String getName();
+
+  /**
+   * Compress the remaining bytes of a buffer. The buffer's position is not changed.
+   *
+   * @param input Bytes to compress.
+   * @return A buffer containing the compressed bytes between its position and limit. May share
+   *     the input's storage.
+   */
+  ByteBuffer compress(ByteBuffer input);
+
+  /**
+   * Decompress the remaining bytes of a buffer. The buffer's position is not changed.
+   *
+   * @param input Compressed bytes.
+   * @param uncompressedLength Number of bytes before compression.
+   * @return A buffer containing the decompressed bytes between its position and limit. May share
+   *     the input's storage.
+   * @throws IllegalArgumentException if the input is not compressed by this codec or does not
+   *     decompress to the given length.
+   */
+  ByteBuffer decompress(ByteBuffer input, int uncompressedLength);
+}
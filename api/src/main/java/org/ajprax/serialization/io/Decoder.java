@@ -2,4 +2,19 @@ package org.ajprax.serialization.io;
 
 public interface Decoder<U, T> {
   T decode(U input);
+
+  /**
+   * Decode a value, overwriting a previously decoded value in place where possible. Records,
+   * Lists, Sets and Maps inside the reused value are refilled rather than allocated anew. Decoders
+   * which do not support reuse ignore it.
+   *
+   * @param input Encoded value.
+   * @param reuse A value of the same Schema previously returned by this decoder which is no longer
+   *     in use by anything, or null. Its content is undefined after this call, even if decoding
+   *     fails.
+   * @return The decoded value. May be reuse itself.
+   */
+  default T decode(U input, T reuse) {
+    return decode(input);
+  }
 }
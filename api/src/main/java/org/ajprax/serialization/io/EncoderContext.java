@@ -0,0 +1,22 @@
+package org.ajprax.serialization.io;
+
+import org.ajprax.serialization.io.impl.EncoderContextFactory;
+
+/**
+ * Reusable scratch state for encoding. Holds a growable output buffer and a JSON generator which
+ * encoders write into before copying the finished bytes out, so that encoding with a long lived
+ * context allocates nothing beyond the returned bytes.
+ *
+ * Contexts are not thread safe. Keep one per thread, or per task, and pass it to each encode.
+ */
+public interface EncoderContext {
+  static EncoderContext create() {
+    return EncoderContextFactory.INSTANCE.create();
+  }
+
+  /**
+   * Discard all scratch state, releasing storage which grew large while encoding earlier values.
+   * Encoders reset the state they use themselves, so calling this is never required.
+   */
+  void reset();
+}
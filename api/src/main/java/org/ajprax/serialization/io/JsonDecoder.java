@@ -10,4 +10,37 @@ public interface JsonDecoder<T> extends Decoder<JsonNode, T> {
   ) {
     return JsonDecoderFactory.INSTANCE.forSchema(schema);
   }
+
+  /**
+   * Create a decoder which reads values encoded with an older or newer version of a Schema. See
+   * {@link BinaryDecoder#forSchemas(Schema, Schema)} for how the Schemas may differ. ENUMs are not
+   * supported by JsonDecoders.
+   *
+   * @param writerSchema Schema with which the values were encoded.
+   * @param readerSchema Schema of the decoded values.
+   * @param <T> Type of the decoded values.
+   * @return A JsonDecoder which reads values of the writer Schema as values of the reader Schema.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  static <T> JsonDecoder<T> forSchemas(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    return JsonDecoderFactory.INSTANCE.forSchemas(writerSchema, readerSchema);
+  }
+
+  /**
+   * Create a decoder which decodes the fields of RECORD values only when they are first read. A
+   * decoded record keeps its JsonNode, which must not be modified while the record is in use.
+   * RECORD fields of such records are decoded lazily as well.
+   *
+   * @param schema Schema of the decoded values.
+   * @param <T> Type of the decoded values.
+   * @return A JsonDecoder which decodes record fields on first use.
+   */
+  static <T> JsonDecoder<T> lazyForSchema(
+      final Schema schema
+  ) {
+    return JsonDecoderFactory.INSTANCE.lazyForSchema(schema);
+  }
 }
@@ -1,13 +1,39 @@
 package org.ajprax.serialization.io;
 
+import java.util.concurrent.ForkJoinPool;
+
 import com.fasterxml.jackson.databind.JsonNode;
 import org.ajprax.serialization.io.impl.JsonEncoderFactory;
 import org.ajprax.serialization.schema.Schema;
 
+/**
+ * Encodes values to JsonNodes. JsonEncoders hold no state between values, so one encoder may be
+ * used by several threads at once.
+ */
 public interface JsonEncoder<U> extends Encoder<U, JsonNode> {
   static <T> JsonEncoder<T> forSchema(
       final Schema schema
   ) {
     return JsonEncoderFactory.INSTANCE.forSchema(schema);
   }
+
+  /**
+   * Create an encoder which encodes the elements of large ARRAY and MAP values in parallel. Such
+   * values are split into chunks which are encoded as tasks of the given pool and joined in their
+   * original order, so the output is the same as that of {@link #forSchema(Schema)}. Smaller values
+   * are encoded on the calling thread.
+   *
+   * Parallel encoders are not cached, create one per Schema and pool and reuse it.
+   *
+   * @param schema Schema of the encoded values.
+   * @param pool Pool on which to encode large values.
+   * @param <T> Type of the encoded values.
+   * @return A JsonEncoder which encodes large collections in parallel.
+   */
+  static <T> JsonEncoder<T> parallelForSchema(
+      final Schema schema,
+      final ForkJoinPool pool
+  ) {
+    return JsonEncoderFactory.INSTANCE.parallelForSchema(schema, pool);
+  }
 }
@@ -0,0 +1,51 @@
+package org.ajprax.serialization.io;
+
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import org.ajprax.serialization.io.impl.JsonStreamingDecoderFactory;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Decodes values by pulling tokens from a {@link JsonParser} rather than from a materialized
+ * JsonNode tree. Accepts the JSON produced by {@link JsonEncoder} and {@link JsonStreamingEncoder}.
+ */
+public interface JsonStreamingDecoder<T> {
+  static <T> JsonStreamingDecoder<T> forSchema(
+      final Schema schema
+  ) {
+    return JsonStreamingDecoderFactory.INSTANCE.forSchema(schema);
+  }
+
+  /**
+   * Read a value from a JsonParser. If the parser has no current token it is advanced to the first
+   * token of the value. On return the parser is positioned on the last token of the value.
+   *
+   * @param parser JsonParser from which to read.
+   * @return The decoded value.
+   */
+  T decode(JsonParser parser);
+
+  /**
+   * Read a single value from an InputStream of JSON. The stream is not closed.
+   *
+   * @param input InputStream from which to read.
+   * @return The decoded value.
+   */
+  T decode(InputStream input);
+
+  /**
+   * Create a decoder which reads values encoded with this decoder's Schema as values of a
+   * projection of it. Fields of encoded records which the projection omits are skipped token by
+   * token without being decoded. See {@link BinaryDecoder#withProjection(Schema)} for which Schemas
+   * are projections.
+   *
+   * @param readerSchema Schema of the decoded values.
+   * @param <U> Type of the decoded values.
+   * @return A JsonStreamingDecoder which reads this decoder's encoded form as values of the reader
+   *     Schema.
+   * @throws IllegalArgumentException if the reader Schema is not a projection of this decoder's
+   *     Schema.
+   */
+  <U> JsonStreamingDecoder<U> withProjection(Schema readerSchema);
+}
@@ -0,0 +1,54 @@
+package org.ajprax.serialization.io;
+
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.ajprax.serialization.io.impl.JsonStreamingEncoderFactory;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Encodes values as JSON by writing tokens directly to a {@link JsonGenerator} rather than building
+ * a JsonNode tree. Produces the same JSON as the {@link JsonEncoder} for the same Schema.
+ */
+public interface JsonStreamingEncoder<T> {
+  static <T> JsonStreamingEncoder<T> forSchema(
+      final Schema schema
+  ) {
+    return JsonStreamingEncoderFactory.INSTANCE.forSchema(schema);
+  }
+
+  /**
+   * Write a value to a JsonGenerator. The generator is not flushed or closed.
+   *
+   * @param input Value to encode.
+   * @param generator JsonGenerator to which to write the encoded value.
+   */
+  void encode(T input, JsonGenerator generator);
+
+  /**
+   * Write a value to an OutputStream as UTF-8 JSON. The stream is flushed but not closed.
+   *
+   * @param input Value to encode.
+   * @param output OutputStream to which to write the encoded value.
+   */
+  void encode(T input, OutputStream output);
+
+  /**
+   * Write a value to an OutputStream as UTF-8 JSON using a context's reusable JsonGenerator and
+   * output buffer. The stream is not flushed or closed.
+   *
+   * @param input Value to encode.
+   * @param output OutputStream to which to write the encoded value.
+   * @param context Scratch state to reuse.
+   */
+  void encode(T input, OutputStream output, EncoderContext context);
+
+  /**
+   * Encode a value as UTF-8 JSON using a context's reusable JsonGenerator and output buffer.
+   *
+   * @param input Value to encode.
+   * @param context Scratch state to reuse.
+   * @return A new byte array containing the UTF-8 JSON.
+   */
+  byte[] encode(T input, EncoderContext context);
+}
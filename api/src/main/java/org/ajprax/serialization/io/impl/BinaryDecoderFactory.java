@@ -0,0 +1,29 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.schema.Schema;
+
+public interface BinaryDecoderFactory {
+  static final BinaryDecoderFactory INSTANCE = ServiceLoader.load(BinaryDecoderFactory.class).iterator().next();
+
+  public <O> BinaryDecoder<O> forSchema(Schema schema);
+
+  /**
+   * @param writerSchema Schema with which the values were encoded.
+   * @param readerSchema Schema of the decoded values.
+   * @return A decoder which reads values encoded with the writer Schema as values of the reader
+   *     Schema.
+   */
+  public <O> BinaryDecoder<O> forSchemas(Schema writerSchema, Schema readerSchema);
+
+  /**
+   * @param schema Schema of the decoded values.
+   * @return A decoder which decodes RECORD fields on first use. Factories which do not support
+   *     lazy decoding return an eager decoder.
+   */
+  public default <O> BinaryDecoder<O> lazyForSchema(Schema schema) {
+    return forSchema(schema);
+  }
+}
@@ -0,0 +1,12 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.schema.Schema;
+
+public interface BinaryEncoderFactory {
+  static final BinaryEncoderFactory INSTANCE = ServiceLoader.load(BinaryEncoderFactory.class).iterator().next();
+
+  public <I> BinaryEncoder<I> forSchema(Schema schema);
+}
@@ -0,0 +1,13 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.CompressionCodec;
+
+public interface CompressionCodecFactory {
+  static final CompressionCodecFactory INSTANCE = ServiceLoader.load(CompressionCodecFactory.class).iterator().next();
+
+  public CompressionCodec forName(String name);
+
+  public CompressionCodec forId(int id);
+}
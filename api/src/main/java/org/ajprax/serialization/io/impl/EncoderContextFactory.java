@@ -0,0 +1,11 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.EncoderContext;
+
+public interface EncoderContextFactory {
+  static final EncoderContextFactory INSTANCE = ServiceLoader.load(EncoderContextFactory.class).iterator().next();
+
+  public EncoderContext create();
+}
@@ -9,4 +9,21 @@ public interface JsonDecoderFactory {
   static final JsonDecoderFactory INSTANCE = ServiceLoader.load(JsonDecoderFactory.class).iterator().next();
 
   public <O> JsonDecoder<O> forSchema(Schema schema);
+
+  /**
+   * @param writerSchema Schema with which the values were encoded.
+   * @param readerSchema Schema of the decoded values.
+   * @return A decoder which reads values encoded with the writer Schema as values of the reader
+   *     Schema.
+   */
+  public <O> JsonDecoder<O> forSchemas(Schema writerSchema, Schema readerSchema);
+
+  /**
+   * @param schema Schema of the decoded values.
+   * @return A decoder which decodes RECORD fields on first use. Factories which do not support
+   *     lazy decoding return an eager decoder.
+   */
+  public default <O> JsonDecoder<O> lazyForSchema(Schema schema) {
+    return forSchema(schema);
+  }
 }
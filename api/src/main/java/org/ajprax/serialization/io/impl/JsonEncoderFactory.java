@@ -1,6 +1,7 @@
 package org.ajprax.serialization.io.impl;
 
 import java.util.ServiceLoader;
+import java.util.concurrent.ForkJoinPool;
 
 import org.ajprax.serialization.io.JsonEncoder;
 import org.ajprax.serialization.schema.Schema;
@@ -9,4 +10,14 @@ public interface JsonEncoderFactory {
   static final JsonEncoderFactory INSTANCE = ServiceLoader.load(JsonEncoderFactory.class).iterator().next();
 
   public <I> JsonEncoder<I> forSchema(Schema schema);
+
+  /**
+   * @param schema Schema of the encoded values.
+   * @param pool Pool on which to encode large ARRAY and MAP values.
+   * @return An encoder which encodes the elements of large collections in parallel. Factories which
+   *     do not support parallel encoding return a sequential encoder.
+   */
+  public default <I> JsonEncoder<I> parallelForSchema(Schema schema, ForkJoinPool pool) {
+    return forSchema(schema);
+  }
 }
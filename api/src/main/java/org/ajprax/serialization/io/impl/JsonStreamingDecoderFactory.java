@@ -0,0 +1,12 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.schema.Schema;
+
+public interface JsonStreamingDecoderFactory {
+  static final JsonStreamingDecoderFactory INSTANCE = ServiceLoader.load(JsonStreamingDecoderFactory.class).iterator().next();
+
+  public <O> JsonStreamingDecoder<O> forSchema(Schema schema);
+}
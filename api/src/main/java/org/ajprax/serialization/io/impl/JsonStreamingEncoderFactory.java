@@ -0,0 +1,12 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ServiceLoader;
+
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.schema.Schema;
+
+public interface JsonStreamingEncoderFactory {
+  static final JsonStreamingEncoderFactory INSTANCE = ServiceLoader.load(JsonStreamingEncoderFactory.class).iterator().next();
+
+  public <I> JsonStreamingEncoder<I> forSchema(Schema schema);
+}
@@ -97,6 +97,23 @@ public interface Schema {
    */
   String getName();
 
+  /**
+   * A 64-bit structural fingerprint of this Schema. Equal Schemas have equal fingerprints. The
+   * fingerprint is computed once and remembered.
+   *
+   * @return The fingerprint of this Schema.
+   */
+  long getFingerprint();
+
+  /**
+   * A 64-bit fingerprint of the binary layout of this Schema. Unlike {@link #getFingerprint()} it
+   * also distinguishes the order of enum symbols and record fields, which determines how values are
+   * written in binary. The fingerprint is computed once and remembered.
+   *
+   * @return The layout fingerprint of this Schema.
+   */
+  long getLayoutFingerprint();
+
   // Enum only
   ImmutableSet<String> getEnumSymbols();
 
@@ -118,6 +135,14 @@ public interface Schema {
   // Record only
   ImmutableMap<String, Schema> getFieldSchemas();
 
+  /**
+   * Record only. Fields are indexed in the iteration order of {@link #getFieldSchemas()}.
+   *
+   * @param fieldName Name of the field.
+   * @return The index of the field, or -1 if this record has no such field.
+   */
+  int getFieldIndex(String fieldName);
+
   // Array, FixedSizeArray, Set, Optional
   Schema getElementSchema();
 }
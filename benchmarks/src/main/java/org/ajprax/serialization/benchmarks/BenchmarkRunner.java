@@ -0,0 +1,30 @@
+package org.ajprax.serialization.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with allocation profiling enabled so that results include the bytes
+ * allocated per operation (gc.alloc.rate.norm).
+ *
+ * Accepts the standard JMH command line, for example a benchmark regexp and -p mShape=MAP.
+ */
+public final class BenchmarkRunner {
+
+  public static void main(
+      final String[] args
+  ) throws RunnerException, CommandLineOptionException {
+    final Options options = new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+  private BenchmarkRunner() { }
+}
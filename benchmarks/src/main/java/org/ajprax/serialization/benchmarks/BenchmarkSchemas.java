@@ -0,0 +1,199 @@
+package org.ajprax.serialization.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+
+/** Representative Schemas and values shared by the benchmarks. */
+public final class BenchmarkSchemas {
+
+  /** Benchmarked Schema shapes. */
+  public enum Shape {
+    /** Record with many primitive fields. */
+    WIDE_RECORD,
+    /** Records nested inside records. */
+    DEEP_RECORD,
+    /** Large array of doubles. */
+    BIG_ARRAY,
+    /** Map from string to long. */
+    MAP,
+    /** Array of unions of string, long and optional boolean. */
+    UNION,
+    /** Recursive linked list record. */
+    RECURSIVE_RECORD;
+
+    public Schema schema() {
+      switch (this) {
+        case WIDE_RECORD: return wideRecord(WIDE_RECORD_FIELDS);
+        case DEEP_RECORD: return deepRecord(DEEP_RECORD_DEPTH);
+        case BIG_ARRAY: return Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_64)).build();
+        case MAP: return Schema.builder(Type.MAP)
+            .setKeySchema(Schema.primitive(Type.STRING))
+            .setValueSchema(Schema.primitive(Type.SIGNED_64))
+            .build();
+        case UNION: return Schema.builder(Type.ARRAY).setElementSchema(union()).build();
+        case RECURSIVE_RECORD: return linkedList();
+        default: throw new RuntimeException(String.format("Unknown shape: '%s'", this));
+      }
+    }
+
+    public Object value(
+        final Schema schema
+    ) {
+      switch (this) {
+        case WIDE_RECORD: {
+          final Object[] fieldValues = new Object[WIDE_RECORD_FIELDS];
+          for (String fieldName : schema.getFieldSchemas().keySet()) {
+            final int index = Integer.parseInt(fieldName.substring(1));
+            fieldValues[schema.getFieldIndex(fieldName)] = wideFieldValue(index);
+          }
+          return GenericRecordImpl.create(schema, fieldValues);
+        }
+        case DEEP_RECORD: return deepValue(schema);
+        case BIG_ARRAY: {
+          final double[] values = new double[BIG_ARRAY_SIZE];
+          for (int i = 0; i < values.length; i++) {
+            values[i] = i * 1.5;
+          }
+          return PrimitiveLists.wrap(values);
+        }
+        case MAP: {
+          final Map<String, Long> map = Maps.newHashMap();
+          for (int i = 0; i < MAP_SIZE; i++) {
+            map.put("key-" + i, (long) i * 31);
+          }
+          return map;
+        }
+        case UNION: {
+          final Schema unionSchema = schema.getElementSchema();
+          final List<Object> values = Lists.newArrayList();
+          for (int i = 0; i < UNION_ARRAY_SIZE; i++) {
+            switch (i % 3) {
+              case 0: values.add(GenericUnionImpl.create(unionSchema, 0, "value-" + i)); break;
+              case 1: values.add(GenericUnionImpl.create(unionSchema, 1, (long) i)); break;
+              default: values.add(GenericUnionImpl.create(unionSchema, 2, Optional.of(i % 2 == 0))); break;
+            }
+          }
+          return values;
+        }
+        case RECURSIVE_RECORD: {
+          GenericRecord list = null;
+          for (int i = 0; i < LINKED_LIST_SIZE; i++) {
+            list = GenericRecordImpl.create(
+                schema,
+                ImmutableMap.of("head", "node-" + i, "tail", Optional.ofNullable(list))
+            );
+          }
+          return list;
+        }
+        default: throw new RuntimeException(String.format("Unknown shape: '%s'", this));
+      }
+    }
+  }
+
+  public static final int WIDE_RECORD_FIELDS = 64;
+  public static final int DEEP_RECORD_DEPTH = 16;
+  public static final int BIG_ARRAY_SIZE = 10000;
+  public static final int MAP_SIZE = 1000;
+  public static final int UNION_ARRAY_SIZE = 1000;
+  public static final int LINKED_LIST_SIZE = 100;
+
+  /**
+   * Record with fields "f0" through "f(n-1)" cycling through SIGNED_32, SIGNED_64, FLOAT_64,
+   * BOOLEAN and STRING.
+   */
+  public static Schema wideRecord(
+      final int fields
+  ) {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("WideRecord");
+    for (int i = 0; i < fields; i++) {
+      builder.setFieldSchema("f" + i, Schema.primitive(WIDE_FIELD_TYPES[i % WIDE_FIELD_TYPES.length]));
+    }
+    return builder.build();
+  }
+
+  private static final Type[] WIDE_FIELD_TYPES = {
+      Type.SIGNED_32,
+      Type.SIGNED_64,
+      Type.FLOAT_64,
+      Type.BOOLEAN,
+      Type.STRING
+  };
+
+  private static Object wideFieldValue(
+      final int index
+  ) {
+    switch (WIDE_FIELD_TYPES[index % WIDE_FIELD_TYPES.length]) {
+      case SIGNED_32: return index;
+      case SIGNED_64: return (long) index << 20;
+      case FLOAT_64: return index * 0.25;
+      case BOOLEAN: return index % 2 == 0;
+      case STRING: return "field-value-" + index;
+      default: throw new RuntimeException("Unknown wide field type.");
+    }
+  }
+
+  /** Records nested to the given depth, each with a string, a long and the next record. */
+  public static Schema deepRecord(
+      final int depth
+  ) {
+    Schema schema = Schema.builder(Type.RECORD)
+        .setName("Level" + depth)
+        .setFieldSchema("name", Schema.primitive(Type.STRING))
+        .build();
+    for (int level = depth - 1; level >= 0; level--) {
+      schema = Schema.builder(Type.RECORD)
+          .setName("Level" + level)
+          .setFieldSchema("name", Schema.primitive(Type.STRING))
+          .setFieldSchema("id", Schema.primitive(Type.SIGNED_64))
+          .setFieldSchema("child", schema)
+          .build();
+    }
+    return schema;
+  }
+
+  private static GenericRecord deepValue(
+      final Schema schema
+  ) {
+    if (schema.getFieldSchemas().containsKey("child")) {
+      return GenericRecordImpl.create(
+          schema,
+          ImmutableMap.of(
+              "name", schema.getName(),
+              "id", (long) schema.getName().hashCode(),
+              "child", deepValue(schema.getFieldSchemas().get("child"))
+          )
+      );
+    } else {
+      return GenericRecordImpl.create(schema, ImmutableMap.of("name", schema.getName()));
+    }
+  }
+
+  public static Schema union() {
+    return Schema.builder(Type.UNION)
+        .addBranchSchema(Schema.primitive(Type.STRING))
+        .addBranchSchema(Schema.primitive(Type.SIGNED_64))
+        .addBranchSchema(Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.BOOLEAN)).build())
+        .build();
+  }
+
+  public static Schema linkedList() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    return builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+  }
+
+  private BenchmarkSchemas() { }
+}
@@ -0,0 +1,130 @@
+package org.ajprax.serialization.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.EncoderContext;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.io.impl.GeneratedBinaryDecoders.GeneratedBinaryDecoderImplFactory;
+import org.ajprax.serialization.io.impl.GeneratedBinaryEncoders.GeneratedBinaryEncoderImplFactory;
+import org.ajprax.serialization.schema.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Encode and decode throughput of each codec for representative value shapes. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmarks {
+
+  @Param({"WIDE_RECORD", "DEEP_RECORD", "BIG_ARRAY", "MAP", "UNION", "RECURSIVE_RECORD"})
+  public BenchmarkSchemas.Shape mShape;
+
+  private Object mValue;
+  private BinaryEncoder<Object> mBinaryEncoder;
+  private BinaryDecoder<Object> mBinaryDecoder;
+  private BinaryEncoder<Object> mGeneratedBinaryEncoder;
+  private BinaryDecoder<Object> mGeneratedBinaryDecoder;
+  private JsonEncoder<Object> mJsonEncoder;
+  private JsonDecoder<Object> mJsonDecoder;
+  private JsonStreamingEncoder<Object> mJsonStreamingEncoder;
+  private JsonStreamingDecoder<Object> mJsonStreamingDecoder;
+  private byte[] mBinary;
+  private JsonNode mJsonTree;
+  private byte[] mJson;
+  private ByteArrayOutputStream mJsonOutput;
+  private EncoderContext mContext;
+
+  @Setup
+  public void setup() {
+    final Schema schema = mShape.schema();
+    mValue = mShape.value(schema);
+    mBinaryEncoder = BinaryEncoder.forSchema(schema);
+    mBinaryDecoder = BinaryDecoder.forSchema(schema);
+    mGeneratedBinaryEncoder = new GeneratedBinaryEncoderImplFactory().forSchema(schema);
+    mGeneratedBinaryDecoder = new GeneratedBinaryDecoderImplFactory().forSchema(schema);
+    mJsonEncoder = JsonEncoder.forSchema(schema);
+    mJsonDecoder = JsonDecoder.forSchema(schema);
+    mJsonStreamingEncoder = JsonStreamingEncoder.forSchema(schema);
+    mJsonStreamingDecoder = JsonStreamingDecoder.forSchema(schema);
+    mBinary = mBinaryEncoder.encode(mValue);
+    mJsonTree = mJsonEncoder.encode(mValue);
+    mJsonOutput = new ByteArrayOutputStream();
+    mJsonStreamingEncoder.encode(mValue, mJsonOutput);
+    mJson = mJsonOutput.toByteArray();
+    mContext = EncoderContext.create();
+  }
+
+  @Benchmark
+  public byte[] binaryEncode() {
+    return mBinaryEncoder.encode(mValue);
+  }
+
+  @Benchmark
+  public byte[] binaryEncodeWithContext() {
+    return mBinaryEncoder.encode(mValue, mContext);
+  }
+
+  @Benchmark
+  public Object binaryDecode() {
+    return mBinaryDecoder.decode(mBinary);
+  }
+
+  @Benchmark
+  public byte[] generatedBinaryEncode() {
+    return mGeneratedBinaryEncoder.encode(mValue);
+  }
+
+  @Benchmark
+  public Object generatedBinaryDecode() {
+    return mGeneratedBinaryDecoder.decode(mBinary);
+  }
+
+  @Benchmark
+  public JsonNode jsonTreeEncode() {
+    return mJsonEncoder.encode(mValue);
+  }
+
+  @Benchmark
+  public Object jsonTreeDecode() {
+    return mJsonDecoder.decode(mJsonTree);
+  }
+
+  @Benchmark
+  public int jsonStreamingEncode() {
+    mJsonOutput.reset();
+    mJsonStreamingEncoder.encode(mValue, mJsonOutput);
+    return mJsonOutput.size();
+  }
+
+  @Benchmark
+  public int jsonStreamingEncodeWithContext() {
+    mJsonOutput.reset();
+    mJsonStreamingEncoder.encode(mValue, mJsonOutput, mContext);
+    return mJsonOutput.size();
+  }
+
+  @Benchmark
+  public Object jsonStreamingDecode() {
+    return mJsonStreamingDecoder.decode(new ByteArrayInputStream(mJson));
+  }
+}
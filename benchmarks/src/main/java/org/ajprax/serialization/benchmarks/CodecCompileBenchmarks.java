@@ -0,0 +1,80 @@
+package org.ajprax.serialization.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.io.impl.BinaryEncoders.BinaryEncoderImplFactory;
+import org.ajprax.serialization.io.impl.JsonDecoders.JsonDecoderImplFactory;
+import org.ajprax.serialization.io.impl.JsonEncoders.JsonEncoderImplFactory;
+import org.ajprax.serialization.schema.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Codec compilation and cached codec lookup.
+ *
+ * Compilation is measured through a new factory per invocation so that the factory's codec cache
+ * is always empty.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecCompileBenchmarks {
+
+  @Param({"WIDE_RECORD", "DEEP_RECORD", "UNION", "RECURSIVE_RECORD"})
+  public BenchmarkSchemas.Shape mShape;
+
+  private Schema mSchema;
+  private Schema mEqualSchema;
+
+  @Setup
+  public void setup() {
+    mSchema = mShape.schema();
+    mEqualSchema = mShape.schema();
+    JsonEncoder.forSchema(mSchema);
+  }
+
+  @Benchmark
+  public Object compileJsonEncoder() {
+    return new JsonEncoderImplFactory().forSchema(mSchema);
+  }
+
+  @Benchmark
+  public Object compileJsonDecoder() {
+    return new JsonDecoderImplFactory().forSchema(mSchema);
+  }
+
+  @Benchmark
+  public Object compileBinaryEncoder() {
+    return new BinaryEncoderImplFactory().forSchema(mSchema);
+  }
+
+  @Benchmark
+  public Object cachedJsonEncoder() {
+    return JsonEncoder.forSchema(mSchema);
+  }
+
+  @Benchmark
+  public Object cachedJsonEncoderEqualSchema() {
+    // an equal Schema instance which misses the identity level of the cache on first lookup only.
+    return JsonEncoder.forSchema(mEqualSchema);
+  }
+
+  @Benchmark
+  public Object cachedBinaryEncoder() {
+    return BinaryEncoder.forSchema(mSchema);
+  }
+}
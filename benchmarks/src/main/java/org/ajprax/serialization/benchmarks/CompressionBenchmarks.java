@@ -0,0 +1,95 @@
+package org.ajprax.serialization.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.io.impl.BinaryOutput;
+import org.ajprax.serialization.schema.Schema;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compression and decompression throughput of each codec for a block of encoded values of each
+ * shape. The compress benchmark also reports the uncompressed and compressed bytes it processes per
+ * second, the ratio of which is the codec's compression ratio.
+ *
+ * Blocks of shapes whose values are smaller than a block repeat the same value, so the ratios of
+ * those shapes are better than for blocks of distinct values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmarks {
+
+  /** Blocks hold at least this many bytes of encoded values, as container blocks typically do. */
+  private static final int MIN_BLOCK_SIZE = 64 * 1024;
+
+  @Param({"WIDE_RECORD", "DEEP_RECORD", "BIG_ARRAY", "MAP", "UNION", "RECURSIVE_RECORD"})
+  public BenchmarkSchemas.Shape mShape;
+
+  @Param({"none", "deflate", "lz"})
+  public String mCodecName;
+
+  /** Bytes processed by each compression, reported per second. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Sizes {
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      uncompressedBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+
+  private CompressionCodec mCodec;
+  private ByteBuffer mBlock;
+  private ByteBuffer mCompressed;
+
+  @Setup
+  public void setup() {
+    final Schema schema = mShape.schema();
+    final BinaryEncoder<Object> encoder = BinaryEncoder.forSchema(schema);
+    final byte[] encoded = encoder.encode(mShape.value(schema));
+    final BinaryOutput output = BinaryOutput.create(MIN_BLOCK_SIZE);
+    while (output.size() < MIN_BLOCK_SIZE) {
+      output.writeRawBytes(encoded, 0, encoded.length);
+    }
+    mCodec = CompressionCodec.forName(mCodecName);
+    mBlock = ByteBuffer.wrap(output.toByteArray());
+    mCompressed = mCodec.compress(mBlock);
+  }
+
+  @Benchmark
+  public ByteBuffer compress(
+      final Sizes sizes
+  ) {
+    final ByteBuffer compressed = mCodec.compress(mBlock);
+    sizes.uncompressedBytes += mBlock.remaining();
+    sizes.compressedBytes += compressed.remaining();
+    return compressed;
+  }
+
+  @Benchmark
+  public ByteBuffer decompress() {
+    return mCodec.decompress(mCompressed, mBlock.remaining());
+  }
+}
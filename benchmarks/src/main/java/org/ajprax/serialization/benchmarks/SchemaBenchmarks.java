@@ -0,0 +1,70 @@
+package org.ajprax.serialization.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Schema construction, fingerprinting and equality.
+ *
+ * Equality is measured between two separately built Schemas so that it cannot short circuit on
+ * reference equality.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchemaBenchmarks {
+
+  @Param({"WIDE_RECORD", "DEEP_RECORD", "RECURSIVE_RECORD"})
+  public BenchmarkSchemas.Shape mShape;
+
+  private Schema mLeft;
+  private Schema mRight;
+
+  @Setup
+  public void setup() {
+    mLeft = mShape.schema();
+    mRight = mShape.schema();
+  }
+
+  @Benchmark
+  public Schema build() {
+    return mShape.schema();
+  }
+
+  @Benchmark
+  public long fingerprint() {
+    // bypasses the fingerprint memoized on the Schema.
+    return SchemaRecursionHelpers.fingerprint(mLeft);
+  }
+
+  @Benchmark
+  public int hashCodeMemoized() {
+    return mLeft.hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsWalk() {
+    return SchemaRecursionHelpers.equals(mLeft, mRight);
+  }
+
+  @Benchmark
+  public boolean equals() {
+    return mLeft.equals(mRight);
+  }
+}
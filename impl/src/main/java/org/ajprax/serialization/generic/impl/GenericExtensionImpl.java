@@ -1,5 +1,6 @@
 package org.ajprax.serialization.generic.impl;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -17,17 +18,48 @@ public class GenericExtensionImpl<TAG> implements GenericExtension<TAG> {
     return new GenericExtensionImpl<>(schema, tag, value);
   }
 
+  /**
+   * Create an extension whose value is the remaining bytes of a ByteBuffer. The bytes are not
+   * copied until {@link #getValue()} is called, so the buffer's content must not change while the
+   * extension is in use.
+   *
+   * @param schema Schema of the extension.
+   * @param tag Tag of the extension.
+   * @param value Buffer holding the value bytes between its position and limit.
+   * @param <T> Type of the tag.
+   * @return A new extension sharing the buffer's storage.
+   */
+  public static <T> GenericExtensionImpl<T> create(
+      final Schema schema,
+      final T tag,
+      final ByteBuffer value
+  )  {
+    return new GenericExtensionImpl<>(schema, tag, value.slice().asReadOnlyBuffer(), null);
+  }
+
   private final Schema mSchema;
   private final TAG mTag;
-  private final byte[] mValue;
+  private final ByteBuffer mValueBuffer;
+  /** Copied out of mValueBuffer on first use if this extension was created from a ByteBuffer. */
+  private volatile byte[] mValue;
 
   public GenericExtensionImpl(
       final Schema schema,
       final TAG tag,
       final byte[] value
+  ) {
+    this(schema, tag, ByteBuffer.wrap(value).asReadOnlyBuffer(), value);
+  }
+
+  private GenericExtensionImpl(
+      final Schema schema,
+      final TAG tag,
+      final ByteBuffer valueBuffer,
+      final byte[] value
   ) {
     mSchema = schema;
     mTag = tag;
+    mValueBuffer = valueBuffer;
     mValue = value;
   }
 
@@ -43,12 +75,23 @@ public class GenericExtensionImpl<TAG> implements GenericExtension<TAG> {
 
   @Override
   public byte[] getValue() {
-    return mValue;
+    byte[] value = mValue;
+    if (null == value) {
+      value = new byte[mValueBuffer.remaining()];
+      mValueBuffer.duplicate().get(value);
+      mValue = value;
+    }
+    return value;
+  }
+
+  @Override
+  public ByteBuffer getValueBuffer() {
+    return mValueBuffer.duplicate();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(mSchema, mTag, mValue);
+    return Objects.hash(mSchema, mTag, mValueBuffer);
   }
 
   @Override
@@ -63,7 +106,7 @@ public class GenericExtensionImpl<TAG> implements GenericExtension<TAG> {
       return Objects.equals(this.mSchema, that.mSchema)
           // TODO if recursive tags are allowed, do we need a recursion helper for checking equality?
           && Objects.equals(this.mTag, that.mTag)
-          && Arrays.equals(this.mValue, that.mValue);
+          && this.mValueBuffer.equals(that.mValueBuffer);
     }
   }
 
@@ -72,7 +115,7 @@ public class GenericExtensionImpl<TAG> implements GenericExtension<TAG> {
     return MoreObjects.toStringHelper(getClass())
         .add("schema", mSchema)
         .add("tag", mTag)
-        .add("value", mValue)
+        .add("value", Arrays.toString(getValue()))
         .toString();
   }
 }
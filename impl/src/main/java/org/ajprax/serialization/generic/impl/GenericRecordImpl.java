@@ -1,33 +1,91 @@
 package org.ajprax.serialization.generic.impl;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.ajprax.serialization.generic.GenericRecord;
 import org.ajprax.serialization.schema.Schema;
 
+/**
+ * GenericRecord which stores field values in an array indexed by
+ * {@link Schema#getFieldIndex(String)}. The map view returned by {@link #getValue()} is built on
+ * first use.
+ */
 public class GenericRecordImpl implements GenericRecord {
 
   public static GenericRecordImpl create(
       final Schema schema,
       final ImmutableMap<String, Object> value
   ) {
-    return new GenericRecordImpl(schema, value);
+    final ImmutableList<String> fieldNames = schema.getFieldSchemas().keySet().asList();
+    Preconditions.checkArgument(
+        value.size() == fieldNames.size() && value.keySet().containsAll(fieldNames),
+        "Record value fields: '%s' do not match Schema: '%s' fields: '%s'.",
+        value.keySet(),
+        schema.getName(),
+        fieldNames
+    );
+    final Object[] fieldValues = new Object[fieldNames.size()];
+    for (int i = 0; i < fieldValues.length; i++) {
+      fieldValues[i] = value.get(fieldNames.get(i));
+    }
+    return new GenericRecordImpl(schema, fieldValues, value);
+  }
+
+  /**
+   * Create a record from field values in Schema field order. The array is used directly and must
+   * not be modified afterwards.
+   *
+   * @param schema Record Schema.
+   * @param fieldValues Field values ordered by {@link Schema#getFieldIndex(String)}.
+   * @return A new record.
+   */
+  public static GenericRecordImpl create(
+      final Schema schema,
+      final Object[] fieldValues
+  ) {
+    Preconditions.checkArgument(
+        fieldValues.length == schema.getFieldSchemas().size(),
+        "Record: '%s' has '%s' fields, got '%s' values.",
+        schema.getName(),
+        schema.getFieldSchemas().size(),
+        fieldValues.length
+    );
+    return new GenericRecordImpl(schema, fieldValues, null);
   }
 
   private final Schema mSchema;
-  private final ImmutableMap<String, Object> mValue;
+  private final Object[] mFieldValues;
+  private volatile ImmutableMap<String, Object> mValue;
 
   private GenericRecordImpl(
       final Schema schema,
+      final Object[] fieldValues,
       final ImmutableMap<String, Object> value
   ) {
     mSchema = schema;
+    mFieldValues = fieldValues;
     mValue = value;
     // TODO ensure that values match the schema, do necessary number conversion?
   }
 
+  /**
+   * Expose this record's field value array so that a decoder may overwrite it with the fields of
+   * another value of the same Schema. Only decoders reusing a record which is no longer in use by
+   * anything else may call this. See {@link org.ajprax.serialization.io.Decoder#decode(Object,
+   * Object)}.
+   *
+   * @return This record's field values ordered by {@link Schema#getFieldIndex(String)}.
+   */
+  public Object[] reuseFieldValues() {
+    mValue = null;
+    return mFieldValues;
+  }
+
   @Override
   public Schema getSchema() {
     return mSchema;
@@ -35,12 +93,39 @@ public class GenericRecordImpl implements GenericRecord {
 
   @Override
   public ImmutableMap<String, Object> getValue() {
-    return mValue;
+    ImmutableMap<String, Object> value = mValue;
+    if (null == value) {
+      final ImmutableList<String> fieldNames = mSchema.getFieldSchemas().keySet().asList();
+      final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+      for (int i = 0; i < mFieldValues.length; i++) {
+        builder.put(fieldNames.get(i), mFieldValues[i]);
+      }
+      value = builder.build();
+      mValue = value;
+    }
+    return value;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(
+      final String fieldName
+  ) {
+    final int fieldIndex = mSchema.getFieldIndex(fieldName);
+    return (fieldIndex < 0) ? null : (T) mFieldValues[fieldIndex];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(
+      final int fieldIndex
+  ) {
+    return (T) mFieldValues[fieldIndex];
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(mSchema, mValue);
+    return hashCode(this);
   }
 
   @Override
@@ -48,21 +133,69 @@ public class GenericRecordImpl implements GenericRecord {
       final Object obj
   ) {
     // TODO consider if a generic and specific value with the same schema and value should be equal
-    if (null == obj || !obj.getClass().equals(getClass())) {
+    if (obj instanceof LazyGenericRecord) {
+      return fieldsEqual(this, (GenericRecord) obj);
+    } else if (null == obj || !obj.getClass().equals(getClass())) {
       return false;
     } else {
       final GenericRecordImpl that = (GenericRecordImpl) obj;
-      return Objects.equals(this.mSchema, that.mSchema)
-          // TODO if recursive values are allowed, do we need a recursion helper for checking equality?
-          && Objects.equals(this.mValue, that.mValue);
+      if (this.mSchema == that.mSchema) {
+        // same field layout.
+        return Arrays.equals(this.mFieldValues, that.mFieldValues);
+      } else {
+        return fieldsEqual(this, that);
+      }
+    }
+  }
+
+  /**
+   * Hash code shared by the GenericRecord implementations which may be equal to each other.
+   * Equal to Objects.hash(schema, getValue()) without building the map view.
+   *
+   * @param record Record to hash.
+   * @return The hash code of the record.
+   */
+  static int hashCode(
+      final GenericRecord record
+  ) {
+    final Schema schema = record.getSchema();
+    final ImmutableList<String> fieldNames = schema.getFieldSchemas().keySet().asList();
+    int valueHashCode = 0;
+    for (int i = 0; i < fieldNames.size(); i++) {
+      valueHashCode += fieldNames.get(i).hashCode() ^ Objects.hashCode(record.get(i));
+    }
+    return 31 * (31 + Objects.hashCode(schema)) + valueHashCode;
+  }
+
+  /**
+   * @param left Record to compare.
+   * @param right Record to compare.
+   * @return Whether the records have equal Schemas and equal values for every field.
+   */
+  static boolean fieldsEqual(
+      final GenericRecord left,
+      final GenericRecord right
+  ) {
+    if (!Objects.equals(left.getSchema(), right.getSchema())) {
+      return false;
+    }
+    // TODO if recursive values are allowed, do we need a recursion helper for checking equality?
+    final ImmutableList<String> fieldNames = left.getSchema().getFieldSchemas().keySet().asList();
+    final boolean sameLayout = left.getSchema() == right.getSchema();
+    for (int i = 0; i < fieldNames.size(); i++) {
+      final Object rightValue = sameLayout ? right.get(i) : right.get(fieldNames.get(i));
+      if (!Objects.equals(left.get(i), rightValue)) {
+        return false;
+      }
     }
+    return true;
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(getClass())
         .add("schema", mSchema)
-        .add("value", mValue)
+        .add("value", getValue())
         .toString();
   }
 }
@@ -0,0 +1,128 @@
+package org.ajprax.serialization.generic.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * GenericRecord whose field values are decoded from an encoded form only when first read. Each
+ * decoded value is memoized, so every field is decoded at most once. Equal to a
+ * {@link GenericRecordImpl} with the same Schema and field values.
+ */
+public final class LazyGenericRecord implements GenericRecord {
+
+  /** Decodes a single field of an encoded record. */
+  public interface FieldDecoder {
+    /**
+     * @param fieldIndex Index of the field, see {@link Schema#getFieldIndex(String)}.
+     * @return The decoded field value. Must not be null.
+     */
+    Object decode(int fieldIndex);
+  }
+
+  /**
+   * @param schema Record Schema.
+   * @param decoder Decoder of the record's fields. Must remain usable for as long as the record.
+   * @return A new record which decodes its fields on first use.
+   */
+  public static LazyGenericRecord create(
+      final Schema schema,
+      final FieldDecoder decoder
+  ) {
+    return new LazyGenericRecord(schema, decoder);
+  }
+
+  private final Schema mSchema;
+  private final FieldDecoder mDecoder;
+  /** Decoded field values, null until decoded. */
+  private final AtomicReferenceArray<Object> mFieldValues;
+  private volatile ImmutableMap<String, Object> mValue;
+
+  private LazyGenericRecord(
+      final Schema schema,
+      final FieldDecoder decoder
+  ) {
+    mSchema = schema;
+    mDecoder = decoder;
+    mFieldValues = new AtomicReferenceArray<>(schema.getFieldSchemas().size());
+  }
+
+  /**
+   * @param fieldIndex Index of a field.
+   * @return Whether the field has been decoded.
+   */
+  public boolean isDecoded(
+      final int fieldIndex
+  ) {
+    return null != mFieldValues.get(fieldIndex);
+  }
+
+  @Override
+  public Schema getSchema() {
+    return mSchema;
+  }
+
+  @Override
+  public ImmutableMap<String, Object> getValue() {
+    ImmutableMap<String, Object> value = mValue;
+    if (null == value) {
+      final ImmutableList<String> fieldNames = mSchema.getFieldSchemas().keySet().asList();
+      final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+      for (int i = 0; i < fieldNames.size(); i++) {
+        builder.put(fieldNames.get(i), get(i));
+      }
+      value = builder.build();
+      mValue = value;
+    }
+    return value;
+  }
+
+  @Override
+  public <T> T get(
+      final String fieldName
+  ) {
+    final int fieldIndex = mSchema.getFieldIndex(fieldName);
+    return (fieldIndex < 0) ? null : get(fieldIndex);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(
+      final int fieldIndex
+  ) {
+    final Object value = mFieldValues.get(fieldIndex);
+    if (null != value) {
+      return (T) value;
+    }
+    // concurrent readers may both decode, the first value stored wins.
+    final Object decoded = mDecoder.decode(fieldIndex);
+    return mFieldValues.compareAndSet(fieldIndex, null, decoded)
+        ? (T) decoded
+        : (T) mFieldValues.get(fieldIndex);
+  }
+
+  @Override
+  public int hashCode() {
+    return GenericRecordImpl.hashCode(this);
+  }
+
+  @Override
+  public boolean equals(
+      final Object obj
+  ) {
+    return (obj instanceof LazyGenericRecord || obj instanceof GenericRecordImpl)
+        && GenericRecordImpl.fieldsEqual(this, (GenericRecord) obj);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(getClass())
+        .add("schema", mSchema)
+        .add("value", getValue())
+        .toString();
+  }
+}
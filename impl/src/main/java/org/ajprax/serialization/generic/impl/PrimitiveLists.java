@@ -0,0 +1,336 @@
+package org.ajprax.serialization.generic.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Fixed size Lists backed by primitive arrays. Used as the Java value of ARRAY and FIXED_SIZE_ARRAY
+ * Schemas with SIGNED_16, SIGNED_32, SIGNED_64, FLOAT_32, FLOAT_64 or BOOLEAN elements to avoid
+ * boxing each element.
+ *
+ * Lists wrap their arrays without copying. Elements may be replaced with {@link java.util.List#set}
+ * but not added or removed. Equality and hashing follow the {@link java.util.List} contract, so a
+ * primitive List is equal to any other List with equal boxed elements.
+ */
+public final class PrimitiveLists {
+
+  public static ShortList wrap(
+      final short[] values
+  ) {
+    return new ShortList(values);
+  }
+
+  public static IntList wrap(
+      final int[] values
+  ) {
+    return new IntList(values);
+  }
+
+  public static LongList wrap(
+      final long[] values
+  ) {
+    return new LongList(values);
+  }
+
+  public static FloatList wrap(
+      final float[] values
+  ) {
+    return new FloatList(values);
+  }
+
+  public static DoubleList wrap(
+      final double[] values
+  ) {
+    return new DoubleList(values);
+  }
+
+  public static BooleanList wrap(
+      final boolean[] values
+  ) {
+    return new BooleanList(values);
+  }
+
+  /** List of {@code short} values. */
+  public static final class ShortList extends AbstractList<Short> implements RandomAccess {
+
+    private final short[] mValues;
+
+    private ShortList(
+        final short[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public short[] getArray() {
+      return mValues;
+    }
+
+    public short getShort(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Short get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Short set(
+        final int index,
+        final Short element
+    ) {
+      final short previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  /** List of {@code int} values. */
+  public static final class IntList extends AbstractList<Integer> implements RandomAccess {
+
+    private final int[] mValues;
+
+    private IntList(
+        final int[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public int[] getArray() {
+      return mValues;
+    }
+
+    public int getInt(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Integer get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Integer set(
+        final int index,
+        final Integer element
+    ) {
+      final int previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  /** List of {@code long} values. */
+  public static final class LongList extends AbstractList<Long> implements RandomAccess {
+
+    private final long[] mValues;
+
+    private LongList(
+        final long[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public long[] getArray() {
+      return mValues;
+    }
+
+    public long getLong(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Long get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Long set(
+        final int index,
+        final Long element
+    ) {
+      final long previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  /** List of {@code float} values. */
+  public static final class FloatList extends AbstractList<Float> implements RandomAccess {
+
+    private final float[] mValues;
+
+    private FloatList(
+        final float[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public float[] getArray() {
+      return mValues;
+    }
+
+    public float getFloat(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Float get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Float set(
+        final int index,
+        final Float element
+    ) {
+      final float previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  /** List of {@code double} values. */
+  public static final class DoubleList extends AbstractList<Double> implements RandomAccess {
+
+    private final double[] mValues;
+
+    private DoubleList(
+        final double[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public double[] getArray() {
+      return mValues;
+    }
+
+    public double getDouble(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Double get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Double set(
+        final int index,
+        final Double element
+    ) {
+      final double previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  /** List of {@code boolean} values. */
+  public static final class BooleanList extends AbstractList<Boolean> implements RandomAccess {
+
+    private final boolean[] mValues;
+
+    private BooleanList(
+        final boolean[] values
+    ) {
+      mValues = values;
+    }
+
+    /**
+     * @return The backing array of this List. Changes to the array are visible in the List.
+     */
+    public boolean[] getArray() {
+      return mValues;
+    }
+
+    public boolean getBoolean(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Boolean get(
+        final int index
+    ) {
+      return mValues[index];
+    }
+
+    @Override
+    public Boolean set(
+        final int index,
+        final Boolean element
+    ) {
+      final boolean previous = mValues[index];
+      mValues[index] = element;
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return mValues.length;
+    }
+  }
+
+  private PrimitiveLists() { }
+}
@@ -0,0 +1,650 @@
+package org.ajprax.serialization.io.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericExtension;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.LazyGenericRecord;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.impl.BinarySkippers.ValueSkipper;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Decoders for the compact binary format. See {@link BinaryEncoders} for a description of the
+ * format.
+ */
+public class BinaryDecoders {
+
+  public static final class BinaryDecoderImplFactory implements BinaryDecoderFactory {
+
+    private final CodecCache<BinaryDecoder<Object>> mCache = CodecCache.create(
+        schema -> decoder(schema, BinaryDecoders.forSchema(schema, Maps.newHashMap()))
+    );
+    private final CodecCache<BinaryDecoder<Object>> mLazyCache = CodecCache.create(
+        schema -> decoder(schema, BinaryDecoders.lazyForSchema(schema, Maps.newHashMap(), Maps.newHashMap()))
+    );
+    private final ResolutionCache<BinaryDecoder<Object>> mResolutionCache = ResolutionCache.create(
+        (writerSchema, readerSchema) ->
+            decoder(writerSchema, BinaryResolvingDecoders.forEvolution(writerSchema, readerSchema))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryDecoder<T> forSchema(final Schema schema) {
+      return (BinaryDecoder<T>) mCache.get(schema);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryDecoder<T> lazyForSchema(final Schema schema) {
+      return (BinaryDecoder<T>) mLazyCache.get(schema);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryDecoder<T> forSchemas(final Schema writerSchema, final Schema readerSchema) {
+      return (BinaryDecoder<T>) mResolutionCache.get(writerSchema, readerSchema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  /**
+   * Reads a single value of a known Schema from a BinaryInput. Public so that readers generated by
+   * {@link GeneratedBinaryDecoders} may implement it.
+   */
+  public interface ValueReader<T> {
+    T read(BinaryInput input);
+
+    /**
+     * Read a value, overwriting a previously read value in place where possible. Readers which do
+     * not support reuse ignore it.
+     *
+     * @param input BinaryInput from which to read.
+     * @param reuse Previously read value which is no longer in use, or null.
+     * @return The read value. May be reuse itself.
+     */
+    default T read(
+        final BinaryInput input,
+        final T reuse
+    ) {
+      return read(input);
+    }
+  }
+
+  /** Reads a value, overwriting a previously read value in place where possible. */
+  interface ReusingValueReader<T> {
+    T read(BinaryInput input, T reuse);
+  }
+
+  /**
+   * @param reader Reader which accepts a value to reuse.
+   * @return A ValueReader which passes a value to reuse, or null if there is none, to the reader.
+   */
+  static <T> ValueReader<T> reusing(
+      final ReusingValueReader<T> reader
+  ) {
+    return new ValueReader<T>() {
+      @Override
+      public T read(
+          final BinaryInput input
+      ) {
+        return reader.read(input, null);
+      }
+
+      @Override
+      public T read(
+          final BinaryInput input,
+          final T reuse
+      ) {
+        return reader.read(input, reuse);
+      }
+    };
+  }
+
+  /**
+   * @param schema Schema of the top level value.
+   * @param reader Reader for the top level value.
+   * @return A BinaryDecoder which reads a single value from a byte array and rejects trailing
+   *     bytes, or reads a single value from a ByteBuffer and leaves trailing bytes unread.
+   *     Projections of the returned decoder read the encoded form of the given Schema.
+   */
+  static BinaryDecoder<Object> decoder(
+      final Schema schema,
+      final ValueReader<Object> reader
+  ) {
+    return new BinaryDecoder<Object>() {
+      // created on first use, most decoders are never projected.
+      private final Supplier<CodecCache<BinaryDecoder<Object>>> mProjections = Suppliers.memoize(
+          () -> CodecCache.create(
+              readerSchema -> decoder(schema, BinaryResolvingDecoders.forProjection(schema, readerSchema))
+          )
+      );
+
+      @Override
+      public Object decode(
+          final byte[] bytes
+      ) {
+        return decode(bytes, null);
+      }
+
+      @Override
+      public Object decode(
+          final byte[] bytes,
+          final Object reuse
+      ) {
+        final BinaryInput input = BinaryInput.wrap(bytes);
+        final Object value = reader.read(input, reuse);
+        Preconditions.checkArgument(
+            !input.hasRemaining(),
+            "Input contains trailing bytes after a value of Schema: '%s'.",
+            schema.getName()
+        );
+        return value;
+      }
+
+      @Override
+      public Object decodeFrom(
+          final ByteBuffer buffer
+      ) {
+        // read from a duplicate so that the caller's byte order is left alone.
+        final ByteBuffer view = buffer.duplicate();
+        final Object value = reader.read(BinaryInput.wrap(view));
+        buffer.position(view.position());
+        return value;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> BinaryDecoder<T> withProjection(
+          final Schema readerSchema
+      ) {
+        return (BinaryDecoder<T>) mProjections.get().get(readerSchema);
+      }
+    };
+  }
+
+  /**
+   * Placeholder for a record reader which may read recursive records. Must be filled with a
+   * concrete record reader before it can be used.
+   */
+  static final class PlaceholderValueReader implements ValueReader<Object> {
+
+    private ValueReader<Object> mDelegate = null;
+
+    void fill(
+        final ValueReader<Object> delegate
+    ) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public Object read(
+        final BinaryInput input
+    ) {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderValueReader which has not been filled."
+      );
+      return mDelegate.read(input);
+    }
+
+    @Override
+    public Object read(
+        final BinaryInput input,
+        final Object reuse
+    ) {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderValueReader which has not been filled."
+      );
+      return mDelegate.read(input, reuse);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> ValueReader<T> cast(
+      final ValueReader<?> reader
+  ) {
+    return (ValueReader<T>) reader;
+  }
+
+  private static final ValueReader<Short> SIGNED_16 = input -> (short) input.readZigZag32();
+  private static final ValueReader<Integer> SIGNED_32 = BinaryInput::readZigZag32;
+  private static final ValueReader<Long> SIGNED_64 = BinaryInput::readZigZag64;
+  private static final ValueReader<BigInteger> SIGNED_BIG = input -> new BigInteger(input.readBytes());
+  private static final ValueReader<Float> FLOAT_32 = BinaryInput::readFloat;
+  private static final ValueReader<Double> FLOAT_64 = BinaryInput::readDouble;
+  private static final ValueReader<BigDecimal> FLOAT_BIG = input -> {
+    final int scale = input.readZigZag32();
+    return new BigDecimal(new BigInteger(input.readBytes()), scale);
+  };
+  private static final ValueReader<Boolean> BOOLEAN = BinaryInput::readBoolean;
+  private static final ValueReader<String> STRING = BinaryInput::readString;
+
+  /** Enums are read as their symbol index. See {@link EnumValues} for the values produced. */
+  private static ValueReader<Object> enumm(
+      final Schema schema
+  ) {
+    final ImmutableList<Object> values = EnumValues.forSchema(schema);
+    return input -> {
+      final int symbolIndex = input.readLength();
+      Preconditions.checkArgument(
+          symbolIndex < values.size(),
+          "Symbol index: '%s' is out of range for enum: '%s'.",
+          symbolIndex,
+          schema.getName()
+      );
+      return values.get(symbolIndex);
+    };
+  }
+
+  static <TAG> ValueReader<GenericExtension<TAG>> extension(
+      final Schema schema,
+      final ValueReader<TAG> tagReader
+  ) {
+    return input -> {
+      final TAG tag = tagReader.read(input);
+      final ByteBuffer value = input.readBuffer();
+      return GenericExtensionImpl.create(schema, tag, value);
+    };
+  }
+
+  /** Reads a known number of List elements. */
+  interface ElementsReader<T> {
+    /**
+     * @param input BinaryInput from which to read.
+     * @param size Number of elements to read.
+     * @param reuse Previously read List which is no longer in use, or null.
+     * @return The read elements. May be reuse itself.
+     */
+    List<T> read(BinaryInput input, int size, List<T> reuse);
+  }
+
+  /**
+   * Elements of primitive types with a {@link PrimitiveLists} specialization are read into a
+   * primitive array. Each such element occupies at least one byte, so a size greater than the
+   * remaining input is rejected before allocating the array. The array of a reused List of the
+   * same size is overwritten instead.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> ElementsReader<T> elements(
+      final Schema elementSchema,
+      final ValueReader<T> tReader
+  ) {
+    switch (elementSchema.getType()) {
+      case SIGNED_16: return (input, size, reuse) -> {
+        final short[] reused = ReusableValues.shorts(reuse, size);
+        final short[] values = (null != reused) ? reused : new short[checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = (short) input.readZigZag32();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      case SIGNED_32: return (input, size, reuse) -> {
+        final int[] reused = ReusableValues.ints(reuse, size);
+        final int[] values = (null != reused) ? reused : new int[checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = input.readZigZag32();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      case SIGNED_64: return (input, size, reuse) -> {
+        final long[] reused = ReusableValues.longs(reuse, size);
+        final long[] values = (null != reused) ? reused : new long[checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = input.readZigZag64();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      case FLOAT_32: return (input, size, reuse) -> {
+        final float[] reused = ReusableValues.floats(reuse, size);
+        final float[] values = (null != reused) ? reused : new float[checkSize(input, size)];
+        input.readFloats(values);
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      case FLOAT_64: return (input, size, reuse) -> {
+        final double[] reused = ReusableValues.doubles(reuse, size);
+        final double[] values = (null != reused) ? reused : new double[checkSize(input, size)];
+        input.readDoubles(values);
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      case BOOLEAN: return (input, size, reuse) -> {
+        final boolean[] reused = ReusableValues.booleans(reuse, size);
+        final boolean[] values = (null != reused) ? reused : new boolean[checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = input.readBoolean();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      };
+      default: return (input, size, reuse) -> {
+        final List<T> reused = ReusableValues.list(reuse);
+        if (null != reused) {
+          // elements are read over the elements at the same index.
+          final int reusable = Math.min(size, reused.size());
+          for (int i = 0; i < reusable; i++) {
+            reused.set(i, tReader.read(input, reused.get(i)));
+          }
+          for (int i = reusable; i < size; i++) {
+            reused.add(tReader.read(input));
+          }
+          ReusableValues.truncate(reused, size);
+          return reused;
+        }
+        final List<T> array = Lists.newArrayListWithCapacity(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+          array.add(tReader.read(input));
+        }
+        return array;
+      };
+    }
+  }
+
+  static int checkSize(
+      final BinaryInput input,
+      final int size
+  ) {
+    if (size > input.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    return size;
+  }
+
+  static <T> ValueReader<List<T>> array(
+      final ElementsReader<T> elementsReader
+  ) {
+    return reusing((input, reuse) -> elementsReader.read(input, input.readLength(), reuse));
+  }
+
+  static <T> ValueReader<List<T>> fixedSizeArray(
+      final int size,
+      final ElementsReader<T> elementsReader
+  ) {
+    return reusing((input, reuse) -> elementsReader.read(input, size, reuse));
+  }
+
+  static <T> ValueReader<Set<T>> set(
+      final ValueReader<T> tReader
+  ) {
+    return reusing((input, reuse) -> {
+      final int size = input.readLength();
+      final Set<T> reused = ReusableValues.set(reuse);
+      final Set<T> set = (null != reused) ? reused : Sets.newHashSetWithExpectedSize(Math.min(size, 1024));
+      for (int i = 0; i < size; i++) {
+        set.add(tReader.read(input));
+      }
+      return set;
+    });
+  }
+
+  static <K, V> ValueReader<Map<K, V>> map(
+      final ValueReader<K> kReader,
+      final ValueReader<V> vReader
+  ) {
+    return reusing((input, reuse) -> {
+      final int size = input.readLength();
+      final Map<K, V> reused = ReusableValues.map(reuse);
+      final Map<K, V> map = (null != reused) ? reused : Maps.newHashMapWithExpectedSize(Math.min(size, 1024));
+      for (int i = 0; i < size; i++) {
+        final K key = kReader.read(input);
+        final V value = vReader.read(input);
+        map.put(key, value);
+      }
+      return map;
+    });
+  }
+
+  static ValueReader<GenericUnion> union(
+      final Schema schema,
+      final List<ValueReader<Object>> branchReaders
+  ) {
+    return reusing((input, reuse) -> {
+      final int branchIndex = input.readLength();
+      Preconditions.checkArgument(
+          branchIndex < branchReaders.size(),
+          "Branch index: '%s' is out of range for union: '%s'.",
+          branchIndex,
+          schema.getName()
+      );
+      // the previous value is only reused when it holds the same branch.
+      final Object reusedValue = (null != reuse && reuse.getBranchIndex() == branchIndex) ? reuse.getValue() : null;
+      final Object value = branchReaders.get(branchIndex).read(input, reusedValue);
+      return GenericUnionImpl.create(schema, branchIndex, value);
+    });
+  }
+
+  static <T> ValueReader<Optional<T>> optional(
+      final ValueReader<T> tReader
+  ) {
+    return reusing((input, reuse) -> (input.readBoolean())
+        ? Optional.of(tReader.read(input, (null != reuse) ? reuse.orElse(null) : null))
+        : Optional.empty());
+  }
+
+  static ValueReader<GenericRecord> record(
+      final Schema schema,
+      final ImmutableList<String> fieldNames,
+      final ImmutableList<ValueReader<Object>> fieldReaders
+  ) {
+    return reusing((input, reuse) -> {
+      final GenericRecordImpl reused = ReusableValues.record(schema, reuse);
+      final Object[] fieldValues = (null != reused) ? reused.reuseFieldValues() : new Object[fieldNames.size()];
+      for (int i = 0; i < fieldValues.length; i++) {
+        // fieldValues[i] is null unless the record is reused.
+        fieldValues[i] = fieldReaders.get(i).read(input, fieldValues[i]);
+      }
+      return (null != reused) ? reused : GenericRecordImpl.create(schema, fieldValues);
+    });
+  }
+
+  /**
+   * Reads a record lazily. The fields are skipped to find where each one starts and the record
+   * keeps a view of its bytes from which each field is decoded on first use.
+   */
+  static ValueReader<GenericRecord> lazyRecord(
+      final Schema schema,
+      final ImmutableList<ValueReader<Object>> fieldReaders,
+      final ImmutableList<ValueSkipper> fieldSkippers
+  ) {
+    return input -> {
+      final int start = input.position();
+      final int[] offsets = new int[fieldSkippers.size()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = input.position() - start;
+        fieldSkippers.get(i).skip(input);
+      }
+      final ByteBuffer bytes = input.view(start, input.position());
+      return LazyGenericRecord.create(schema, fieldIndex -> {
+        final ByteBuffer field = bytes.duplicate();
+        field.position(offsets[fieldIndex]);
+        return fieldReaders.get(fieldIndex).read(BinaryInput.wrap(field));
+      });
+    };
+  }
+
+  /**
+   * Creates a reader which reads RECORD values lazily, see {@link #lazyRecord(Schema,
+   * ImmutableList, ImmutableList)}. RECORD fields of lazy records are lazy as well, records
+   * nested in any other Schema are read eagerly.
+   *
+   * @param schema Schema for which to build a reader.
+   * @param knownSchemas Eager readers already built for Schemas in this tree.
+   * @param knownSkippers Skippers already built for Schemas in this tree.
+   * @return A ValueReader for the given Schema.
+   */
+  static ValueReader<Object> lazyForSchema(
+      final Schema schema,
+      final Map<Schema, ValueReader<Object>> knownSchemas,
+      final Map<Schema, ValueSkipper> knownSkippers
+  ) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      return forSchema(schema, knownSchemas);
+    }
+    final ImmutableList.Builder<ValueReader<Object>> fieldReaders = ImmutableList.builder();
+    final ImmutableList.Builder<ValueSkipper> fieldSkippers = ImmutableList.builder();
+    for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+      fieldReaders.add(lazyForSchema(fieldSchema, knownSchemas, knownSkippers));
+      fieldSkippers.add(BinarySkippers.forSchema(fieldSchema, knownSkippers));
+    }
+    return cast(lazyRecord(schema, fieldReaders.build(), fieldSkippers.build()));
+  }
+
+  static ValueReader<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, ValueReader<Object>> knownSchemas
+  ) {
+    final ValueReader<Object> knownReader = knownSchemas.get(schema);
+    if (null != knownReader) {
+      return knownReader;
+    } else {
+      switch (schema.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8: throw new UnsupportedOperationException(
+            String.format("Schema type: '%s' is unsupported in Java.", schema.getType())
+        );
+        case SIGNED_16: {
+          knownSchemas.put(schema, cast(SIGNED_16));
+          return cast(SIGNED_16);
+        }
+        case SIGNED_32: {
+          knownSchemas.put(schema, cast(SIGNED_32));
+          return cast(SIGNED_32);
+        }
+        case SIGNED_64: {
+          knownSchemas.put(schema, cast(SIGNED_64));
+          return cast(SIGNED_64);
+        }
+        case SIGNED_BIG: {
+          knownSchemas.put(schema, cast(SIGNED_BIG));
+          return cast(SIGNED_BIG);
+        }
+        case FLOAT_32: {
+          knownSchemas.put(schema, cast(FLOAT_32));
+          return cast(FLOAT_32);
+        }
+        case FLOAT_64: {
+          knownSchemas.put(schema, cast(FLOAT_64));
+          return cast(FLOAT_64);
+        }
+        case FLOAT_BIG: {
+          knownSchemas.put(schema, cast(FLOAT_BIG));
+          return cast(FLOAT_BIG);
+        }
+        case BOOLEAN: {
+          knownSchemas.put(schema, cast(BOOLEAN));
+          return cast(BOOLEAN);
+        }
+        case STRING: {
+          knownSchemas.put(schema, cast(STRING));
+          return cast(STRING);
+        }
+        case ENUM: {
+          final ValueReader<Object> reader = enumm(schema);
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case EXTENSION: {
+          final ValueReader<Object> tagReader = forSchema(schema.getTagSchema(), knownSchemas);
+          final ValueReader<Object> reader = cast(extension(schema, tagReader));
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case ARRAY: {
+          final ValueReader<?> reader = array(elements(
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          ));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case FIXED_SIZE_ARRAY: {
+          final ValueReader<?> reader = fixedSizeArray(
+              schema.getSize(),
+              elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas))
+          );
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case SET: {
+          final ValueReader<?> reader = set(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case MAP: {
+          final ValueReader<?> reader = map(
+              forSchema(schema.getKeySchema(), knownSchemas),
+              forSchema(schema.getValueSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case UNION: {
+          final List<ValueReader<Object>> branchReaders = ImmutableList.copyOf(Lists.transform(
+              schema.getBranchSchemas(),
+              branchSchema -> forSchema(branchSchema, knownSchemas)
+          ));
+          final ValueReader<Object> reader = cast(union(schema, branchReaders));
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case OPTIONAL: {
+          final ValueReader<?> reader = optional(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderValueReader> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderValueReader())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+          final ImmutableList.Builder<ValueReader<Object>> fieldReaders = ImmutableList.builder();
+          for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+            fieldReaders.add(forSchema(fieldSchema, knownSchemas));
+          }
+          final ValueReader<GenericRecord> reader = record(
+              schema,
+              schema.getFieldSchemas().keySet().asList(),
+              fieldReaders.build()
+          );
+          placeholder.ifPresent(p -> p.fill(cast(reader)));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+      }
+    }
+  }
+
+  private BinaryDecoders() { }
+}
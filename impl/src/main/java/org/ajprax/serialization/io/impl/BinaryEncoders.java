@@ -0,0 +1,539 @@
+package org.ajprax.serialization.io.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.GenericExtension;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.BooleanList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.DoubleList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.FloatList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.IntList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.LongList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.ShortList;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.EncoderContext;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Encoders for the compact binary format.
+ *
+ * <ul>
+ *   <li>SIGNED_16, SIGNED_32, SIGNED_64: zig-zag varint.</li>
+ *   <li>SIGNED_BIG: varint length followed by big endian two's complement bytes.</li>
+ *   <li>FLOAT_32, FLOAT_64: little endian IEEE 754.</li>
+ *   <li>FLOAT_BIG: zig-zag varint scale followed by the unscaled value as SIGNED_BIG.</li>
+ *   <li>BOOLEAN: a single byte, 0 or 1.</li>
+ *   <li>STRING: varint byte length followed by UTF-8 bytes.</li>
+ *   <li>ENUM: varint index of the symbol in the Schema's symbol set.</li>
+ *   <li>EXTENSION: the tag followed by a varint length and the value bytes.</li>
+ *   <li>ARRAY, SET: varint element count followed by the elements.</li>
+ *   <li>FIXED_SIZE_ARRAY: the elements, the count is supplied by the Schema.</li>
+ *   <li>MAP: varint entry count followed by alternating keys and values.</li>
+ *   <li>UNION: varint branch index followed by the value.</li>
+ *   <li>OPTIONAL: a presence byte, 0 or 1, followed by the value if present.</li>
+ *   <li>RECORD: the field values in the order of the Schema's field schemas, without names.</li>
+ * </ul>
+ */
+public class BinaryEncoders {
+
+  public static final class BinaryEncoderImplFactory implements BinaryEncoderFactory {
+
+    private final CodecCache<BinaryEncoder<Object>> mCache = CodecCache.create(
+        schema -> encoder(BinaryEncoders.forSchema(schema, Maps.newHashMap()))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryEncoder<T> forSchema(final Schema schema) {
+      return (BinaryEncoder<T>) mCache.get(schema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  /**
+   * Writes a single value of a known Schema into a BinaryOutput. Public so that writers generated
+   * by {@link GeneratedBinaryEncoders} may implement it.
+   */
+  public interface ValueWriter<T> {
+    void write(T input, BinaryOutput output);
+  }
+
+  /**
+   * @param writer Writer for the top level value.
+   * @return A BinaryEncoder which writes each value into a new byte array, or into a given
+   *     ByteBuffer.
+   */
+  static BinaryEncoder<Object> encoder(
+      final ValueWriter<Object> writer
+  ) {
+    return new BinaryEncoder<Object>() {
+      @Override
+      public byte[] encode(
+          final Object input
+      ) {
+        final BinaryOutput output = BinaryOutput.create();
+        writer.write(input, output);
+        return output.toByteArray();
+      }
+
+      @Override
+      public byte[] encode(
+          final Object input,
+          final EncoderContext context
+      ) {
+        final EncoderContextImpl contextImpl = EncoderContextImpl.of(context);
+        try {
+          final BinaryOutput output = contextImpl.output();
+          writer.write(input, output);
+          return output.toByteArray();
+        } finally {
+          contextImpl.release();
+        }
+      }
+
+      @Override
+      public void encodeTo(
+          final Object input,
+          final ByteBuffer buffer
+      ) {
+        encodeTo(input, buffer, EncoderContextImpl.forCurrentThread());
+      }
+
+      @Override
+      public void encodeTo(
+          final Object input,
+          final ByteBuffer buffer,
+          final EncoderContext context
+      ) {
+        Preconditions.checkArgument(!buffer.isReadOnly(), "Cannot encode into a read-only ByteBuffer.");
+        if (buffer.hasArray()) {
+          // write straight into the backing array.
+          final BinaryOutput output = BinaryOutput.wrap(buffer);
+          writer.write(input, output);
+          buffer.position(buffer.position() + output.size());
+        } else {
+          // direct buffers receive a single bulk copy of the encoded value.
+          final EncoderContextImpl contextImpl = EncoderContextImpl.of(context);
+          final BinaryOutput output = contextImpl.output();
+          try {
+            writer.write(input, output);
+            if (output.size() > buffer.remaining()) {
+              throw new BufferOverflowException();
+            }
+            buffer.put(output.asByteBuffer());
+          } finally {
+            contextImpl.release();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Placeholder for a record writer which may write recursive records. Must be filled with a
+   * concrete record writer before it can be used.
+   */
+  static final class PlaceholderValueWriter implements ValueWriter<Object> {
+
+    private ValueWriter<Object> mDelegate = null;
+
+    void fill(
+        final ValueWriter<Object> delegate
+    ) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public void write(
+        final Object input,
+        final BinaryOutput output
+    ) {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderValueWriter which has not been filled."
+      );
+      mDelegate.write(input, output);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> ValueWriter<T> cast(
+      final ValueWriter<?> writer
+  ) {
+    return (ValueWriter<T>) writer;
+  }
+
+  private static final ValueWriter<Short> SIGNED_16 = (input, output) -> output.writeZigZag32(input);
+  private static final ValueWriter<Integer> SIGNED_32 = (input, output) -> output.writeZigZag32(input);
+  private static final ValueWriter<Long> SIGNED_64 = (input, output) -> output.writeZigZag64(input);
+  private static final ValueWriter<BigInteger> SIGNED_BIG =
+      (input, output) -> output.writeBytes(input.toByteArray());
+  private static final ValueWriter<Float> FLOAT_32 = (input, output) -> output.writeFloat(input);
+  private static final ValueWriter<Double> FLOAT_64 = (input, output) -> output.writeDouble(input);
+  private static final ValueWriter<BigDecimal> FLOAT_BIG = (input, output) -> {
+    output.writeZigZag32(input.scale());
+    output.writeBytes(input.unscaledValue().toByteArray());
+  };
+  private static final ValueWriter<Boolean> BOOLEAN = (input, output) -> output.writeBoolean(input);
+  private static final ValueWriter<String> STRING = (input, output) -> output.writeString(input);
+
+  /**
+   * Enums are written as the index of their symbol. Accepts either Java enum constants or symbol
+   * Strings so that values produced by {@link BinaryDecoders} may be written back.
+   */
+  private static ValueWriter<Object> enumm(
+      final Schema schema
+  ) {
+    final ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    int index = 0;
+    for (String symbol : schema.getEnumSymbols()) {
+      builder.put(symbol, index++);
+    }
+    final ImmutableMap<String, Integer> symbolIndices = builder.build();
+    return (input, output) -> {
+      final String symbol = (input instanceof Enum) ? ((Enum<?>) input).name() : (String) input;
+      final Integer symbolIndex = symbolIndices.get(symbol);
+      Preconditions.checkArgument(
+          null != symbolIndex,
+          "Symbol: '%s' is not a member of enum: '%s'.",
+          symbol,
+          schema.getName()
+      );
+      output.writeVarint(symbolIndex);
+    };
+  }
+
+  static <TAG> ValueWriter<GenericExtension<TAG>> extension(
+      final ValueWriter<TAG> tagWriter
+  ) {
+    return (input, output) -> {
+      tagWriter.write(input.getTag(), output);
+      output.writeBytes(input.getValueBuffer());
+    };
+  }
+
+  /**
+   * Writes the elements of a List without a count. Lists from {@link PrimitiveLists} with a
+   * matching element type are written from their backing arrays without unboxing.
+   */
+  static <T> ValueWriter<List<T>> elements(
+      final Schema elementSchema,
+      final ValueWriter<T> tWriter
+  ) {
+    final ValueWriter<List<T>> boxed = (input, output) -> {
+      for (final T t : input) {
+        tWriter.write(t, output);
+      }
+    };
+    switch (elementSchema.getType()) {
+      case SIGNED_16: return (input, output) -> {
+        if (input instanceof ShortList) {
+          for (short value : ((ShortList) input).getArray()) {
+            output.writeZigZag32(value);
+          }
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      case SIGNED_32: return (input, output) -> {
+        if (input instanceof IntList) {
+          for (int value : ((IntList) input).getArray()) {
+            output.writeZigZag32(value);
+          }
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      case SIGNED_64: return (input, output) -> {
+        if (input instanceof LongList) {
+          for (long value : ((LongList) input).getArray()) {
+            output.writeZigZag64(value);
+          }
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      case FLOAT_32: return (input, output) -> {
+        if (input instanceof FloatList) {
+          output.writeFloats(((FloatList) input).getArray());
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      case FLOAT_64: return (input, output) -> {
+        if (input instanceof DoubleList) {
+          output.writeDoubles(((DoubleList) input).getArray());
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      case BOOLEAN: return (input, output) -> {
+        if (input instanceof BooleanList) {
+          for (boolean value : ((BooleanList) input).getArray()) {
+            output.writeBoolean(value);
+          }
+        } else {
+          boxed.write(input, output);
+        }
+      };
+      default: return boxed;
+    }
+  }
+
+  static <T> ValueWriter<List<T>> array(
+      final ValueWriter<List<T>> elementsWriter
+  ) {
+    return (input, output) -> {
+      output.writeVarint(input.size());
+      elementsWriter.write(input, output);
+    };
+  }
+
+  static <T> ValueWriter<List<T>> fixedSizeArray(
+      final ValueWriter<List<T>> elementsWriter,
+      final int size
+  ) {
+    return (input, output) -> {
+      Preconditions.checkArgument(
+          input.size() == size,
+          "Input size: '%s' does not match fixed size: '%s'.",
+          input.size(),
+          size
+      );
+      elementsWriter.write(input, output);
+    };
+  }
+
+  static <T> ValueWriter<Set<T>> set(
+      final ValueWriter<T> tWriter
+  ) {
+    return (input, output) -> {
+      output.writeVarint(input.size());
+      for (final T t : input) {
+        tWriter.write(t, output);
+      }
+    };
+  }
+
+  static <K, V> ValueWriter<Map<K, V>> map(
+      final ValueWriter<K> kWriter,
+      final ValueWriter<V> vWriter
+  ) {
+    return (input, output) -> {
+      output.writeVarint(input.size());
+      for (final Map.Entry<K, V> entry : input.entrySet()) {
+        kWriter.write(entry.getKey(), output);
+        vWriter.write(entry.getValue(), output);
+      }
+    };
+  }
+
+  static ValueWriter<GenericUnion> union(
+      final List<ValueWriter<Object>> branchWriters
+  ) {
+    return (input, output) -> {
+      output.writeVarint(input.getBranchIndex());
+      branchWriters.get(input.getBranchIndex()).write(input.getValue(), output);
+    };
+  }
+
+  static <T> ValueWriter<Optional<T>> optional(
+      final ValueWriter<T> tWriter
+  ) {
+    return (input, output) -> {
+      if (input.isPresent()) {
+        output.writeBoolean(true);
+        tWriter.write(input.get(), output);
+      } else {
+        output.writeBoolean(false);
+      }
+    };
+  }
+
+  /**
+   * Records with the writer's own Schema instance are read by field index. Other records are read
+   * by field name.
+   */
+  static ValueWriter<GenericRecord> record(
+      final Schema schema,
+      final ImmutableList<String> fieldNames,
+      final ImmutableList<ValueWriter<Object>> fieldWriters
+  ) {
+    return (input, output) -> {
+      if (input.getSchema() == schema) {
+        for (int i = 0; i < fieldNames.size(); i++) {
+          fieldWriters.get(i).write(input.get(i), output);
+        }
+      } else {
+        for (int i = 0; i < fieldNames.size(); i++) {
+          fieldWriters.get(i).write(input.get(fieldNames.get(i)), output);
+        }
+      }
+    };
+  }
+
+  /**
+   * Recursively creates writers for a given Schema. If the same record is encountered twice in a
+   * Schema tree, breaks recursion to prevent an infinite loop.
+   *
+   * @param schema Schema for which to build a writer.
+   * @param knownSchemas Schemas which have already been seen during the creation of this writer.
+   * @return A ValueWriter for the given Schema.
+   */
+  static ValueWriter<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, ValueWriter<Object>> knownSchemas
+  ) {
+    final ValueWriter<Object> knownWriter = knownSchemas.get(schema);
+    if (knownWriter != null) {
+      return knownWriter;
+    } else {
+      switch (schema.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8: throw new UnsupportedOperationException(
+            String.format("Schema type: '%s' is unsupported in Java.", schema.getType())
+        );
+        case SIGNED_16: {
+          knownSchemas.put(schema, cast(SIGNED_16));
+          return cast(SIGNED_16);
+        }
+        case SIGNED_32: {
+          knownSchemas.put(schema, cast(SIGNED_32));
+          return cast(SIGNED_32);
+        }
+        case SIGNED_64: {
+          knownSchemas.put(schema, cast(SIGNED_64));
+          return cast(SIGNED_64);
+        }
+        case SIGNED_BIG: {
+          knownSchemas.put(schema, cast(SIGNED_BIG));
+          return cast(SIGNED_BIG);
+        }
+        case FLOAT_32: {
+          knownSchemas.put(schema, cast(FLOAT_32));
+          return cast(FLOAT_32);
+        }
+        case FLOAT_64: {
+          knownSchemas.put(schema, cast(FLOAT_64));
+          return cast(FLOAT_64);
+        }
+        case FLOAT_BIG: {
+          knownSchemas.put(schema, cast(FLOAT_BIG));
+          return cast(FLOAT_BIG);
+        }
+        case BOOLEAN: {
+          knownSchemas.put(schema, cast(BOOLEAN));
+          return cast(BOOLEAN);
+        }
+        case STRING: {
+          knownSchemas.put(schema, cast(STRING));
+          return cast(STRING);
+        }
+        case ENUM: {
+          final ValueWriter<Object> writer = enumm(schema);
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case EXTENSION: {
+          final ValueWriter<Object> tagWriter = forSchema(schema.getTagSchema(), knownSchemas);
+          final ValueWriter<Object> writer = cast(extension(tagWriter));
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case ARRAY: {
+          final ValueWriter<?> writer = array(elements(
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          ));
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case FIXED_SIZE_ARRAY: {
+          final ValueWriter<?> writer = fixedSizeArray(
+              elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas)),
+              schema.getSize()
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case SET: {
+          final ValueWriter<?> writer = set(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case MAP: {
+          final ValueWriter<?> writer = map(
+              forSchema(schema.getKeySchema(), knownSchemas),
+              forSchema(schema.getValueSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case UNION: {
+          final List<ValueWriter<Object>> branchWriters = ImmutableList.copyOf(Lists.transform(
+              schema.getBranchSchemas(),
+              branchSchema -> forSchema(branchSchema, knownSchemas)
+          ));
+          final ValueWriter<Object> writer = cast(union(branchWriters));
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case OPTIONAL: {
+          final ValueWriter<?> writer = optional(
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderValueWriter> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderValueWriter())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+          final ImmutableList.Builder<ValueWriter<Object>> fieldWriters = ImmutableList.builder();
+          for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+            fieldWriters.add(forSchema(fieldSchema, knownSchemas));
+          }
+          final ValueWriter<GenericRecord> writer = record(
+              schema,
+              schema.getFieldSchemas().keySet().asList(),
+              fieldWriters.build()
+          );
+          placeholder.ifPresent(p -> p.fill(cast(writer)));
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+      }
+    }
+  }
+
+  private BinaryEncoders() { }
+}
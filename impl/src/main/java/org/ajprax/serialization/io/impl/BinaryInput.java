@@ -0,0 +1,281 @@
+package org.ajprax.serialization.io.impl;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Byte source used by binary decoders. Reads the format written by {@link BinaryOutput}.
+ *
+ * Reading past the end of the input throws {@link java.nio.BufferUnderflowException}.
+ */
+public final class BinaryInput {
+
+  public static BinaryInput wrap(
+      final byte[] bytes
+  ) {
+    return new BinaryInput(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Wrap a ByteBuffer. Reads begin at the buffer's current position and advance it.
+   *
+   * @param buffer ByteBuffer from which to read.
+   * @return A new BinaryInput reading from the given buffer.
+   */
+  public static BinaryInput wrap(
+      final ByteBuffer buffer
+  ) {
+    return new BinaryInput(buffer);
+  }
+
+  private final ByteBuffer mBuffer;
+
+  private BinaryInput(
+      final ByteBuffer buffer
+  ) {
+    mBuffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  public byte readByte() {
+    return mBuffer.get();
+  }
+
+  public boolean readBoolean() {
+    final byte value = mBuffer.get();
+    switch (value) {
+      case 0: return false;
+      case 1: return true;
+      default: throw new IllegalArgumentException(
+          String.format("Invalid boolean byte: '%d'.", value)
+      );
+    }
+  }
+
+  /**
+   * Read an unsigned varint.
+   *
+   * @return The varint value. Should be interpreted as unsigned.
+   */
+  public long readVarint() {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      final byte b = mBuffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint.");
+  }
+
+  /**
+   * Read an unsigned varint which must fit in a non-negative int, for example a length or count.
+   *
+   * @return The varint value.
+   */
+  public int readLength() {
+    final long length = readVarint();
+    Preconditions.checkArgument(
+        length >= 0 && length <= Integer.MAX_VALUE,
+        "Invalid length: '%s'.",
+        length
+    );
+    return (int) length;
+  }
+
+  public int readZigZag32() {
+    final int value = (int) readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public long readZigZag64() {
+    final long value = readVarint();
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  public float readFloat() {
+    return mBuffer.getFloat();
+  }
+
+  public double readDouble() {
+    return mBuffer.getDouble();
+  }
+
+  /**
+   * Fill an array with values read as by {@link #readFloat()}.
+   *
+   * @param values Array to fill.
+   */
+  public void readFloats(
+      final float[] values
+  ) {
+    mBuffer.asFloatBuffer().get(values);
+    mBuffer.position(mBuffer.position() + values.length * 4);
+  }
+
+  /**
+   * Fill an array with values read as by {@link #readDouble()}.
+   *
+   * @param values Array to fill.
+   */
+  public void readDoubles(
+      final double[] values
+  ) {
+    mBuffer.asDoubleBuffer().get(values);
+    mBuffer.position(mBuffer.position() + values.length * 8);
+  }
+
+  /**
+   * Read a varint length followed by that many bytes.
+   *
+   * @return A new array containing the bytes.
+   */
+  public byte[] readBytes() {
+    final int length = readLength();
+    if (length > mBuffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    final byte[] bytes = new byte[length];
+    mBuffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Read a varint length followed by that many bytes without copying them.
+   *
+   * @return A read-only view of the bytes which shares this input's storage.
+   */
+  public ByteBuffer readBuffer() {
+    final int length = readLength();
+    if (length > mBuffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    final ByteBuffer view = mBuffer.slice();
+    view.limit(length);
+    mBuffer.position(mBuffer.position() + length);
+    return view.asReadOnlyBuffer();
+  }
+
+  /**
+   * Read a varint UTF-8 byte length followed by that many UTF-8 bytes.
+   *
+   * @return The decoded String.
+   */
+  public String readString() {
+    final int length = readLength();
+    if (length > mBuffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    if (mBuffer.hasArray()) {
+      // decode straight out of the backing array.
+      final int position = mBuffer.position();
+      final String value = new String(
+          mBuffer.array(),
+          mBuffer.arrayOffset() + position,
+          length,
+          StandardCharsets.UTF_8
+      );
+      mBuffer.position(position + length);
+      return value;
+    } else {
+      return readDirectString(length);
+    }
+  }
+
+  /**
+   * Decode a String from a buffer without a backing array. ASCII Strings are decoded straight out
+   * of the buffer, other Strings are copied out before decoding.
+   *
+   * @param length UTF-8 byte length of the String.
+   * @return The decoded String.
+   */
+  private String readDirectString(
+      final int length
+  ) {
+    final int position = mBuffer.position();
+    final char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      final byte b = mBuffer.get(position + i);
+      if (b < 0) {
+        final byte[] bytes = new byte[length];
+        mBuffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+      chars[i] = (char) b;
+    }
+    mBuffer.position(position + length);
+    return new String(chars);
+  }
+
+  /**
+   * Skip an unsigned varint without decoding it.
+   */
+  public void skipVarint() {
+    for (int i = 0; i < 10; i++) {
+      if ((mBuffer.get() & 0x80) == 0) {
+        return;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint.");
+  }
+
+  /**
+   * @param length Number of bytes to skip.
+   */
+  public void skip(
+      final int length
+  ) {
+    if (length > mBuffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    mBuffer.position(mBuffer.position() + length);
+  }
+
+  /**
+   * Skip a varint length followed by that many bytes, as written for STRING and EXTENSION values.
+   */
+  public void skipBytes() {
+    skip(readLength());
+  }
+
+  /**
+   * @return The current read position, for use with {@link #view(int, int)}.
+   */
+  public int position() {
+    return mBuffer.position();
+  }
+
+  /**
+   * @param start Read position of the first byte of the view.
+   * @param end Read position after the last byte of the view.
+   * @return A read-only view of the bytes between two read positions which shares this input's
+   *     storage. Position 0 of the view is the byte at start.
+   */
+  public ByteBuffer view(
+      final int start,
+      final int end
+  ) {
+    final ByteBuffer view = mBuffer.duplicate();
+    view.limit(end);
+    view.position(start);
+    return view.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * @return The number of unread bytes.
+   */
+  public int remaining() {
+    return mBuffer.remaining();
+  }
+
+  /**
+   * @return Whether there are unread bytes remaining.
+   */
+  public boolean hasRemaining() {
+    return mBuffer.hasRemaining();
+  }
+}
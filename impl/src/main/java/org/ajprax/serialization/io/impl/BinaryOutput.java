@@ -0,0 +1,342 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Byte sink used by binary encoders. Either a growable array created by {@link #create()} or a
+ * fixed window of a heap ByteBuffer created by {@link #wrap(ByteBuffer)}.
+ *
+ * Integers are written as little endian base 128 varints (zig-zag encoded when signed), floating
+ * point numbers are written as raw little endian IEEE 754 values and strings are written as a
+ * varint byte length followed by UTF-8 bytes.
+ */
+public final class BinaryOutput {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 64;
+  private static final int MAX_VARINT_SIZE = 10;
+
+  public static BinaryOutput create() {
+    return new BinaryOutput(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public static BinaryOutput create(
+      final int initialCapacity
+  ) {
+    return new BinaryOutput(initialCapacity);
+  }
+
+  /**
+   * Write directly into the backing array of a heap ByteBuffer, between its position and limit.
+   * The buffer's position is not changed; callers advance it by {@link #size()} once done writing.
+   * Writing more than the buffer's remaining bytes throws {@link BufferOverflowException}.
+   *
+   * @param buffer Writable heap ByteBuffer into which to write.
+   * @return A new BinaryOutput writing into the given buffer.
+   */
+  public static BinaryOutput wrap(
+      final ByteBuffer buffer
+  ) {
+    Preconditions.checkArgument(
+        buffer.hasArray(),
+        "Only writable heap ByteBuffers can be wrapped."
+    );
+    return new BinaryOutput(
+        buffer.array(),
+        buffer.arrayOffset() + buffer.position(),
+        buffer.arrayOffset() + buffer.limit()
+    );
+  }
+
+  private final boolean mGrowable;
+  private final int mStart;
+  private byte[] mBuffer;
+  private int mPosition;
+  private int mLimit;
+
+  private BinaryOutput(
+      final int initialCapacity
+  ) {
+    mGrowable = true;
+    mStart = 0;
+    mBuffer = new byte[Math.max(initialCapacity, 16)];
+    mPosition = 0;
+    mLimit = mBuffer.length;
+  }
+
+  private BinaryOutput(
+      final byte[] buffer,
+      final int start,
+      final int limit
+  ) {
+    mGrowable = false;
+    mStart = start;
+    mBuffer = buffer;
+    mPosition = start;
+    mLimit = limit;
+  }
+
+  private void ensureCapacity(
+      final int additional
+  ) {
+    final int required = mPosition + additional;
+    if (required > mLimit) {
+      if (!mGrowable) {
+        throw new BufferOverflowException();
+      }
+      mBuffer = Arrays.copyOf(mBuffer, Math.max(required, mBuffer.length * 2));
+      mLimit = mBuffer.length;
+    }
+  }
+
+  public void writeByte(
+      final int value
+  ) {
+    ensureCapacity(1);
+    mBuffer[mPosition++] = (byte) value;
+  }
+
+  public void writeBoolean(
+      final boolean value
+  ) {
+    writeByte(value ? 1 : 0);
+  }
+
+  /**
+   * Write an unsigned varint.
+   *
+   * @param value Value to write. Interpreted as unsigned.
+   */
+  public void writeVarint(
+      final long value
+  ) {
+    if (mLimit - mPosition < MAX_VARINT_SIZE) {
+      // near the limit of a fixed buffer reserve only the bytes this value needs.
+      ensureCapacity((63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1);
+    }
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      mBuffer[mPosition++] = (byte) ((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    mBuffer[mPosition++] = (byte) remaining;
+  }
+
+  public void writeZigZag32(
+      final int value
+  ) {
+    writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+  }
+
+  public void writeZigZag64(
+      final long value
+  ) {
+    writeVarint((value << 1) ^ (value >> 63));
+  }
+
+  public void writeFloat(
+      final float value
+  ) {
+    final int bits = Float.floatToIntBits(value);
+    ensureCapacity(4);
+    mBuffer[mPosition++] = (byte) bits;
+    mBuffer[mPosition++] = (byte) (bits >>> 8);
+    mBuffer[mPosition++] = (byte) (bits >>> 16);
+    mBuffer[mPosition++] = (byte) (bits >>> 24);
+  }
+
+  public void writeDouble(
+      final double value
+  ) {
+    final long bits = Double.doubleToLongBits(value);
+    ensureCapacity(8);
+    for (int shift = 0; shift < 64; shift += 8) {
+      mBuffer[mPosition++] = (byte) (bits >>> shift);
+    }
+  }
+
+  /**
+   * Write each value as by {@link #writeFloat(float)}.
+   *
+   * @param values Values to write.
+   */
+  public void writeFloats(
+      final float[] values
+  ) {
+    ensureCapacity(values.length * 4);
+    ByteBuffer.wrap(mBuffer, mPosition, values.length * 4)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .asFloatBuffer()
+        .put(values);
+    mPosition += values.length * 4;
+  }
+
+  /**
+   * Write each value as by {@link #writeDouble(double)}.
+   *
+   * @param values Values to write.
+   */
+  public void writeDoubles(
+      final double[] values
+  ) {
+    ensureCapacity(values.length * 8);
+    ByteBuffer.wrap(mBuffer, mPosition, values.length * 8)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .asDoubleBuffer()
+        .put(values);
+    mPosition += values.length * 8;
+  }
+
+  /**
+   * Write raw bytes without a length prefix.
+   *
+   * @param bytes Bytes to write.
+   * @param offset Offset in bytes of the first byte to write.
+   * @param length Number of bytes to write.
+   */
+  public void writeRawBytes(
+      final byte[] bytes,
+      final int offset,
+      final int length
+  ) {
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, mBuffer, mPosition, length);
+    mPosition += length;
+  }
+
+  /**
+   * Write a varint length followed by the given bytes.
+   *
+   * @param bytes Bytes to write.
+   */
+  public void writeBytes(
+      final byte[] bytes
+  ) {
+    writeVarint(bytes.length);
+    writeRawBytes(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Write a varint length followed by the remaining bytes of the given buffer. The buffer's
+   * position is not changed.
+   *
+   * @param bytes Bytes to write.
+   */
+  public void writeBytes(
+      final ByteBuffer bytes
+  ) {
+    final int length = bytes.remaining();
+    writeVarint(length);
+    ensureCapacity(length);
+    bytes.duplicate().get(mBuffer, mPosition, length);
+    mPosition += length;
+  }
+
+  /**
+   * Write a varint UTF-8 byte length followed by the UTF-8 encoding of the given String. Encodes
+   * directly into the output buffer without an intermediate byte array.
+   *
+   * Unpaired surrogates are replaced with '?', matching {@link String#getBytes(String)}.
+   *
+   * @param value String to write.
+   */
+  public void writeString(
+      final String value
+  ) {
+    final int length = value.length();
+    int utf8Length = length;
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          utf8Length += 1;
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          // 4 bytes for 2 chars.
+          utf8Length += 2;
+          i++;
+        } else if (Character.isSurrogate(c)) {
+          // replaced by a single '?'.
+        } else {
+          utf8Length += 2;
+        }
+      }
+    }
+    writeVarint(utf8Length);
+    ensureCapacity(utf8Length);
+    final byte[] buffer = mBuffer;
+    int position = mPosition;
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer[position++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[position++] = (byte) (0xC0 | (c >> 6));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buffer[position++] = (byte) '?';
+      } else {
+        buffer[position++] = (byte) (0xE0 | (c >> 12));
+        buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    mPosition = position;
+  }
+
+  /**
+   * @return The number of bytes written so far.
+   */
+  public int size() {
+    return mPosition - mStart;
+  }
+
+  /**
+   * @return A copy of the bytes written so far.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOfRange(mBuffer, mStart, mPosition);
+  }
+
+  /**
+   * Copy the bytes written so far to an OutputStream.
+   *
+   * @param output OutputStream to which to copy.
+   * @throws IOException in case of an error writing to the stream.
+   */
+  public void writeTo(
+      final OutputStream output
+  ) throws IOException {
+    output.write(mBuffer, mStart, mPosition - mStart);
+  }
+
+  /**
+   * @return A little endian view of the bytes written so far. The view shares this output's
+   *     storage and is only valid until the next write or {@link #reset()}.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(mBuffer, mStart, mPosition - mStart).slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Discard all written bytes, retaining the allocated storage for reuse.
+   */
+  public void reset() {
+    mPosition = mStart;
+  }
+}
@@ -0,0 +1,437 @@
+package org.ajprax.serialization.io.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.impl.BinaryDecoders.ElementsReader;
+import org.ajprax.serialization.io.impl.BinaryDecoders.PlaceholderValueReader;
+import org.ajprax.serialization.io.impl.BinaryDecoders.ValueReader;
+import org.ajprax.serialization.io.impl.BinarySkippers.ValueSkipper;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Readers of the compact binary format which read values written with a writer Schema as values
+ * of a reader Schema. See {@link SchemaResolution} for the supported differences between the two.
+ *
+ * Parts of the writer Schema which the reader Schema shares are read by the plain
+ * {@link BinaryDecoders} readers. Writer fields which are not in the reader Schema are skipped
+ * with {@link BinarySkippers} without being decoded.
+ *
+ * Readers are compiled either for projections only or for the full rules of evolution. The two
+ * differ only in how UNIONs are matched: a projected union reads each writer branch as the reader
+ * branch at the same index.
+ */
+final class BinaryResolvingDecoders {
+
+  /**
+   * A single writer field of a resolved record. Either read into a reader field or skipped.
+   */
+  private static final class FieldStep {
+
+    /** Index of the reader field, or -1 if the writer field is skipped. */
+    private final int mReaderIndex;
+    private final ValueReader<Object> mReader;
+    private final ValueSkipper mSkipper;
+
+    private FieldStep(
+        final int readerIndex,
+        final ValueReader<Object> reader,
+        final ValueSkipper skipper
+    ) {
+      mReaderIndex = readerIndex;
+      mReader = reader;
+      mSkipper = skipper;
+    }
+  }
+
+  /**
+   * Adjacent skipped writer fields are combined into a single step. Fields which all have a fixed
+   * size are skipped at once.
+   */
+  private static ImmutableList<FieldStep> combineSkips(
+      final List<FieldStep> steps,
+      final List<Integer> fixedSizes
+  ) {
+    final ImmutableList.Builder<FieldStep> combined = ImmutableList.builder();
+    int i = 0;
+    while (i < steps.size()) {
+      if (steps.get(i).mReaderIndex >= 0) {
+        combined.add(steps.get(i++));
+      } else {
+        final List<ValueSkipper> skippers = Lists.newArrayList();
+        int totalSize = 0;
+        while (i < steps.size() && steps.get(i).mReaderIndex < 0) {
+          skippers.add(steps.get(i).mSkipper);
+          totalSize = (totalSize < 0 || fixedSizes.get(i) < 0) ? -1 : totalSize + fixedSizes.get(i);
+          i++;
+        }
+        final int fixedSize = totalSize;
+        final ValueSkipper skipper;
+        if (fixedSize >= 0) {
+          skipper = input -> input.skip(fixedSize);
+        } else if (skippers.size() == 1) {
+          skipper = skippers.get(0);
+        } else {
+          final ValueSkipper[] all = skippers.toArray(new ValueSkipper[skippers.size()]);
+          skipper = input -> {
+            for (ValueSkipper s : all) {
+              s.skip(input);
+            }
+          };
+        }
+        combined.add(new FieldStep(-1, null, skipper));
+      }
+    }
+    return combined.build();
+  }
+
+  /**
+   * @param readerSchema Reader RECORD Schema.
+   * @param steps Steps for each writer field, in writer field order.
+   * @param addedFields Indices of reader fields which are not in the writer Schema. These are
+   *     OPTIONAL and read as empty.
+   */
+  private static ValueReader<Object> record(
+      final Schema readerSchema,
+      final ImmutableList<FieldStep> steps,
+      final int[] addedFields
+  ) {
+    final FieldStep[] stepArray = steps.toArray(new FieldStep[steps.size()]);
+    final int fieldCount = readerSchema.getFieldSchemas().size();
+    return input -> {
+      final Object[] fieldValues = new Object[fieldCount];
+      for (int addedField : addedFields) {
+        fieldValues[addedField] = Optional.empty();
+      }
+      for (FieldStep step : stepArray) {
+        if (step.mReaderIndex >= 0) {
+          fieldValues[step.mReaderIndex] = step.mReader.read(input);
+        } else {
+          step.mSkipper.skip(input);
+        }
+      }
+      return GenericRecordImpl.create(readerSchema, fieldValues);
+    };
+  }
+
+  /** Reads a writer primitive and converts it to the wider reader type. */
+  private static ValueReader<Object> widen(
+      final ValueReader<Object> writerReader,
+      final Schema.Type readerType
+  ) {
+    switch (readerType) {
+      case SIGNED_32: return input -> ((Number) writerReader.read(input)).intValue();
+      case SIGNED_64: return input -> ((Number) writerReader.read(input)).longValue();
+      case SIGNED_BIG: return input -> BigInteger.valueOf(((Number) writerReader.read(input)).longValue());
+      case FLOAT_64: return input -> ((Number) writerReader.read(input)).doubleValue();
+      case FLOAT_BIG: return input -> new BigDecimal(((Number) writerReader.read(input)).doubleValue());
+      default: throw new IllegalStateException(String.format("Type: '%s' is not widened.", readerType));
+    }
+  }
+
+  /**
+   * Reads List elements of a widened primitive type. The widened elements are stored in the
+   * {@link PrimitiveLists} specialization of the reader's element type, if there is one, as
+   * {@link BinaryDecoders#elements(Schema, ValueReader)} would for elements which are not widened.
+   */
+  @SuppressWarnings("unchecked")
+  private static ElementsReader<Object> widenedElements(
+      final Schema readerElementSchema,
+      final ValueReader<Object> elementReader
+  ) {
+    switch (readerElementSchema.getType()) {
+      case SIGNED_32: return (input, size, reuse) -> {
+        final int[] values = new int[BinaryDecoders.checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = (Integer) elementReader.read(input);
+        }
+        return (List<Object>) (List<?>) PrimitiveLists.wrap(values);
+      };
+      case SIGNED_64: return (input, size, reuse) -> {
+        final long[] values = new long[BinaryDecoders.checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = (Long) elementReader.read(input);
+        }
+        return (List<Object>) (List<?>) PrimitiveLists.wrap(values);
+      };
+      case FLOAT_64: return (input, size, reuse) -> {
+        final double[] values = new double[BinaryDecoders.checkSize(input, size)];
+        for (int i = 0; i < size; i++) {
+          values[i] = (Double) elementReader.read(input);
+        }
+        return (List<Object>) (List<?>) PrimitiveLists.wrap(values);
+      };
+      default: return BinaryDecoders.elements(readerElementSchema, elementReader);
+    }
+  }
+
+  /** Reads a writer symbol index and decodes the reader symbol of the same name. */
+  private static ValueReader<Object> enumm(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    final ImmutableList<String> writerSymbols = writerSchema.getEnumSymbols().asList();
+    final ImmutableList<String> readerSymbols = readerSchema.getEnumSymbols().asList();
+    final ImmutableList<Object> readerValues = EnumValues.forSchema(readerSchema);
+    // null where the reader does not have the writer's symbol.
+    final Object[] values = new Object[writerSymbols.size()];
+    for (int i = 0; i < values.length; i++) {
+      final int readerIndex = readerSymbols.indexOf(writerSymbols.get(i));
+      values[i] = (readerIndex >= 0) ? readerValues.get(readerIndex) : null;
+    }
+    return input -> {
+      final int symbolIndex = input.readLength();
+      Preconditions.checkArgument(
+          symbolIndex < values.length,
+          "Symbol index: '%s' is out of range for enum: '%s'.",
+          symbolIndex,
+          writerSchema.getName()
+      );
+      Preconditions.checkArgument(
+          null != values[symbolIndex],
+          "Symbol: '%s' is not in reader enum: '%s'.",
+          writerSymbols.get(symbolIndex),
+          readerSchema.getName()
+      );
+      return values[symbolIndex];
+    };
+  }
+
+  /**
+   * Reads a writer UNION as a reader UNION.
+   *
+   * @param writerSchema Writer UNION Schema.
+   * @param readerSchema Reader UNION Schema.
+   * @param readerIndices Reader branch index for each writer branch, or -1 if it cannot be read.
+   * @param branchReaders Reader for each writer branch, or null if it cannot be read.
+   */
+  private static ValueReader<Object> union(
+      final Schema writerSchema,
+      final Schema readerSchema,
+      final int[] readerIndices,
+      final List<ValueReader<Object>> branchReaders
+  ) {
+    return input -> {
+      final int branchIndex = input.readLength();
+      Preconditions.checkArgument(
+          branchIndex < readerIndices.length,
+          "Branch index: '%s' is out of range for union: '%s'.",
+          branchIndex,
+          writerSchema.getName()
+      );
+      Preconditions.checkArgument(
+          readerIndices[branchIndex] >= 0,
+          "Branch: '%s' of writer union: '%s' cannot be read by reader union: '%s'.",
+          branchIndex,
+          writerSchema.getName(),
+          readerSchema.getName()
+      );
+      return GenericUnionImpl.create(readerSchema, readerIndices[branchIndex], branchReaders.get(branchIndex).read(input));
+    };
+  }
+
+  /**
+   * Compiles readers for one pair of writer and reader Schemas.
+   */
+  private static final class Compiler {
+
+    private final Map<Schema, ValueReader<Object>> mReaders = Maps.newHashMap();
+    private final Map<Schema, ValueSkipper> mSkippers = Maps.newHashMap();
+    private final Map<Map.Entry<Schema, Schema>, ValueReader<Object>> mResolved = Maps.newHashMap();
+    /** Whether to compile by the rules of evolution, or only for projections. */
+    private final boolean mEvolve;
+
+    private Compiler(
+        final boolean evolve
+    ) {
+      mEvolve = evolve;
+    }
+
+    private ValueReader<Object> resolve(
+        final Schema writerSchema,
+        final Schema readerSchema
+    ) {
+      if (writerSchema.equals(readerSchema)) {
+        // values read as the reader Schema carry the reader Schema instance.
+        return BinaryDecoders.forSchema(readerSchema, mReaders);
+      }
+      final Map.Entry<Schema, Schema> key = Maps.immutableEntry(writerSchema, readerSchema);
+      final ValueReader<Object> known = mResolved.get(key);
+      if (null != known) {
+        return known;
+      }
+      if (writerSchema.getType() != readerSchema.getType()) {
+        final ValueReader<Object> reader = resolveType(writerSchema, readerSchema);
+        mResolved.put(key, reader);
+        return reader;
+      }
+      final ValueReader<Object> reader;
+      switch (readerSchema.getType()) {
+        case ARRAY: {
+          reader = BinaryDecoders.cast(BinaryDecoders.array(
+              elements(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          reader = BinaryDecoders.cast(BinaryDecoders.fixedSizeArray(
+              readerSchema.getSize(),
+              elements(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case SET: {
+          reader = BinaryDecoders.cast(BinaryDecoders.set(
+              resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case MAP: {
+          reader = BinaryDecoders.cast(BinaryDecoders.map(
+              resolve(writerSchema.getKeySchema(), readerSchema.getKeySchema()),
+              resolve(writerSchema.getValueSchema(), readerSchema.getValueSchema())
+          ));
+          break;
+        }
+        case UNION: {
+          if (mEvolve) {
+            final int[] readerIndices = new int[writerSchema.getBranchSchemas().size()];
+            final List<ValueReader<Object>> branchReaders = Lists.newArrayList();
+            for (int i = 0; i < readerIndices.length; i++) {
+              final Schema writerBranch = writerSchema.getBranchSchemas().get(i);
+              readerIndices[i] = SchemaResolution.branchIndex(writerBranch, readerSchema);
+              branchReaders.add((readerIndices[i] >= 0)
+                  ? resolve(writerBranch, readerSchema.getBranchSchemas().get(readerIndices[i]))
+                  : null);
+            }
+            reader = union(writerSchema, readerSchema, readerIndices, branchReaders);
+          } else {
+            final ImmutableList.Builder<ValueReader<Object>> branchReaders = ImmutableList.builder();
+            for (int i = 0; i < readerSchema.getBranchSchemas().size(); i++) {
+              branchReaders.add(resolve(writerSchema.getBranchSchemas().get(i), readerSchema.getBranchSchemas().get(i)));
+            }
+            reader = BinaryDecoders.cast(BinaryDecoders.union(readerSchema, branchReaders.build()));
+          }
+          break;
+        }
+        case ENUM: {
+          reader = enumm(writerSchema, readerSchema);
+          break;
+        }
+        case OPTIONAL: {
+          reader = BinaryDecoders.cast(BinaryDecoders.optional(
+              resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderValueReader> placeholder =
+              SchemaRecursionHelpers.isRecursive(writerSchema) || SchemaRecursionHelpers.isRecursive(readerSchema)
+                  ? Optional.of(new PlaceholderValueReader())
+                  : Optional.empty();
+          placeholder.ifPresent(p -> mResolved.put(key, p));
+          final List<FieldStep> steps = Lists.newArrayList();
+          final List<Integer> fixedSizes = Lists.newArrayList();
+          for (Map.Entry<String, Schema> writerField : writerSchema.getFieldSchemas().entrySet()) {
+            final int readerIndex = readerSchema.getFieldIndex(writerField.getKey());
+            if (readerIndex >= 0) {
+              final Schema readerField = readerSchema.getFieldSchemas().get(writerField.getKey());
+              steps.add(new FieldStep(readerIndex, resolve(writerField.getValue(), readerField), null));
+            } else {
+              steps.add(new FieldStep(-1, null, BinarySkippers.forSchema(writerField.getValue(), mSkippers)));
+            }
+            fixedSizes.add(BinarySkippers.fixedSize(writerField.getValue()));
+          }
+          final int[] addedFields = readerSchema.getFieldSchemas().keySet().stream()
+              .filter(fieldName -> !writerSchema.getFieldSchemas().containsKey(fieldName))
+              .mapToInt(readerSchema::getFieldIndex)
+              .toArray();
+          reader = record(readerSchema, combineSkips(steps, fixedSizes), addedFields);
+          placeholder.ifPresent(p -> p.fill(reader));
+          break;
+        }
+        default: throw new IllegalStateException(String.format(
+            "Schema: '%s' cannot be resolved, it must be checked by SchemaResolution first.",
+            readerSchema.getName()
+        ));
+      }
+      mResolved.put(key, reader);
+      return reader;
+    }
+
+    private ElementsReader<Object> elements(
+        final Schema writerElementSchema,
+        final Schema readerElementSchema
+    ) {
+      final ValueReader<Object> elementReader = resolve(writerElementSchema, readerElementSchema);
+      // primitive element readers read the reader's element type directly.
+      return SchemaResolution.isWidening(writerElementSchema.getType(), readerElementSchema.getType())
+          ? widenedElements(readerElementSchema, elementReader)
+          : BinaryDecoders.elements(readerElementSchema, elementReader);
+    }
+
+    /** Resolves a writer Schema whose type differs from the type of the reader Schema. */
+    private ValueReader<Object> resolveType(
+        final Schema writerSchema,
+        final Schema readerSchema
+    ) {
+      switch (readerSchema.getType()) {
+        case UNION: {
+          final int readerIndex = SchemaResolution.branchIndex(writerSchema, readerSchema);
+          final ValueReader<Object> branchReader =
+              resolve(writerSchema, readerSchema.getBranchSchemas().get(readerIndex));
+          return input -> GenericUnionImpl.create(readerSchema, readerIndex, branchReader.read(input));
+        }
+        case OPTIONAL: {
+          final ValueReader<Object> elementReader = resolve(writerSchema, readerSchema.getElementSchema());
+          return input -> Optional.of(elementReader.read(input));
+        }
+        default: return widen(BinaryDecoders.forSchema(writerSchema, mReaders), readerSchema.getType());
+      }
+    }
+  }
+
+  /**
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @return A reader of values written with the writer Schema which produces values of the
+   *     projected reader Schema.
+   * @throws IllegalArgumentException if the reader Schema is not a projection of the writer Schema.
+   */
+  static ValueReader<Object> forProjection(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    SchemaResolution.checkProjection(writerSchema, readerSchema);
+    return new Compiler(false).resolve(writerSchema, readerSchema);
+  }
+
+  /**
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @return A reader of values written with the writer Schema which produces values of the reader
+   *     Schema by the rules of evolution.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  static ValueReader<Object> forEvolution(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    SchemaResolution.checkEvolution(writerSchema, readerSchema);
+    return new Compiler(true).resolve(writerSchema, readerSchema);
+  }
+
+  private BinaryResolvingDecoders() { }
+}
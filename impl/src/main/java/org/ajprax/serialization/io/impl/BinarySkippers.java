@@ -0,0 +1,287 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Skippers for the compact binary format. A skipper advances a {@link BinaryInput} past a single
+ * value of a known Schema without decoding it or allocating, by reading only the varints, lengths
+ * and presence bytes needed to find the end of the value. See {@link BinaryEncoders} for a
+ * description of the format.
+ *
+ * Skippers do not validate the skipped bytes beyond what is needed to find their end.
+ */
+final class BinarySkippers {
+
+  /** Advances a BinaryInput past a single value of a known Schema. */
+  interface ValueSkipper {
+    void skip(BinaryInput input);
+  }
+
+  /**
+   * Placeholder for a record skipper which may skip recursive records. Must be filled with a
+   * concrete record skipper before it can be used.
+   */
+  private static final class PlaceholderValueSkipper implements ValueSkipper {
+
+    private ValueSkipper mDelegate = null;
+
+    private void fill(
+        final ValueSkipper delegate
+    ) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public void skip(
+        final BinaryInput input
+    ) {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderValueSkipper which has not been filled."
+      );
+      mDelegate.skip(input);
+    }
+  }
+
+  private static final ValueSkipper VARINT = BinaryInput::skipVarint;
+  private static final ValueSkipper BYTES = BinaryInput::skipBytes;
+  private static final ValueSkipper FLOAT_32 = input -> input.skip(4);
+  private static final ValueSkipper FLOAT_64 = input -> input.skip(8);
+  private static final ValueSkipper BOOLEAN = input -> input.skip(1);
+  private static final ValueSkipper FLOAT_BIG = input -> {
+    input.skipVarint();
+    input.skipBytes();
+  };
+
+  /**
+   * @param schema Schema of a value.
+   * @return The number of bytes every value of the Schema occupies, or -1 if values vary in size.
+   */
+  static int fixedSize(
+      final Schema schema
+  ) {
+    switch (schema.getType()) {
+      case FLOAT_32: return 4;
+      case FLOAT_64: return 8;
+      case BOOLEAN: return 1;
+      case FIXED_SIZE_ARRAY: {
+        final int elementSize = fixedSize(schema.getElementSchema());
+        return (elementSize < 0) ? -1 : elementSize * schema.getSize();
+      }
+      default: return -1;
+    }
+  }
+
+  /**
+   * Skips a known number of elements. Elements of a fixed size are skipped all at once.
+   */
+  private static void skipElements(
+      final BinaryInput input,
+      final int size,
+      final int elementSize,
+      final ValueSkipper elementSkipper
+  ) {
+    if (elementSize >= 0) {
+      Preconditions.checkArgument(
+          (long) size * elementSize <= input.remaining(),
+          "Element count: '%s' exceeds the remaining input.",
+          size
+      );
+      input.skip(size * elementSize);
+    } else {
+      for (int i = 0; i < size; i++) {
+        elementSkipper.skip(input);
+      }
+    }
+  }
+
+  private static ValueSkipper array(
+      final Schema elementSchema,
+      final ValueSkipper elementSkipper
+  ) {
+    final int elementSize = fixedSize(elementSchema);
+    return input -> skipElements(input, input.readLength(), elementSize, elementSkipper);
+  }
+
+  private static ValueSkipper fixedSizeArray(
+      final int size,
+      final Schema elementSchema,
+      final ValueSkipper elementSkipper
+  ) {
+    final int elementSize = fixedSize(elementSchema);
+    return input -> skipElements(input, size, elementSize, elementSkipper);
+  }
+
+  private static ValueSkipper map(
+      final ValueSkipper keySkipper,
+      final ValueSkipper valueSkipper
+  ) {
+    return input -> {
+      final int size = input.readLength();
+      for (int i = 0; i < size; i++) {
+        keySkipper.skip(input);
+        valueSkipper.skip(input);
+      }
+    };
+  }
+
+  private static ValueSkipper union(
+      final Schema schema,
+      final List<ValueSkipper> branchSkippers
+  ) {
+    return input -> {
+      final int branchIndex = input.readLength();
+      Preconditions.checkArgument(
+          branchIndex < branchSkippers.size(),
+          "Branch index: '%s' is out of range for union: '%s'.",
+          branchIndex,
+          schema.getName()
+      );
+      branchSkippers.get(branchIndex).skip(input);
+    };
+  }
+
+  private static ValueSkipper optional(
+      final ValueSkipper elementSkipper
+  ) {
+    return input -> {
+      if (input.readBoolean()) {
+        elementSkipper.skip(input);
+      }
+    };
+  }
+
+  private static ValueSkipper record(
+      final ImmutableList<ValueSkipper> fieldSkippers
+  ) {
+    return input -> {
+      for (int i = 0; i < fieldSkippers.size(); i++) {
+        fieldSkippers.get(i).skip(input);
+      }
+    };
+  }
+
+  /**
+   * Recursively creates skippers for a given Schema. If the same record is encountered twice in a
+   * Schema tree, breaks recursion to prevent an infinite loop.
+   *
+   * @param schema Schema for which to build a skipper.
+   * @param knownSchemas Skippers already built for Schemas in this tree.
+   * @return A ValueSkipper for the given Schema.
+   */
+  static ValueSkipper forSchema(
+      final Schema schema,
+      final Map<Schema, ValueSkipper> knownSchemas
+  ) {
+    final ValueSkipper knownSkipper = knownSchemas.get(schema);
+    if (null != knownSkipper) {
+      return knownSkipper;
+    } else {
+      final ValueSkipper skipper;
+      switch (schema.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8: throw new UnsupportedOperationException(
+            String.format("Schema type: '%s' is unsupported in Java.", schema.getType())
+        );
+        case SIGNED_16:
+        case SIGNED_32:
+        case SIGNED_64:
+        case ENUM: {
+          skipper = VARINT;
+          break;
+        }
+        case SIGNED_BIG:
+        case STRING: {
+          skipper = BYTES;
+          break;
+        }
+        case FLOAT_32: {
+          skipper = FLOAT_32;
+          break;
+        }
+        case FLOAT_64: {
+          skipper = FLOAT_64;
+          break;
+        }
+        case FLOAT_BIG: {
+          skipper = FLOAT_BIG;
+          break;
+        }
+        case BOOLEAN: {
+          skipper = BOOLEAN;
+          break;
+        }
+        case EXTENSION: {
+          final ValueSkipper tagSkipper = forSchema(schema.getTagSchema(), knownSchemas);
+          skipper = input -> {
+            tagSkipper.skip(input);
+            input.skipBytes();
+          };
+          break;
+        }
+        case ARRAY:
+        case SET: {
+          skipper = array(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas));
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          skipper = fixedSizeArray(
+              schema.getSize(),
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
+          break;
+        }
+        case MAP: {
+          skipper = map(
+              forSchema(schema.getKeySchema(), knownSchemas),
+              forSchema(schema.getValueSchema(), knownSchemas)
+          );
+          break;
+        }
+        case UNION: {
+          skipper = union(schema, ImmutableList.copyOf(Lists.transform(
+              schema.getBranchSchemas(),
+              branchSchema -> forSchema(branchSchema, knownSchemas)
+          )));
+          break;
+        }
+        case OPTIONAL: {
+          skipper = optional(forSchema(schema.getElementSchema(), knownSchemas));
+          break;
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderValueSkipper> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderValueSkipper())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+          final ImmutableList.Builder<ValueSkipper> fieldSkippers = ImmutableList.builder();
+          for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+            fieldSkippers.add(forSchema(fieldSchema, knownSchemas));
+          }
+          skipper = record(fieldSkippers.build());
+          placeholder.ifPresent(p -> p.fill(skipper));
+          break;
+        }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+      }
+      knownSchemas.put(schema, skipper);
+      return skipper;
+    }
+  }
+
+  private BinarySkippers() { }
+}
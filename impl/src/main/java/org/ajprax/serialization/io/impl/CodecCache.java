@@ -0,0 +1,140 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.function.Function;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Thread-safe bounded cache of compiled codecs keyed by Schema.
+ *
+ * Lookups first consult a cache keyed by Schema identity, which avoids the recursive
+ * {@link Schema#hashCode()} and {@link Schema#equals(Object)} for callers which reuse the same
+ * Schema instance. Identity misses fall through to a cache keyed by the binary layout of the Schema
+ * so that Schemas built independently share a single compiled codec if they are equal and declare
+ * their enum symbols and record fields in the same order. Codecs are compiled at most once per
+ * layout while they remain cached.
+ *
+ * Both levels are bounded by size. Compiled codecs usually refer to their Schema, so an identity
+ * entry keeps its Schema reachable for as long as its codec is retained. Identity entries hold
+ * their codecs softly so that the garbage collector may release them, and with them their Schemas,
+ * under memory pressure once the codec has been evicted from the structural level.
+ *
+ * Compiled codecs must be safe for concurrent use because a single instance is shared between all
+ * callers.
+ *
+ * @param <C> Type of the cached codecs.
+ */
+public final class CodecCache<C> {
+
+  /** Default maximum number of codecs retained by each level of the cache. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+  /**
+   * Create a new CodecCache with the default maximum size.
+   *
+   * @param compiler Function which compiles a codec for a Schema.
+   * @param <C> Type of the cached codecs.
+   * @return A new CodecCache.
+   */
+  public static <C> CodecCache<C> create(
+      final Function<Schema, C> compiler
+  ) {
+    return create(compiler, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Create a new CodecCache.
+   *
+   * @param compiler Function which compiles a codec for a Schema.
+   * @param maximumSize Maximum number of codecs retained by each level of the cache.
+   * @param <C> Type of the cached codecs.
+   * @return A new CodecCache.
+   */
+  public static <C> CodecCache<C> create(
+      final Function<Schema, C> compiler,
+      final long maximumSize
+  ) {
+    Preconditions.checkArgument(maximumSize >= 0, "Maximum size: '%s' must not be negative.", maximumSize);
+    return new CodecCache<>(compiler, maximumSize);
+  }
+
+  private final LoadingCache<SchemaLayoutKey, C> mStructuralCache;
+  // weakKeys compares keys by identity. It does not by itself let Schemas be collected because the
+  // codecs usually refer to their Schema; softValues does.
+  private final LoadingCache<Schema, C> mIdentityCache;
+
+  private CodecCache(
+      final Function<Schema, C> compiler,
+      final long maximumSize
+  ) {
+    mStructuralCache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build(CacheLoader.from(key -> compiler.apply(key.getSchema())));
+    mIdentityCache = CacheBuilder.newBuilder()
+        .weakKeys()
+        .softValues()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build(CacheLoader.from(schema -> mStructuralCache.getUnchecked(SchemaLayoutKey.create(schema))));
+  }
+
+  /**
+   * Get the codec for a Schema, compiling it if it is not cached.
+   *
+   * Exceptions thrown while compiling the codec propagate unchanged.
+   *
+   * @param schema Schema for which to get a codec.
+   * @return The codec for the given Schema.
+   */
+  public C get(
+      final Schema schema
+  ) {
+    Preconditions.checkNotNull(schema);
+    try {
+      return mIdentityCache.getUnchecked(schema);
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      // the identity cache loads through the structural cache, so the cause may be wrapped twice.
+      Throwable cause = e.getCause();
+      while ((cause instanceof UncheckedExecutionException || cause instanceof ExecutionError)
+          && null != cause.getCause()) {
+        cause = cause.getCause();
+      }
+      Throwables.propagateIfPossible(cause);
+      throw e;
+    }
+  }
+
+  /**
+   * Statistics for this cache. A request is a hit if it was served by either level of the cache
+   * and a miss if it required compiling a new codec.
+   *
+   * @return Hit and miss statistics for this cache.
+   */
+  public CacheStats stats() {
+    final CacheStats identity = mIdentityCache.stats();
+    final CacheStats structural = mStructuralCache.stats();
+    return new CacheStats(
+        identity.hitCount() + structural.hitCount(),
+        structural.missCount(),
+        structural.loadSuccessCount(),
+        structural.loadExceptionCount(),
+        structural.totalLoadTime(),
+        identity.evictionCount() + structural.evictionCount()
+    );
+  }
+
+  /** Discard all cached codecs. */
+  public void invalidateAll() {
+    mIdentityCache.invalidateAll();
+    mStructuralCache.invalidateAll();
+  }
+}
@@ -0,0 +1,201 @@
+package org.ajprax.serialization.io.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.io.CompressionCodec;
+
+/** Built in {@link CompressionCodec}s and the factory which finds codecs by name or id. */
+public final class CompressionCodecs {
+
+  /** Stores blocks as they are. */
+  public static final CompressionCodec NONE = new NoneCodec();
+
+  /** Compresses with {@link Deflater} at its default level. */
+  public static final CompressionCodec DEFLATE = new DeflateCodec();
+
+  /** Compresses with {@link LzCompressionCodec}. */
+  public static final CompressionCodec LZ = new LzCompressionCodec();
+
+  /**
+   * Finds the built in codecs and any codecs registered with {@link ServiceLoader} as
+   * implementations of {@link CompressionCodec}.
+   */
+  public static final class CompressionCodecImplFactory implements CompressionCodecFactory {
+
+    private final CompressionCodec[] mCodecsById = new CompressionCodec[256];
+    private final Map<String, CompressionCodec> mCodecsByName = Maps.newHashMap();
+
+    public CompressionCodecImplFactory() {
+      register(NONE);
+      register(DEFLATE);
+      register(LZ);
+      for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+        register(codec);
+      }
+    }
+
+    private void register(
+        final CompressionCodec codec
+    ) {
+      final int id = codec.getId();
+      Preconditions.checkState(0 <= id && id < mCodecsById.length, "Invalid compression codec id: '%s'.", id);
+      Preconditions.checkState(
+          null == mCodecsById[id] && !mCodecsByName.containsKey(codec.getName()),
+          "Compression codec: '%s' with id: '%s' conflicts with a registered codec.",
+          codec.getName(),
+          id
+      );
+      mCodecsById[id] = codec;
+      mCodecsByName.put(codec.getName(), codec);
+    }
+
+    @Override
+    public CompressionCodec forName(
+        final String name
+    ) {
+      final CompressionCodec codec = mCodecsByName.get(name);
+      Preconditions.checkArgument(null != codec, "Unknown compression codec: '%s'.", name);
+      return codec;
+    }
+
+    @Override
+    public CompressionCodec forId(
+        final int id
+    ) {
+      final CompressionCodec codec = (0 <= id && id < mCodecsById.length) ? mCodecsById[id] : null;
+      Preconditions.checkArgument(null != codec, "Unknown compression codec id: '%s'.", id);
+      return codec;
+    }
+  }
+
+  /**
+   * @param input Buffer whose remaining bytes to copy. The buffer's position is not changed.
+   * @return A copy of the remaining bytes of the buffer.
+   */
+  static byte[] remaining(
+      final ByteBuffer input
+  ) {
+    final byte[] bytes = new byte[input.remaining()];
+    input.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static final class NoneCodec implements CompressionCodec {
+    @Override
+    public int getId() {
+      return 0;
+    }
+
+    @Override
+    public String getName() {
+      return "none";
+    }
+
+    @Override
+    public ByteBuffer compress(
+        final ByteBuffer input
+    ) {
+      return input.duplicate();
+    }
+
+    @Override
+    public ByteBuffer decompress(
+        final ByteBuffer input,
+        final int uncompressedLength
+    ) {
+      Preconditions.checkArgument(
+          input.remaining() == uncompressedLength,
+          "Uncompressed input length: '%s' does not match expected length: '%s'.",
+          input.remaining(),
+          uncompressedLength
+      );
+      return input.duplicate();
+    }
+  }
+
+  private static final class DeflateCodec implements CompressionCodec {
+
+    // Deflaters hold native memory which is only released when they are finalized, so each thread
+    // reuses one.
+    private static final ThreadLocal<Deflater> THREAD_DEFLATER = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> THREAD_INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public int getId() {
+      return 1;
+    }
+
+    @Override
+    public String getName() {
+      return "deflate";
+    }
+
+    @Override
+    public ByteBuffer compress(
+        final ByteBuffer input
+    ) {
+      final Deflater deflater = THREAD_DEFLATER.get();
+      deflater.reset();
+      if (input.hasArray()) {
+        deflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+      } else {
+        deflater.setInput(remaining(input));
+      }
+      deflater.finish();
+      // room for incompressible input and the zlib header and trailer.
+      byte[] output = new byte[input.remaining() + (input.remaining() >> 8) + 64];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        length += deflater.deflate(output, length, output.length - length);
+      }
+      return ByteBuffer.wrap(output, 0, length);
+    }
+
+    @Override
+    public ByteBuffer decompress(
+        final ByteBuffer input,
+        final int uncompressedLength
+    ) {
+      final Inflater inflater = THREAD_INFLATER.get();
+      inflater.reset();
+      if (input.hasArray()) {
+        inflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+      } else {
+        inflater.setInput(remaining(input));
+      }
+      // one spare byte shows whether the input decompresses to more than the expected length.
+      final byte[] output = new byte[uncompressedLength + 1];
+      int length = 0;
+      try {
+        while (!inflater.finished() && length < output.length) {
+          final int inflated = inflater.inflate(output, length, output.length - length);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          length += inflated;
+        }
+      } catch (DataFormatException dfe) {
+        throw new IllegalArgumentException("Malformed deflated input.", dfe);
+      }
+      Preconditions.checkArgument(
+          inflater.finished() && length == uncompressedLength,
+          "Deflated input does not decompress to expected length: '%s'.",
+          uncompressedLength
+      );
+      return ByteBuffer.wrap(output, 0, length);
+    }
+  }
+
+  private CompressionCodecs() { }
+}
@@ -0,0 +1,380 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Layout of the container files written by {@link ContainerWriter}.
+ *
+ * A container file is a header followed by any number of blocks:
+ * <pre>
+ *   header: MAGIC | VERSION | writer Schema layout fingerprint | Schema | sync marker
+ *   block:  record count | codec id | uncompressed length | byte length | records | sync marker
+ * </pre>
+ * The fingerprint is 8 little endian bytes, see {@link Schema#getLayoutFingerprint()}. Files of
+ * version 1 carry {@link Schema#getFingerprint()} instead, which does not distinguish the order of
+ * enum symbols and record fields. The Schema is a varint length followed by the bytes
+ * written by {@link SchemaSerializer}. Record counts and lengths are varints. Records are in the
+ * binary format of {@link org.ajprax.serialization.io.BinaryEncoder}, compressed by the
+ * {@link org.ajprax.serialization.io.CompressionCodec} whose id is a single byte. The byte length
+ * is the length of the compressed records. The sync marker is 16 random bytes chosen per file,
+ * which a reader starting in the middle of the file searches for to find the next block boundary.
+ */
+final class ContainerFormat {
+
+  /** First bytes of every container file, "AJPC". */
+  static final byte[] MAGIC = {'A', 'J', 'P', 'C'};
+
+  static final byte VERSION = 2;
+
+  /** Version of files whose header carries the order-insensitive Schema fingerprint. */
+  static final byte UNORDERED_FINGERPRINT_VERSION = 1;
+
+  static final int SYNC_SIZE = 16;
+
+  /** Largest size of a block's record count, codec id and lengths. */
+  static final int MAX_BLOCK_PREFIX_SIZE = 1 + 3 * 10;
+
+  /** Contents of a container file's header. */
+  static final class Header {
+
+    private final Schema mSchema;
+    private final byte[] mSync;
+    private final long mSize;
+
+    private Header(
+        final Schema schema,
+        final byte[] sync,
+        final long size
+    ) {
+      mSchema = schema;
+      mSync = sync;
+      mSize = size;
+    }
+
+    /** @return The writer Schema of the file's records. */
+    Schema getSchema() {
+      return mSchema;
+    }
+
+    /** @return The file's sync marker. */
+    byte[] getSync() {
+      return mSync;
+    }
+
+    /** @return The size in bytes of the header, which is the position of the first block. */
+    long getSize() {
+      return mSize;
+    }
+  }
+
+  /** Record count, codec, lengths and data position of a block. */
+  static final class BlockPrefix {
+
+    private final long mCount;
+    private final CompressionCodec mCodec;
+    private final int mUncompressedLength;
+    private final int mLength;
+    private final long mDataPosition;
+
+    private BlockPrefix(
+        final long count,
+        final CompressionCodec codec,
+        final int uncompressedLength,
+        final int length,
+        final long dataPosition
+    ) {
+      mCount = count;
+      mCodec = codec;
+      mUncompressedLength = uncompressedLength;
+      mLength = length;
+      mDataPosition = dataPosition;
+    }
+
+    /** @return The number of values in the block. */
+    long getCount() {
+      return mCount;
+    }
+
+    /** @return The length in bytes of the block's compressed values. */
+    int getLength() {
+      return mLength;
+    }
+
+    /** @return The position in the file of the block's compressed values. */
+    long getDataPosition() {
+      return mDataPosition;
+    }
+
+    /** @return The position in the file of the block's sync marker. */
+    long getSyncPosition() {
+      return mDataPosition + mLength;
+    }
+
+    /** @return The position in the file after the block, the position of the next block. */
+    long getEnd() {
+      return mDataPosition + mLength + SYNC_SIZE;
+    }
+
+    /**
+     * @param data The block's compressed values.
+     * @return The block's values, positioned at the first value and limited to the last.
+     */
+    ByteBuffer decompress(
+        final ByteBuffer data
+    ) {
+      return mCodec.decompress(data, mUncompressedLength);
+    }
+  }
+
+  /**
+   * @param input Bytes starting with a block's prefix. The position is not changed.
+   * @param position Position in the file of the block.
+   * @return The prefix of the block.
+   * @throws IllegalArgumentException if the block's codec is not known.
+   */
+  static BlockPrefix readBlockPrefix(
+      final ByteBuffer input,
+      final long position
+  ) {
+    final BinaryInput binaryInput = BinaryInput.wrap(input.duplicate());
+    final long count = binaryInput.readVarint();
+    final CompressionCodec codec = CompressionCodec.forId(binaryInput.readByte() & 0xFF);
+    final int uncompressedLength = binaryInput.readLength();
+    final int length = binaryInput.readLength();
+    return new BlockPrefix(count, codec, uncompressedLength, length, position + binaryInput.position() - input.position());
+  }
+
+  /**
+   * @param output Output to which to write the prefix.
+   * @param count Number of values in the block.
+   * @param codec Codec with which the block's values are compressed.
+   * @param uncompressedLength Length of the block's values before compression.
+   * @param length Length of the block's compressed values.
+   */
+  static void writeBlockPrefix(
+      final BinaryOutput output,
+      final long count,
+      final CompressionCodec codec,
+      final int uncompressedLength,
+      final int length
+  ) {
+    output.writeVarint(count);
+    output.writeByte((byte) codec.getId());
+    output.writeVarint(uncompressedLength);
+    output.writeVarint(length);
+  }
+
+  /**
+   * @return A new random sync marker.
+   */
+  static byte[] newSync() {
+    final UUID uuid = UUID.randomUUID();
+    return ByteBuffer.allocate(SYNC_SIZE)
+        .putLong(uuid.getMostSignificantBits())
+        .putLong(uuid.getLeastSignificantBits())
+        .array();
+  }
+
+  /**
+   * @param schema Writer Schema of the file's records.
+   * @param sync The file's sync marker.
+   * @return The serialized header.
+   */
+  static byte[] writeHeader(
+      final Schema schema,
+      final byte[] sync
+  ) {
+    final BinaryOutput output = BinaryOutput.create();
+    output.writeRawBytes(MAGIC, 0, MAGIC.length);
+    output.writeByte(VERSION);
+    final byte[] fingerprint = ByteBuffer.allocate(Long.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putLong(schema.getLayoutFingerprint())
+        .array();
+    output.writeRawBytes(fingerprint, 0, fingerprint.length);
+    output.writeBytes(SchemaSerializer.toBytes(schema));
+    output.writeRawBytes(sync, 0, sync.length);
+    return output.toByteArray();
+  }
+
+  /**
+   * @param input Container file contents, positioned at the start of the file. The position is
+   *     advanced past the header.
+   * @return The header of the file.
+   * @throws IllegalArgumentException if the input is not a container file or its Schema does not
+   *     match its fingerprint.
+   * @throws java.nio.BufferUnderflowException if the input ends within the header.
+   */
+  static Header readHeader(
+      final ByteBuffer input
+  ) {
+    final int start = input.position();
+    final ByteBuffer view = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    final byte[] magic = new byte[MAGIC.length];
+    view.get(magic);
+    Preconditions.checkArgument(Arrays.equals(MAGIC, magic), "Input is not a container file.");
+    final byte version = view.get();
+    Preconditions.checkArgument(
+        version == VERSION || version == UNORDERED_FINGERPRINT_VERSION,
+        "Unsupported container file version: '%s'.",
+        version
+    );
+    final long fingerprint = view.getLong();
+    final BinaryInput binaryInput = BinaryInput.wrap(view);
+    final Schema schema = SchemaSerializer.fromBytes(binaryInput.readBytes());
+    Preconditions.checkArgument(
+        fingerprint == ((version == VERSION) ? schema.getLayoutFingerprint() : schema.getFingerprint()),
+        "Container file Schema: '%s' does not match its fingerprint: '%s'.",
+        schema.getName(),
+        fingerprint
+    );
+    final byte[] sync = new byte[SYNC_SIZE];
+    view.get(sync);
+    input.position(view.position());
+    return new Header(schema, sync, view.position() - start);
+  }
+
+  /**
+   * @param channel Container file.
+   * @return The header of the file.
+   * @throws IOException in case of an error reading the file, including if it ends within the
+   *     header.
+   */
+  static Header readHeader(
+      final FileChannel channel
+  ) throws IOException {
+    // the header is read in two parts, the second once the length of the Schema is known.
+    final int fixedSize = MAGIC.length + 1 + Long.BYTES;
+    final ByteBuffer prefix = read(channel, 0, fixedSize + 10);
+    prefix.position(fixedSize);
+    final int schemaSize = BinaryInput.wrap(prefix).readLength();
+    final ByteBuffer header = read(channel, 0, prefix.position() + schemaSize + SYNC_SIZE);
+    try {
+      return readHeader(header);
+    } catch (BufferUnderflowException bue) {
+      throw new EOFException("Container file ends within its header.");
+    }
+  }
+
+  /**
+   * @param channel File from which to read.
+   * @param position Position in the file of the first byte to read.
+   * @param length Number of bytes to read.
+   * @return A heap buffer containing the bytes.
+   * @throws EOFException if the file ends before the given number of bytes have been read.
+   * @throws IOException in case of an error reading the file.
+   */
+  static ByteBuffer read(
+      final FileChannel channel,
+      final long position,
+      final int length
+  ) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException(String.format(
+            "Container file ends at: '%d', expected: '%d' bytes at: '%d'.",
+            position + buffer.position(),
+            length,
+            position
+        ));
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Find the first block which starts at or after a position. Blocks start immediately after a
+   * sync marker.
+   *
+   * @param channel Container file.
+   * @param header Header of the file.
+   * @param position Position in the file at or after which to look for a block.
+   * @return The position of the first block which starts at or after the given position, or the
+   *     size of the file if there is none.
+   * @throws IOException in case of an error reading the file.
+   */
+  static long findBlock(
+      final FileChannel channel,
+      final Header header,
+      final long position
+  ) throws IOException {
+    final long size = channel.size();
+    // the header ends with a sync marker, so the first block is found the same way as the others.
+    long searchStart = Math.max(position, header.getSize()) - SYNC_SIZE;
+    final int chunkSize = 64 * 1024;
+    while (searchStart + SYNC_SIZE <= size) {
+      final ByteBuffer chunk = read(channel, searchStart, (int) Math.min(chunkSize, size - searchStart));
+      final int index = indexOf(chunk, header.getSync());
+      if (index >= 0) {
+        return searchStart + index + SYNC_SIZE;
+      }
+      // the next chunk overlaps this one so that markers which span chunks are found.
+      searchStart += chunk.remaining() - SYNC_SIZE + 1;
+    }
+    return size;
+  }
+
+  /**
+   * @param buffer Buffer in which to search between its position and limit.
+   * @param sync Sync marker.
+   * @return The index relative to the buffer's position of the first sync marker in the buffer, or
+   *     -1 if there is none.
+   */
+  static int indexOf(
+      final ByteBuffer buffer,
+      final byte[] sync
+  ) {
+    final int start = buffer.position();
+    final int last = buffer.limit() - SYNC_SIZE;
+    for (int i = start; i <= last; i++) {
+      if (buffer.get(i) == sync[0]) {
+        int matched = 1;
+        while (matched < SYNC_SIZE && buffer.get(i + matched) == sync[matched]) {
+          matched++;
+        }
+        if (matched == SYNC_SIZE) {
+          return i - start;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param buffer Buffer containing a sync marker at the given index.
+   * @param index Index of the sync marker.
+   * @param sync The file's sync marker.
+   * @param position Position in the file of the sync marker, for error messages.
+   * @throws IllegalStateException if the bytes at the given index are not the sync marker.
+   */
+  static void checkSync(
+      final ByteBuffer buffer,
+      final int index,
+      final byte[] sync,
+      final long position
+  ) {
+    for (int i = 0; i < SYNC_SIZE; i++) {
+      if (buffer.get(index + i) != sync[i]) {
+        throw new IllegalStateException(String.format(
+            "Container file is corrupt, expected a sync marker at: '%d'.",
+            position
+        ));
+      }
+    }
+  }
+
+  private ContainerFormat() { }
+}
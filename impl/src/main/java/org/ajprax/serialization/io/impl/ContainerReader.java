@@ -0,0 +1,401 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Reads the values in a container file written by {@link ContainerWriter}.
+ *
+ * A reader may be limited to a split of the file, the blocks which start between two positions.
+ * Splitting a file into consecutive ranges of positions, without regard to where its blocks are,
+ * yields readers which together read every block exactly once, so a file may be processed in
+ * parallel by one reader per range. Each reader finds its first block by searching for the file's
+ * sync marker.
+ *
+ * Blocks are read whole. {@link #skipBlock()} moves past a block without reading or decoding it.
+ * {@link #parallelStream()} reads and decodes blocks on several threads.
+ *
+ * Not thread safe.
+ *
+ * @param <T> Type of the read values.
+ */
+public final class ContainerReader<T> implements Iterator<T>, Closeable {
+
+  /**
+   * Ranges of positions smaller than this are not split further by {@link #spliterator()}, as they
+   * would often contain no block.
+   */
+  static final long MIN_SPLIT_SIZE = ContainerWriter.MAX_BLOCK_SIZE;
+
+  /**
+   * Open a container file, reading values with its writer Schema.
+   *
+   * @param file Container file.
+   * @param <T> Type of the read values.
+   * @return A reader of every value in the file.
+   * @throws UncheckedIOException in case of an error reading the file's header.
+   */
+  public static <T> ContainerReader<T> open(
+      final Path file
+  ) {
+    return open(file, null, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Open a container file, reading values with a reader Schema which may differ from its writer
+   * Schema, see {@link BinaryDecoder#forSchemas(Schema, Schema)}.
+   *
+   * @param file Container file.
+   * @param readerSchema Schema of the read values.
+   * @param <T> Type of the read values.
+   * @return A reader of every value in the file.
+   * @throws UncheckedIOException in case of an error reading the file's header.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  public static <T> ContainerReader<T> open(
+      final Path file,
+      final Schema readerSchema
+  ) {
+    return open(file, readerSchema, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Open a split of a container file, the blocks which start at or after a start position and
+   * before an end position.
+   *
+   * @param file Container file.
+   * @param readerSchema Schema of the read values, or null to read values with the writer Schema.
+   * @param start Position in the file of the start of the split, inclusive.
+   * @param end Position in the file of the end of the split, exclusive.
+   * @param <T> Type of the read values.
+   * @return A reader of the values in the blocks of the split.
+   * @throws UncheckedIOException in case of an error reading the file.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  public static <T> ContainerReader<T> open(
+      final Path file,
+      final Schema readerSchema,
+      final long start,
+      final long end
+  ) {
+    Preconditions.checkArgument(
+        0 <= start && start <= end,
+        "Invalid split start: '%s' and end: '%s'.",
+        start,
+        end
+    );
+    try {
+      final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+        final ContainerFormat.Header header = ContainerFormat.readHeader(channel);
+        final BinaryDecoder<T> decoder = (null == readerSchema || header.getSchema().equals(readerSchema))
+            ? BinaryDecoder.forSchema(header.getSchema())
+            : BinaryDecoder.forSchemas(header.getSchema(), readerSchema);
+        final long firstBlock = ContainerFormat.findBlock(channel, header, start);
+        return new ContainerReader<>(channel, header, decoder, firstBlock, end);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private final FileChannel mChannel;
+  private final ContainerFormat.Header mHeader;
+  private final BinaryDecoder<T> mDecoder;
+  private final long mEnd;
+  /** Position of the next unread block. */
+  private long mPosition;
+  /** Position of the block being read. */
+  private long mBlockPosition;
+  /** Encoded values of the block being read, positioned at the next value. */
+  private ByteBuffer mBlock = null;
+  private long mBlockRemaining = 0;
+
+  private ContainerReader(
+      final FileChannel channel,
+      final ContainerFormat.Header header,
+      final BinaryDecoder<T> decoder,
+      final long firstBlock,
+      final long end
+  ) {
+    mChannel = channel;
+    mHeader = header;
+    mDecoder = decoder;
+    mPosition = firstBlock;
+    mBlockPosition = firstBlock;
+    mEnd = end;
+  }
+
+  /**
+   * @return The Schema with which the values in the file were written.
+   */
+  public Schema getWriterSchema() {
+    return mHeader.getSchema();
+  }
+
+  /**
+   * @return The position in the file of the block containing the next value, or of the next block
+   *     if every value of the current block has been read.
+   */
+  public long getBlockPosition() {
+    return (mBlockRemaining > 0) ? mBlockPosition : mPosition;
+  }
+
+  /**
+   * Read the record count and byte length of the next block of this reader's split.
+   *
+   * @return The prefix of the next block, or null if there is no next block.
+   */
+  private ContainerFormat.BlockPrefix nextBlockPrefix() throws IOException {
+    final long size = mChannel.size();
+    if (mPosition >= mEnd || mPosition >= size) {
+      return null;
+    }
+    final ByteBuffer prefix = ContainerFormat.read(
+        mChannel,
+        mPosition,
+        (int) Math.min(ContainerFormat.MAX_BLOCK_PREFIX_SIZE, size - mPosition)
+    );
+    return ContainerFormat.readBlockPrefix(prefix, mPosition);
+  }
+
+  /**
+   * Skip the rest of the block being read or, if every value of it has been read, the next block,
+   * without decoding its values.
+   *
+   * @return The number of values skipped, or 0 if there are no more blocks in this reader's split.
+   * @throws UncheckedIOException in case of an error reading the file.
+   */
+  public long skipBlock() {
+    if (mBlockRemaining > 0) {
+      final long skipped = mBlockRemaining;
+      mBlock = null;
+      mBlockRemaining = 0;
+      return skipped;
+    }
+    try {
+      final ContainerFormat.BlockPrefix prefix = nextBlockPrefix();
+      if (null == prefix) {
+        return 0;
+      }
+      // the sync marker is checked so that a skipped block is known to have been a block.
+      final ByteBuffer sync = ContainerFormat.read(mChannel, prefix.getSyncPosition(), ContainerFormat.SYNC_SIZE);
+      ContainerFormat.checkSync(sync, 0, mHeader.getSync(), prefix.getSyncPosition());
+      mPosition = prefix.getEnd();
+      return prefix.getCount();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (mBlockRemaining == 0) {
+        final ContainerFormat.BlockPrefix prefix = nextBlockPrefix();
+        if (null == prefix) {
+          return false;
+        }
+        final ByteBuffer block = ContainerFormat.read(
+            mChannel,
+            prefix.getDataPosition(),
+            prefix.getLength() + ContainerFormat.SYNC_SIZE
+        );
+        ContainerFormat.checkSync(block, prefix.getLength(), mHeader.getSync(), prefix.getSyncPosition());
+        block.limit(prefix.getLength());
+        // each block is read into a new buffer, decoded values may share its storage.
+        mBlock = prefix.decompress(block);
+        mBlockRemaining = prefix.getCount();
+        mBlockPosition = mPosition;
+        mPosition = prefix.getEnd();
+      }
+      return true;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * @return The next value.
+   * @throws NoSuchElementException if there are no more values in this reader's split.
+   * @throws IllegalStateException if the block's values do not fill the block exactly.
+   */
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final T value = mDecoder.decodeFrom(mBlock);
+    mBlockRemaining--;
+    if (mBlockRemaining == 0) {
+      Preconditions.checkState(
+          !mBlock.hasRemaining(),
+          "Container file is corrupt, block at: '%s' contains trailing bytes.",
+          mBlockPosition
+      );
+      mBlock = null;
+    }
+    return value;
+  }
+
+  /**
+   * Create a Spliterator over the values of the blocks this reader has not yet read. The
+   * Spliterator splits the remaining range of positions in halves, each of which reads the blocks
+   * which start in it, so that each block is decompressed and decoded by the thread which
+   * processes its half. Splits share this reader's file and decoder, which are thread safe.
+   *
+   * This reader must not be part way through a block, and must not be read from once the
+   * Spliterator has been created. Closing this reader ends the Spliterator.
+   *
+   * @return A Spliterator over the values of the remaining blocks.
+   * @throws IllegalStateException if this reader is part way through a block.
+   */
+  public Spliterator<T> spliterator() {
+    return spliterator(MIN_SPLIT_SIZE);
+  }
+
+  /**
+   * @param minSplitSize Smallest range of positions which is split further.
+   */
+  Spliterator<T> spliterator(
+      final long minSplitSize
+  ) {
+    Preconditions.checkState(mBlockRemaining == 0, "ContainerReader is part way through a block.");
+    try {
+      return new BlockSpliterator<>(this, mPosition, Math.min(mEnd, mChannel.size()), minSplitSize);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * @return A sequential Stream of the values of the blocks this reader has not yet read, which
+   *     closes this reader when it is closed. See {@link #spliterator()}.
+   */
+  public Stream<T> stream() {
+    return StreamSupport.stream(spliterator(), false).onClose(this::closeUnchecked);
+  }
+
+  /**
+   * @return A parallel Stream of the values of the blocks this reader has not yet read, which
+   *     closes this reader when it is closed. See {@link #spliterator()}.
+   */
+  public Stream<T> parallelStream() {
+    return StreamSupport.stream(spliterator(), true).onClose(this::closeUnchecked);
+  }
+
+  private void closeUnchecked() {
+    try {
+      close();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    mChannel.close();
+  }
+
+  /**
+   * Spliterator over the blocks which start in a range of positions. Splits in halves until it
+   * starts reading, and reads with a ContainerReader of its own which shares the file and decoder
+   * of the reader it was created from.
+   */
+  private static final class BlockSpliterator<T> implements Spliterator<T> {
+
+    private final ContainerReader<T> mParent;
+    private final long mEnd;
+    private final long mMinSplitSize;
+    private long mStart;
+    /** Reader of this Spliterator's range, or null before the first value is read. */
+    private ContainerReader<T> mReader = null;
+
+    private BlockSpliterator(
+        final ContainerReader<T> parent,
+        final long start,
+        final long end,
+        final long minSplitSize
+    ) {
+      mParent = parent;
+      mStart = start;
+      mEnd = end;
+      mMinSplitSize = minSplitSize;
+    }
+
+    private ContainerReader<T> reader() {
+      if (null == mReader) {
+        try {
+          final long firstBlock = ContainerFormat.findBlock(mParent.mChannel, mParent.mHeader, mStart);
+          mReader = new ContainerReader<>(mParent.mChannel, mParent.mHeader, mParent.mDecoder, firstBlock, mEnd);
+        } catch (IOException ioe) {
+          throw new UncheckedIOException(ioe);
+        }
+      }
+      return mReader;
+    }
+
+    @Override
+    public boolean tryAdvance(
+        final Consumer<? super T> action
+    ) {
+      final ContainerReader<T> reader = reader();
+      if (!reader.hasNext()) {
+        return false;
+      }
+      action.accept(reader.next());
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(
+        final Consumer<? super T> action
+    ) {
+      reader().forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+      if (null != mReader || mEnd - mStart < 2 * mMinSplitSize) {
+        return null;
+      }
+      // ordered Spliterators split off a prefix.
+      final long middle = mStart + (mEnd - mStart) / 2;
+      final Spliterator<T> prefix = new BlockSpliterator<>(mParent, mStart, middle, mMinSplitSize);
+      mStart = middle;
+      return prefix;
+    }
+
+    /**
+     * @return The number of bytes in this Spliterator's range, which is proportional to, but
+     *     larger than, the number of values in it.
+     */
+    @Override
+    public long estimateSize() {
+      return (null == mReader) ? mEnd - mStart : Math.max(0, mEnd - mReader.getBlockPosition());
+    }
+
+    @Override
+    public int characteristics() {
+      return ORDERED;
+    }
+  }
+}
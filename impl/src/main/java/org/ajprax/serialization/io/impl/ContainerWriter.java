@@ -0,0 +1,219 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Writes values of a single Schema to a container file, see {@link ContainerFormat} for the
+ * layout. Values are buffered into blocks which are written once they contain a given number of
+ * values or {@link #MAX_BLOCK_SIZE} bytes. Each block is compressed separately with the writer's
+ * {@link CompressionCodec}. Read container files with {@link ContainerReader}.
+ *
+ * Not thread safe.
+ *
+ * @param <T> Type of the written values.
+ */
+public final class ContainerWriter<T> implements Closeable, Flushable {
+
+  public static final int DEFAULT_RECORDS_PER_BLOCK = 1000;
+
+  /** Blocks are written once their encoded values reach this size, however many values they hold. */
+  public static final int MAX_BLOCK_SIZE = 1 << 20;
+
+  private static final int INITIAL_BLOCK_CAPACITY = 4096;
+
+  /**
+   * Create a container file, replacing the file if it exists.
+   *
+   * @param file File to create.
+   * @param schema Schema of the written values.
+   * @param <T> Type of the written values.
+   * @return A ContainerWriter writing to the given file.
+   * @throws UncheckedIOException in case of an error creating the file.
+   */
+  public static <T> ContainerWriter<T> create(
+      final Path file,
+      final Schema schema
+  ) {
+    try {
+      return create(new BufferedOutputStream(Files.newOutputStream(file)), schema, DEFAULT_RECORDS_PER_BLOCK);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Write a container file with uncompressed blocks to an OutputStream. The header is written
+   * immediately.
+   *
+   * @param output Stream to which to write. Closed when the ContainerWriter is closed.
+   * @param schema Schema of the written values.
+   * @param recordsPerBlock Number of values after which a block is written.
+   * @param <T> Type of the written values.
+   * @return A ContainerWriter writing to the given stream.
+   * @throws UncheckedIOException in case of an error writing the header.
+   */
+  public static <T> ContainerWriter<T> create(
+      final OutputStream output,
+      final Schema schema,
+      final int recordsPerBlock
+  ) {
+    return create(output, schema, recordsPerBlock, CompressionCodecs.NONE);
+  }
+
+  /**
+   * Write a container file to an OutputStream. The header is written immediately.
+   *
+   * @param output Stream to which to write. Closed when the ContainerWriter is closed.
+   * @param schema Schema of the written values.
+   * @param recordsPerBlock Number of values after which a block is written.
+   * @param codec Codec with which to compress each block.
+   * @param <T> Type of the written values.
+   * @return A ContainerWriter writing to the given stream.
+   * @throws UncheckedIOException in case of an error writing the header.
+   */
+  public static <T> ContainerWriter<T> create(
+      final OutputStream output,
+      final Schema schema,
+      final int recordsPerBlock,
+      final CompressionCodec codec
+  ) {
+    Preconditions.checkArgument(recordsPerBlock > 0, "Records per block must be positive, got: '%s'.", recordsPerBlock);
+    final ContainerWriter<T> writer = new ContainerWriter<>(output, schema, recordsPerBlock, codec);
+    try {
+      output.write(ContainerFormat.writeHeader(schema, writer.mSync));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    return writer;
+  }
+
+  private final OutputStream mOutput;
+  private final Schema mSchema;
+  private final BinaryEncoder<T> mEncoder;
+  private final int mRecordsPerBlock;
+  private final CompressionCodec mCodec;
+  private final byte[] mSync = ContainerFormat.newSync();
+  /** Record count, codec and lengths of the block being written. */
+  private final BinaryOutput mBlockPrefix = BinaryOutput.create(ContainerFormat.MAX_BLOCK_PREFIX_SIZE);
+  /** Encoded values of the block being written, between 0 and the position. */
+  private ByteBuffer mBlock = ByteBuffer.allocate(INITIAL_BLOCK_CAPACITY);
+  private int mBlockRecords = 0;
+  private boolean mClosed = false;
+
+  private ContainerWriter(
+      final OutputStream output,
+      final Schema schema,
+      final int recordsPerBlock,
+      final CompressionCodec codec
+  ) {
+    mOutput = output;
+    mSchema = schema;
+    mEncoder = BinaryEncoder.forSchema(schema);
+    mRecordsPerBlock = recordsPerBlock;
+    mCodec = codec;
+  }
+
+  /**
+   * @return The Schema of the written values.
+   */
+  public Schema getSchema() {
+    return mSchema;
+  }
+
+  /**
+   * Append a value to the current block, writing the block if it is full.
+   *
+   * @param value Value to append.
+   * @throws UncheckedIOException in case of an error writing a block.
+   */
+  public void append(
+      final T value
+  ) {
+    Preconditions.checkState(!mClosed, "ContainerWriter is closed.");
+    while (true) {
+      try {
+        // encoded straight into the block's backing array, which grows until the value fits.
+        mEncoder.encodeTo(value, mBlock);
+        break;
+      } catch (BufferOverflowException boe) {
+        final ByteBuffer larger = ByteBuffer.allocate(mBlock.capacity() * 2);
+        mBlock.flip();
+        larger.put(mBlock);
+        mBlock = larger;
+      }
+    }
+    mBlockRecords++;
+    if (mBlockRecords >= mRecordsPerBlock || mBlock.position() >= MAX_BLOCK_SIZE) {
+      writeBlock();
+    }
+  }
+
+  private void writeBlock() {
+    if (mBlockRecords == 0) {
+      return;
+    }
+    final ByteBuffer compressed = mCodec.compress((ByteBuffer) mBlock.duplicate().flip());
+    mBlockPrefix.reset();
+    ContainerFormat.writeBlockPrefix(mBlockPrefix, mBlockRecords, mCodec, mBlock.position(), compressed.remaining());
+    try {
+      mBlockPrefix.writeTo(mOutput);
+      if (compressed.hasArray()) {
+        mOutput.write(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+      } else {
+        mOutput.write(CompressionCodecs.remaining(compressed));
+      }
+      mOutput.write(mSync);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    mBlock.clear();
+    mBlockRecords = 0;
+  }
+
+  /**
+   * Write the current block, even if it is not full, and flush the underlying stream.
+   *
+   * @throws UncheckedIOException in case of an error writing or flushing.
+   */
+  @Override
+  public void flush() {
+    Preconditions.checkState(!mClosed, "ContainerWriter is closed.");
+    writeBlock();
+    try {
+      mOutput.flush();
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * Write the current block and close the underlying stream.
+   *
+   * @throws IOException in case of an error writing or closing.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!mClosed) {
+      try {
+        writeBlock();
+      } finally {
+        mClosed = true;
+        mOutput.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.EncoderContext;
+
+/**
+ * EncoderContext holding a single growable {@link BinaryOutput}. JSON is written into the same
+ * output through a JsonGenerator which is created once and reused for each value.
+ */
+public final class EncoderContextImpl implements EncoderContext {
+
+  public static final class EncoderContextImplFactory implements EncoderContextFactory {
+    @Override
+    public EncoderContext create() {
+      return EncoderContextImpl.create();
+    }
+  }
+
+  /** Outputs which grew past this many bytes are released rather than retained. */
+  private static final int MAX_RETAINED_SIZE = 1 << 20;
+
+  private static final ThreadLocal<EncoderContextImpl> THREAD_CONTEXT =
+      ThreadLocal.withInitial(EncoderContextImpl::create);
+
+  public static EncoderContextImpl create() {
+    return new EncoderContextImpl();
+  }
+
+  /**
+   * @return A context owned by the calling thread, for encoders called without a context.
+   */
+  static EncoderContextImpl forCurrentThread() {
+    return THREAD_CONTEXT.get();
+  }
+
+  /**
+   * @param context Context passed to an encoder.
+   * @return The context as an EncoderContextImpl.
+   */
+  static EncoderContextImpl of(
+      final EncoderContext context
+  ) {
+    Preconditions.checkArgument(
+        context instanceof EncoderContextImpl,
+        "Unsupported EncoderContext: '%s'.",
+        context
+    );
+    return (EncoderContextImpl) context;
+  }
+
+  private BinaryOutput mOutput = BinaryOutput.create();
+  private JsonGenerator mGenerator = null;
+
+  private EncoderContextImpl() { }
+
+  /**
+   * @return This context's output, emptied of any bytes written by earlier values.
+   */
+  BinaryOutput output() {
+    mOutput.reset();
+    return mOutput;
+  }
+
+  /**
+   * @return A JsonGenerator which writes UTF-8 JSON into this context's output. Root level values
+   *     are written without separators.
+   */
+  JsonGenerator generator() throws IOException {
+    if (null == mGenerator) {
+      mGenerator = JsonUtils.MAPPER.getFactory().createGenerator(new OutputStream() {
+        @Override
+        public void write(
+            final int b
+        ) {
+          mOutput.writeByte(b);
+        }
+
+        @Override
+        public void write(
+            final byte[] bytes,
+            final int offset,
+            final int length
+        ) {
+          mOutput.writeRawBytes(bytes, offset, length);
+        }
+      });
+      mGenerator.setRootValueSeparator(null);
+    }
+    return mGenerator;
+  }
+
+  /**
+   * Release the output if it grew too large to retain. Called once the bytes of a value have been
+   * copied out.
+   */
+  void release() {
+    if (mOutput.size() > MAX_RETAINED_SIZE) {
+      mOutput = BinaryOutput.create();
+    }
+  }
+
+  /**
+   * Discard the JsonGenerator, for example after a failed write left it in the middle of a value.
+   */
+  void discardGenerator() {
+    mGenerator = null;
+  }
+
+  @Override
+  public void reset() {
+    mOutput = BinaryOutput.create();
+    mGenerator = null;
+  }
+}
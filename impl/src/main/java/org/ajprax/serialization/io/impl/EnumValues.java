@@ -0,0 +1,51 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableList;
+import org.ajprax.serialization.schema.Schema;
+
+/** Resolves the Java values produced when decoding ENUM Schemas. */
+final class EnumValues {
+
+  /**
+   * Get the values to which the symbols of an ENUM Schema decode, in symbol order.
+   *
+   * Symbols decode to Java enum constants if the Schema's name is the name of a Java enum class
+   * which contains all of its symbols. Otherwise they decode to their symbol Strings.
+   *
+   * @param schema ENUM Schema for which to get values.
+   * @return The decoded value of each symbol, in the iteration order of the Schema's symbols.
+   */
+  static ImmutableList<Object> forSchema(
+      final Schema schema
+  ) {
+    return enumConstants(schema).orElse(ImmutableList.copyOf(schema.getEnumSymbols()));
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Optional<ImmutableList<Object>> enumConstants(
+      final Schema schema
+  ) {
+    final Class<?> enumClass;
+    try {
+      enumClass = Class.forName(schema.getName());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return Optional.empty();
+    }
+    if (!enumClass.isEnum()) {
+      return Optional.empty();
+    }
+    final ImmutableList.Builder<Object> constants = ImmutableList.builder();
+    for (String symbol : schema.getEnumSymbols()) {
+      try {
+        constants.add(Enum.valueOf((Class) enumClass, symbol));
+      } catch (IllegalArgumentException iae) {
+        return Optional.empty();
+      }
+    }
+    return Optional.of(constants.build());
+  }
+
+  private EnumValues() { }
+}
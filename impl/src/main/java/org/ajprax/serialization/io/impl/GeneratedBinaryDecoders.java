@@ -0,0 +1,480 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.impl.BinaryDecoders.PlaceholderValueReader;
+import org.ajprax.serialization.io.impl.BinaryDecoders.ValueReader;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Binary decoders which compile each RECORD Schema to a generated class. Reads the format written
+ * by {@link BinaryEncoders} and produces the same values as {@link BinaryDecoders}.
+ *
+ * See {@link GeneratedBinaryEncoders} for which values are read by generated code and which are
+ * read by delegate readers.
+ *
+ * This factory is not registered as a service. Use it directly to opt in to code generation.
+ */
+public final class GeneratedBinaryDecoders {
+
+  public static final class GeneratedBinaryDecoderImplFactory implements BinaryDecoderFactory {
+
+    private final CodecCache<BinaryDecoder<Object>> mCache = CodecCache.create(
+        schema -> BinaryDecoders.decoder(schema, GeneratedBinaryDecoders.forSchema(schema, Maps.newHashMap()))
+    );
+    // resolving readers are not generated.
+    private final ResolutionCache<BinaryDecoder<Object>> mResolutionCache = ResolutionCache.create(
+        (writerSchema, readerSchema) ->
+            BinaryDecoders.decoder(writerSchema, BinaryResolvingDecoders.forEvolution(writerSchema, readerSchema))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryDecoder<T> forSchema(final Schema schema) {
+      return (BinaryDecoder<T>) mCache.get(schema);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryDecoder<T> forSchemas(final Schema writerSchema, final Schema readerSchema) {
+      return (BinaryDecoder<T>) mResolutionCache.get(writerSchema, readerSchema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  /**
+   * Recursively creates readers for a given Schema, generating a class for each RECORD.
+   *
+   * @param schema Schema for which to build a reader.
+   * @param knownSchemas Schemas which have already been seen during the creation of this reader.
+   * @return A ValueReader for the given Schema.
+   */
+  static ValueReader<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, ValueReader<Object>> knownSchemas
+  ) {
+    final ValueReader<Object> knownReader = knownSchemas.get(schema);
+    if (null != knownReader) {
+      return knownReader;
+    }
+    final ValueReader<Object> reader;
+    switch (schema.getType()) {
+      case EXTENSION: {
+        reader = BinaryDecoders.cast(BinaryDecoders.extension(
+            schema,
+            forSchema(schema.getTagSchema(), knownSchemas)
+        ));
+        break;
+      }
+      case ARRAY: {
+        reader = BinaryDecoders.cast(BinaryDecoders.array(BinaryDecoders.elements(
+            schema.getElementSchema(),
+            forSchema(schema.getElementSchema(), knownSchemas)
+        )));
+        break;
+      }
+      case FIXED_SIZE_ARRAY: {
+        reader = BinaryDecoders.cast(BinaryDecoders.fixedSizeArray(
+            schema.getSize(),
+            BinaryDecoders.elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas))
+        ));
+        break;
+      }
+      case SET: {
+        reader = BinaryDecoders.cast(BinaryDecoders.set(forSchema(schema.getElementSchema(), knownSchemas)));
+        break;
+      }
+      case MAP: {
+        reader = BinaryDecoders.cast(BinaryDecoders.map(
+            forSchema(schema.getKeySchema(), knownSchemas),
+            forSchema(schema.getValueSchema(), knownSchemas)
+        ));
+        break;
+      }
+      case UNION: {
+        final List<ValueReader<Object>> branchReaders = ImmutableList.copyOf(Lists.transform(
+            schema.getBranchSchemas(),
+            branchSchema -> forSchema(branchSchema, knownSchemas)
+        ));
+        reader = BinaryDecoders.cast(BinaryDecoders.union(schema, branchReaders));
+        break;
+      }
+      case OPTIONAL: {
+        reader = BinaryDecoders.cast(BinaryDecoders.optional(forSchema(schema.getElementSchema(), knownSchemas)));
+        break;
+      }
+      case RECORD: {
+        // only records which refer back to themselves are compiled through a placeholder.
+        final Optional<PlaceholderValueReader> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+            ? Optional.of(new PlaceholderValueReader())
+            : Optional.empty();
+        placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+        reader = record(schema, knownSchemas);
+        placeholder.ifPresent(p -> p.fill(reader));
+        break;
+      }
+      default: return BinaryDecoders.forSchema(schema, knownSchemas);
+    }
+    knownSchemas.put(schema, reader);
+    return reader;
+  }
+
+  private static ValueReader<Object> record(
+      final Schema schema,
+      final Map<Schema, ValueReader<Object>> knownSchemas
+  ) {
+    // retry without flattening nested records if the flattened class is too large.
+    for (boolean flatten : new boolean[] {true, false}) {
+      try {
+        final RecordReaderGenerator generator = new RecordReaderGenerator(schema, knownSchemas, flatten);
+        final byte[] bytecode = generator.generate();
+        if (generator.methodSize() <= GeneratedCodecs.MAX_METHOD_SIZE) {
+          return generator.instantiate(bytecode);
+        }
+      } catch (MethodTooLargeException | ClassTooLargeException e) {
+        // fall through.
+      }
+    }
+    final ImmutableList.Builder<ValueReader<Object>> fieldReaders = ImmutableList.builder();
+    for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+      fieldReaders.add(forSchema(fieldSchema, knownSchemas));
+    }
+    return BinaryDecoders.cast(BinaryDecoders.record(
+        schema,
+        schema.getFieldSchemas().keySet().asList(),
+        fieldReaders.build()
+    ));
+  }
+
+  /**
+   * Generates a class implementing {@link ValueReader} for a single RECORD Schema. The generated
+   * read method takes the BinaryInput in local 1. Each value is read onto the stack.
+   */
+  private static final class RecordReaderGenerator {
+
+    private static final String INPUT = Type.getInternalName(BinaryInput.class);
+    private static final String VALUE_READER = Type.getInternalName(ValueReader.class);
+    private static final String OPTIONAL = Type.getInternalName(Optional.class);
+    private static final String ARRAY_LIST = Type.getInternalName(ArrayList.class);
+    private static final String READ_DESCRIPTOR =
+        Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(BinaryInput.class));
+    private static final int INPUT_LOCAL = 1;
+
+    private final Schema mSchema;
+    private final Map<Schema, ValueReader<Object>> mKnownSchemas;
+    private final String mClassName;
+    private final GeneratedCodecs.Constants mConstants;
+    /** Whether to flatten nested records and unroll FIXED_SIZE_ARRAYs. */
+    private final boolean mFlatten;
+    /** Records whose fields are currently being read inline. */
+    private final Deque<Schema> mInlinedRecords = new ArrayDeque<>();
+    private MethodVisitor mMethod;
+    /** Bytes of bytecode in the generated method, known once the class has been generated. */
+    private int mMethodSize = -1;
+
+    private RecordReaderGenerator(
+        final Schema schema,
+        final Map<Schema, ValueReader<Object>> knownSchemas,
+        final boolean flatten
+    ) {
+      mSchema = schema;
+      mKnownSchemas = knownSchemas;
+      mFlatten = flatten;
+      mClassName = GeneratedCodecs.className("BinaryRecordReader", schema.getName());
+      mConstants = new GeneratedCodecs.Constants(mClassName);
+    }
+
+    /**
+     * @return The bytecode of the generated class.
+     */
+    private byte[] generate() {
+      final ClassWriter cw = GeneratedCodecs.classWriter();
+      cw.visit(
+          Opcodes.V1_8,
+          Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+          mClassName,
+          null,
+          "java/lang/Object",
+          new String[] {VALUE_READER}
+      );
+      mMethod = cw.visitMethod(Opcodes.ACC_PUBLIC, "read", READ_DESCRIPTOR, null, null);
+      mMethod.visitCode();
+      readRecord(mSchema);
+      // labels are resolved to their bytecode offset when visited.
+      final Label end = new Label();
+      mMethod.visitLabel(end);
+      mMethod.visitInsn(Opcodes.ARETURN);
+      mMethodSize = end.getOffset() + 1;
+      mMethod.visitMaxs(0, 0);
+      mMethod.visitEnd();
+      mConstants.writeFieldsAndConstructor(cw);
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    /**
+     * @return The number of bytes of bytecode in the generated method.
+     */
+    private int methodSize() {
+      Preconditions.checkState(mMethodSize >= 0, "The class has not been generated.");
+      return mMethodSize;
+    }
+
+    private ValueReader<Object> instantiate(
+        final byte[] bytecode
+    ) {
+      return mConstants.instantiate(bytecode);
+    }
+
+    /**
+     * Read a value onto the stack.
+     *
+     * @param schema Schema of the value.
+     */
+    private void readValue(
+        final Schema schema
+    ) {
+      switch (schema.getType()) {
+        case SIGNED_16:
+        case SIGNED_32:
+        case SIGNED_64:
+        case FLOAT_32:
+        case FLOAT_64:
+        case BOOLEAN: {
+          readPrimitive(schema.getType());
+          box(schema.getType());
+          break;
+        }
+        case STRING: {
+          mMethod.visitVarInsn(Opcodes.ALOAD, INPUT_LOCAL);
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readString", "()Ljava/lang/String;", false);
+          break;
+        }
+        case OPTIONAL: {
+          readOptional(schema);
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          if (mFlatten && schema.getSize() <= GeneratedCodecs.MAX_UNROLLED_SIZE) {
+            readFixedSizeArray(schema);
+          } else {
+            delegate(schema);
+          }
+          break;
+        }
+        case RECORD: {
+          if (mFlatten
+              && mInlinedRecords.size() < GeneratedCodecs.MAX_INLINE_DEPTH
+              && !mInlinedRecords.contains(schema)) {
+            readRecord(schema);
+          } else {
+            delegate(schema);
+          }
+          break;
+        }
+        default: delegate(schema);
+      }
+    }
+
+    /** Read a value with the reader for its Schema. */
+    private void delegate(
+        final Schema schema
+    ) {
+      mConstants.load(mMethod, forSchema(schema, mKnownSchemas), ValueReader.class);
+      mMethod.visitVarInsn(Opcodes.ALOAD, INPUT_LOCAL);
+      mMethod.visitMethodInsn(Opcodes.INVOKEINTERFACE, VALUE_READER, "read", READ_DESCRIPTOR, true);
+    }
+
+    private void readRecord(
+        final Schema schema
+    ) {
+      mInlinedRecords.push(schema);
+      final ImmutableList<Schema> fieldSchemas = schema.getFieldSchemas().values().asList();
+      mConstants.load(mMethod, schema, Schema.class);
+      GeneratedCodecs.pushInt(mMethod, fieldSchemas.size());
+      mMethod.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+      for (int i = 0; i < fieldSchemas.size(); i++) {
+        mMethod.visitInsn(Opcodes.DUP);
+        GeneratedCodecs.pushInt(mMethod, i);
+        readValue(fieldSchemas.get(i));
+        mMethod.visitInsn(Opcodes.AASTORE);
+      }
+      mMethod.visitMethodInsn(
+          Opcodes.INVOKESTATIC,
+          Type.getInternalName(GenericRecordImpl.class),
+          "create",
+          Type.getMethodDescriptor(
+              Type.getType(GenericRecordImpl.class),
+              Type.getType(Schema.class),
+              Type.getType(Object[].class)
+          ),
+          false
+      );
+      mInlinedRecords.pop();
+    }
+
+    private void readOptional(
+        final Schema schema
+    ) {
+      final Label absent = new Label();
+      final Label done = new Label();
+      mMethod.visitVarInsn(Opcodes.ALOAD, INPUT_LOCAL);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readBoolean", "()Z", false);
+      mMethod.visitJumpInsn(Opcodes.IFEQ, absent);
+      readValue(schema.getElementSchema());
+      mMethod.visitMethodInsn(
+          Opcodes.INVOKESTATIC,
+          OPTIONAL,
+          "of",
+          "(Ljava/lang/Object;)Ljava/util/Optional;",
+          false
+      );
+      mMethod.visitJumpInsn(Opcodes.GOTO, done);
+      mMethod.visitLabel(absent);
+      mMethod.visitMethodInsn(Opcodes.INVOKESTATIC, OPTIONAL, "empty", "()Ljava/util/Optional;", false);
+      mMethod.visitLabel(done);
+    }
+
+    /**
+     * Unrolled FIXED_SIZE_ARRAY. Elements with a {@link PrimitiveLists} specialization are read
+     * into a primitive array.
+     */
+    private void readFixedSizeArray(
+        final Schema schema
+    ) {
+      final Schema.Type elementType = schema.getElementSchema().getType();
+      final int size = schema.getSize();
+      final Class<?> primitiveList = GeneratedCodecs.primitiveList(elementType);
+      if (null != primitiveList) {
+        final Type arrayType = Type.getType("[" + GeneratedCodecs.primitiveDescriptor(elementType));
+        GeneratedCodecs.pushInt(mMethod, size);
+        mMethod.visitIntInsn(Opcodes.NEWARRAY, newArrayOperand(elementType));
+        for (int i = 0; i < size; i++) {
+          mMethod.visitInsn(Opcodes.DUP);
+          GeneratedCodecs.pushInt(mMethod, i);
+          readPrimitive(elementType);
+          mMethod.visitInsn(arrayType.getElementType().getOpcode(Opcodes.IASTORE));
+        }
+        mMethod.visitMethodInsn(
+            Opcodes.INVOKESTATIC,
+            Type.getInternalName(PrimitiveLists.class),
+            "wrap",
+            Type.getMethodDescriptor(Type.getType(primitiveList), arrayType),
+            false
+        );
+      } else {
+        mMethod.visitTypeInsn(Opcodes.NEW, ARRAY_LIST);
+        mMethod.visitInsn(Opcodes.DUP);
+        GeneratedCodecs.pushInt(mMethod, size);
+        mMethod.visitMethodInsn(Opcodes.INVOKESPECIAL, ARRAY_LIST, "<init>", "(I)V", false);
+        for (int i = 0; i < size; i++) {
+          mMethod.visitInsn(Opcodes.DUP);
+          readValue(schema.getElementSchema());
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, ARRAY_LIST, "add", "(Ljava/lang/Object;)Z", false);
+          mMethod.visitInsn(Opcodes.POP);
+        }
+      }
+    }
+
+    /** Read a primitive of a Schema type onto the stack. */
+    private void readPrimitive(
+        final Schema.Type type
+    ) {
+      mMethod.visitVarInsn(Opcodes.ALOAD, INPUT_LOCAL);
+      switch (type) {
+        case SIGNED_16: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readZigZag32", "()I", false);
+          mMethod.visitInsn(Opcodes.I2S);
+          break;
+        }
+        case SIGNED_32: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readZigZag32", "()I", false);
+          break;
+        }
+        case SIGNED_64: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readZigZag64", "()J", false);
+          break;
+        }
+        case FLOAT_32: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readFloat", "()F", false);
+          break;
+        }
+        case FLOAT_64: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readDouble", "()D", false);
+          break;
+        }
+        case BOOLEAN: {
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, INPUT, "readBoolean", "()Z", false);
+          break;
+        }
+        default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+      }
+    }
+
+    /** Box the primitive on top of the stack. */
+    private void box(
+        final Schema.Type type
+    ) {
+      final String boxed;
+      switch (type) {
+        case SIGNED_16: boxed = "java/lang/Short"; break;
+        case SIGNED_32: boxed = "java/lang/Integer"; break;
+        case SIGNED_64: boxed = "java/lang/Long"; break;
+        case FLOAT_32: boxed = "java/lang/Float"; break;
+        case FLOAT_64: boxed = "java/lang/Double"; break;
+        case BOOLEAN: boxed = "java/lang/Boolean"; break;
+        default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+      }
+      mMethod.visitMethodInsn(
+          Opcodes.INVOKESTATIC,
+          boxed,
+          "valueOf",
+          "(" + GeneratedCodecs.primitiveDescriptor(type) + ")L" + boxed + ";",
+          false
+      );
+    }
+
+    private static int newArrayOperand(
+        final Schema.Type type
+    ) {
+      switch (type) {
+        case SIGNED_16: return Opcodes.T_SHORT;
+        case SIGNED_32: return Opcodes.T_INT;
+        case SIGNED_64: return Opcodes.T_LONG;
+        case FLOAT_32: return Opcodes.T_FLOAT;
+        case FLOAT_64: return Opcodes.T_DOUBLE;
+        case BOOLEAN: return Opcodes.T_BOOLEAN;
+        default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+      }
+    }
+  }
+
+  private GeneratedBinaryDecoders() { }
+}
@@ -0,0 +1,528 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.impl.BinaryEncoders.PlaceholderValueWriter;
+import org.ajprax.serialization.io.impl.BinaryEncoders.ValueWriter;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Binary encoders which compile each RECORD Schema to a generated class. Produces the same bytes
+ * as {@link BinaryEncoders}.
+ *
+ * The generated writer for a record writes primitive fields directly to the {@link BinaryOutput},
+ * flattens nested records and OPTIONALs into the same method and unrolls small FIXED_SIZE_ARRAYs.
+ * Values of other Schemas, and records which recursively contain themselves, are written by
+ * delegate writers. Containers of records use the generated writers for their elements. If the
+ * flattened class would be too large for the JIT to compile, the record is generated again without
+ * flattening, and records which are still too large are written by the interpreted writers of
+ * {@link BinaryEncoders}.
+ *
+ * This factory is not registered as a service. Use it directly to opt in to code generation.
+ */
+public final class GeneratedBinaryEncoders {
+
+  public static final class GeneratedBinaryEncoderImplFactory implements BinaryEncoderFactory {
+
+    private final CodecCache<BinaryEncoder<Object>> mCache = CodecCache.create(
+        schema -> BinaryEncoders.encoder(GeneratedBinaryEncoders.forSchema(schema, Maps.newHashMap()))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> BinaryEncoder<T> forSchema(final Schema schema) {
+      return (BinaryEncoder<T>) mCache.get(schema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  /**
+   * Called by generated writers before writing an unrolled FIXED_SIZE_ARRAY.
+   *
+   * @param input List to write.
+   * @param size Size of the FIXED_SIZE_ARRAY.
+   */
+  public static void checkFixedSize(
+      final List<?> input,
+      final int size
+  ) {
+    Preconditions.checkArgument(
+        input.size() == size,
+        "Input size: '%s' does not match fixed size: '%s'.",
+        input.size(),
+        size
+    );
+  }
+
+  /**
+   * Recursively creates writers for a given Schema, generating a class for each RECORD.
+   *
+   * @param schema Schema for which to build a writer.
+   * @param knownSchemas Schemas which have already been seen during the creation of this writer.
+   * @return A ValueWriter for the given Schema.
+   */
+  static ValueWriter<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, ValueWriter<Object>> knownSchemas
+  ) {
+    final ValueWriter<Object> knownWriter = knownSchemas.get(schema);
+    if (null != knownWriter) {
+      return knownWriter;
+    }
+    final ValueWriter<Object> writer;
+    switch (schema.getType()) {
+      case EXTENSION: {
+        writer = BinaryEncoders.cast(BinaryEncoders.extension(forSchema(schema.getTagSchema(), knownSchemas)));
+        break;
+      }
+      case ARRAY: {
+        writer = BinaryEncoders.cast(BinaryEncoders.array(BinaryEncoders.elements(
+            schema.getElementSchema(),
+            forSchema(schema.getElementSchema(), knownSchemas)
+        )));
+        break;
+      }
+      case FIXED_SIZE_ARRAY: {
+        writer = BinaryEncoders.cast(BinaryEncoders.fixedSizeArray(
+            BinaryEncoders.elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas)),
+            schema.getSize()
+        ));
+        break;
+      }
+      case SET: {
+        writer = BinaryEncoders.cast(BinaryEncoders.set(forSchema(schema.getElementSchema(), knownSchemas)));
+        break;
+      }
+      case MAP: {
+        writer = BinaryEncoders.cast(BinaryEncoders.map(
+            forSchema(schema.getKeySchema(), knownSchemas),
+            forSchema(schema.getValueSchema(), knownSchemas)
+        ));
+        break;
+      }
+      case UNION: {
+        final List<ValueWriter<Object>> branchWriters = ImmutableList.copyOf(Lists.transform(
+            schema.getBranchSchemas(),
+            branchSchema -> forSchema(branchSchema, knownSchemas)
+        ));
+        writer = BinaryEncoders.cast(BinaryEncoders.union(branchWriters));
+        break;
+      }
+      case OPTIONAL: {
+        writer = BinaryEncoders.cast(BinaryEncoders.optional(forSchema(schema.getElementSchema(), knownSchemas)));
+        break;
+      }
+      case RECORD: {
+        // only records which refer back to themselves are compiled through a placeholder.
+        final Optional<PlaceholderValueWriter> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+            ? Optional.of(new PlaceholderValueWriter())
+            : Optional.empty();
+        placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+        writer = record(schema, knownSchemas);
+        placeholder.ifPresent(p -> p.fill(writer));
+        break;
+      }
+      default: return BinaryEncoders.forSchema(schema, knownSchemas);
+    }
+    knownSchemas.put(schema, writer);
+    return writer;
+  }
+
+  private static ValueWriter<Object> record(
+      final Schema schema,
+      final Map<Schema, ValueWriter<Object>> knownSchemas
+  ) {
+    // retry without flattening nested records if the flattened class is too large.
+    for (boolean flatten : new boolean[] {true, false}) {
+      try {
+        final RecordWriterGenerator generator = new RecordWriterGenerator(schema, knownSchemas, flatten);
+        final byte[] bytecode = generator.generate();
+        if (generator.methodSize() <= GeneratedCodecs.MAX_METHOD_SIZE) {
+          return generator.instantiate(bytecode);
+        }
+      } catch (MethodTooLargeException | ClassTooLargeException e) {
+        // fall through.
+      }
+    }
+    final ImmutableList.Builder<ValueWriter<Object>> fieldWriters = ImmutableList.builder();
+    for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+      fieldWriters.add(forSchema(fieldSchema, knownSchemas));
+    }
+    return BinaryEncoders.cast(BinaryEncoders.record(
+        schema,
+        schema.getFieldSchemas().keySet().asList(),
+        fieldWriters.build()
+    ));
+  }
+
+  /**
+   * Generates a class implementing {@link ValueWriter} for a single RECORD Schema. The generated
+   * write method takes the value in local 1 and the BinaryOutput in local 2.
+   */
+  private static final class RecordWriterGenerator {
+
+    private static final String OUTPUT = Type.getInternalName(BinaryOutput.class);
+    private static final String VALUE_WRITER = Type.getInternalName(ValueWriter.class);
+    private static final String GENERIC_RECORD = Type.getInternalName(GenericRecord.class);
+    private static final String LIST = Type.getInternalName(List.class);
+    private static final String OPTIONAL = Type.getInternalName(Optional.class);
+    private static final String WRITE_DESCRIPTOR =
+        Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object.class), Type.getType(BinaryOutput.class));
+    private static final int OUTPUT_LOCAL = 2;
+
+    private final Schema mSchema;
+    private final Map<Schema, ValueWriter<Object>> mKnownSchemas;
+    private final String mClassName;
+    private final GeneratedCodecs.Constants mConstants;
+    /** Whether to flatten nested records and unroll FIXED_SIZE_ARRAYs. */
+    private final boolean mFlatten;
+    /** Records whose fields are currently being written inline. */
+    private final Deque<Schema> mInlinedRecords = new ArrayDeque<>();
+    private MethodVisitor mMethod;
+    /** Bytes of bytecode in the generated method, known once the class has been generated. */
+    private int mMethodSize = -1;
+    private int mNextLocal = OUTPUT_LOCAL + 1;
+
+    private RecordWriterGenerator(
+        final Schema schema,
+        final Map<Schema, ValueWriter<Object>> knownSchemas,
+        final boolean flatten
+    ) {
+      mSchema = schema;
+      mKnownSchemas = knownSchemas;
+      mFlatten = flatten;
+      mClassName = GeneratedCodecs.className("BinaryRecordWriter", schema.getName());
+      mConstants = new GeneratedCodecs.Constants(mClassName);
+    }
+
+    /**
+     * @return The bytecode of the generated class.
+     */
+    private byte[] generate() {
+      final ClassWriter cw = GeneratedCodecs.classWriter();
+      cw.visit(
+          Opcodes.V1_8,
+          Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+          mClassName,
+          null,
+          "java/lang/Object",
+          new String[] {VALUE_WRITER}
+      );
+      mMethod = cw.visitMethod(Opcodes.ACC_PUBLIC, "write", WRITE_DESCRIPTOR, null, null);
+      mMethod.visitCode();
+      writeRecord(mSchema, 1);
+      // labels are resolved to their bytecode offset when visited.
+      final Label end = new Label();
+      mMethod.visitLabel(end);
+      mMethod.visitInsn(Opcodes.RETURN);
+      mMethodSize = end.getOffset() + 1;
+      mMethod.visitMaxs(0, 0);
+      mMethod.visitEnd();
+      mConstants.writeFieldsAndConstructor(cw);
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    /**
+     * @return The number of bytes of bytecode in the generated method.
+     */
+    private int methodSize() {
+      Preconditions.checkState(mMethodSize >= 0, "The class has not been generated.");
+      return mMethodSize;
+    }
+
+    private ValueWriter<Object> instantiate(
+        final byte[] bytecode
+    ) {
+      return mConstants.instantiate(bytecode);
+    }
+
+    private int newLocal() {
+      return mNextLocal++;
+    }
+
+    /**
+     * Write the value in the given local.
+     *
+     * @param schema Schema of the value.
+     * @param value Local holding the value.
+     */
+    private void writeValue(
+        final Schema schema,
+        final int value
+    ) {
+      switch (schema.getType()) {
+        case SIGNED_16:
+        case SIGNED_32:
+        case SIGNED_64:
+        case FLOAT_32:
+        case FLOAT_64:
+        case BOOLEAN: {
+          mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+          mMethod.visitVarInsn(Opcodes.ALOAD, value);
+          unbox(schema.getType());
+          writePrimitive(schema.getType());
+          break;
+        }
+        case STRING: {
+          mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+          mMethod.visitVarInsn(Opcodes.ALOAD, value);
+          mMethod.visitTypeInsn(Opcodes.CHECKCAST, "java/lang/String");
+          mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OUTPUT, "writeString", "(Ljava/lang/String;)V", false);
+          break;
+        }
+        case OPTIONAL: {
+          writeOptional(schema, value);
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          if (mFlatten && schema.getSize() <= GeneratedCodecs.MAX_UNROLLED_SIZE) {
+            writeFixedSizeArray(schema, value);
+          } else {
+            delegate(schema, value);
+          }
+          break;
+        }
+        case RECORD: {
+          if (mFlatten
+              && mInlinedRecords.size() < GeneratedCodecs.MAX_INLINE_DEPTH
+              && !mInlinedRecords.contains(schema)) {
+            writeRecord(schema, value);
+          } else {
+            delegate(schema, value);
+          }
+          break;
+        }
+        default: delegate(schema, value);
+      }
+    }
+
+    /** Write the value in the given local with the writer for its Schema. */
+    private void delegate(
+        final Schema schema,
+        final int value
+    ) {
+      mConstants.load(mMethod, forSchema(schema, mKnownSchemas), ValueWriter.class);
+      mMethod.visitVarInsn(Opcodes.ALOAD, value);
+      mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+      mMethod.visitMethodInsn(Opcodes.INVOKEINTERFACE, VALUE_WRITER, "write", WRITE_DESCRIPTOR, true);
+    }
+
+    /**
+     * Records with the Schema instance used to generate the writer are read by field index. Other
+     * records are read by field name.
+     */
+    private void writeRecord(
+        final Schema schema,
+        final int value
+    ) {
+      mInlinedRecords.push(schema);
+      final int record = newLocal();
+      mMethod.visitVarInsn(Opcodes.ALOAD, value);
+      mMethod.visitTypeInsn(Opcodes.CHECKCAST, GENERIC_RECORD);
+      mMethod.visitVarInsn(Opcodes.ASTORE, record);
+
+      final int byIndex = newLocal();
+      final Label byName = new Label();
+      final Label byIndexDone = new Label();
+      mMethod.visitVarInsn(Opcodes.ALOAD, record);
+      mMethod.visitMethodInsn(
+          Opcodes.INVOKEINTERFACE,
+          GENERIC_RECORD,
+          "getSchema",
+          "()Lorg/ajprax/serialization/schema/Schema;",
+          true
+      );
+      mConstants.load(mMethod, schema, Schema.class);
+      mMethod.visitJumpInsn(Opcodes.IF_ACMPNE, byName);
+      mMethod.visitInsn(Opcodes.ICONST_1);
+      mMethod.visitJumpInsn(Opcodes.GOTO, byIndexDone);
+      mMethod.visitLabel(byName);
+      mMethod.visitInsn(Opcodes.ICONST_0);
+      mMethod.visitLabel(byIndexDone);
+      mMethod.visitVarInsn(Opcodes.ISTORE, byIndex);
+
+      final ImmutableList<String> fieldNames = schema.getFieldSchemas().keySet().asList();
+      final ImmutableList<Schema> fieldSchemas = schema.getFieldSchemas().values().asList();
+      for (int i = 0; i < fieldNames.size(); i++) {
+        final int field = newLocal();
+        final Label getByName = new Label();
+        final Label got = new Label();
+        mMethod.visitVarInsn(Opcodes.ILOAD, byIndex);
+        mMethod.visitJumpInsn(Opcodes.IFEQ, getByName);
+        mMethod.visitVarInsn(Opcodes.ALOAD, record);
+        GeneratedCodecs.pushInt(mMethod, i);
+        mMethod.visitMethodInsn(Opcodes.INVOKEINTERFACE, GENERIC_RECORD, "get", "(I)Ljava/lang/Object;", true);
+        mMethod.visitJumpInsn(Opcodes.GOTO, got);
+        mMethod.visitLabel(getByName);
+        mMethod.visitVarInsn(Opcodes.ALOAD, record);
+        mMethod.visitLdcInsn(fieldNames.get(i));
+        mMethod.visitMethodInsn(
+            Opcodes.INVOKEINTERFACE,
+            GENERIC_RECORD,
+            "get",
+            "(Ljava/lang/String;)Ljava/lang/Object;",
+            true
+        );
+        mMethod.visitLabel(got);
+        mMethod.visitVarInsn(Opcodes.ASTORE, field);
+        writeValue(fieldSchemas.get(i), field);
+      }
+      mInlinedRecords.pop();
+    }
+
+    private void writeOptional(
+        final Schema schema,
+        final int value
+    ) {
+      final int optional = newLocal();
+      final Label absent = new Label();
+      final Label done = new Label();
+      mMethod.visitVarInsn(Opcodes.ALOAD, value);
+      mMethod.visitTypeInsn(Opcodes.CHECKCAST, OPTIONAL);
+      mMethod.visitVarInsn(Opcodes.ASTORE, optional);
+      mMethod.visitVarInsn(Opcodes.ALOAD, optional);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OPTIONAL, "isPresent", "()Z", false);
+      mMethod.visitJumpInsn(Opcodes.IFEQ, absent);
+
+      mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+      mMethod.visitInsn(Opcodes.ICONST_1);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OUTPUT, "writeBoolean", "(Z)V", false);
+      final int element = newLocal();
+      mMethod.visitVarInsn(Opcodes.ALOAD, optional);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OPTIONAL, "get", "()Ljava/lang/Object;", false);
+      mMethod.visitVarInsn(Opcodes.ASTORE, element);
+      writeValue(schema.getElementSchema(), element);
+      mMethod.visitJumpInsn(Opcodes.GOTO, done);
+
+      mMethod.visitLabel(absent);
+      mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+      mMethod.visitInsn(Opcodes.ICONST_0);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OUTPUT, "writeBoolean", "(Z)V", false);
+      mMethod.visitLabel(done);
+    }
+
+    /**
+     * Unrolled FIXED_SIZE_ARRAY. Lists from {@link org.ajprax.serialization.generic.impl.PrimitiveLists}
+     * with a matching element type are written from their backing arrays.
+     */
+    private void writeFixedSizeArray(
+        final Schema schema,
+        final int value
+    ) {
+      final Schema elementSchema = schema.getElementSchema();
+      final int size = schema.getSize();
+      final int list = newLocal();
+      mMethod.visitVarInsn(Opcodes.ALOAD, value);
+      mMethod.visitTypeInsn(Opcodes.CHECKCAST, LIST);
+      mMethod.visitVarInsn(Opcodes.ASTORE, list);
+      mMethod.visitVarInsn(Opcodes.ALOAD, list);
+      GeneratedCodecs.pushInt(mMethod, size);
+      mMethod.visitMethodInsn(
+          Opcodes.INVOKESTATIC,
+          Type.getInternalName(GeneratedBinaryEncoders.class),
+          "checkFixedSize",
+          "(Ljava/util/List;I)V",
+          false
+      );
+
+      final Label done = new Label();
+      final Class<?> primitiveList = GeneratedCodecs.primitiveList(elementSchema.getType());
+      if (null != primitiveList) {
+        final Label boxed = new Label();
+        final String listName = Type.getInternalName(primitiveList);
+        final String arrayDescriptor = "[" + GeneratedCodecs.primitiveDescriptor(elementSchema.getType());
+        final int array = newLocal();
+        mMethod.visitVarInsn(Opcodes.ALOAD, list);
+        mMethod.visitTypeInsn(Opcodes.INSTANCEOF, listName);
+        mMethod.visitJumpInsn(Opcodes.IFEQ, boxed);
+        mMethod.visitVarInsn(Opcodes.ALOAD, list);
+        mMethod.visitTypeInsn(Opcodes.CHECKCAST, listName);
+        mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, listName, "getArray", "()" + arrayDescriptor, false);
+        mMethod.visitVarInsn(Opcodes.ASTORE, array);
+        for (int i = 0; i < size; i++) {
+          mMethod.visitVarInsn(Opcodes.ALOAD, OUTPUT_LOCAL);
+          mMethod.visitVarInsn(Opcodes.ALOAD, array);
+          GeneratedCodecs.pushInt(mMethod, i);
+          mMethod.visitInsn(Type.getType(arrayDescriptor).getElementType().getOpcode(Opcodes.IALOAD));
+          writePrimitive(elementSchema.getType());
+        }
+        mMethod.visitJumpInsn(Opcodes.GOTO, done);
+        mMethod.visitLabel(boxed);
+      }
+      final int element = newLocal();
+      for (int i = 0; i < size; i++) {
+        mMethod.visitVarInsn(Opcodes.ALOAD, list);
+        GeneratedCodecs.pushInt(mMethod, i);
+        mMethod.visitMethodInsn(Opcodes.INVOKEINTERFACE, LIST, "get", "(I)Ljava/lang/Object;", true);
+        mMethod.visitVarInsn(Opcodes.ASTORE, element);
+        writeValue(elementSchema, element);
+      }
+      mMethod.visitLabel(done);
+    }
+
+    /** Unbox the value on top of the stack to the primitive type of a Schema type. */
+    private void unbox(
+        final Schema.Type type
+    ) {
+      final String boxed;
+      final String method;
+      switch (type) {
+        case SIGNED_16: boxed = "java/lang/Short"; method = "shortValue"; break;
+        case SIGNED_32: boxed = "java/lang/Integer"; method = "intValue"; break;
+        case SIGNED_64: boxed = "java/lang/Long"; method = "longValue"; break;
+        case FLOAT_32: boxed = "java/lang/Float"; method = "floatValue"; break;
+        case FLOAT_64: boxed = "java/lang/Double"; method = "doubleValue"; break;
+        case BOOLEAN: boxed = "java/lang/Boolean"; method = "booleanValue"; break;
+        default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+      }
+      mMethod.visitTypeInsn(Opcodes.CHECKCAST, boxed);
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxed, method, "()" + GeneratedCodecs.primitiveDescriptor(type), false);
+    }
+
+    /** Write the primitive on top of the stack to the BinaryOutput below it. */
+    private void writePrimitive(
+        final Schema.Type type
+    ) {
+      final String method;
+      final String descriptor;
+      switch (type) {
+        case SIGNED_16:
+        case SIGNED_32: method = "writeZigZag32"; descriptor = "(I)V"; break;
+        case SIGNED_64: method = "writeZigZag64"; descriptor = "(J)V"; break;
+        case FLOAT_32: method = "writeFloat"; descriptor = "(F)V"; break;
+        case FLOAT_64: method = "writeDouble"; descriptor = "(D)V"; break;
+        case BOOLEAN: method = "writeBoolean"; descriptor = "(Z)V"; break;
+        default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+      }
+      mMethod.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OUTPUT, method, descriptor, false);
+    }
+  }
+
+  private GeneratedBinaryEncoders() { }
+}
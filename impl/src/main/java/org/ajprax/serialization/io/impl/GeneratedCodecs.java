@@ -0,0 +1,266 @@
+package org.ajprax.serialization.io.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.BooleanList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.DoubleList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.FloatList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.IntList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.LongList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.ShortList;
+import org.ajprax.serialization.schema.Schema;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Support for codecs compiled to bytecode at runtime.
+ *
+ * Each generated class is defined by its own class loader so that it can be unloaded once the codec
+ * which uses it is discarded. Because the defining loader differs from the loader of this package,
+ * generated code may only reference public classes and members.
+ *
+ * Objects used by generated code, such as Schemas and delegate codecs, are passed to the generated
+ * constructor in an Object array and stored in typed final fields.
+ */
+final class GeneratedCodecs {
+
+  /** Package into which generated classes are defined. */
+  private static final String GENERATED_PACKAGE = "org/ajprax/serialization/io/impl/generated/";
+
+  private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+  /**
+   * Records with nested records deeper than this are not flattened further, the deeper records are
+   * written by separately generated classes.
+   */
+  static final int MAX_INLINE_DEPTH = 8;
+
+  /** FIXED_SIZE_ARRAYs with at most this many elements are unrolled. */
+  static final int MAX_UNROLLED_SIZE = 16;
+
+  /**
+   * Generated methods with more than this many bytes of bytecode are not used. HotSpot does not JIT
+   * compile methods with more than 8000 bytes of bytecode, so a larger generated method would
+   * always be interpreted.
+   */
+  static final int MAX_METHOD_SIZE = 8000;
+
+  /**
+   * @param prefix Prefix of the class name describing the generated codec.
+   * @param schemaName Name of the Schema for which the class is generated.
+   * @return A unique internal name for a generated class.
+   */
+  static String className(
+      final String prefix,
+      final String schemaName
+  ) {
+    return GENERATED_PACKAGE
+        + prefix
+        + "$"
+        + schemaName.replaceAll("[^A-Za-z0-9_]", "_")
+        + "$"
+        + CLASS_COUNTER.incrementAndGet();
+  }
+
+  /**
+   * @param type SIGNED_16, SIGNED_32, SIGNED_64, FLOAT_32, FLOAT_64 or BOOLEAN.
+   * @return The descriptor of the Java primitive type of a Schema type.
+   */
+  static String primitiveDescriptor(
+      final Schema.Type type
+  ) {
+    switch (type) {
+      case SIGNED_16: return "S";
+      case SIGNED_32: return "I";
+      case SIGNED_64: return "J";
+      case FLOAT_32: return "F";
+      case FLOAT_64: return "D";
+      case BOOLEAN: return "Z";
+      default: throw new RuntimeException(String.format("Not a primitive type: '%s'", type));
+    }
+  }
+
+  /**
+   * @param type Element Schema type.
+   * @return The {@link PrimitiveLists} class for elements of the given type, or null if there is
+   *     none.
+   */
+  static Class<?> primitiveList(
+      final Schema.Type type
+  ) {
+    switch (type) {
+      case SIGNED_16: return ShortList.class;
+      case SIGNED_32: return IntList.class;
+      case SIGNED_64: return LongList.class;
+      case FLOAT_32: return FloatList.class;
+      case FLOAT_64: return DoubleList.class;
+      case BOOLEAN: return BooleanList.class;
+      default: return null;
+    }
+  }
+
+  /** ClassWriter which computes frames using the class loader of this package. */
+  static ClassWriter classWriter() {
+    return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+      @Override
+      protected ClassLoader getClassLoader() {
+        return GeneratedCodecs.class.getClassLoader();
+      }
+    };
+  }
+
+  /**
+   * Push an int constant using the shortest instruction.
+   *
+   * @param mv MethodVisitor to which to write the instruction.
+   * @param value Value to push.
+   */
+  static void pushInt(
+      final MethodVisitor mv,
+      final int value
+  ) {
+    if (value >= -1 && value <= 5) {
+      mv.visitInsn(Opcodes.ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(Opcodes.BIPUSH, value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      mv.visitIntInsn(Opcodes.SIPUSH, value);
+    } else {
+      mv.visitLdcInsn(value);
+    }
+  }
+
+  /**
+   * Objects referenced by a generated class. Each constant is stored in a final field of the
+   * generated class named "c" followed by its index.
+   */
+  static final class Constants {
+
+    private final String mClassName;
+    private final List<Object> mValues = Lists.newArrayList();
+    private final List<Class<?>> mTypes = Lists.newArrayList();
+
+    Constants(
+        final String className
+    ) {
+      mClassName = className;
+    }
+
+    /**
+     * Push a constant onto the stack of a method of the generated class. Each distinct instance is
+     * stored once.
+     *
+     * @param mv MethodVisitor of an instance method of the generated class.
+     * @param value Value of the constant.
+     * @param type Public type of the field in which to store the constant.
+     */
+    void load(
+        final MethodVisitor mv,
+        final Object value,
+        final Class<?> type
+    ) {
+      int index = 0;
+      while (index < mValues.size() && (mValues.get(index) != value || mTypes.get(index) != type)) {
+        index++;
+      }
+      if (index == mValues.size()) {
+        mValues.add(value);
+        mTypes.add(type);
+      }
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitFieldInsn(Opcodes.GETFIELD, mClassName, "c" + index, Type.getDescriptor(type));
+    }
+
+    /**
+     * Write the constant fields and a public constructor which takes the constant values as an
+     * Object array.
+     *
+     * @param cw ClassWriter of the generated class.
+     */
+    void writeFieldsAndConstructor(
+        final ClassWriter cw
+    ) {
+      for (int i = 0; i < mTypes.size(); i++) {
+        cw.visitField(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL,
+            "c" + i,
+            Type.getDescriptor(mTypes.get(i)),
+            null,
+            null
+        ).visitEnd();
+      }
+      final MethodVisitor mv = cw.visitMethod(
+          Opcodes.ACC_PUBLIC,
+          "<init>",
+          "([Ljava/lang/Object;)V",
+          null,
+          null
+      );
+      mv.visitCode();
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+      for (int i = 0; i < mTypes.size(); i++) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        pushInt(mv, i);
+        mv.visitInsn(Opcodes.AALOAD);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(mTypes.get(i)));
+        mv.visitFieldInsn(Opcodes.PUTFIELD, mClassName, "c" + i, Type.getDescriptor(mTypes.get(i)));
+      }
+      mv.visitInsn(Opcodes.RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    /**
+     * Define a generated class and construct an instance with these constants.
+     *
+     * @param bytecode Bytecode of the generated class.
+     * @param <T> Type of the instance.
+     * @return A new instance of the generated class.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T instantiate(
+        final byte[] bytecode
+    ) {
+      final Class<?> generated =
+          new GeneratedClassLoader(GeneratedCodecs.class.getClassLoader()).define(mClassName, bytecode);
+      try {
+        return (T) generated.getConstructor(Object[].class).newInstance((Object) mValues.toArray());
+      } catch (NoSuchMethodException
+          | InstantiationException
+          | IllegalAccessException
+          | InvocationTargetException e) {
+        throw new IllegalStateException(
+            String.format("Could not instantiate generated class: '%s'.", mClassName),
+            e
+        );
+      }
+    }
+  }
+
+  /** Class loader which defines a single generated class. */
+  private static final class GeneratedClassLoader extends ClassLoader {
+
+    private GeneratedClassLoader(
+        final ClassLoader parent
+    ) {
+      super(parent);
+    }
+
+    private Class<?> define(
+        final String internalName,
+        final byte[] bytecode
+    ) {
+      return defineClass(internalName.replace('/', '.'), bytecode, 0, bytecode.length);
+    }
+  }
+
+  private GeneratedCodecs() { }
+}
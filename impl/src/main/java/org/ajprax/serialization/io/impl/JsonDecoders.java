@@ -12,6 +12,8 @@ import com.fasterxml.jackson.core.Base64Variants;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.BinaryNode;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -22,8 +24,11 @@ import org.ajprax.serialization.generic.GenericUnion;
 import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
 import org.ajprax.serialization.generic.impl.GenericRecordImpl;
 import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.LazyGenericRecord;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
 import org.ajprax.serialization.io.JsonDecoder;
 import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 public class JsonDecoders {
@@ -36,17 +41,43 @@ public class JsonDecoders {
 
   public static final class JsonDecoderImplFactory implements JsonDecoderFactory {
 
+    private final CodecCache<JsonDecoder<Object>> mCache = CodecCache.create(
+        schema -> JsonDecoders.forSchema(schema, Maps.newHashMap())
+    );
+    private final CodecCache<JsonDecoder<Object>> mLazyCache = CodecCache.create(
+        schema -> JsonDecoders.lazyForSchema(schema, Maps.newHashMap())
+    );
+    private final ResolutionCache<JsonDecoder<Object>> mResolutionCache =
+        ResolutionCache.create(JsonResolvingDecoders::forEvolution);
+
     @Override
     public <T> JsonDecoder<T> forSchema(final Schema schema) {
-      return cast(JsonDecoders.forSchema(schema, Maps.newHashMap()));
+      return cast(mCache.get(schema));
+    }
+
+    @Override
+    public <T> JsonDecoder<T> lazyForSchema(final Schema schema) {
+      return cast(mLazyCache.get(schema));
+    }
+
+    @Override
+    public <T> JsonDecoder<T> forSchemas(final Schema writerSchema, final Schema readerSchema) {
+      return cast(mResolutionCache.get(writerSchema, readerSchema));
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
     }
   }
 
-  private static final class PlaceholderJsonDecoder implements JsonDecoder<Object> {
+  static final class PlaceholderJsonDecoder implements JsonDecoder<Object> {
 
     private JsonDecoder<Object> mDelegate = null;
 
-    private void fill(
+    void fill(
         final JsonDecoder<Object> delegate
     ) {
       mDelegate = delegate;
@@ -62,10 +93,52 @@ public class JsonDecoders {
       );
       return mDelegate.decode(input);
     }
+
+    @Override
+    public Object decode(
+        final JsonNode input,
+        final Object reuse
+    ) {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderJsonDecoder which has not been filled."
+      );
+      return mDelegate.decode(input, reuse);
+    }
+  }
+
+  /** Decodes a value, overwriting a previously decoded value in place where possible. */
+  private interface ReusingJsonDecoder<T> {
+    T decode(JsonNode input, T reuse);
+  }
+
+  /**
+   * @param decoder Decoder which accepts a value to reuse.
+   * @return A JsonDecoder which passes a value to reuse, or null if there is none, to the decoder.
+   */
+  private static <T> JsonDecoder<T> reusing(
+      final ReusingJsonDecoder<T> decoder
+  ) {
+    return new JsonDecoder<T>() {
+      @Override
+      public T decode(
+          final JsonNode input
+      ) {
+        return decoder.decode(input, null);
+      }
+
+      @Override
+      public T decode(
+          final JsonNode input,
+          final T reuse
+      ) {
+        return decoder.decode(input, reuse);
+      }
+    };
   }
 
   @SuppressWarnings("unchecked")
-  private static <T> JsonDecoder<T> cast(
+  static <T> JsonDecoder<T> cast(
       final JsonDecoder<?> decoder
   ) {
     return (JsonDecoder<T>) decoder;
@@ -108,90 +181,211 @@ public class JsonDecoders {
     };
   }
 
-  private static <T> JsonDecoder<List<T>> array(
+  /**
+   * Decodes a JSON array into a List. Elements of primitive types with a {@link PrimitiveLists}
+   * specialization are decoded into a primitive array.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> JsonDecoder<List<T>> elements(
+      final Schema elementSchema,
       final JsonDecoder<T> tDecoder
   ) {
-    return input -> {
-      Preconditions.checkArgument(input.isArray());
-      final List<T> array = Lists.newArrayList();
-      input.elements().forEachRemaining(elem -> array.add(tDecoder.decode(elem)));
-      return array;
-    };
+    switch (elementSchema.getType()) {
+      case SIGNED_16: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final short[] reused = ReusableValues.shorts(reuse, input.size());
+        final short[] values = (null != reused) ? reused : new short[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).shortValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      case SIGNED_32: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final int[] reused = ReusableValues.ints(reuse, input.size());
+        final int[] values = (null != reused) ? reused : new int[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).intValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      case SIGNED_64: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final long[] reused = ReusableValues.longs(reuse, input.size());
+        final long[] values = (null != reused) ? reused : new long[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).longValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      case FLOAT_32: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final float[] reused = ReusableValues.floats(reuse, input.size());
+        final float[] values = (null != reused) ? reused : new float[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).floatValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      case FLOAT_64: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final double[] reused = ReusableValues.doubles(reuse, input.size());
+        final double[] values = (null != reused) ? reused : new double[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).doubleValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      case BOOLEAN: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final boolean[] reused = ReusableValues.booleans(reuse, input.size());
+        final boolean[] values = (null != reused) ? reused : new boolean[input.size()];
+        for (int i = 0; i < values.length; i++) {
+          values[i] = input.get(i).booleanValue();
+        }
+        return (null != reused) ? reuse : (List<T>) PrimitiveLists.wrap(values);
+      });
+      default: return reusing((input, reuse) -> {
+        Preconditions.checkArgument(input.isArray());
+        final List<T> reused = ReusableValues.list(reuse);
+        if (null != reused) {
+          // elements are decoded over the elements at the same index.
+          final int size = input.size();
+          final int reusable = Math.min(size, reused.size());
+          for (int i = 0; i < reusable; i++) {
+            reused.set(i, tDecoder.decode(input.get(i), reused.get(i)));
+          }
+          for (int i = reusable; i < size; i++) {
+            reused.add(tDecoder.decode(input.get(i)));
+          }
+          ReusableValues.truncate(reused, size);
+          return reused;
+        }
+        final List<T> array = Lists.newArrayListWithCapacity(input.size());
+        input.elements().forEachRemaining(elem -> array.add(tDecoder.decode(elem)));
+        return array;
+      });
+    }
   }
 
-  private static <T> JsonDecoder<List<T>> fixedSizeArray(
+  static <T> JsonDecoder<List<T>> fixedSizeArray(
       final int size,
-      final JsonDecoder<T> tDecoder
+      final JsonDecoder<List<T>> elementsDecoder
   ) {
-    return input -> {
+    return reusing((input, reuse) -> {
       Preconditions.checkArgument(input.isArray());
       Preconditions.checkArgument(input.size() == size);
-      final List<T> array = Lists.newArrayList();
-      input.elements().forEachRemaining(elem -> array.add(tDecoder.decode(elem)));
-      return array;
-    };
+      return elementsDecoder.decode(input, reuse);
+    });
   }
 
-  private static <T> JsonDecoder<Set<T>> set(
+  static <T> JsonDecoder<Set<T>> set(
       final JsonDecoder<T> tDecoder
   ) {
-    return input -> {
+    return reusing((input, reuse) -> {
       Preconditions.checkArgument(input.isArray());
-      final Set<T> set = Sets.newHashSet();
+      final Set<T> reused = ReusableValues.set(reuse);
+      final Set<T> set = (null != reused) ? reused : Sets.newHashSet();
       input.elements().forEachRemaining(elem -> set.add(tDecoder.decode(elem)));
       return set;
-    };
+    });
   }
 
-  private static <K, V> JsonDecoder<Map<K, V>> map(
+  static <K, V> JsonDecoder<Map<K, V>> map(
       final JsonDecoder<K> kDecoder,
       final JsonDecoder<V> vDecoder
   ) {
-    return input -> {
+    return reusing((input, reuse) -> {
       Preconditions.checkArgument(input.isArray());
-      final Map<K, V> map = Maps.newHashMap();
+      final Map<K, V> reused = ReusableValues.map(reuse);
+      final Map<K, V> map = (null != reused) ? reused : Maps.newHashMap();
       input.elements().forEachRemaining(elem -> {
         final K key = kDecoder.decode(elem.get("k"));
         final V value = vDecoder.decode(elem.get("v"));
         map.put(key, value);
       });
       return map;
-    };
+    });
   }
 
   private static JsonDecoder<GenericUnion> union(
       final Schema schema,
       final List<JsonDecoder<Object>> branchDecoders
   ) {
-    return input -> {
+    return reusing((input, reuse) -> {
       Preconditions.checkArgument(input.isObject());
       final int branchIndex = input.get("branch_index").intValue();
-      final Object value = branchDecoders.get(branchIndex).decode(input.get("value"));
+      // the previous value is only reused when it holds the same branch.
+      final Object reusedValue = (null != reuse && reuse.getBranchIndex() == branchIndex) ? reuse.getValue() : null;
+      final Object value = branchDecoders.get(branchIndex).decode(input.get("value"), reusedValue);
       return GenericUnionImpl.create(schema, branchIndex, value);
-    };
+    });
   }
 
-  private static <T> JsonDecoder<Optional<T>> optional(
+  static <T> JsonDecoder<Optional<T>> optional(
       final JsonDecoder<T> tDecoder
   ) {
-    return input -> (input.isNull()) ? Optional.empty() : Optional.of(tDecoder.decode(input));
+    return reusing((input, reuse) -> (input.isNull())
+        ? Optional.empty()
+        : Optional.of(tDecoder.decode(input, (null != reuse) ? reuse.orElse(null) : null)));
   }
 
   private static JsonDecoder<GenericRecord> record(
       final Schema schema,
       final ImmutableMap<String, JsonDecoder<Object>> fieldDecoders
   ) {
-    return input -> {
+    return reusing((input, reuse) -> {
       Preconditions.checkArgument(input.isObject());
-      final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
-      for (String field : schema.getFieldSchemas().keySet()) {
-        builder.put(field, fieldDecoders.get(field).decode(input.get(field)));
+      final ImmutableList<String> fieldNames = schema.getFieldSchemas().keySet().asList();
+      final GenericRecordImpl reused = ReusableValues.record(schema, reuse);
+      final Object[] fieldValues = (null != reused) ? reused.reuseFieldValues() : new Object[fieldNames.size()];
+      for (int i = 0; i < fieldValues.length; i++) {
+        final String field = fieldNames.get(i);
+        // fieldValues[i] is null unless the record is reused.
+        fieldValues[i] = fieldDecoders.get(field).decode(input.get(field), fieldValues[i]);
       }
-      return GenericRecordImpl.create(schema, builder.build());
+      return (null != reused) ? reused : GenericRecordImpl.create(schema, fieldValues);
+    });
+  }
+
+  /** Decodes a record lazily. The record keeps its JsonNode and decodes each field on first use. */
+  private static JsonDecoder<GenericRecord> lazyRecord(
+      final Schema schema,
+      final ImmutableList<JsonDecoder<Object>> fieldDecoders
+  ) {
+    final ImmutableList<String> fieldNames = schema.getFieldSchemas().keySet().asList();
+    return input -> {
+      Preconditions.checkArgument(input.isObject());
+      return LazyGenericRecord.create(
+          schema,
+          fieldIndex -> fieldDecoders.get(fieldIndex).decode(input.get(fieldNames.get(fieldIndex)))
+      );
     };
   }
 
-  private static JsonDecoder<Object> forSchema(
+  /**
+   * Creates a decoder which decodes RECORD values lazily. RECORD fields of lazy records are lazy as
+   * well, records nested in any other Schema are decoded eagerly.
+   *
+   * @param schema Schema for which to build a decoder.
+   * @param knownSchemas Eager decoders already built for Schemas in this tree.
+   * @return A JsonDecoder for the given Schema.
+   */
+  private static JsonDecoder<Object> lazyForSchema(
+      final Schema schema,
+      final Map<Schema, JsonDecoder<Object>> knownSchemas
+  ) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      return forSchema(schema, knownSchemas);
+    }
+    final ImmutableList.Builder<JsonDecoder<Object>> fieldDecoders = ImmutableList.builder();
+    for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+      fieldDecoders.add(lazyForSchema(fieldSchema, knownSchemas));
+    }
+    return cast(lazyRecord(schema, fieldDecoders.build()));
+  }
+
+  static JsonDecoder<Object> forSchema(
       final Schema schema,
       final Map<Schema, JsonDecoder<Object>> knownSchemas
   ) {
@@ -253,14 +447,17 @@ public class JsonDecoders {
           return decoder;
         }
         case ARRAY: {
-          final JsonDecoder<?> decoder = array(forSchema(schema.getElementSchema(), knownSchemas));
+          final JsonDecoder<?> decoder = elements(
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
           knownSchemas.put(schema, cast(decoder));
           return cast(decoder);
         }
         case FIXED_SIZE_ARRAY: {
           final JsonDecoder<?> decoder = fixedSizeArray(
               schema.getSize(),
-              forSchema(schema.getElementSchema(), knownSchemas)
+              elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas))
           );
           knownSchemas.put(schema, cast(decoder));
           return cast(decoder);
@@ -279,10 +476,10 @@ public class JsonDecoders {
           return cast(decoder);
         }
         case UNION: {
-          final List<JsonDecoder<Object>> branchDecoders = Lists.transform(
+          final List<JsonDecoder<Object>> branchDecoders = ImmutableList.copyOf(Lists.transform(
               schema.getBranchSchemas(),
               branchSchema -> forSchema(branchSchema, knownSchemas)
-          );
+          ));
           final JsonDecoder<Object> decoder = cast(union(schema, branchDecoders));
           knownSchemas.put(schema, decoder);
           return decoder;
@@ -293,15 +490,19 @@ public class JsonDecoders {
           return cast(decoder);
         }
         case RECORD: {
-          final PlaceholderJsonDecoder placeholder = new PlaceholderJsonDecoder();
-          knownSchemas.put(schema, placeholder);
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderJsonDecoder> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderJsonDecoder())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
           final Map<String, JsonDecoder<Object>> fieldDecoders = Maps.transformValues(
               schema.getFieldSchemas(),
               fieldSchema -> forSchema(fieldSchema, knownSchemas)
           );
           final JsonDecoder<GenericRecord> decoder = record(schema, ImmutableMap.copyOf(fieldDecoders));
-          placeholder.fill(cast(decoder));
-          return placeholder;
+          placeholder.ifPresent(p -> p.fill(cast(decoder)));
+          knownSchemas.put(schema, cast(decoder));
+          return cast(decoder);
         }
         default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
       }
@@ -2,10 +2,14 @@ package org.ajprax.serialization.io.impl;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -22,25 +26,51 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ShortNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import org.ajprax.serialization.generic.GenericExtension;
 import org.ajprax.serialization.generic.GenericRecord;
 import org.ajprax.serialization.generic.GenericUnion;
 import org.ajprax.serialization.io.JsonEncoder;
 import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
 
 public class JsonEncoders {
 
   // TODO look into how to improve the state of generics in this class.
   // TODO ensure that values which do not match a given schema get a useful error message.
 
+  /** ARRAY and MAP values with at least this many elements are encoded in parallel by parallel encoders. */
+  static final int PARALLEL_THRESHOLD = 8192;
+
+  /** Number of elements encoded by each task of a parallel encode. */
+  private static final int PARALLEL_CHUNK_SIZE = 2048;
+
   public static final class JsonEncoderImplFactory implements JsonEncoderFactory {
 
+    private final CodecCache<JsonEncoder<Object>> mCache = CodecCache.create(
+        schema -> JsonEncoders.forSchema(schema, Maps.newHashMap(), null)
+    );
+
     @Override
     public <T> JsonEncoder<T> forSchema(final Schema schema) {
-      return cast(JsonEncoders.forSchema(schema, Maps.newHashMap()));
+      return cast(mCache.get(schema));
+    }
+
+    @Override
+    public <T> JsonEncoder<T> parallelForSchema(final Schema schema, final ForkJoinPool pool) {
+      Preconditions.checkNotNull(pool, "Pool may not be null.");
+      return cast(JsonEncoders.forSchema(schema, Maps.newHashMap(), pool));
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
     }
   }
 
@@ -88,13 +118,25 @@ public class JsonEncoders {
       b -> (b) ? BooleanNode.getTrue() : BooleanNode.getFalse();
   private static final JsonEncoder<String> STRING = TextNode::new;
 
-  private static <T extends Enum<T>> JsonEncoder<T> enumm(
-      final String enumName
+  /**
+   * Accepts either Java enum constants or symbol Strings so that values produced by
+   * {@link JsonDecoders} may be written back.
+   */
+  private static JsonEncoder<Object> enumm(
+      final Schema schema
   ) {
+    final ImmutableSet<String> symbols = schema.getEnumSymbols();
     return input -> {
+      final String symbol = (input instanceof Enum) ? ((Enum<?>) input).name() : (String) input;
+      Preconditions.checkArgument(
+          symbols.contains(symbol),
+          "Symbol: '%s' is not a member of enum: '%s'.",
+          symbol,
+          schema.getName()
+      );
       final ObjectNode obj = JsonUtils.MAPPER.createObjectNode();
-      obj.put("name", new TextNode(enumName));
-      obj.put("value", new TextNode(input.name()));
+      obj.put("name", new TextNode(schema.getName()));
+      obj.put("value", new TextNode(symbol));
       return obj;
     };
   }
@@ -110,10 +152,86 @@ public class JsonEncoders {
     };
   }
 
-  private static <T> JsonEncoder<List<T>> array(
+  /**
+   * Encodes a range of elements into the same range of an output array, splitting the range in
+   * halves as separate tasks until it is at most {@link #PARALLEL_CHUNK_SIZE} elements.
+   */
+  private static final class EncodeElements<T> extends RecursiveAction {
+
+    private final JsonEncoder<T> mEncoder;
+    private final Object[] mInput;
+    private final JsonNode[] mOutput;
+    private final int mStart;
+    private final int mEnd;
+
+    private EncodeElements(
+        final JsonEncoder<T> encoder,
+        final Object[] input,
+        final JsonNode[] output,
+        final int start,
+        final int end
+    ) {
+      mEncoder = encoder;
+      mInput = input;
+      mOutput = output;
+      mStart = start;
+      mEnd = end;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void compute() {
+      if (mEnd - mStart <= PARALLEL_CHUNK_SIZE) {
+        for (int i = mStart; i < mEnd; i++) {
+          mOutput[i] = mEncoder.encode((T) mInput[i]);
+        }
+      } else {
+        final int middle = (mStart + mEnd) >>> 1;
+        invokeAll(
+            new EncodeElements<>(mEncoder, mInput, mOutput, mStart, middle),
+            new EncodeElements<>(mEncoder, mInput, mOutput, middle, mEnd)
+        );
+      }
+    }
+  }
+
+  /**
+   * Encode elements on a pool and collect them into an array in their original order.
+   *
+   * @param pool Pool on which to encode.
+   * @param elements Elements to encode.
+   * @param tEncoder Encoder for each element, which must be safe to use from several threads.
+   * @return An array of the encoded elements.
+   */
+  private static <T> ArrayNode encodeInParallel(
+      final ForkJoinPool pool,
+      final Object[] elements,
       final JsonEncoder<T> tEncoder
+  ) {
+    final JsonNode[] encoded = new JsonNode[elements.length];
+    final EncodeElements<T> task = new EncodeElements<>(tEncoder, elements, encoded, 0, elements.length);
+    if (ForkJoinTask.getPool() == pool) {
+      // nested collections are encoded by the task which encodes their parent.
+      task.invoke();
+    } else {
+      pool.invoke(task);
+    }
+    return JsonUtils.MAPPER.createArrayNode().addAll(Arrays.asList(encoded));
+  }
+
+  /**
+   * @param tEncoder Encoder for each element.
+   * @param pool Pool on which to encode values of at least {@link #PARALLEL_THRESHOLD} elements, or
+   *     null to encode all values on the calling thread.
+   */
+  private static <T> JsonEncoder<List<T>> array(
+      final JsonEncoder<T> tEncoder,
+      final ForkJoinPool pool
   ) {
     return input -> {
+      if (null != pool && input.size() >= PARALLEL_THRESHOLD) {
+        return encodeInParallel(pool, input.toArray(), tEncoder);
+      }
       final ArrayNode array = JsonUtils.MAPPER.createArrayNode();
       for (final T t : input) {
         array.add(tEncoder.encode(t));
@@ -154,18 +272,31 @@ public class JsonEncoders {
     };
   }
 
+  /**
+   * @param kEncoder Encoder for each key.
+   * @param vEncoder Encoder for each value.
+   * @param pool Pool on which to encode values of at least {@link #PARALLEL_THRESHOLD} entries, or
+   *     null to encode all values on the calling thread.
+   */
   private static <K, V> JsonEncoder<Map<K, V>> map(
       final JsonEncoder<K> kEncoder,
-      final JsonEncoder<V> vEncoder
+      final JsonEncoder<V> vEncoder,
+      final ForkJoinPool pool
   ) {
+    final JsonEncoder<Map.Entry<K, V>> entryEncoder = entry -> {
+      final ObjectNode object = JsonUtils.MAPPER.createObjectNode();
+      object.set("k", kEncoder.encode(entry.getKey()));
+      object.set("v", vEncoder.encode(entry.getValue()));
+      return object;
+    };
     return input -> {
       // TODO should maps be encoded as an object which indicates the intended unicity of keys?
+      if (null != pool && input.size() >= PARALLEL_THRESHOLD) {
+        return encodeInParallel(pool, input.entrySet().toArray(), entryEncoder);
+      }
       final ArrayNode array = JsonUtils.MAPPER.createArrayNode();
       for (final Map.Entry<K, V> entry : input.entrySet()) {
-        final ObjectNode object = JsonUtils.MAPPER.createObjectNode();
-        object.set("k", kEncoder.encode(entry.getKey()));
-        object.set("v", vEncoder.encode(entry.getValue()));
-        array.add(object);
+        array.add(entryEncoder.encode(entry));
       }
       return array;
     };
@@ -209,11 +340,14 @@ public class JsonEncoders {
    *
    * @param schema Schema for which to builder an encoder.
    * @param knownSchemas Schemas which have already been seen during the creation of this encoder.
+   * @param pool Pool on which to encode large ARRAY and MAP values, or null to encode them on the
+   *     calling thread.
    * @return A JsonEncoder for the given Schema.
    */
   private static JsonEncoder<Object> forSchema(
       final Schema schema,
-      final Map<Schema, JsonEncoder<Object>> knownSchemas
+      final Map<Schema, JsonEncoder<Object>> knownSchemas,
+      final ForkJoinPool pool
   ) {
     final JsonEncoder<Object> knownEncoder = knownSchemas.get(schema);
     if (knownEncoder != null) {
@@ -265,68 +399,75 @@ public class JsonEncoders {
           return cast(STRING);
         }
         case ENUM: {
-          final JsonEncoder<Object> encoder = cast(enumm(schema.getName()));
+          final JsonEncoder<Object> encoder = enumm(schema);
           knownSchemas.put(schema, encoder);
           return encoder;
         }
         case EXTENSION: {
-          final JsonEncoder<Object> tagEncoder = forSchema(schema.getTagSchema(), knownSchemas);
+          final JsonEncoder<Object> tagEncoder = forSchema(schema.getTagSchema(), knownSchemas, pool);
           final JsonEncoder<Object> encoder = cast(extension(tagEncoder));
           knownSchemas.put(schema, encoder);
           return encoder;
         }
         case ARRAY: {
-          final JsonEncoder<?> encoder = array(forSchema(schema.getElementSchema(), knownSchemas));
+          final JsonEncoder<?> encoder = array(forSchema(schema.getElementSchema(), knownSchemas, pool), pool);
           knownSchemas.put(schema, cast(encoder));
           return cast(encoder);
         }
         case FIXED_SIZE_ARRAY: {
           final JsonEncoder<?> encoder = fixedSizeArray(
-              forSchema(schema.getElementSchema(), knownSchemas),
+              forSchema(schema.getElementSchema(), knownSchemas, pool),
               schema.getSize()
           );
           knownSchemas.put(schema, cast(encoder));
           return cast(encoder);
         }
         case SET: {
-          final JsonEncoder<?> encoder = set(forSchema(schema.getElementSchema(), knownSchemas));
+          final JsonEncoder<?> encoder = set(forSchema(schema.getElementSchema(), knownSchemas, pool));
           knownSchemas.put(schema, cast(encoder));
           return cast(encoder);
         }
         case MAP: {
           final JsonEncoder<?> encoder = map(
-              forSchema(schema.getKeySchema(), knownSchemas),
-              forSchema(schema.getValueSchema(), knownSchemas)
+              forSchema(schema.getKeySchema(), knownSchemas, pool),
+              forSchema(schema.getValueSchema(), knownSchemas, pool),
+              pool
           );
           knownSchemas.put(schema, cast(encoder));
           return cast(encoder);
         }
         case UNION: {
-          final List<JsonEncoder<Object>> branchEncoders = Lists.transform(
-              schema.getBranchSchemas(),
-              branchSchema -> forSchema(branchSchema, knownSchemas)
-          );
-          final JsonEncoder<Object> encoder = cast(union(branchEncoders));
+          // compiled eagerly, a lazy view would compile branches each time they are used, from
+          // whichever threads use the encoder.
+          final ImmutableList.Builder<JsonEncoder<Object>> branchEncoders = ImmutableList.builder();
+          for (Schema branchSchema : schema.getBranchSchemas()) {
+            branchEncoders.add(forSchema(branchSchema, knownSchemas, pool));
+          }
+          final JsonEncoder<Object> encoder = cast(union(branchEncoders.build()));
           knownSchemas.put(schema, encoder);
           return encoder;
         }
         case OPTIONAL: {
           final JsonEncoder<?> encoder = optional(
-              forSchema(schema.getElementSchema(), knownSchemas)
+              forSchema(schema.getElementSchema(), knownSchemas, pool)
           );
           knownSchemas.put(schema, cast(encoder));
           return cast(encoder);
         }
         case RECORD: {
-          final PlaceholderJsonEncoder placeholder = new PlaceholderJsonEncoder();
-          knownSchemas.put(schema, placeholder);
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderJsonEncoder> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderJsonEncoder())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
           final Map<String, JsonEncoder<Object>> fieldEncoders = Maps.transformValues(
               schema.getFieldSchemas(),
-              fieldSchema -> forSchema(fieldSchema, knownSchemas)
+              fieldSchema -> forSchema(fieldSchema, knownSchemas, pool)
           );
           final JsonEncoder<GenericRecord> encoder = record(ImmutableMap.copyOf(fieldEncoders));
-          placeholder.fill(cast(encoder));
-          return placeholder;
+          placeholder.ifPresent(p -> p.fill(cast(encoder)));
+          knownSchemas.put(schema, cast(encoder));
+          return cast(encoder);
         }
         default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
       }
@@ -0,0 +1,214 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.impl.JsonDecoders.PlaceholderJsonDecoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Decoders of the JSON format which decode values written with a writer Schema as values of a
+ * reader Schema by the rules of evolution in {@link SchemaResolution}.
+ *
+ * JSON numbers do not depend on the writer's numeric type, so widened numbers are decoded by the
+ * reader's decoders. Writer union branch indices are mapped to reader branch indices and reader
+ * fields which the writer does not have are decoded as empty.
+ */
+final class JsonResolvingDecoders {
+
+  /**
+   * @param readerSchema Reader RECORD Schema.
+   * @param fieldDecoders Decoder for each reader field, or null for fields which are not in the
+   *     writer Schema.
+   */
+  private static JsonDecoder<Object> record(
+      final Schema readerSchema,
+      final List<JsonDecoder<Object>> fieldDecoders
+  ) {
+    final ImmutableList<String> fieldNames = readerSchema.getFieldSchemas().keySet().asList();
+    return input -> {
+      Preconditions.checkArgument(input.isObject());
+      final Object[] fieldValues = new Object[fieldNames.size()];
+      for (int i = 0; i < fieldValues.length; i++) {
+        final JsonDecoder<Object> fieldDecoder = fieldDecoders.get(i);
+        fieldValues[i] = (null != fieldDecoder)
+            ? fieldDecoder.decode(input.get(fieldNames.get(i)))
+            : Optional.empty();
+      }
+      return GenericRecordImpl.create(readerSchema, fieldValues);
+    };
+  }
+
+  /**
+   * @param writerSchema Writer UNION Schema.
+   * @param readerSchema Reader UNION Schema.
+   * @param readerIndices Reader branch index for each writer branch, or -1 if it cannot be read.
+   * @param branchDecoders Decoder for each writer branch, or null if it cannot be read.
+   */
+  private static JsonDecoder<Object> union(
+      final Schema writerSchema,
+      final Schema readerSchema,
+      final int[] readerIndices,
+      final List<JsonDecoder<Object>> branchDecoders
+  ) {
+    return input -> {
+      Preconditions.checkArgument(input.isObject());
+      final int branchIndex = input.get("branch_index").intValue();
+      Preconditions.checkArgument(
+          branchIndex >= 0 && branchIndex < readerIndices.length && readerIndices[branchIndex] >= 0,
+          "Branch: '%s' of writer union: '%s' cannot be read by reader union: '%s'.",
+          branchIndex,
+          writerSchema.getName(),
+          readerSchema.getName()
+      );
+      final Object value = branchDecoders.get(branchIndex).decode(input.get("value"));
+      return GenericUnionImpl.create(readerSchema, readerIndices[branchIndex], value);
+    };
+  }
+
+  /**
+   * Compiles decoders for one pair of writer and reader Schemas.
+   */
+  private static final class Compiler {
+
+    private final Map<Schema, JsonDecoder<Object>> mDecoders = Maps.newHashMap();
+    private final Map<Map.Entry<Schema, Schema>, JsonDecoder<Object>> mResolved = Maps.newHashMap();
+
+    private JsonDecoder<Object> resolve(
+        final Schema writerSchema,
+        final Schema readerSchema
+    ) {
+      if (writerSchema.equals(readerSchema)) {
+        return JsonDecoders.forSchema(readerSchema, mDecoders);
+      }
+      final Map.Entry<Schema, Schema> key = Maps.immutableEntry(writerSchema, readerSchema);
+      final JsonDecoder<Object> known = mResolved.get(key);
+      if (null != known) {
+        return known;
+      }
+      final JsonDecoder<Object> decoder;
+      if (writerSchema.getType() != readerSchema.getType()) {
+        decoder = resolveType(writerSchema, readerSchema);
+        mResolved.put(key, decoder);
+        return decoder;
+      }
+      switch (readerSchema.getType()) {
+        case ARRAY: {
+          decoder = JsonDecoders.cast(JsonDecoders.elements(
+              readerSchema.getElementSchema(),
+              resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          decoder = JsonDecoders.cast(JsonDecoders.fixedSizeArray(
+              readerSchema.getSize(),
+              JsonDecoders.elements(
+                  readerSchema.getElementSchema(),
+                  resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+              )
+          ));
+          break;
+        }
+        case SET: {
+          decoder = JsonDecoders.cast(JsonDecoders.set(
+              resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case MAP: {
+          decoder = JsonDecoders.cast(JsonDecoders.map(
+              resolve(writerSchema.getKeySchema(), readerSchema.getKeySchema()),
+              resolve(writerSchema.getValueSchema(), readerSchema.getValueSchema())
+          ));
+          break;
+        }
+        case OPTIONAL: {
+          decoder = JsonDecoders.cast(JsonDecoders.optional(
+              resolve(writerSchema.getElementSchema(), readerSchema.getElementSchema())
+          ));
+          break;
+        }
+        case UNION: {
+          final int[] readerIndices = new int[writerSchema.getBranchSchemas().size()];
+          final List<JsonDecoder<Object>> branchDecoders = Lists.newArrayList();
+          for (int i = 0; i < readerIndices.length; i++) {
+            final Schema writerBranch = writerSchema.getBranchSchemas().get(i);
+            readerIndices[i] = SchemaResolution.branchIndex(writerBranch, readerSchema);
+            branchDecoders.add((readerIndices[i] >= 0)
+                ? resolve(writerBranch, readerSchema.getBranchSchemas().get(readerIndices[i]))
+                : null);
+          }
+          decoder = union(writerSchema, readerSchema, readerIndices, branchDecoders);
+          break;
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderJsonDecoder> placeholder =
+              SchemaRecursionHelpers.isRecursive(writerSchema) || SchemaRecursionHelpers.isRecursive(readerSchema)
+                  ? Optional.of(new PlaceholderJsonDecoder())
+                  : Optional.empty();
+          placeholder.ifPresent(p -> mResolved.put(key, p));
+          final List<JsonDecoder<Object>> fieldDecoders = Lists.newArrayList();
+          for (Map.Entry<String, Schema> readerField : readerSchema.getFieldSchemas().entrySet()) {
+            final Schema writerField = writerSchema.getFieldSchemas().get(readerField.getKey());
+            fieldDecoders.add((null != writerField) ? resolve(writerField, readerField.getValue()) : null);
+          }
+          decoder = record(readerSchema, fieldDecoders);
+          placeholder.ifPresent(p -> p.fill(decoder));
+          break;
+        }
+        // ENUMs are not supported by JsonDecoders, which reports the error.
+        default: decoder = JsonDecoders.forSchema(readerSchema, mDecoders);
+      }
+      mResolved.put(key, decoder);
+      return decoder;
+    }
+
+    /** Resolves a writer Schema whose type differs from the type of the reader Schema. */
+    private JsonDecoder<Object> resolveType(
+        final Schema writerSchema,
+        final Schema readerSchema
+    ) {
+      switch (readerSchema.getType()) {
+        case UNION: {
+          final int readerIndex = SchemaResolution.branchIndex(writerSchema, readerSchema);
+          final JsonDecoder<Object> branchDecoder =
+              resolve(writerSchema, readerSchema.getBranchSchemas().get(readerIndex));
+          return input -> GenericUnionImpl.create(readerSchema, readerIndex, branchDecoder.decode(input));
+        }
+        case OPTIONAL: {
+          return JsonDecoders.cast(JsonDecoders.optional(resolve(writerSchema, readerSchema.getElementSchema())));
+        }
+        // widened numbers.
+        default: return JsonDecoders.forSchema(readerSchema, mDecoders);
+      }
+    }
+  }
+
+  /**
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @return A decoder of values written with the writer Schema which produces values of the reader
+   *     Schema by the rules of evolution.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  static JsonDecoder<Object> forEvolution(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    SchemaResolution.checkEvolution(writerSchema, readerSchema);
+    return new Compiler().resolve(writerSchema, readerSchema);
+  }
+
+  private JsonResolvingDecoders() { }
+}
@@ -0,0 +1,625 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericExtension;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Streaming counterparts of {@link JsonDecoders}. Pulls tokens from a JsonParser and builds decoded
+ * values directly, without materializing a JsonNode tree.
+ *
+ * Every reader is called with the parser positioned on the first token of its value and returns
+ * with the parser positioned on the last token of its value.
+ */
+public class JsonStreamingDecoders {
+
+  public static final class JsonStreamingDecoderImplFactory implements JsonStreamingDecoderFactory {
+
+    private final CodecCache<JsonStreamingDecoder<Object>> mCache = CodecCache.create(
+        schema -> new JsonStreamingDecoderImpl<>(schema, JsonStreamingDecoders.forSchema(schema, Maps.newHashMap()))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> JsonStreamingDecoder<T> forSchema(final Schema schema) {
+      return (JsonStreamingDecoder<T>) mCache.get(schema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  private static final class JsonStreamingDecoderImpl<T> implements JsonStreamingDecoder<T> {
+
+    /** Schema of the encoded values. Projections read values encoded with this Schema. */
+    private final Schema mSchema;
+    private final TokenReader<T> mReader;
+    // created on first use, most decoders are never projected.
+    private final Supplier<CodecCache<JsonStreamingDecoder<Object>>> mProjections;
+
+    private JsonStreamingDecoderImpl(
+        final Schema schema,
+        final TokenReader<T> reader
+    ) {
+      mSchema = schema;
+      mReader = reader;
+      mProjections = Suppliers.memoize(() -> CodecCache.create(readerSchema -> {
+        SchemaResolution.checkProjection(mSchema, readerSchema);
+        // records skip the fields they do not have, so the reader Schema's readers suffice.
+        return new JsonStreamingDecoderImpl<>(mSchema, JsonStreamingDecoders.forSchema(readerSchema, Maps.newHashMap()));
+      }));
+    }
+
+    @Override
+    public T decode(
+        final JsonParser parser
+    ) {
+      try {
+        if (null == parser.getCurrentToken()) {
+          parser.nextToken();
+        }
+        return mReader.read(parser);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+
+    @Override
+    public T decode(
+        final InputStream input
+    ) {
+      try (final JsonParser parser = JsonUtils.MAPPER.getFactory().createParser(input)) {
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        parser.nextToken();
+        return mReader.read(parser);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> JsonStreamingDecoder<U> withProjection(
+        final Schema readerSchema
+    ) {
+      return (JsonStreamingDecoder<U>) mProjections.get().get(readerSchema);
+    }
+  }
+
+  /** Reads a single value of a known Schema from a JsonParser. */
+  interface TokenReader<T> {
+    T read(JsonParser parser) throws IOException;
+  }
+
+  /**
+   * Placeholder for a record reader which may read recursive records. Must be filled with a
+   * concrete record reader before it can be used.
+   */
+  private static final class PlaceholderTokenReader implements TokenReader<Object> {
+
+    private TokenReader<Object> mDelegate = null;
+
+    private void fill(
+        final TokenReader<Object> delegate
+    ) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public Object read(
+        final JsonParser parser
+    ) throws IOException {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderTokenReader which has not been filled."
+      );
+      return mDelegate.read(parser);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> TokenReader<T> cast(
+      final TokenReader<?> reader
+  ) {
+    return (TokenReader<T>) reader;
+  }
+
+  private static void expect(
+      final JsonParser parser,
+      final JsonToken expected
+  ) {
+    Preconditions.checkArgument(
+        parser.getCurrentToken() == expected,
+        "Expected token: '%s' but found: '%s'.",
+        expected,
+        parser.getCurrentToken()
+    );
+  }
+
+  private static final TokenReader<Short> SIGNED_16 = JsonParser::getShortValue;
+  private static final TokenReader<Integer> SIGNED_32 = JsonParser::getIntValue;
+  private static final TokenReader<Long> SIGNED_64 = JsonParser::getLongValue;
+  private static final TokenReader<BigInteger> SIGNED_BIG = JsonParser::getBigIntegerValue;
+  private static final TokenReader<Float> FLOAT_32 = JsonParser::getFloatValue;
+  private static final TokenReader<Double> FLOAT_64 = JsonParser::getDoubleValue;
+  private static final TokenReader<BigDecimal> FLOAT_BIG = JsonParser::getDecimalValue;
+  private static final TokenReader<Boolean> BOOLEAN = JsonParser::getBooleanValue;
+  private static final TokenReader<String> STRING = parser -> {
+    expect(parser, JsonToken.VALUE_STRING);
+    return parser.getText();
+  };
+
+  /**
+   * Enums are written as an object with "name" and "value" fields. See {@link EnumValues} for the
+   * values produced.
+   */
+  private static TokenReader<Object> enumm(
+      final Schema schema
+  ) {
+    final ImmutableList<String> symbols = schema.getEnumSymbols().asList();
+    final ImmutableList<Object> values = EnumValues.forSchema(schema);
+    final ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+    for (int i = 0; i < symbols.size(); i++) {
+      builder.put(symbols.get(i), values.get(i));
+    }
+    final ImmutableMap<String, Object> symbolValues = builder.build();
+    return parser -> {
+      expect(parser, JsonToken.START_OBJECT);
+      Object value = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if ("value".equals(fieldName)) {
+          value = symbolValues.get(parser.getText());
+          Preconditions.checkArgument(
+              null != value,
+              "Symbol: '%s' is not a member of enum: '%s'.",
+              parser.getText(),
+              schema.getName()
+          );
+        } else {
+          parser.skipChildren();
+        }
+      }
+      Preconditions.checkArgument(null != value, "Enum is missing field: 'value'.");
+      return value;
+    };
+  }
+
+  private static <TAG> TokenReader<GenericExtension<TAG>> extension(
+      final Schema schema,
+      final TokenReader<TAG> tagReader
+  ) {
+    return parser -> {
+      expect(parser, JsonToken.START_OBJECT);
+      TAG tag = null;
+      byte[] value = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if ("tag".equals(fieldName)) {
+          tag = tagReader.read(parser);
+        } else if ("value".equals(fieldName)) {
+          value = parser.getBinaryValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      Preconditions.checkArgument(null != value, "Extension is missing field: 'value'.");
+      return GenericExtensionImpl.create(schema, tag, value);
+    };
+  }
+
+  /**
+   * Reads a JSON array into a List. Elements of primitive types with a {@link PrimitiveLists}
+   * specialization are read into a primitive array.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> TokenReader<List<T>> elements(
+      final Schema elementSchema,
+      final TokenReader<T> tReader
+  ) {
+    switch (elementSchema.getType()) {
+      case SIGNED_16: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        short[] values = new short[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getShortValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      case SIGNED_32: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        int[] values = new int[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getIntValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      case SIGNED_64: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        long[] values = new long[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getLongValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      case FLOAT_32: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        float[] values = new float[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getFloatValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      case FLOAT_64: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        double[] values = new double[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getDoubleValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      case BOOLEAN: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        boolean[] values = new boolean[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size++] = parser.getBooleanValue();
+        }
+        return (List<T>) PrimitiveLists.wrap(Arrays.copyOf(values, size));
+      };
+      default: return parser -> {
+        expect(parser, JsonToken.START_ARRAY);
+        final List<T> array = Lists.newArrayList();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          array.add(tReader.read(parser));
+        }
+        return array;
+      };
+    }
+  }
+
+  private static <T> TokenReader<List<T>> fixedSizeArray(
+      final int size,
+      final TokenReader<List<T>> elementsReader
+  ) {
+    return parser -> {
+      final List<T> array = elementsReader.read(parser);
+      Preconditions.checkArgument(
+          array.size() == size,
+          "Input size: '%s' does not match fixed size: '%s'.",
+          array.size(),
+          size
+      );
+      return array;
+    };
+  }
+
+  private static <T> TokenReader<Set<T>> set(
+      final TokenReader<T> tReader
+  ) {
+    return parser -> {
+      expect(parser, JsonToken.START_ARRAY);
+      final Set<T> set = Sets.newHashSet();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        set.add(tReader.read(parser));
+      }
+      return set;
+    };
+  }
+
+  private static <K, V> TokenReader<Map<K, V>> map(
+      final TokenReader<K> kReader,
+      final TokenReader<V> vReader
+  ) {
+    return parser -> {
+      expect(parser, JsonToken.START_ARRAY);
+      final Map<K, V> map = Maps.newHashMap();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        expect(parser, JsonToken.START_OBJECT);
+        K key = null;
+        V value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String fieldName = parser.getCurrentName();
+          parser.nextToken();
+          if ("k".equals(fieldName)) {
+            key = kReader.read(parser);
+          } else if ("v".equals(fieldName)) {
+            value = vReader.read(parser);
+          } else {
+            parser.skipChildren();
+          }
+        }
+        map.put(key, value);
+      }
+      return map;
+    };
+  }
+
+  /**
+   * Unions are written with "branch_index" before "value". If "value" arrives first it is buffered
+   * as a tree and decoded once the branch index is known.
+   */
+  private static TokenReader<GenericUnion> union(
+      final Schema schema,
+      final List<TokenReader<Object>> branchReaders
+  ) {
+    return parser -> {
+      expect(parser, JsonToken.START_OBJECT);
+      int branchIndex = -1;
+      boolean hasValue = false;
+      Object value = null;
+      JsonNode bufferedValue = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        if ("branch_index".equals(fieldName)) {
+          branchIndex = parser.getIntValue();
+          Preconditions.checkArgument(
+              branchIndex >= 0 && branchIndex < branchReaders.size(),
+              "Branch index: '%s' is out of range for union: '%s'.",
+              branchIndex,
+              schema.getName()
+          );
+        } else if ("value".equals(fieldName)) {
+          hasValue = true;
+          if (branchIndex >= 0) {
+            value = branchReaders.get(branchIndex).read(parser);
+          } else {
+            bufferedValue = JsonUtils.MAPPER.readTree(parser);
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      Preconditions.checkArgument(branchIndex >= 0, "Union is missing field: 'branch_index'.");
+      Preconditions.checkArgument(hasValue, "Union is missing field: 'value'.");
+      if (null != bufferedValue) {
+        try (final JsonParser bufferedParser = bufferedValue.traverse(JsonUtils.MAPPER)) {
+          bufferedParser.nextToken();
+          value = branchReaders.get(branchIndex).read(bufferedParser);
+        }
+      }
+      return GenericUnionImpl.create(schema, branchIndex, value);
+    };
+  }
+
+  private static <T> TokenReader<Optional<T>> optional(
+      final TokenReader<T> tReader
+  ) {
+    return parser -> (parser.getCurrentToken() == JsonToken.VALUE_NULL)
+        ? Optional.empty()
+        : Optional.of(tReader.read(parser));
+  }
+
+  /**
+   * Fields are expected in the order of the Schema's field schemas, which is the order written by
+   * the encoders. Out of order fields fall back to a lookup by name. Unknown fields are skipped.
+   */
+  private static TokenReader<GenericRecord> record(
+      final Schema schema,
+      final ImmutableList<String> fieldNames,
+      final ImmutableList<TokenReader<Object>> fieldReaders
+  ) {
+    return parser -> {
+      expect(parser, JsonToken.START_OBJECT);
+      final Object[] values = new Object[fieldNames.size()];
+      int expectedIndex = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String fieldName = parser.getCurrentName();
+        parser.nextToken();
+        final int index;
+        if (expectedIndex < fieldNames.size() && fieldNames.get(expectedIndex).equals(fieldName)) {
+          index = expectedIndex;
+        } else {
+          index = schema.getFieldIndex(fieldName);
+          if (index < 0) {
+            parser.skipChildren();
+            continue;
+          }
+        }
+        values[index] = fieldReaders.get(index).read(parser);
+        expectedIndex = index + 1;
+      }
+      for (int i = 0; i < values.length; i++) {
+        Preconditions.checkArgument(
+            null != values[i],
+            "Record: '%s' is missing field: '%s'.",
+            schema.getName(),
+            fieldNames.get(i)
+        );
+      }
+      return GenericRecordImpl.create(schema, values);
+    };
+  }
+
+  private static TokenReader<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, TokenReader<Object>> knownSchemas
+  ) {
+    final TokenReader<Object> knownReader = knownSchemas.get(schema);
+    if (null != knownReader) {
+      return knownReader;
+    } else {
+      switch (schema.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8: throw new UnsupportedOperationException(
+            String.format("Schema type: '%s' is unsupported in Java.", schema.getType())
+        );
+        case SIGNED_16: {
+          knownSchemas.put(schema, cast(SIGNED_16));
+          return cast(SIGNED_16);
+        }
+        case SIGNED_32: {
+          knownSchemas.put(schema, cast(SIGNED_32));
+          return cast(SIGNED_32);
+        }
+        case SIGNED_64: {
+          knownSchemas.put(schema, cast(SIGNED_64));
+          return cast(SIGNED_64);
+        }
+        case SIGNED_BIG: {
+          knownSchemas.put(schema, cast(SIGNED_BIG));
+          return cast(SIGNED_BIG);
+        }
+        case FLOAT_32: {
+          knownSchemas.put(schema, cast(FLOAT_32));
+          return cast(FLOAT_32);
+        }
+        case FLOAT_64: {
+          knownSchemas.put(schema, cast(FLOAT_64));
+          return cast(FLOAT_64);
+        }
+        case FLOAT_BIG: {
+          knownSchemas.put(schema, cast(FLOAT_BIG));
+          return cast(FLOAT_BIG);
+        }
+        case BOOLEAN: {
+          knownSchemas.put(schema, cast(BOOLEAN));
+          return cast(BOOLEAN);
+        }
+        case STRING: {
+          knownSchemas.put(schema, cast(STRING));
+          return cast(STRING);
+        }
+        case ENUM: {
+          final TokenReader<Object> reader = enumm(schema);
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case EXTENSION: {
+          final TokenReader<Object> tagReader = forSchema(schema.getTagSchema(), knownSchemas);
+          final TokenReader<Object> reader = cast(extension(schema, tagReader));
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case ARRAY: {
+          final TokenReader<?> reader = elements(
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case FIXED_SIZE_ARRAY: {
+          final TokenReader<?> reader = fixedSizeArray(
+              schema.getSize(),
+              elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas))
+          );
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case SET: {
+          final TokenReader<?> reader = set(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case MAP: {
+          final TokenReader<?> reader = map(
+              forSchema(schema.getKeySchema(), knownSchemas),
+              forSchema(schema.getValueSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case UNION: {
+          final List<TokenReader<Object>> branchReaders = ImmutableList.copyOf(Lists.transform(
+              schema.getBranchSchemas(),
+              branchSchema -> forSchema(branchSchema, knownSchemas)
+          ));
+          final TokenReader<Object> reader = cast(union(schema, branchReaders));
+          knownSchemas.put(schema, reader);
+          return reader;
+        }
+        case OPTIONAL: {
+          final TokenReader<?> reader = optional(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderTokenReader> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderTokenReader())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+          final ImmutableList.Builder<TokenReader<Object>> fieldReaders = ImmutableList.builder();
+          for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+            fieldReaders.add(forSchema(fieldSchema, knownSchemas));
+          }
+          final TokenReader<GenericRecord> reader = record(
+              schema,
+              schema.getFieldSchemas().keySet().asList(),
+              fieldReaders.build()
+          );
+          placeholder.ifPresent(p -> p.fill(cast(reader)));
+          knownSchemas.put(schema, cast(reader));
+          return cast(reader);
+        }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+      }
+    }
+  }
+
+  private JsonStreamingDecoders() { }
+}
@@ -0,0 +1,552 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.GenericExtension;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.BooleanList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.DoubleList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.FloatList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.IntList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.LongList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.ShortList;
+import org.ajprax.serialization.io.EncoderContext;
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Streaming counterparts of {@link JsonEncoders}. Writes the same JSON structure token by token to
+ * a JsonGenerator without materializing intermediate JsonNodes.
+ */
+public class JsonStreamingEncoders {
+
+  public static final class JsonStreamingEncoderImplFactory implements JsonStreamingEncoderFactory {
+
+    private final CodecCache<JsonStreamingEncoder<Object>> mCache = CodecCache.create(
+        schema -> new JsonStreamingEncoderImpl<>(JsonStreamingEncoders.forSchema(schema, Maps.newHashMap()))
+    );
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> JsonStreamingEncoder<T> forSchema(final Schema schema) {
+      return (JsonStreamingEncoder<T>) mCache.get(schema);
+    }
+
+    /**
+     * @return Hit and miss statistics for this factory's codec cache.
+     */
+    public CacheStats cacheStats() {
+      return mCache.stats();
+    }
+  }
+
+  private static final class JsonStreamingEncoderImpl<T> implements JsonStreamingEncoder<T> {
+
+    private final TokenWriter<T> mWriter;
+
+    private JsonStreamingEncoderImpl(
+        final TokenWriter<T> writer
+    ) {
+      mWriter = writer;
+    }
+
+    @Override
+    public void encode(
+        final T input,
+        final JsonGenerator generator
+    ) {
+      try {
+        mWriter.write(input, generator);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+
+    @Override
+    public void encode(
+        final T input,
+        final OutputStream output
+    ) {
+      try (final JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(output)) {
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        mWriter.write(input, generator);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    }
+
+    @Override
+    public void encode(
+        final T input,
+        final OutputStream output,
+        final EncoderContext context
+    ) {
+      final EncoderContextImpl contextImpl = EncoderContextImpl.of(context);
+      try {
+        writeToContext(input, contextImpl).writeTo(output);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      } finally {
+        contextImpl.release();
+      }
+    }
+
+    @Override
+    public byte[] encode(
+        final T input,
+        final EncoderContext context
+    ) {
+      final EncoderContextImpl contextImpl = EncoderContextImpl.of(context);
+      try {
+        return writeToContext(input, contextImpl).toByteArray();
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      } finally {
+        contextImpl.release();
+      }
+    }
+
+    /**
+     * @param input Value to encode.
+     * @param context Context into whose output to write.
+     * @return The context's output holding exactly the JSON of the given value.
+     */
+    private BinaryOutput writeToContext(
+        final T input,
+        final EncoderContextImpl context
+    ) throws IOException {
+      final BinaryOutput output = context.output();
+      final JsonGenerator generator = context.generator();
+      try {
+        mWriter.write(input, generator);
+        generator.flush();
+      } catch (IOException | RuntimeException e) {
+        // the generator may be left in the middle of a value.
+        context.discardGenerator();
+        throw e;
+      }
+      return output;
+    }
+  }
+
+  /** Writes the tokens of a single value of a known Schema to a JsonGenerator. */
+  interface TokenWriter<T> {
+    void write(T input, JsonGenerator generator) throws IOException;
+  }
+
+  /**
+   * Placeholder for a record writer which may write recursive records. Must be filled with a
+   * concrete record writer before it can be used.
+   */
+  private static final class PlaceholderTokenWriter implements TokenWriter<Object> {
+
+    private TokenWriter<Object> mDelegate = null;
+
+    private void fill(
+        final TokenWriter<Object> delegate
+    ) {
+      mDelegate = delegate;
+    }
+
+    @Override
+    public void write(
+        final Object input,
+        final JsonGenerator generator
+    ) throws IOException {
+      Preconditions.checkState(
+          null != mDelegate,
+          "Cannot use a PlaceholderTokenWriter which has not been filled."
+      );
+      mDelegate.write(input, generator);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> TokenWriter<T> cast(
+      final TokenWriter<?> writer
+  ) {
+    return (TokenWriter<T>) writer;
+  }
+
+  private static final TokenWriter<Short> SIGNED_16 = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<Integer> SIGNED_32 = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<Long> SIGNED_64 = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<BigInteger> SIGNED_BIG = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<Float> FLOAT_32 = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<Double> FLOAT_64 = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<BigDecimal> FLOAT_BIG = (input, generator) -> generator.writeNumber(input);
+  private static final TokenWriter<Boolean> BOOLEAN = (input, generator) -> generator.writeBoolean(input);
+  private static final TokenWriter<String> STRING = (input, generator) -> generator.writeString(input);
+
+  /**
+   * Enums are written as an object with "name" and "value" fields. Accepts either Java enum
+   * constants or symbol Strings so that values produced by {@link JsonStreamingDecoders} may be
+   * written back.
+   */
+  private static TokenWriter<Object> enumm(
+      final Schema schema
+  ) {
+    final ImmutableSet<String> symbols = schema.getEnumSymbols();
+    return (input, generator) -> {
+      final String symbol = (input instanceof Enum) ? ((Enum<?>) input).name() : (String) input;
+      Preconditions.checkArgument(
+          symbols.contains(symbol),
+          "Symbol: '%s' is not a member of enum: '%s'.",
+          symbol,
+          schema.getName()
+      );
+      generator.writeStartObject();
+      generator.writeStringField("name", schema.getName());
+      generator.writeStringField("value", symbol);
+      generator.writeEndObject();
+    };
+  }
+
+  private static <TAG> TokenWriter<GenericExtension<TAG>> extension(
+      final TokenWriter<TAG> tagWriter
+  ) {
+    return (input, generator) -> {
+      generator.writeStartObject();
+      generator.writeFieldName("tag");
+      tagWriter.write(input.getTag(), generator);
+      generator.writeBinaryField("value", input.getValue());
+      generator.writeEndObject();
+    };
+  }
+
+  /**
+   * Writes the elements of a List as a JSON array. Lists from {@link PrimitiveLists} with a
+   * matching element type are written from their backing arrays without unboxing.
+   */
+  private static <T> TokenWriter<List<T>> elements(
+      final Schema elementSchema,
+      final TokenWriter<T> tWriter
+  ) {
+    final TokenWriter<List<T>> boxed = (input, generator) -> {
+      generator.writeStartArray();
+      for (final T t : input) {
+        tWriter.write(t, generator);
+      }
+      generator.writeEndArray();
+    };
+    switch (elementSchema.getType()) {
+      case SIGNED_16: return (input, generator) -> {
+        if (input instanceof ShortList) {
+          generator.writeStartArray();
+          for (short value : ((ShortList) input).getArray()) {
+            generator.writeNumber(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      case SIGNED_32: return (input, generator) -> {
+        if (input instanceof IntList) {
+          generator.writeStartArray();
+          for (int value : ((IntList) input).getArray()) {
+            generator.writeNumber(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      case SIGNED_64: return (input, generator) -> {
+        if (input instanceof LongList) {
+          generator.writeStartArray();
+          for (long value : ((LongList) input).getArray()) {
+            generator.writeNumber(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      case FLOAT_32: return (input, generator) -> {
+        if (input instanceof FloatList) {
+          generator.writeStartArray();
+          for (float value : ((FloatList) input).getArray()) {
+            generator.writeNumber(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      case FLOAT_64: return (input, generator) -> {
+        if (input instanceof DoubleList) {
+          generator.writeStartArray();
+          for (double value : ((DoubleList) input).getArray()) {
+            generator.writeNumber(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      case BOOLEAN: return (input, generator) -> {
+        if (input instanceof BooleanList) {
+          generator.writeStartArray();
+          for (boolean value : ((BooleanList) input).getArray()) {
+            generator.writeBoolean(value);
+          }
+          generator.writeEndArray();
+        } else {
+          boxed.write(input, generator);
+        }
+      };
+      default: return boxed;
+    }
+  }
+
+  private static <T> TokenWriter<List<T>> fixedSizeArray(
+      final TokenWriter<List<T>> elementsWriter,
+      final int size
+  ) {
+    return (input, generator) -> {
+      Preconditions.checkArgument(
+          input.size() == size,
+          "Input size: '%s' does not match fixed size: '%s'.",
+          input.size(),
+          size
+      );
+      elementsWriter.write(input, generator);
+    };
+  }
+
+  private static <T> TokenWriter<Set<T>> set(
+      final TokenWriter<T> tWriter
+  ) {
+    return (input, generator) -> {
+      generator.writeStartArray();
+      for (final T t : input) {
+        tWriter.write(t, generator);
+      }
+      generator.writeEndArray();
+    };
+  }
+
+  private static <K, V> TokenWriter<Map<K, V>> map(
+      final TokenWriter<K> kWriter,
+      final TokenWriter<V> vWriter
+  ) {
+    return (input, generator) -> {
+      generator.writeStartArray();
+      for (final Map.Entry<K, V> entry : input.entrySet()) {
+        generator.writeStartObject();
+        generator.writeFieldName("k");
+        kWriter.write(entry.getKey(), generator);
+        generator.writeFieldName("v");
+        vWriter.write(entry.getValue(), generator);
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+    };
+  }
+
+  private static TokenWriter<GenericUnion> union(
+      final List<TokenWriter<Object>> branchWriters
+  ) {
+    return (input, generator) -> {
+      generator.writeStartObject();
+      generator.writeNumberField("branch_index", input.getBranchIndex());
+      generator.writeFieldName("value");
+      branchWriters.get(input.getBranchIndex()).write(input.getValue(), generator);
+      generator.writeEndObject();
+    };
+  }
+
+  private static <T> TokenWriter<Optional<T>> optional(
+      final TokenWriter<T> tWriter
+  ) {
+    return (input, generator) -> {
+      if (input.isPresent()) {
+        tWriter.write(input.get(), generator);
+      } else {
+        generator.writeNull();
+      }
+    };
+  }
+
+  /**
+   * Records with the writer's own Schema instance are read by field index. Other records are read
+   * by field name.
+   */
+  private static TokenWriter<GenericRecord> record(
+      final Schema schema,
+      final ImmutableList<String> fieldNames,
+      final ImmutableList<TokenWriter<Object>> fieldWriters
+  ) {
+    return (input, generator) -> {
+      final boolean sameSchema = (input.getSchema() == schema);
+      generator.writeStartObject();
+      for (int i = 0; i < fieldNames.size(); i++) {
+        final String fieldName = fieldNames.get(i);
+        generator.writeFieldName(fieldName);
+        fieldWriters.get(i).write(sameSchema ? input.get(i) : input.get(fieldName), generator);
+      }
+      generator.writeEndObject();
+    };
+  }
+
+  /**
+   * Recursively creates token writers for a given Schema. If the same record is encountered twice
+   * in a Schema tree, breaks recursion to prevent an infinite loop.
+   *
+   * @param schema Schema for which to build a writer.
+   * @param knownSchemas Schemas which have already been seen during the creation of this writer.
+   * @return A TokenWriter for the given Schema.
+   */
+  private static TokenWriter<Object> forSchema(
+      final Schema schema,
+      final Map<Schema, TokenWriter<Object>> knownSchemas
+  ) {
+    final TokenWriter<Object> knownWriter = knownSchemas.get(schema);
+    if (knownWriter != null) {
+      return knownWriter;
+    } else {
+      switch (schema.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8: throw new UnsupportedOperationException(
+            String.format("Schema type: '%s' is unsupported in Java.", schema.getType())
+        );
+        case SIGNED_16: {
+          knownSchemas.put(schema, cast(SIGNED_16));
+          return cast(SIGNED_16);
+        }
+        case SIGNED_32: {
+          knownSchemas.put(schema, cast(SIGNED_32));
+          return cast(SIGNED_32);
+        }
+        case SIGNED_64: {
+          knownSchemas.put(schema, cast(SIGNED_64));
+          return cast(SIGNED_64);
+        }
+        case SIGNED_BIG: {
+          knownSchemas.put(schema, cast(SIGNED_BIG));
+          return cast(SIGNED_BIG);
+        }
+        case FLOAT_32: {
+          knownSchemas.put(schema, cast(FLOAT_32));
+          return cast(FLOAT_32);
+        }
+        case FLOAT_64: {
+          knownSchemas.put(schema, cast(FLOAT_64));
+          return cast(FLOAT_64);
+        }
+        case FLOAT_BIG: {
+          knownSchemas.put(schema, cast(FLOAT_BIG));
+          return cast(FLOAT_BIG);
+        }
+        case BOOLEAN: {
+          knownSchemas.put(schema, cast(BOOLEAN));
+          return cast(BOOLEAN);
+        }
+        case STRING: {
+          knownSchemas.put(schema, cast(STRING));
+          return cast(STRING);
+        }
+        case ENUM: {
+          final TokenWriter<Object> writer = enumm(schema);
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case EXTENSION: {
+          final TokenWriter<Object> tagWriter = forSchema(schema.getTagSchema(), knownSchemas);
+          final TokenWriter<Object> writer = cast(extension(tagWriter));
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case ARRAY: {
+          final TokenWriter<?> writer = elements(
+              schema.getElementSchema(),
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case FIXED_SIZE_ARRAY: {
+          final TokenWriter<?> writer = fixedSizeArray(
+              elements(schema.getElementSchema(), forSchema(schema.getElementSchema(), knownSchemas)),
+              schema.getSize()
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case SET: {
+          final TokenWriter<?> writer = set(forSchema(schema.getElementSchema(), knownSchemas));
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case MAP: {
+          final TokenWriter<?> writer = map(
+              forSchema(schema.getKeySchema(), knownSchemas),
+              forSchema(schema.getValueSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case UNION: {
+          final List<TokenWriter<Object>> branchWriters = ImmutableList.copyOf(Lists.transform(
+              schema.getBranchSchemas(),
+              branchSchema -> forSchema(branchSchema, knownSchemas)
+          ));
+          final TokenWriter<Object> writer = cast(union(branchWriters));
+          knownSchemas.put(schema, writer);
+          return writer;
+        }
+        case OPTIONAL: {
+          final TokenWriter<?> writer = optional(
+              forSchema(schema.getElementSchema(), knownSchemas)
+          );
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        case RECORD: {
+          // only records which refer back to themselves are compiled through a placeholder.
+          final Optional<PlaceholderTokenWriter> placeholder = SchemaRecursionHelpers.isRecursive(schema)
+              ? Optional.of(new PlaceholderTokenWriter())
+              : Optional.empty();
+          placeholder.ifPresent(p -> knownSchemas.put(schema, p));
+          final ImmutableList.Builder<TokenWriter<Object>> fieldWriters = ImmutableList.builder();
+          for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+            fieldWriters.add(forSchema(fieldSchema, knownSchemas));
+          }
+          final TokenWriter<GenericRecord> writer = record(
+              schema,
+              schema.getFieldSchemas().keySet().asList(),
+              fieldWriters.build()
+          );
+          placeholder.ifPresent(p -> p.fill(cast(writer)));
+          knownSchemas.put(schema, cast(writer));
+          return cast(writer);
+        }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+      }
+    }
+  }
+
+  private JsonStreamingEncoders() { }
+}
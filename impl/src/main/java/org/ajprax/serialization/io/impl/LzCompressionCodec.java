@@ -0,0 +1,244 @@
+package org.ajprax.serialization.io.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.CompressionCodec;
+
+/**
+ * Fast LZ77 compression in the block format of LZ4. Trades compression ratio for speed: matches
+ * are found with a single probe of a hash table of recent 4 byte sequences and are never searched
+ * for further.
+ *
+ * Compressed data is a series of sequences, each:
+ * <pre>
+ *   token | literal length | literals | match offset | match length
+ * </pre>
+ * The token's high 4 bits are the number of literals and its low 4 bits are the match length less
+ * {@link #MIN_MATCH}. A length of 15 continues in following bytes, each added to it, until a byte
+ * less than 255. The match offset is 2 little endian bytes counting back from the end of the
+ * literals. The last sequence has literals only.
+ */
+final class LzCompressionCodec implements CompressionCodec {
+
+  static final int MIN_MATCH = 4;
+  static final int MAX_OFFSET = 0xFFFF;
+
+  private static final int HASH_BITS = 12;
+
+  /** Hash table of positions of recent sequences, reused by each thread. */
+  private static final ThreadLocal<int[]> THREAD_TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_BITS]);
+
+  @Override
+  public int getId() {
+    return 2;
+  }
+
+  @Override
+  public String getName() {
+    return "lz";
+  }
+
+  private static int readInt(
+      final byte[] bytes,
+      final int index
+  ) {
+    return (bytes[index] & 0xFF)
+        | (bytes[index + 1] & 0xFF) << 8
+        | (bytes[index + 2] & 0xFF) << 16
+        | (bytes[index + 3] & 0xFF) << 24;
+  }
+
+  private static int hash(
+      final int sequence
+  ) {
+    return (sequence * -1640531535) >>> (32 - HASH_BITS);
+  }
+
+  /**
+   * Write a length which did not fit in its token.
+   *
+   * @return The index after the written bytes.
+   */
+  private static int writeLength(
+      final byte[] output,
+      final int index,
+      final int length
+  ) {
+    int remaining = length - 15;
+    int written = index;
+    while (remaining >= 255) {
+      output[written++] = (byte) 255;
+      remaining -= 255;
+    }
+    output[written++] = (byte) remaining;
+    return written;
+  }
+
+  /**
+   * Write a sequence.
+   *
+   * @param matchLength Length of the match, or 0 for the last sequence.
+   * @return The index after the written sequence.
+   */
+  private static int writeSequence(
+      final byte[] output,
+      final int index,
+      final byte[] input,
+      final int literalStart,
+      final int literalLength,
+      final int matchOffset,
+      final int matchLength
+  ) {
+    int written = index;
+    final int matchToken = (matchLength == 0) ? 0 : Math.min(matchLength - MIN_MATCH, 15);
+    output[written++] = (byte) (Math.min(literalLength, 15) << 4 | matchToken);
+    if (literalLength >= 15) {
+      written = writeLength(output, written, literalLength);
+    }
+    System.arraycopy(input, literalStart, output, written, literalLength);
+    written += literalLength;
+    if (matchLength != 0) {
+      output[written++] = (byte) matchOffset;
+      output[written++] = (byte) (matchOffset >>> 8);
+      if (matchLength - MIN_MATCH >= 15) {
+        written = writeLength(output, written, matchLength - MIN_MATCH);
+      }
+    }
+    return written;
+  }
+
+  @Override
+  public ByteBuffer compress(
+      final ByteBuffer input
+  ) {
+    final byte[] source;
+    final int start;
+    final int end;
+    if (input.hasArray()) {
+      source = input.array();
+      start = input.arrayOffset() + input.position();
+      end = start + input.remaining();
+    } else {
+      source = CompressionCodecs.remaining(input);
+      start = 0;
+      end = source.length;
+    }
+    final int length = end - start;
+    // the worst case, incompressible input, is all literals plus their length bytes.
+    final byte[] output = new byte[length + length / 255 + 16];
+    final int[] table = THREAD_TABLE.get();
+    Arrays.fill(table, -1);
+
+    int written = 0;
+    int anchor = start;
+    int index = start;
+    while (index + MIN_MATCH <= end) {
+      final int sequence = readInt(source, index);
+      final int hash = hash(sequence);
+      final int candidate = table[hash];
+      table[hash] = index;
+      if (candidate >= 0 && index - candidate <= MAX_OFFSET && readInt(source, candidate) == sequence) {
+        int matchLength = MIN_MATCH;
+        while (index + matchLength < end && source[candidate + matchLength] == source[index + matchLength]) {
+          matchLength++;
+        }
+        written = writeSequence(output, written, source, anchor, index - anchor, index - candidate, matchLength);
+        index += matchLength;
+        anchor = index;
+      } else {
+        // step faster through input which has not matched for a while.
+        index += 1 + ((index - anchor) >>> 6);
+      }
+    }
+    written = writeSequence(output, written, source, anchor, end - anchor, 0, 0);
+    return ByteBuffer.wrap(output, 0, written);
+  }
+
+  /**
+   * Compressed input is checked against the bounds of the input rather than of the array which
+   * contains it, which may hold other bytes.
+   */
+  private static void checkInput(
+      final boolean valid
+  ) {
+    if (!valid) {
+      throw new IllegalArgumentException("Malformed compressed input.");
+    }
+  }
+
+  @Override
+  public ByteBuffer decompress(
+      final ByteBuffer input,
+      final int uncompressedLength
+  ) {
+    final byte[] source;
+    int index;
+    final int end;
+    if (input.hasArray()) {
+      source = input.array();
+      index = input.arrayOffset() + input.position();
+      end = index + input.remaining();
+    } else {
+      source = CompressionCodecs.remaining(input);
+      index = 0;
+      end = source.length;
+    }
+    final byte[] output = new byte[uncompressedLength];
+    int written = 0;
+    try {
+      while (true) {
+        checkInput(index < end);
+        final int token = source[index++] & 0xFF;
+        int literalLength = token >>> 4;
+        if (literalLength == 15) {
+          int next;
+          do {
+            checkInput(index < end);
+            next = source[index++] & 0xFF;
+            literalLength += next;
+          } while (next == 255);
+        }
+        checkInput(literalLength <= end - index);
+        System.arraycopy(source, index, output, written, literalLength);
+        index += literalLength;
+        written += literalLength;
+        if (index == end) {
+          break;
+        }
+        checkInput(index + 2 <= end);
+        final int offset = (source[index] & 0xFF) | (source[index + 1] & 0xFF) << 8;
+        index += 2;
+        int matchLength = (token & 0x0F) + MIN_MATCH;
+        if (matchLength == 15 + MIN_MATCH) {
+          int next;
+          do {
+            checkInput(index < end);
+            next = source[index++] & 0xFF;
+            matchLength += next;
+          } while (next == 255);
+        }
+        checkInput(0 < offset && offset <= written);
+        final int matchStart = written - offset;
+        if (offset >= matchLength) {
+          System.arraycopy(output, matchStart, output, written, matchLength);
+        } else {
+          // the match overlaps the bytes it produces, so repeats them.
+          for (int i = 0; i < matchLength; i++) {
+            output[written + i] = output[matchStart + i];
+          }
+        }
+        written += matchLength;
+      }
+    } catch (IndexOutOfBoundsException ioobe) {
+      throw new IllegalArgumentException("Malformed compressed input.", ioobe);
+    }
+    Preconditions.checkArgument(
+        index == end && written == uncompressedLength,
+        "Compressed input does not decompress to expected length: '%s'.",
+        uncompressedLength
+    );
+    return ByteBuffer.wrap(output);
+  }
+}
@@ -0,0 +1,312 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Reads the values in a container file written by {@link ContainerWriter} from a memory mapping of
+ * the file, without copying blocks onto the heap. Values of uncompressed blocks are decoded directly
+ * from the mapped bytes, so the page cache holds the only copy of the file's contents. Compressed
+ * blocks are decompressed from the mapped bytes onto the heap.
+ *
+ * Files larger than a single mapping, 2 GB, are mapped in segments. Each segment starts at a block
+ * so that no block is split between segments, and a segment is unmapped by the garbage collector
+ * once neither the reader nor any value decoded from it refers to it. EXTENSION values share the
+ * mapped storage until their value is read.
+ *
+ * Splits and skipping behave as for {@link ContainerReader}. Values appended to the file after it
+ * is opened are not read.
+ *
+ * Not thread safe.
+ *
+ * @param <T> Type of the read values.
+ */
+public final class MappedContainerReader<T> implements Iterator<T>, Closeable {
+
+  /** Largest size of a mapped segment. */
+  static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  /**
+   * Open a container file, reading values with its writer Schema.
+   *
+   * @param file Container file.
+   * @param <T> Type of the read values.
+   * @return A reader of every value in the file.
+   * @throws UncheckedIOException in case of an error reading the file's header.
+   */
+  public static <T> MappedContainerReader<T> open(
+      final Path file
+  ) {
+    return open(file, null, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Open a container file, reading values with a reader Schema which may differ from its writer
+   * Schema, see {@link BinaryDecoder#forSchemas(Schema, Schema)}.
+   *
+   * @param file Container file.
+   * @param readerSchema Schema of the read values.
+   * @param <T> Type of the read values.
+   * @return A reader of every value in the file.
+   * @throws UncheckedIOException in case of an error reading the file's header.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  public static <T> MappedContainerReader<T> open(
+      final Path file,
+      final Schema readerSchema
+  ) {
+    return open(file, readerSchema, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Open a split of a container file, the blocks which start at or after a start position and
+   * before an end position.
+   *
+   * @param file Container file.
+   * @param readerSchema Schema of the read values, or null to read values with the writer Schema.
+   * @param start Position in the file of the start of the split, inclusive.
+   * @param end Position in the file of the end of the split, exclusive.
+   * @param <T> Type of the read values.
+   * @return A reader of the values in the blocks of the split.
+   * @throws UncheckedIOException in case of an error reading the file.
+   * @throws IllegalArgumentException if the reader Schema cannot read the writer Schema.
+   */
+  public static <T> MappedContainerReader<T> open(
+      final Path file,
+      final Schema readerSchema,
+      final long start,
+      final long end
+  ) {
+    return open(file, readerSchema, start, end, MAX_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param maxSegmentSize Largest size of a mapped segment, smaller than the default in tests.
+   */
+  static <T> MappedContainerReader<T> open(
+      final Path file,
+      final Schema readerSchema,
+      final long start,
+      final long end,
+      final long maxSegmentSize
+  ) {
+    Preconditions.checkArgument(
+        0 <= start && start <= end,
+        "Invalid split start: '%s' and end: '%s'.",
+        start,
+        end
+    );
+    try {
+      final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+      try {
+        final ContainerFormat.Header header = ContainerFormat.readHeader(channel);
+        final long firstBlock = ContainerFormat.findBlock(channel, header, start);
+        return new MappedContainerReader<>(channel, header, readerSchema, firstBlock, end, maxSegmentSize);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private final FileChannel mChannel;
+  private final ContainerFormat.Header mHeader;
+  private final BinaryDecoder<T> mDecoder;
+  private final long mMaxSegmentSize;
+  /** Size of the file when it was opened. */
+  private final long mSize;
+  private final long mEnd;
+  /** Mapped segment containing the block being read, or null before the first block is read. */
+  private MappedByteBuffer mSegment = null;
+  /** Position in the file of the start of the mapped segment. */
+  private long mSegmentStart = 0;
+  /** Position of the next unread block. */
+  private long mPosition;
+  /** Position of the block being read. */
+  private long mBlockPosition;
+  /** Mapped values of the block being read, positioned at the next value. */
+  private ByteBuffer mBlock = null;
+  private long mBlockRemaining = 0;
+
+  private MappedContainerReader(
+      final FileChannel channel,
+      final ContainerFormat.Header header,
+      final Schema readerSchema,
+      final long firstBlock,
+      final long end,
+      final long maxSegmentSize
+  ) throws IOException {
+    mChannel = channel;
+    mHeader = header;
+    mDecoder = (null == readerSchema || header.getSchema().equals(readerSchema))
+        ? BinaryDecoder.forSchema(header.getSchema())
+        : BinaryDecoder.forSchemas(header.getSchema(), readerSchema);
+    mMaxSegmentSize = maxSegmentSize;
+    mSize = channel.size();
+    mPosition = firstBlock;
+    mBlockPosition = firstBlock;
+    mEnd = end;
+  }
+
+  /**
+   * @return The Schema with which the values in the file were written.
+   */
+  public Schema getWriterSchema() {
+    return mHeader.getSchema();
+  }
+
+  /**
+   * @return The position in the file of the block containing the next value, or of the next block
+   *     if every value of the current block has been read.
+   */
+  public long getBlockPosition() {
+    return (mBlockRemaining > 0) ? mBlockPosition : mPosition;
+  }
+
+  /**
+   * @param position Position in the file of the first byte of the view.
+   * @param length Number of bytes in the view.
+   * @return A view of the given bytes of the file, mapping a new segment starting at the given
+   *     position if the current segment does not contain them all.
+   */
+  private ByteBuffer map(
+      final long position,
+      final long length
+  ) throws IOException {
+    if (null == mSegment || position < mSegmentStart || position + length > mSegmentStart + mSegment.capacity()) {
+      if (position + length > mSize) {
+        throw new EOFException(String.format(
+            "Container file ends at: '%d', expected: '%d' bytes at: '%d'.",
+            mSize,
+            length,
+            position
+        ));
+      }
+      Preconditions.checkState(
+          length <= Integer.MAX_VALUE,
+          "Container file block at: '%s' is too large to map.",
+          position
+      );
+      mSegment = mChannel.map(
+          FileChannel.MapMode.READ_ONLY,
+          position,
+          Math.min(Math.max(mMaxSegmentSize, length), mSize - position)
+      );
+      mSegmentStart = position;
+    }
+    final ByteBuffer view = mSegment.duplicate();
+    final int offset = (int) (position - mSegmentStart);
+    view.limit(offset + (int) length);
+    view.position(offset);
+    return view.slice();
+  }
+
+  /**
+   * Map the next block of this reader's split, read its prefix and check its sync marker.
+   * Advances the position past the block and sets the number of its values remaining.
+   *
+   * @return The prefix of the next block, or null if there is no next block.
+   */
+  private ContainerFormat.BlockPrefix nextBlock() throws IOException {
+    if (mPosition >= mEnd || mPosition >= mSize) {
+      return null;
+    }
+    final ContainerFormat.BlockPrefix prefix = ContainerFormat.readBlockPrefix(
+        map(mPosition, Math.min(ContainerFormat.MAX_BLOCK_PREFIX_SIZE, mSize - mPosition)),
+        mPosition
+    );
+    final ByteBuffer block = map(prefix.getDataPosition(), (long) prefix.getLength() + ContainerFormat.SYNC_SIZE);
+    ContainerFormat.checkSync(block, prefix.getLength(), mHeader.getSync(), prefix.getSyncPosition());
+    mBlockRemaining = prefix.getCount();
+    mBlockPosition = mPosition;
+    mPosition = prefix.getEnd();
+    return prefix;
+  }
+
+  /**
+   * Skip the rest of the block being read or, if every value of it has been read, the next block,
+   * without decoding its values.
+   *
+   * @return The number of values skipped, or 0 if there are no more blocks in this reader's split.
+   * @throws UncheckedIOException in case of an error reading the file.
+   */
+  public long skipBlock() {
+    try {
+      // blocks are mapped but not decompressed.
+      if (mBlockRemaining == 0 && null == nextBlock()) {
+        return 0;
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    final long skipped = mBlockRemaining;
+    mBlock = null;
+    mBlockRemaining = 0;
+    return skipped;
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      while (mBlockRemaining == 0) {
+        final ContainerFormat.BlockPrefix prefix = nextBlock();
+        if (null == prefix) {
+          return false;
+        }
+        // uncompressed blocks are decoded directly from the mapping.
+        mBlock = prefix.decompress(map(prefix.getDataPosition(), prefix.getLength()));
+      }
+      return true;
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * @return The next value.
+   * @throws NoSuchElementException if there are no more values in this reader's split.
+   * @throws IllegalStateException if the block's values do not fill the block exactly.
+   */
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final T value = mDecoder.decodeFrom(mBlock);
+    mBlockRemaining--;
+    if (mBlockRemaining == 0) {
+      Preconditions.checkState(
+          !mBlock.hasRemaining(),
+          "Container file is corrupt, block at: '%s' contains trailing bytes.",
+          mBlockPosition
+      );
+      mBlock = null;
+    }
+    return value;
+  }
+
+  /**
+   * Close the file. Mapped segments remain valid until they are garbage collected.
+   */
+  @Override
+  public void close() throws IOException {
+    mSegment = null;
+    mBlock = null;
+    mChannel.close();
+  }
+}
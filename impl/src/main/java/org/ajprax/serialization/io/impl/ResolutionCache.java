@@ -0,0 +1,85 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Thread-safe bounded cache of codecs compiled for a pair of writer and reader Schemas, keyed by
+ * the binary layout of the two Schemas. Layout fingerprints are remembered by each Schema, so
+ * lookups only traverse the Schemas to confirm a match with another instance.
+ *
+ * @param <C> Type of the cached codecs.
+ */
+final class ResolutionCache<C> {
+
+  /**
+   * Create a new ResolutionCache with the default maximum size of {@link CodecCache}.
+   *
+   * @param compiler Function which compiles a codec for a writer Schema and a reader Schema.
+   * @param <C> Type of the cached codecs.
+   * @return A new ResolutionCache.
+   */
+  static <C> ResolutionCache<C> create(
+      final BiFunction<Schema, Schema, C> compiler
+  ) {
+    return new ResolutionCache<>(compiler, CodecCache.DEFAULT_MAXIMUM_SIZE);
+  }
+
+  private final BiFunction<Schema, Schema, C> mCompiler;
+  private final Cache<Map.Entry<SchemaLayoutKey, SchemaLayoutKey>, C> mCache;
+
+  private ResolutionCache(
+      final BiFunction<Schema, Schema, C> compiler,
+      final long maximumSize
+  ) {
+    mCompiler = compiler;
+    mCache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Get the codec for a pair of Schemas, compiling it if it is not cached.
+   *
+   * Exceptions thrown while compiling the codec propagate unchanged.
+   *
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @return The codec for the given Schemas.
+   */
+  C get(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    Preconditions.checkNotNull(writerSchema);
+    Preconditions.checkNotNull(readerSchema);
+    try {
+      return mCache.get(
+          Maps.immutableEntry(SchemaLayoutKey.create(writerSchema), SchemaLayoutKey.create(readerSchema)),
+          () -> mCompiler.apply(writerSchema, readerSchema)
+      );
+    } catch (UncheckedExecutionException | ExecutionError | ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @return Hit and miss statistics for this cache.
+   */
+  CacheStats stats() {
+    return mCache.stats();
+  }
+}
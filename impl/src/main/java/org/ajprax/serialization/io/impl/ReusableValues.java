@@ -0,0 +1,161 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.BooleanList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.DoubleList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.FloatList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.IntList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.LongList;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.ShortList;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Recognizes values which decoders can overwrite in place. See
+ * {@link org.ajprax.serialization.io.Decoder#decode(Object, Object)}.
+ *
+ * Only the mutable container types created by decoders are reused. Any other value, including
+ * null, yields null and the decoder allocates a new value instead.
+ */
+final class ReusableValues {
+
+  /**
+   * @param schema RECORD Schema of the decoded value.
+   * @param reuse Previously decoded value.
+   * @return The reused record if it was decoded with the same Schema instance, otherwise null.
+   */
+  static GenericRecordImpl record(
+      final Schema schema,
+      final Object reuse
+  ) {
+    return (reuse instanceof GenericRecordImpl && ((GenericRecordImpl) reuse).getSchema() == schema)
+        ? (GenericRecordImpl) reuse
+        : null;
+  }
+
+  /**
+   * @param reuse Previously decoded value.
+   * @param <T> Type of the List elements.
+   * @return The reused ArrayList with its elements intact, or null.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> List<T> list(
+      final Object reuse
+  ) {
+    return (reuse instanceof ArrayList) ? (List<T>) reuse : null;
+  }
+
+  /**
+   * Trim a reused List to the number of elements decoded into it.
+   *
+   * @param list Reused List.
+   * @param size Number of decoded elements.
+   */
+  static void truncate(
+      final List<?> list,
+      final int size
+  ) {
+    if (list.size() > size) {
+      list.subList(size, list.size()).clear();
+    }
+  }
+
+  /**
+   * @param reuse Previously decoded value.
+   * @param <T> Type of the Set elements.
+   * @return The reused HashSet, emptied, or null.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Set<T> set(
+      final Object reuse
+  ) {
+    if (reuse instanceof HashSet) {
+      final Set<T> set = (Set<T>) reuse;
+      set.clear();
+      return set;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * @param reuse Previously decoded value.
+   * @param <K> Type of the Map keys.
+   * @param <V> Type of the Map values.
+   * @return The reused HashMap, emptied, or null.
+   */
+  @SuppressWarnings("unchecked")
+  static <K, V> Map<K, V> map(
+      final Object reuse
+  ) {
+    if (reuse instanceof HashMap) {
+      final Map<K, V> map = (Map<K, V>) reuse;
+      map.clear();
+      return map;
+    } else {
+      return null;
+    }
+  }
+
+  static short[] shorts(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof ShortList && ((ShortList) reuse).size() == size)
+        ? ((ShortList) reuse).getArray()
+        : null;
+  }
+
+  static int[] ints(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof IntList && ((IntList) reuse).size() == size)
+        ? ((IntList) reuse).getArray()
+        : null;
+  }
+
+  static long[] longs(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof LongList && ((LongList) reuse).size() == size)
+        ? ((LongList) reuse).getArray()
+        : null;
+  }
+
+  static float[] floats(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof FloatList && ((FloatList) reuse).size() == size)
+        ? ((FloatList) reuse).getArray()
+        : null;
+  }
+
+  static double[] doubles(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof DoubleList && ((DoubleList) reuse).size() == size)
+        ? ((DoubleList) reuse).getArray()
+        : null;
+  }
+
+  static boolean[] booleans(
+      final Object reuse,
+      final int size
+  ) {
+    return (reuse instanceof BooleanList && ((BooleanList) reuse).size() == size)
+        ? ((BooleanList) reuse).getArray()
+        : null;
+  }
+
+  private ReusableValues() { }
+}
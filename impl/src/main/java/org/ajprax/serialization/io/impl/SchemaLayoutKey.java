@@ -0,0 +1,64 @@
+package org.ajprax.serialization.io.impl;
+
+import com.google.common.base.Preconditions;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Cache key which compares Schemas by their binary layout.
+ *
+ * Schema equality ignores the order of enum symbols and record fields, but the binary form writes
+ * enums as the index of their symbol and record fields in declaration order. Codecs compiled for
+ * one Schema are therefore only valid for Schemas with the same layout.
+ */
+final class SchemaLayoutKey {
+
+  /**
+   * Create a new SchemaLayoutKey.
+   *
+   * @param schema Schema to wrap.
+   * @return A new SchemaLayoutKey for the given Schema.
+   */
+  public static SchemaLayoutKey create(
+      final Schema schema
+  ) {
+    return new SchemaLayoutKey(Preconditions.checkNotNull(schema));
+  }
+
+  private final Schema mSchema;
+
+  private SchemaLayoutKey(
+      final Schema schema
+  ) {
+    mSchema = schema;
+  }
+
+  /**
+   * @return The wrapped Schema.
+   */
+  public Schema getSchema() {
+    return mSchema;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(mSchema.getLayoutFingerprint());
+  }
+
+  @Override
+  public boolean equals(
+      final Object obj
+  ) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof SchemaLayoutKey)) {
+      return false;
+    }
+    return SchemaRecursionHelpers.layoutEquals(mSchema, ((SchemaLayoutKey) obj).mSchema);
+  }
+
+  @Override
+  public String toString() {
+    return mSchema.toString();
+  }
+}
@@ -0,0 +1,430 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaRecursionHelpers;
+
+/**
+ * Maps 64-bit Schema layout fingerprints, see {@link Schema#getLayoutFingerprint()}, to canonical
+ * Schema instances and their compiled binary codecs. Layout fingerprints distinguish the order of
+ * enum symbols and record fields, on which the binary format depends.
+ *
+ * Messages framed by a registry carry their writer Schema's layout fingerprint instead of the
+ * Schema itself. Each framed message is {@link #MAGIC}, followed by the little endian fingerprint,
+ * followed by the value in the binary format of {@link BinaryEncoder}. Compressed messages are
+ * {@link #COMPRESSED_MAGIC}, followed by the fingerprint, the id of the {@link CompressionCodec},
+ * the varint lengths of the value before and after compression and the compressed value. Readers
+ * look up the writer Schema by fingerprint, so every Schema used to write messages must be
+ * registered with the reader's registry.
+ *
+ * Lookups read a concurrent map without locking. Registrations of new Schemas are serialized and,
+ * for a registry opened on a file, appended to the file with {@link SchemaSerializer} so that they
+ * are known again when the file is reopened.
+ */
+public final class SchemaRegistry {
+
+  /** First byte of every uncompressed framed message. */
+  public static final byte MAGIC = (byte) 0xC5;
+
+  /** First byte of every compressed framed message. */
+  public static final byte COMPRESSED_MAGIC = (byte) 0xC6;
+
+  /** Number of bytes which precede the value in an uncompressed framed message. */
+  public static final int HEADER_SIZE = 1 + Long.BYTES;
+
+  /** A registered Schema and its codecs, compiled on first use. */
+  private static final class Entry {
+
+    private final Schema mSchema;
+    private final Supplier<BinaryEncoder<Object>> mEncoder;
+    private final Supplier<BinaryDecoder<Object>> mDecoder;
+
+    private Entry(
+        final Schema schema
+    ) {
+      mSchema = schema;
+      mEncoder = Suppliers.memoize(() -> BinaryEncoder.forSchema(schema));
+      mDecoder = Suppliers.memoize(() -> BinaryDecoder.forSchema(schema));
+    }
+  }
+
+  /**
+   * @return A new registry which is not persisted.
+   */
+  public static SchemaRegistry create() {
+    return new SchemaRegistry(null);
+  }
+
+  /**
+   * Open a registry persisted to a local file. The Schemas already in the file are registered and
+   * Schemas registered later are appended to it. The file is created if it does not exist.
+   *
+   * A Schema whose append was interrupted is ignored, as if it had not been registered, and is
+   * truncated from the file.
+   *
+   * @param file File in which the registry is persisted.
+   * @return A registry persisted to the given file.
+   * @throws UncheckedIOException in case of an error reading the file.
+   */
+  public static SchemaRegistry open(
+      final Path file
+  ) {
+    final SchemaRegistry registry = new SchemaRegistry(file);
+    try {
+      if (Files.exists(file)) {
+        final BinaryInput input = BinaryInput.wrap(Files.readAllBytes(file));
+        int complete = 0;
+        while (input.hasRemaining()) {
+          final Schema schema;
+          try {
+            schema = SchemaSerializer.fromBytes(input.readBytes());
+          } catch (BufferUnderflowException bue) {
+            break;
+          }
+          registry.mEntries.putIfAbsent(schema.getLayoutFingerprint(), new Entry(schema));
+          complete = input.position();
+        }
+        if (complete < Files.size(file)) {
+          try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(complete);
+          }
+        }
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    return registry;
+  }
+
+  private final ConcurrentMap<Long, Entry> mEntries = Maps.newConcurrentMap();
+  /** File to which registrations are appended, or null if this registry is not persisted. */
+  private final Path mFile;
+
+  private SchemaRegistry(
+      final Path file
+  ) {
+    mFile = file;
+  }
+
+  /**
+   * Register a Schema. Registering a Schema with the same layout as a registered Schema has no
+   * effect.
+   *
+   * @param schema Schema to register.
+   * @return The canonical instance of the Schema, the first registered Schema with its layout.
+   * @throws IllegalArgumentException if a Schema with a different layout but the same layout
+   *     fingerprint is registered.
+   * @throws UncheckedIOException in case of an error appending the Schema to this registry's file.
+   */
+  public Schema register(
+      final Schema schema
+  ) {
+    return entry(schema).mSchema;
+  }
+
+  private Entry entry(
+      final Schema schema
+  ) {
+    final long fingerprint = schema.getLayoutFingerprint();
+    Entry entry = mEntries.get(fingerprint);
+    if (null == entry) {
+      synchronized (this) {
+        entry = mEntries.get(fingerprint);
+        if (null == entry) {
+          entry = new Entry(schema);
+          persist(schema);
+          mEntries.put(fingerprint, entry);
+        }
+      }
+    }
+    Preconditions.checkArgument(
+        SchemaRecursionHelpers.layoutEquals(entry.mSchema, schema),
+        "Schema: '%s' has the same fingerprint: '%s' as registered Schema: '%s'.",
+        schema.getName(),
+        fingerprint,
+        entry.mSchema.getName()
+    );
+    return entry;
+  }
+
+  private void persist(
+      final Schema schema
+  ) {
+    if (null == mFile) {
+      return;
+    }
+    final BinaryOutput output = BinaryOutput.create();
+    output.writeBytes(SchemaSerializer.toBytes(schema));
+    try (OutputStream stream = Files.newOutputStream(
+        mFile,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND
+    )) {
+      output.writeTo(stream);
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  /**
+   * @param fingerprint Layout fingerprint of a Schema.
+   * @return The registered Schema with the given layout fingerprint, if there is one.
+   */
+  public Optional<Schema> get(
+      final long fingerprint
+  ) {
+    final Entry entry = mEntries.get(fingerprint);
+    return (null != entry) ? Optional.of(entry.mSchema) : Optional.empty();
+  }
+
+  private Entry registered(
+      final long fingerprint
+  ) {
+    final Entry entry = mEntries.get(fingerprint);
+    Preconditions.checkArgument(null != entry, "No Schema is registered with fingerprint: '%s'.", fingerprint);
+    return entry;
+  }
+
+  /**
+   * @param fingerprint Layout fingerprint of a registered Schema.
+   * @param <T> Type of the encoded values.
+   * @return The encoder of the registered Schema with the given fingerprint.
+   * @throws IllegalArgumentException if no Schema with the given fingerprint is registered.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> BinaryEncoder<T> getEncoder(
+      final long fingerprint
+  ) {
+    return (BinaryEncoder<T>) registered(fingerprint).mEncoder.get();
+  }
+
+  /**
+   * @param fingerprint Layout fingerprint of a registered Schema.
+   * @param <T> Type of the decoded values.
+   * @return The decoder of the registered Schema with the given fingerprint.
+   * @throws IllegalArgumentException if no Schema with the given fingerprint is registered.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> BinaryDecoder<T> getDecoder(
+      final long fingerprint
+  ) {
+    return (BinaryDecoder<T>) registered(fingerprint).mDecoder.get();
+  }
+
+  /**
+   * Encode a framed message. The Schema is registered if it is not already.
+   *
+   * @param schema Schema of the value.
+   * @param value Value to encode.
+   * @return The framed message.
+   */
+  public byte[] encode(
+      final Schema schema,
+      final Object value
+  ) {
+    final byte[] payload = entry(schema).mEncoder.get().encode(value);
+    return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(MAGIC)
+        .putLong(schema.getLayoutFingerprint())
+        .put(payload)
+        .array();
+  }
+
+  /**
+   * Encode a compressed framed message. The Schema is registered if it is not already.
+   *
+   * @param schema Schema of the value.
+   * @param value Value to encode.
+   * @param codec Codec with which to compress the encoded value.
+   * @return The framed message.
+   */
+  public byte[] encode(
+      final Schema schema,
+      final Object value,
+      final CompressionCodec codec
+  ) {
+    final byte[] payload = entry(schema).mEncoder.get().encode(value);
+    final ByteBuffer compressed = codec.compress(ByteBuffer.wrap(payload));
+    final BinaryOutput output = BinaryOutput.create(HEADER_SIZE + 11 + compressed.remaining());
+    output.writeByte(COMPRESSED_MAGIC);
+    final byte[] fingerprint = ByteBuffer.allocate(Long.BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putLong(schema.getLayoutFingerprint())
+        .array();
+    output.writeRawBytes(fingerprint, 0, fingerprint.length);
+    output.writeByte((byte) codec.getId());
+    output.writeVarint(payload.length);
+    output.writeBytes(compressed);
+    return output.toByteArray();
+  }
+
+  /**
+   * Encode a framed message into a ByteBuffer, starting at its position. The position is advanced
+   * past the message. The Schema is registered if it is not already.
+   *
+   * @param schema Schema of the value.
+   * @param value Value to encode.
+   * @param buffer Buffer into which to write.
+   * @throws java.nio.BufferOverflowException if the message does not fit in the buffer's remaining
+   *     bytes, in which case the buffer's position is unchanged.
+   */
+  public void encodeTo(
+      final Schema schema,
+      final Object value,
+      final ByteBuffer buffer
+  ) {
+    final BinaryEncoder<Object> encoder = entry(schema).mEncoder.get();
+    final int start = buffer.position();
+    final ByteOrder order = buffer.order();
+    try {
+      buffer.order(ByteOrder.LITTLE_ENDIAN).put(MAGIC).putLong(schema.getLayoutFingerprint());
+      encoder.encodeTo(value, buffer);
+    } catch (RuntimeException re) {
+      buffer.position(start);
+      throw re;
+    } finally {
+      buffer.order(order);
+    }
+  }
+
+  /**
+   * @param message Framed message.
+   * @return The layout fingerprint of the message's writer Schema.
+   * @throws IllegalArgumentException if the message is not framed by a registry.
+   */
+  public static long getFingerprint(
+      final ByteBuffer message
+  ) {
+    Preconditions.checkArgument(
+        message.remaining() >= HEADER_SIZE
+            && (message.get(message.position()) == MAGIC || message.get(message.position()) == COMPRESSED_MAGIC),
+        "Input is not a framed message."
+    );
+    return message.duplicate().order(ByteOrder.LITTLE_ENDIAN).getLong(message.position() + 1);
+  }
+
+  /**
+   * @param message Framed message.
+   * @return The registered writer Schema of the message.
+   * @throws IllegalArgumentException if the message is not framed by a registry or its writer
+   *     Schema is not registered.
+   */
+  public Schema getWriterSchema(
+      final byte[] message
+  ) {
+    return registered(getFingerprint(ByteBuffer.wrap(message))).mSchema;
+  }
+
+  /**
+   * Decode a framed message with its writer Schema.
+   *
+   * @param message Framed message.
+   * @param <T> Type of the decoded value.
+   * @return The decoded value.
+   * @throws IllegalArgumentException if the message is not framed by a registry, its writer Schema
+   *     is not registered or it contains trailing bytes.
+   */
+  public <T> T decode(
+      final byte[] message
+  ) {
+    final ByteBuffer buffer = ByteBuffer.wrap(message);
+    final T value = decodeFrom(buffer);
+    Preconditions.checkArgument(!buffer.hasRemaining(), "Input contains trailing bytes after a message.");
+    return value;
+  }
+
+  /**
+   * Decode a framed message with a reader Schema which may differ from the writer Schema, see
+   * {@link BinaryDecoder#forSchemas(Schema, Schema)}.
+   *
+   * @param message Framed message.
+   * @param readerSchema Schema of the decoded value.
+   * @param <T> Type of the decoded value.
+   * @return The decoded value.
+   * @throws IllegalArgumentException if the message is not framed by a registry, its writer Schema
+   *     is not registered or cannot be read with the reader Schema, or it contains trailing bytes.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T decode(
+      final byte[] message,
+      final Schema readerSchema
+  ) {
+    final Entry writer = registered(getFingerprint(ByteBuffer.wrap(message)));
+    final BinaryDecoder<T> decoder = (writer.mSchema.equals(readerSchema))
+        ? (BinaryDecoder<T>) writer.mDecoder.get()
+        : BinaryDecoder.forSchemas(writer.mSchema, readerSchema);
+    final ByteBuffer buffer = ByteBuffer.wrap(message);
+    final T value = decodeFrom(buffer, decoder);
+    Preconditions.checkArgument(!buffer.hasRemaining(), "Input contains trailing bytes after a message.");
+    return value;
+  }
+
+  /**
+   * Decode a framed message from a ByteBuffer with its writer Schema, starting at the buffer's
+   * position. The position is advanced past the message and any following bytes are left unread.
+   *
+   * @param buffer Buffer from which to read.
+   * @param <T> Type of the decoded value.
+   * @return The decoded value.
+   * @throws IllegalArgumentException if the message is not framed by a registry or its writer
+   *     Schema is not registered.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T decodeFrom(
+      final ByteBuffer buffer
+  ) {
+    return decodeFrom(buffer, (BinaryDecoder<T>) registered(getFingerprint(buffer)).mDecoder.get());
+  }
+
+  /**
+   * @param buffer Buffer positioned at a framed message. The position is advanced past the message.
+   * @param decoder Decoder of the message's value.
+   * @param <T> Type of the decoded value.
+   * @return The decoded value.
+   * @throws IllegalArgumentException if a compressed message is malformed.
+   */
+  private static <T> T decodeFrom(
+      final ByteBuffer buffer,
+      final BinaryDecoder<T> decoder
+  ) {
+    final int start = buffer.position();
+    if (buffer.get(start) == MAGIC) {
+      buffer.position(start + HEADER_SIZE);
+      return decoder.decodeFrom(buffer);
+    }
+    final ByteBuffer view = buffer.duplicate();
+    view.position(start + HEADER_SIZE);
+    final BinaryInput input = BinaryInput.wrap(view);
+    final CompressionCodec codec = CompressionCodec.forId(input.readByte() & 0xFF);
+    final int uncompressedLength = input.readLength();
+    final int length = input.readLength();
+    Preconditions.checkArgument(length <= view.remaining(), "Input ends within a compressed message.");
+    final ByteBuffer compressed = view.slice();
+    compressed.limit(length);
+    final ByteBuffer payload = codec.decompress(compressed, uncompressedLength);
+    final T value = decoder.decodeFrom(payload);
+    Preconditions.checkArgument(!payload.hasRemaining(), "Compressed message contains trailing bytes after its value.");
+    buffer.position(view.position() + length);
+    return value;
+  }
+}
@@ -0,0 +1,227 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Rules for reading values written with one Schema as values of another Schema.
+ *
+ * A reader Schema is a projection of a writer Schema if it is equal to the writer Schema, or if
+ * both are RECORDs with the same name and every reader field is a projection of the writer field
+ * of the same name, or if both are containers of the same type whose contents are projections.
+ * Writer fields which are not in the reader Schema are skipped.
+ *
+ * Evolution extends projection so that data written with an older Schema can be read with a newer
+ * one and vice versa:
+ * <ul>
+ *   <li>Reader RECORD fields which are not in the writer Schema must be OPTIONAL, they are read as
+ *       empty. Schemas do not carry default values, so empty is the only default.</li>
+ *   <li>Integers and floats may be widened, see {@link #isWidening(Schema.Type, Schema.Type)}.</li>
+ *   <li>ENUMs with the same name are mapped by symbol. Reading a writer symbol which the reader
+ *       does not have fails.</li>
+ *   <li>Each branch of a writer UNION is read as the first reader branch which is equal to it, or
+ *       else the first which can read it. Reading a writer branch which no reader branch can read
+ *       fails. A writer Schema which is not a UNION may be read by a reader UNION which has a
+ *       branch that can read it.</li>
+ *   <li>A writer Schema which is not OPTIONAL may be read by a reader OPTIONAL of a Schema which
+ *       can read it.</li>
+ * </ul>
+ */
+final class SchemaResolution {
+
+  /**
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @throws IllegalArgumentException if the reader Schema is not a projection of the writer Schema.
+   */
+  static void checkProjection(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    check(writerSchema, readerSchema, false, Sets.newHashSet());
+  }
+
+  /**
+   * @param writerSchema Schema with which values were written.
+   * @param readerSchema Schema with which values will be read.
+   * @throws IllegalArgumentException if the reader Schema cannot read values of the writer Schema
+   *     by the rules of evolution.
+   */
+  static void checkEvolution(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    check(writerSchema, readerSchema, true, Sets.newHashSet());
+  }
+
+  /**
+   * @param writerType Type of the writer Schema.
+   * @param readerType Type of the reader Schema.
+   * @return Whether every value of the writer type can be represented exactly by the reader type.
+   */
+  static boolean isWidening(
+      final Schema.Type writerType,
+      final Schema.Type readerType
+  ) {
+    switch (writerType) {
+      case SIGNED_16: return readerType == Schema.Type.SIGNED_32 || isWidening(Schema.Type.SIGNED_32, readerType);
+      case SIGNED_32: return readerType == Schema.Type.SIGNED_64 || isWidening(Schema.Type.SIGNED_64, readerType);
+      case SIGNED_64: return readerType == Schema.Type.SIGNED_BIG;
+      case FLOAT_32: return readerType == Schema.Type.FLOAT_64 || isWidening(Schema.Type.FLOAT_64, readerType);
+      case FLOAT_64: return readerType == Schema.Type.FLOAT_BIG;
+      default: return false;
+    }
+  }
+
+  /**
+   * @param writerSchema Schema of a written value.
+   * @param readerUnion UNION Schema with which to read the value.
+   * @return The index of the reader branch which is equal to the writer Schema, or else of the
+   *     first which can read it by the rules of evolution, or -1 if no branch can read it.
+   */
+  static int branchIndex(
+      final Schema writerSchema,
+      final Schema readerUnion
+  ) {
+    final int equalIndex = readerUnion.getBranchSchemas().indexOf(writerSchema);
+    if (equalIndex >= 0) {
+      return equalIndex;
+    }
+    for (int i = 0; i < readerUnion.getBranchSchemas().size(); i++) {
+      try {
+        checkEvolution(writerSchema, readerUnion.getBranchSchemas().get(i));
+        return i;
+      } catch (IllegalArgumentException iae) {
+        // try the next branch.
+      }
+    }
+    return -1;
+  }
+
+  private static void check(
+      final Schema writerSchema,
+      final Schema readerSchema,
+      final boolean evolve,
+      final Set<Map.Entry<Schema, Schema>> checked
+  ) {
+    // recursive records are checked once per pair.
+    if (writerSchema.equals(readerSchema) || !checked.add(Maps.immutableEntry(writerSchema, readerSchema))) {
+      return;
+    }
+    if (evolve && writerSchema.getType() != readerSchema.getType()) {
+      if (readerSchema.getType() == Schema.Type.UNION) {
+        Preconditions.checkArgument(
+            branchIndex(writerSchema, readerSchema) >= 0,
+            "No branch of reader union: '%s' can read writer Schema: '%s'.",
+            readerSchema.getName(),
+            writerSchema.getName()
+        );
+        return;
+      } else if (readerSchema.getType() == Schema.Type.OPTIONAL) {
+        check(writerSchema, readerSchema.getElementSchema(), true, checked);
+        return;
+      } else if (isWidening(writerSchema.getType(), readerSchema.getType())) {
+        return;
+      }
+    }
+    Preconditions.checkArgument(
+        writerSchema.getType() == readerSchema.getType(),
+        "Reader Schema: '%s' of type: '%s' cannot read writer Schema: '%s' of type: '%s'.",
+        readerSchema.getName(),
+        readerSchema.getType(),
+        writerSchema.getName(),
+        writerSchema.getType()
+    );
+    switch (readerSchema.getType()) {
+      case ARRAY:
+      case SET:
+      case OPTIONAL: {
+        check(writerSchema.getElementSchema(), readerSchema.getElementSchema(), evolve, checked);
+        return;
+      }
+      case FIXED_SIZE_ARRAY: {
+        Preconditions.checkArgument(
+            writerSchema.getSize() == readerSchema.getSize(),
+            "Reader size: '%s' does not match writer size: '%s'.",
+            readerSchema.getSize(),
+            writerSchema.getSize()
+        );
+        check(writerSchema.getElementSchema(), readerSchema.getElementSchema(), evolve, checked);
+        return;
+      }
+      case MAP: {
+        Preconditions.checkArgument(
+            evolve || writerSchema.getKeySchema().equals(readerSchema.getKeySchema()),
+            "Reader key Schema: '%s' does not match writer key Schema: '%s'.",
+            readerSchema.getKeySchema().getName(),
+            writerSchema.getKeySchema().getName()
+        );
+        check(writerSchema.getKeySchema(), readerSchema.getKeySchema(), evolve, checked);
+        check(writerSchema.getValueSchema(), readerSchema.getValueSchema(), evolve, checked);
+        return;
+      }
+      case UNION: {
+        if (evolve) {
+          // writer branches are matched to reader branches by branchIndex, unmatched branches fail
+          // only when they are read.
+          return;
+        }
+        Preconditions.checkArgument(
+            writerSchema.getBranchSchemas().size() == readerSchema.getBranchSchemas().size(),
+            "Reader union: '%s' has '%s' branches, writer union has '%s'.",
+            readerSchema.getName(),
+            readerSchema.getBranchSchemas().size(),
+            writerSchema.getBranchSchemas().size()
+        );
+        for (int i = 0; i < readerSchema.getBranchSchemas().size(); i++) {
+          check(writerSchema.getBranchSchemas().get(i), readerSchema.getBranchSchemas().get(i), false, checked);
+        }
+        return;
+      }
+      case ENUM: {
+        Preconditions.checkArgument(
+            evolve && Objects.equals(writerSchema.getName(), readerSchema.getName()),
+            "Reader enum: '%s' does not match writer enum: '%s'.",
+            readerSchema.getName(),
+            writerSchema.getName()
+        );
+        return;
+      }
+      case RECORD: {
+        Preconditions.checkArgument(
+            Objects.equals(writerSchema.getName(), readerSchema.getName()),
+            "Reader record: '%s' does not match writer record: '%s'.",
+            readerSchema.getName(),
+            writerSchema.getName()
+        );
+        for (Map.Entry<String, Schema> readerField : readerSchema.getFieldSchemas().entrySet()) {
+          final Schema writerField = writerSchema.getFieldSchemas().get(readerField.getKey());
+          if (null != writerField) {
+            check(writerField, readerField.getValue(), evolve, checked);
+          } else {
+            Preconditions.checkArgument(
+                evolve && readerField.getValue().getType() == Schema.Type.OPTIONAL,
+                "Reader field: '%s' of record: '%s' is not in the writer Schema.",
+                readerField.getKey(),
+                readerSchema.getName()
+            );
+          }
+        }
+        return;
+      }
+      default: throw new IllegalArgumentException(String.format(
+          "Reader Schema: '%s' does not match writer Schema: '%s'.",
+          readerSchema.getName(),
+          writerSchema.getName()
+      ));
+    }
+  }
+
+  private SchemaResolution() { }
+}
@@ -0,0 +1,550 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.impl.SchemaInterner;
+
+/**
+ * Compact binary and canonical JSON forms of Schemas. The binary form is written with
+ * {@link BinaryOutput} and read with {@link BinaryInput}.
+ *
+ * Each Schema is written as the varint code of its type, see {@link #TYPE_CODES}, followed by its
+ * contents:
+ * <ul>
+ *   <li>Primitives have no contents.</li>
+ *   <li>ENUM: name, symbol count and each symbol.</li>
+ *   <li>EXTENSION: tag Schema.</li>
+ *   <li>ARRAY, SET and OPTIONAL: element Schema.</li>
+ *   <li>FIXED_SIZE_ARRAY: size and element Schema.</li>
+ *   <li>MAP: key Schema and value Schema.</li>
+ *   <li>UNION: branch count and each branch Schema.</li>
+ *   <li>RECORD: name, field count and each field name and field Schema.</li>
+ * </ul>
+ * A RECORD instance which has already been written, including a recursive record which is still
+ * being written, is written as {@link #RECORD_REFERENCE} plus its index in the order in which
+ * records were first written.
+ *
+ * The canonical JSON form has the same structure. Primitives are written as their type name and
+ * every other Schema as an object whose "type" is its type name, with fields in a fixed order and
+ * no whitespace, so equal Schemas built the same way have identical JSON. For example:
+ * <pre>
+ * {"type":"RECORD","name":"LinkedList","fields":[
+ *   {"name":"head","schema":"STRING"},
+ *   {"name":"tail","schema":{"type":"OPTIONAL","element":{"type":"REFERENCE","record":0}}}]}
+ * </pre>
+ *
+ * Deserialized Schemas are built by {@link Schema#builder(Schema.Type)}, or by the builders of a
+ * {@link SchemaInterner} so that Schemas loaded repeatedly share canonical instances.
+ */
+public final class SchemaSerializer {
+
+  /**
+   * Code of each Schema type in the binary form. Codes are part of the persisted format, stored in
+   * registry files and container headers, so they are fixed here rather than taken from the order
+   * of the Type constants. New types take new codes, existing codes never change.
+   */
+  private static final ImmutableBiMap<Schema.Type, Integer> TYPE_CODES = ImmutableBiMap.<Schema.Type, Integer>builder()
+      .put(Schema.Type.UNSIGNED_8, 0)
+      .put(Schema.Type.UNSIGNED_16, 1)
+      .put(Schema.Type.UNSIGNED_32, 2)
+      .put(Schema.Type.UNSIGNED_64, 3)
+      .put(Schema.Type.UNSIGNED_BIG, 4)
+      .put(Schema.Type.SIGNED_8, 5)
+      .put(Schema.Type.SIGNED_16, 6)
+      .put(Schema.Type.SIGNED_32, 7)
+      .put(Schema.Type.SIGNED_64, 8)
+      .put(Schema.Type.SIGNED_BIG, 9)
+      .put(Schema.Type.FLOAT_32, 10)
+      .put(Schema.Type.FLOAT_64, 11)
+      .put(Schema.Type.FLOAT_BIG, 12)
+      .put(Schema.Type.BOOLEAN, 13)
+      .put(Schema.Type.STRING, 14)
+      .put(Schema.Type.ENUM, 15)
+      .put(Schema.Type.EXTENSION, 16)
+      .put(Schema.Type.ARRAY, 17)
+      .put(Schema.Type.FIXED_SIZE_ARRAY, 18)
+      .put(Schema.Type.SET, 19)
+      .put(Schema.Type.MAP, 20)
+      .put(Schema.Type.UNION, 21)
+      .put(Schema.Type.OPTIONAL, 22)
+      .put(Schema.Type.RECORD, 23)
+      .build();
+
+  /** Type code of a reference to a previously written RECORD. */
+  private static final int RECORD_REFERENCE = 24;
+
+  /** Type name of a reference to a previously written RECORD in the JSON form. */
+  private static final String JSON_REFERENCE = "REFERENCE";
+
+  private static final Function<Schema.Type, Schema.Builder> DEFAULT_BUILDERS = Schema::builder;
+
+  /**
+   * @param schema Schema to serialize.
+   * @return The binary form of the Schema.
+   */
+  public static byte[] toBytes(
+      final Schema schema
+  ) {
+    final BinaryOutput output = BinaryOutput.create();
+    write(schema, output);
+    return output.toByteArray();
+  }
+
+  /**
+   * @param bytes Binary form of a Schema written by {@link #toBytes(Schema)}.
+   * @return The deserialized Schema.
+   * @throws IllegalArgumentException if the bytes are not a single serialized Schema.
+   */
+  public static Schema fromBytes(
+      final byte[] bytes
+  ) {
+    return fromBytes(bytes, DEFAULT_BUILDERS);
+  }
+
+  /**
+   * @param bytes Binary form of a Schema written by {@link #toBytes(Schema)}.
+   * @param interner Interner whose canonical instances to return.
+   * @return The canonical instance of the deserialized Schema.
+   * @throws IllegalArgumentException if the bytes are not a single serialized Schema.
+   */
+  public static Schema fromBytes(
+      final byte[] bytes,
+      final SchemaInterner interner
+  ) {
+    return fromBytes(bytes, interner::builder);
+  }
+
+  private static Schema fromBytes(
+      final byte[] bytes,
+      final Function<Schema.Type, Schema.Builder> builders
+  ) {
+    final BinaryInput input = BinaryInput.wrap(bytes);
+    final Schema schema = read(input, builders, Lists.newArrayList(), Lists.newArrayList());
+    Preconditions.checkArgument(!input.hasRemaining(), "Input contains trailing bytes after a Schema.");
+    return schema;
+  }
+
+  /**
+   * @param schema Schema to serialize.
+   * @return The canonical JSON form of the Schema.
+   */
+  public static String toJson(
+      final Schema schema
+  ) {
+    final StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(writer)) {
+      writeJson(schema, generator, Maps.newIdentityHashMap());
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * @param json JSON form of a Schema written by {@link #toJson(Schema)}.
+   * @return The deserialized Schema.
+   * @throws IllegalArgumentException if the JSON is not a serialized Schema.
+   */
+  public static Schema fromJson(
+      final String json
+  ) {
+    return fromJson(json, DEFAULT_BUILDERS);
+  }
+
+  /**
+   * @param json JSON form of a Schema written by {@link #toJson(Schema)}.
+   * @param interner Interner whose canonical instances to return.
+   * @return The canonical instance of the deserialized Schema.
+   * @throws IllegalArgumentException if the JSON is not a serialized Schema.
+   */
+  public static Schema fromJson(
+      final String json,
+      final SchemaInterner interner
+  ) {
+    return fromJson(json, interner::builder);
+  }
+
+  private static Schema fromJson(
+      final String json,
+      final Function<Schema.Type, Schema.Builder> builders
+  ) {
+    final JsonNode node;
+    try {
+      node = JsonUtils.MAPPER.readTree(json);
+    } catch (IOException ioe) {
+      throw new IllegalArgumentException("Input is not valid JSON.", ioe);
+    }
+    return readJson(node, builders, Lists.newArrayList(), Lists.newArrayList());
+  }
+
+  /**
+   * Write a Schema to a BinaryOutput.
+   *
+   * @param schema Schema to write.
+   * @param output BinaryOutput to which to write.
+   */
+  public static void write(
+      final Schema schema,
+      final BinaryOutput output
+  ) {
+    write(schema, output, Maps.newIdentityHashMap());
+  }
+
+  /**
+   * Read a Schema from a BinaryInput.
+   *
+   * @param input BinaryInput from which to read.
+   * @return The Schema read.
+   * @throws IllegalArgumentException if the input does not hold a serialized Schema.
+   */
+  public static Schema read(
+      final BinaryInput input
+  ) {
+    return read(input, DEFAULT_BUILDERS, Lists.newArrayList(), Lists.newArrayList());
+  }
+
+  private static void write(
+      final Schema schema,
+      final BinaryOutput output,
+      final Map<Schema, Integer> recordIndices
+  ) {
+    final Integer recordIndex = recordIndices.get(schema);
+    if (null != recordIndex) {
+      output.writeVarint(RECORD_REFERENCE);
+      output.writeVarint(recordIndex);
+      return;
+    }
+    final Integer typeCode = TYPE_CODES.get(schema.getType());
+    Preconditions.checkArgument(null != typeCode, "Schema type: '%s' has no type code.", schema.getType());
+    output.writeVarint(typeCode);
+    switch (schema.getType()) {
+      case ENUM: {
+        output.writeString(schema.getName());
+        output.writeVarint(schema.getEnumSymbols().size());
+        for (String symbol : schema.getEnumSymbols()) {
+          output.writeString(symbol);
+        }
+        return;
+      }
+      case EXTENSION: {
+        write(schema.getTagSchema(), output, recordIndices);
+        return;
+      }
+      case ARRAY:
+      case SET:
+      case OPTIONAL: {
+        write(schema.getElementSchema(), output, recordIndices);
+        return;
+      }
+      case FIXED_SIZE_ARRAY: {
+        output.writeVarint(schema.getSize());
+        write(schema.getElementSchema(), output, recordIndices);
+        return;
+      }
+      case MAP: {
+        write(schema.getKeySchema(), output, recordIndices);
+        write(schema.getValueSchema(), output, recordIndices);
+        return;
+      }
+      case UNION: {
+        output.writeVarint(schema.getBranchSchemas().size());
+        for (Schema branchSchema : schema.getBranchSchemas()) {
+          write(branchSchema, output, recordIndices);
+        }
+        return;
+      }
+      case RECORD: {
+        recordIndices.put(schema, recordIndices.size());
+        output.writeString(schema.getName());
+        output.writeVarint(schema.getFieldSchemas().size());
+        for (Map.Entry<String, Schema> field : schema.getFieldSchemas().entrySet()) {
+          output.writeString(field.getKey());
+          write(field.getValue(), output, recordIndices);
+        }
+        return;
+      }
+      default: return;
+    }
+  }
+
+  /**
+   * @param builders Creates the builder of each read Schema.
+   * @param recordBuilders Builders of the records read so far, in the order they were written.
+   * @param records Built records, in the same order. Null for records which are still being read.
+   */
+  private static Schema read(
+      final BinaryInput input,
+      final Function<Schema.Type, Schema.Builder> builders,
+      final List<Schema.Builder> recordBuilders,
+      final List<Schema> records
+  ) {
+    final int code = input.readLength();
+    if (code == RECORD_REFERENCE) {
+      final int recordIndex = input.readLength();
+      Preconditions.checkArgument(
+          recordIndex < records.size(),
+          "Record reference: '%s' is out of range.",
+          recordIndex
+      );
+      final Schema record = records.get(recordIndex);
+      // references from within a record which is still being read refer to its placeholder.
+      return (null != record) ? record : recordBuilders.get(recordIndex).getPlaceholderSchema();
+    }
+    final Schema.Type type = TYPE_CODES.inverse().get(code);
+    Preconditions.checkArgument(null != type, "Unknown Schema type code: '%s'.", code);
+    final Schema.Builder builder = builders.apply(type);
+    switch (type) {
+      case ENUM: {
+        builder.setName(input.readString());
+        final int symbolCount = input.readLength();
+        final ImmutableSet.Builder<String> symbols = ImmutableSet.builder();
+        for (int i = 0; i < symbolCount; i++) {
+          symbols.add(input.readString());
+        }
+        return builder.setEnumSymbols(symbols.build()).build();
+      }
+      case EXTENSION: {
+        return builder.setTagSchema(read(input, builders, recordBuilders, records)).build();
+      }
+      case ARRAY:
+      case SET:
+      case OPTIONAL: {
+        return builder.setElementSchema(read(input, builders, recordBuilders, records)).build();
+      }
+      case FIXED_SIZE_ARRAY: {
+        builder.setSize(input.readLength());
+        return builder.setElementSchema(read(input, builders, recordBuilders, records)).build();
+      }
+      case MAP: {
+        builder.setKeySchema(read(input, builders, recordBuilders, records));
+        return builder.setValueSchema(read(input, builders, recordBuilders, records)).build();
+      }
+      case UNION: {
+        final int branchCount = input.readLength();
+        for (int i = 0; i < branchCount; i++) {
+          builder.addBranchSchema(read(input, builders, recordBuilders, records));
+        }
+        return builder.build();
+      }
+      case RECORD: {
+        final int recordIndex = records.size();
+        recordBuilders.add(builder);
+        records.add(null);
+        builder.setName(input.readString());
+        final int fieldCount = input.readLength();
+        for (int i = 0; i < fieldCount; i++) {
+          final String fieldName = input.readString();
+          builder.setFieldSchema(fieldName, read(input, builders, recordBuilders, records));
+        }
+        final Schema record = builder.build();
+        records.set(recordIndex, record);
+        return record;
+      }
+      default: return builder.build();
+    }
+  }
+
+  private static void writeJson(
+      final Schema schema,
+      final JsonGenerator generator,
+      final Map<Schema, Integer> recordIndices
+  ) throws IOException {
+    final Integer recordIndex = recordIndices.get(schema);
+    if (null != recordIndex) {
+      generator.writeStartObject();
+      generator.writeStringField("type", JSON_REFERENCE);
+      generator.writeNumberField("record", recordIndex);
+      generator.writeEndObject();
+      return;
+    }
+    switch (schema.getType()) {
+      case ENUM: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeStringField("name", schema.getName());
+        generator.writeArrayFieldStart("symbols");
+        for (String symbol : schema.getEnumSymbols()) {
+          generator.writeString(symbol);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        return;
+      }
+      case EXTENSION: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeFieldName("tag");
+        writeJson(schema.getTagSchema(), generator, recordIndices);
+        generator.writeEndObject();
+        return;
+      }
+      case ARRAY:
+      case SET:
+      case OPTIONAL: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeFieldName("element");
+        writeJson(schema.getElementSchema(), generator, recordIndices);
+        generator.writeEndObject();
+        return;
+      }
+      case FIXED_SIZE_ARRAY: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeNumberField("size", schema.getSize());
+        generator.writeFieldName("element");
+        writeJson(schema.getElementSchema(), generator, recordIndices);
+        generator.writeEndObject();
+        return;
+      }
+      case MAP: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeFieldName("key");
+        writeJson(schema.getKeySchema(), generator, recordIndices);
+        generator.writeFieldName("value");
+        writeJson(schema.getValueSchema(), generator, recordIndices);
+        generator.writeEndObject();
+        return;
+      }
+      case UNION: {
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeArrayFieldStart("branches");
+        for (Schema branchSchema : schema.getBranchSchemas()) {
+          writeJson(branchSchema, generator, recordIndices);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        return;
+      }
+      case RECORD: {
+        recordIndices.put(schema, recordIndices.size());
+        generator.writeStartObject();
+        generator.writeStringField("type", schema.getType().name());
+        generator.writeStringField("name", schema.getName());
+        generator.writeArrayFieldStart("fields");
+        for (Map.Entry<String, Schema> field : schema.getFieldSchemas().entrySet()) {
+          generator.writeStartObject();
+          generator.writeStringField("name", field.getKey());
+          generator.writeFieldName("schema");
+          writeJson(field.getValue(), generator, recordIndices);
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        return;
+      }
+      default: {
+        generator.writeString(schema.getType().name());
+      }
+    }
+  }
+
+  private static JsonNode field(
+      final JsonNode node,
+      final String fieldName
+  ) {
+    final JsonNode field = node.get(fieldName);
+    Preconditions.checkArgument(null != field, "Schema JSON: '%s' is missing field: '%s'.", node, fieldName);
+    return field;
+  }
+
+  private static Schema.Type type(
+      final String typeName
+  ) {
+    try {
+      return Schema.Type.valueOf(typeName);
+    } catch (IllegalArgumentException iae) {
+      throw new IllegalArgumentException(String.format("Unknown Schema type: '%s'.", typeName), iae);
+    }
+  }
+
+  /** See {@link #read(BinaryInput, Function, List, List)}. */
+  private static Schema readJson(
+      final JsonNode node,
+      final Function<Schema.Type, Schema.Builder> builders,
+      final List<Schema.Builder> recordBuilders,
+      final List<Schema> records
+  ) {
+    if (node.isTextual()) {
+      return builders.apply(type(node.textValue())).build();
+    }
+    Preconditions.checkArgument(node.isObject(), "Schema JSON: '%s' is not a type name or object.", node);
+    final String typeName = field(node, "type").asText();
+    if (JSON_REFERENCE.equals(typeName)) {
+      final int recordIndex = field(node, "record").asInt();
+      Preconditions.checkArgument(
+          recordIndex >= 0 && recordIndex < records.size(),
+          "Record reference: '%s' is out of range.",
+          recordIndex
+      );
+      final Schema record = records.get(recordIndex);
+      // references from within a record which is still being read refer to its placeholder.
+      return (null != record) ? record : recordBuilders.get(recordIndex).getPlaceholderSchema();
+    }
+    final Schema.Type type = type(typeName);
+    final Schema.Builder builder = builders.apply(type);
+    switch (type) {
+      case ENUM: {
+        builder.setName(field(node, "name").asText());
+        final ImmutableSet.Builder<String> symbols = ImmutableSet.builder();
+        field(node, "symbols").forEach(symbol -> symbols.add(symbol.asText()));
+        return builder.setEnumSymbols(symbols.build()).build();
+      }
+      case EXTENSION: {
+        return builder.setTagSchema(readJson(field(node, "tag"), builders, recordBuilders, records)).build();
+      }
+      case ARRAY:
+      case SET:
+      case OPTIONAL: {
+        return builder.setElementSchema(readJson(field(node, "element"), builders, recordBuilders, records)).build();
+      }
+      case FIXED_SIZE_ARRAY: {
+        builder.setSize(field(node, "size").asInt());
+        return builder.setElementSchema(readJson(field(node, "element"), builders, recordBuilders, records)).build();
+      }
+      case MAP: {
+        builder.setKeySchema(readJson(field(node, "key"), builders, recordBuilders, records));
+        return builder.setValueSchema(readJson(field(node, "value"), builders, recordBuilders, records)).build();
+      }
+      case UNION: {
+        for (JsonNode branch : field(node, "branches")) {
+          builder.addBranchSchema(readJson(branch, builders, recordBuilders, records));
+        }
+        return builder.build();
+      }
+      case RECORD: {
+        final int recordIndex = records.size();
+        recordBuilders.add(builder);
+        records.add(null);
+        builder.setName(field(node, "name").asText());
+        for (JsonNode field : field(node, "fields")) {
+          builder.setFieldSchema(
+              field(field, "name").asText(),
+              readJson(field(field, "schema"), builders, recordBuilders, records)
+          );
+        }
+        final Schema record = builder.build();
+        records.set(recordIndex, record);
+        return record;
+      }
+      default: return builder.build();
+    }
+  }
+
+  private SchemaSerializer() { }
+}
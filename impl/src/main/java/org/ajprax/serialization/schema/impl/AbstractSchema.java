@@ -10,6 +10,38 @@ import org.ajprax.serialization.schema.Schema;
  */
 public abstract class AbstractSchema implements Schema {
 
+  // Memoized lazily rather than at construction because a Schema which refers to an unfilled
+  // placeholder record cannot be fingerprinted until the placeholder is filled.
+  private long mFingerprint;
+  private volatile boolean mHasFingerprint = false;
+  private long mLayoutFingerprint;
+  private volatile boolean mHasLayoutFingerprint = false;
+
+  @Override
+  public long getFingerprint() {
+    if (!mHasFingerprint) {
+      mFingerprint = SchemaRecursionHelpers.fingerprint(this);
+      mHasFingerprint = true;
+    }
+    return mFingerprint;
+  }
+
+  @Override
+  public long getLayoutFingerprint() {
+    if (!mHasLayoutFingerprint) {
+      mLayoutFingerprint = SchemaRecursionHelpers.layoutFingerprint(this);
+      mHasLayoutFingerprint = true;
+    }
+    return mLayoutFingerprint;
+  }
+
+  /**
+   * @return Whether the fingerprint of this Schema has already been computed.
+   */
+  boolean hasFingerprint() {
+    return mHasFingerprint;
+  }
+
   // Enum only
   public ImmutableSet<String> getEnumSymbols() {
     throw new UnsupportedOperationException(String.format("Schema: '%s' is not an ENUM.", getName()));
@@ -45,6 +77,11 @@ public abstract class AbstractSchema implements Schema {
     throw new UnsupportedOperationException(String.format("Schema: '%s' is not a RECORD.", getName()));
   }
 
+  // Record only
+  public int getFieldIndex(final String fieldName) {
+    throw new UnsupportedOperationException(String.format("Schema: '%s' is not a RECORD.", getName()));
+  }
+
   // Array, FixedSizeArray, Set, Optional
   public Schema getElementSchema() {
     throw new UnsupportedOperationException(String.format("Schema: '%s' is not an ARRAY, FIXED_SIZE_ARRAY, SET, or OPTIONAL.", getName()));
@@ -57,17 +94,23 @@ public abstract class AbstractSchema implements Schema {
 
   @Override
   public int hashCode() {
-    return SchemaRecursionHelpers.hashCode(this);
+    return Long.hashCode(getFingerprint());
   }
 
   @Override
   public boolean equals(
       final Object obj
   ) {
-    if (obj == null || !(obj instanceof Schema)) {
+    if (this == obj) {
+      return true;
+    } else if (obj == null || !(obj instanceof Schema)) {
       return false;
     } else {
-      return SchemaRecursionHelpers.equals(this, (Schema) obj);
+      final Schema that = (Schema) obj;
+      // differing fingerprints rule out equality without walking the Schema graphs.
+      return getType() == that.getType()
+          && getFingerprint() == that.getFingerprint()
+          && SchemaRecursionHelpers.equals(this, that);
     }
   }
 }
@@ -30,8 +30,20 @@ public class RecordSchemaImpl extends AbstractSchema {
     return new RecordSchemaImpl(name, Optional.empty());
   }
 
+  private static ImmutableMap<String, Integer> fieldIndices(
+      final ImmutableMap<String, Schema> fieldSchemas
+  ) {
+    final ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+    int index = 0;
+    for (String fieldName : fieldSchemas.keySet()) {
+      builder.put(fieldName, index++);
+    }
+    return builder.build();
+  }
+
   private final String mName;
   private Optional<ImmutableMap<String, Schema>> mFieldSchemas;
+  private ImmutableMap<String, Integer> mFieldIndices;
 
   private RecordSchemaImpl(
       final String name,
@@ -39,6 +51,7 @@ public class RecordSchemaImpl extends AbstractSchema {
   ) {
     mName = name;
     mFieldSchemas = fieldSchemas;
+    mFieldIndices = fieldSchemas.map(RecordSchemaImpl::fieldIndices).orElse(null);
   }
 
   /**
@@ -55,6 +68,15 @@ public class RecordSchemaImpl extends AbstractSchema {
         "May not fillFieldSchemas of a record which already includes field schemas."
     );
     mFieldSchemas = Optional.of(fieldSchemas);
+    mFieldIndices = fieldIndices(fieldSchemas);
+  }
+
+  /**
+   * @return Whether the field schemas of this record are available. False only for a placeholder
+   *     record schema which has not been filled.
+   */
+  boolean hasFieldSchemas() {
+    return mFieldSchemas.isPresent();
   }
 
   @Override
@@ -75,4 +97,16 @@ public class RecordSchemaImpl extends AbstractSchema {
     );
     return mFieldSchemas.get();
   }
+
+  @Override
+  public int getFieldIndex(
+      final String fieldName
+  ) {
+    Preconditions.checkState(
+        mFieldSchemas.isPresent(),
+        "May not call getFieldIndex on a partially built record Schema."
+    );
+    final Integer index = mFieldIndices.get(fieldName);
+    return (null != index) ? index : -1;
+  }
 }
@@ -57,10 +57,26 @@ public final class SchemaBuilderImpl implements Schema.Builder {
   public static SchemaBuilderImpl create(
       final Schema.Type type
   ) {
-    return new SchemaBuilderImpl(type);
+    return new SchemaBuilderImpl(type, null);
+  }
+
+  /**
+   * Create a builder whose built Schemas are canonicalized by the given interner.
+   *
+   * @param type Type of the Schema to build.
+   * @param interner Interner through which to canonicalize built Schemas.
+   * @return A new builder.
+   */
+  public static SchemaBuilderImpl create(
+      final Schema.Type type,
+      final SchemaInterner interner
+  ) {
+    Preconditions.checkNotNull(interner);
+    return new SchemaBuilderImpl(type, interner);
   }
 
   private final Schema.Type mType;
+  private final SchemaInterner mInterner;
   private Schema mElementSchema = null;
   private Integer mSize = null;
   private String mName = null;
@@ -73,9 +89,11 @@ public final class SchemaBuilderImpl implements Schema.Builder {
   private List<Schema> mBranchSchemas = Lists.newArrayList();
 
   private SchemaBuilderImpl(
-      final Schema.Type type
+      final Schema.Type type,
+      final SchemaInterner interner
   ) {
     mType = type;
+    mInterner = interner;
   }
 
   @Override
@@ -330,6 +348,11 @@ public final class SchemaBuilderImpl implements Schema.Builder {
 
   @Override
   public Schema build() {
+    final Schema schema = buildSchema();
+    return (null != mInterner) ? mInterner.intern(schema) : schema;
+  }
+
+  private Schema buildSchema() {
     switch (mType) {
       case UNSIGNED_8:
       case UNSIGNED_16:
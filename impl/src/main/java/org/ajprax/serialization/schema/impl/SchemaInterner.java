@@ -0,0 +1,103 @@
+package org.ajprax.serialization.schema.impl;
+
+import java.util.Set;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.schema.Schema;
+
+/**
+ * Pool of canonical Schema instances. Interning a Schema returns the single pooled instance which
+ * is equal to it, so that Schemas built repeatedly share one instance and compare by reference.
+ *
+ * Canonical instances are weakly referenced and are discarded once they are no longer used outside
+ * the pool. Interners are thread-safe.
+ */
+public final class SchemaInterner {
+
+  public static SchemaInterner create() {
+    return new SchemaInterner();
+  }
+
+  private final Interner<Schema> mInterner = Interners.newWeakInterner();
+
+  private SchemaInterner() { }
+
+  /**
+   * Get the canonical instance of a Schema.
+   *
+   * A Schema which refers to a placeholder record that has not been filled is returned unchanged
+   * because it cannot be compared until the placeholder is filled. The recursive record which
+   * fills the placeholder is interned when it is built.
+   *
+   * A Schema which is equal to the canonical instance but declares its enum symbols or record
+   * fields in another order is also returned unchanged, because their binary layouts differ.
+   *
+   * @param schema Schema to intern.
+   * @return The canonical instance equal to the given Schema.
+   */
+  public Schema intern(
+      final Schema schema
+  ) {
+    if (isComplete(schema, Sets.newIdentityHashSet())) {
+      final Schema canonical = mInterner.intern(schema);
+      return SchemaRecursionHelpers.layoutEquals(canonical, schema) ? canonical : schema;
+    } else {
+      return schema;
+    }
+  }
+
+  /**
+   * Create a builder whose built Schemas are interned by this interner.
+   *
+   * @param type Type of the Schema to build.
+   * @return A new builder.
+   */
+  public Schema.Builder builder(
+      final Schema.Type type
+  ) {
+    return SchemaBuilderImpl.create(type, this);
+  }
+
+  /**
+   * @return Whether no placeholder record reachable from the given Schema is missing its fields.
+   */
+  private static boolean isComplete(
+      final Schema schema,
+      final Set<Schema> visited
+  ) {
+    if (!visited.add(schema)) {
+      return true;
+    }
+    switch (schema.getType()) {
+      case EXTENSION: return isComplete(schema.getTagSchema(), visited);
+      case ARRAY:
+      case FIXED_SIZE_ARRAY:
+      case SET:
+      case OPTIONAL: return isComplete(schema.getElementSchema(), visited);
+      case MAP: return isComplete(schema.getKeySchema(), visited)
+          && isComplete(schema.getValueSchema(), visited);
+      case UNION: {
+        for (Schema branchSchema : schema.getBranchSchemas()) {
+          if (!isComplete(branchSchema, visited)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      case RECORD: {
+        if (schema instanceof RecordSchemaImpl && !((RecordSchemaImpl) schema).hasFieldSchemas()) {
+          return false;
+        }
+        for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+          if (!isComplete(fieldSchema, visited)) {
+            return false;
+          }
+        }
+        return true;
+      }
+      default: return true;
+    }
+  }
+}
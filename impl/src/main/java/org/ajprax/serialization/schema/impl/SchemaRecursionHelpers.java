@@ -1,178 +1,234 @@
 package org.ajprax.serialization.schema.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import org.ajprax.serialization.schema.Schema;
 
 /** Helper methods for recursive Schema operations. */
 public final class SchemaRecursionHelpers {
 
-  /** Unordered pair of Schemas. Equality is tested by reference rather than value. */
-  private static final class SchemaPair {
-    private final Schema mLeft;
-    private final Schema mRight;
+  /**
+   * Set of ordered pairs of Schemas compared by reference, used to remember which pairs of Schemas
+   * are being or have been compared. Open addressing over a flat array of keys, so adding a pair
+   * does not allocate once the set has grown to the size of the Schemas it is used with.
+   *
+   * Each thread reuses one set through {@link #acquire()} and {@link #release()}.
+   */
+  private static final class IdentityPairSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+    /** Sets which grew beyond this many slots are discarded on release rather than reused. */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 14;
 
-    private SchemaPair(
+    private static final ThreadLocal<IdentityPairSet> THREAD_SET = ThreadLocal.withInitial(IdentityPairSet::new);
+
+    /**
+     * @return This thread's set, cleared, or a new set if this thread's set is already in use.
+     */
+    private static IdentityPairSet acquire() {
+      final IdentityPairSet set = THREAD_SET.get();
+      if (set.mInUse) {
+        return new IdentityPairSet();
+      }
+      set.mInUse = true;
+      return set;
+    }
+
+    /** Left and right Schema of the pair in each slot at 2i and 2i + 1. */
+    private Object[] mKeys = new Object[2 * INITIAL_CAPACITY];
+    /** Slots in use, in the order they were filled, so clearing does not scan the whole table. */
+    private int[] mUsedSlots = new int[INITIAL_CAPACITY];
+    private int mSize = 0;
+    private boolean mInUse = false;
+
+    /**
+     * @return Whether the pair was added, false if it was already present.
+     */
+    private boolean add(
         final Schema left,
         final Schema right
     ) {
-      mLeft = left;
-      mRight = right;
-    }
-
-    @Override
-    public String toString() {
-      return MoreObjects.toStringHelper(getClass())
-          .add("left", mLeft)
-          .add("right", mRight)
-          .toString();
+      if (2 * (mSize + 1) > mUsedSlots.length) {
+        grow();
+      }
+      final int mask = mUsedSlots.length - 1;
+      int slot = (System.identityHashCode(left) * 31 + System.identityHashCode(right)) & mask;
+      while (null != mKeys[2 * slot]) {
+        if (mKeys[2 * slot] == left && mKeys[2 * slot + 1] == right) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+      mKeys[2 * slot] = left;
+      mKeys[2 * slot + 1] = right;
+      mUsedSlots[mSize++] = slot;
+      return true;
     }
 
-    @Override
-    public int hashCode() {
-      return Objects.hash(mLeft, mRight);
+    private void grow() {
+      final Object[] keys = mKeys;
+      final int[] usedSlots = mUsedSlots;
+      final int size = mSize;
+      mKeys = new Object[keys.length * 2];
+      mUsedSlots = new int[usedSlots.length * 2];
+      mSize = 0;
+      for (int i = 0; i < size; i++) {
+        add((Schema) keys[2 * usedSlots[i]], (Schema) keys[2 * usedSlots[i] + 1]);
+      }
     }
 
-    @Override
-    public boolean equals(
-        final Object obj
-    ) {
-      // TODO: Consider removing these safety checks to improve performance.
-      // This is a private class which is never called with null values or values of other types.
-      if (obj == null || !obj.getClass().equals(getClass())) {
-        return false;
+    /** Clear this set and return it to its thread for reuse. */
+    private void release() {
+      if (mUsedSlots.length > MAX_RETAINED_CAPACITY) {
+        mKeys = new Object[2 * INITIAL_CAPACITY];
+        mUsedSlots = new int[INITIAL_CAPACITY];
       } else {
-        final SchemaPair that = (SchemaPair) obj;
-        return (this.mLeft == that.mLeft && this.mRight == that.mRight)
-            || (this.mLeft == that.mRight && this.mRight == that.mLeft);
+        for (int i = 0; i < mSize; i++) {
+          mKeys[2 * mUsedSlots[i]] = null;
+          mKeys[2 * mUsedSlots[i] + 1] = null;
+        }
       }
+      mSize = 0;
+      mInUse = false;
     }
   }
 
   private SchemaRecursionHelpers() { }
 
+  /**
+   * @return Whether both Schemas have memoized fingerprints which differ, in which case they are
+   *     not equal. Sound only because fingerprints are computed from the minimal Schema graph, so
+   *     equal Schemas of different shapes have equal fingerprints. Fingerprints are not computed
+   *     here because that would walk the Schemas.
+   */
+  private static boolean knownDifferent(
+      final Schema left,
+      final Schema right
+  ) {
+    return left instanceof AbstractSchema
+        && right instanceof AbstractSchema
+        && ((AbstractSchema) left).hasFingerprint()
+        && ((AbstractSchema) right).hasFingerprint()
+        && left.getFingerprint() != right.getFingerprint();
+  }
+
+  /**
+   * Schemas are compared structurally, matching each child of the left Schema with the child of
+   * the right Schema in the same place. A pair which is already in the visited set is either being
+   * compared, in which case a recursive reference is assumed equal, or has been found equal. Any
+   * unequal pair makes the whole comparison unequal, so unequal pairs need not be remembered.
+   *
+   * @param ordered Whether enum symbols and record fields must also be in the same order.
+   */
   private static boolean equals(
       final Schema left,
       final Schema right,
-      final Map<SchemaPair, Optional<Boolean>> knownPairs
+      final boolean ordered,
+      final IdentityPairSet visited
   ) {
     if (left == right) {
       return true;
-    } else if (left == null || right == null || !Objects.equals(left.getType(), right.getType())) {
+    } else if (left == null || right == null || left.getType() != right.getType() || knownDifferent(left, right)) {
       return false;
+    } else if (!visited.add(left, right)) {
+      return true;
     } else {
-      final SchemaPair pair = new SchemaPair(left, right);
-      final Optional<Boolean> knownEquals = knownPairs.get(pair);
-      if (knownEquals != null) {
-        // TODO is it ever possible to get into a situation where we are comparing two schemas we
-        // know to be unequal within a single schema graph comparison? Should a single false
-        // short circuit the entire process? In other words, can knownEquals ever contain false?
-        // if absent, recursive comparison in progress, break recursion.
-        return knownEquals.orElse(true);
-      } else {
-        switch(left.getType()) {
-          case UNSIGNED_8:
-          case UNSIGNED_16:
-          case UNSIGNED_32:
-          case UNSIGNED_64:
-          case UNSIGNED_BIG:
-          case SIGNED_8:
-          case SIGNED_16:
-          case SIGNED_32:
-          case SIGNED_64:
-          case SIGNED_BIG:
-          case FLOAT_32:
-          case FLOAT_64:
-          case FLOAT_BIG:
-          case BOOLEAN:
-          case STRING: {
-            // primitive schemas are equal if their types are equal.
-            knownPairs.put(pair, Optional.of(true));
-            return true;
-          }
-          case ENUM: {
-            // enum schemas are equal if their name and value sets are equal.
-            final boolean equal = Objects.equals(left.getName(), right.getName())
-                && Objects.equals(left.getEnumSymbols(), right.getEnumSymbols());
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
-          }
-          case EXTENSION: {
-            // extension schemas are equal if their tag schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = equals(left.getTagSchema(), right.getTagSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
-          }
-          case ARRAY: {
-            // array schemas are equal if their element schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = equals(left.getElementSchema(), right.getElementSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
-          }
-          case FIXED_SIZE_ARRAY: {
-            // fixed size array schema are equal if their size and element schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = left.getSize() == right.getSize()
-                && equals(left.getElementSchema(), right.getElementSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
-          }
-          case SET: {
-            // set schemas are equal if their element schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = equals(left.getElementSchema(), right.getElementSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
-          }
-          case MAP: {
-            // map schemas are equal if the key and value schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = equals(left.getKeySchema(), right.getKeySchema(), knownPairs)
-                && equals(left.getValueSchema(), right.getValueSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
+      switch(left.getType()) {
+        case UNSIGNED_8:
+        case UNSIGNED_16:
+        case UNSIGNED_32:
+        case UNSIGNED_64:
+        case UNSIGNED_BIG:
+        case SIGNED_8:
+        case SIGNED_16:
+        case SIGNED_32:
+        case SIGNED_64:
+        case SIGNED_BIG:
+        case FLOAT_32:
+        case FLOAT_64:
+        case FLOAT_BIG:
+        case BOOLEAN:
+        case STRING: {
+          // primitive schemas are equal if their types are equal.
+          return true;
+        }
+        case ENUM: {
+          // enum schemas are equal if their name and value sets are equal.
+          return Objects.equals(left.getName(), right.getName())
+              && Objects.equals(left.getEnumSymbols(), right.getEnumSymbols())
+              && (!ordered || left.getEnumSymbols().asList().equals(right.getEnumSymbols().asList()));
+        }
+        case EXTENSION: {
+          // extension schemas are equal if their tag schemas are equal.
+          return equals(left.getTagSchema(), right.getTagSchema(), ordered, visited);
+        }
+        case ARRAY:
+        case SET:
+        case OPTIONAL: {
+          // array, set and optional schemas are equal if their element schemas are equal.
+          return equals(left.getElementSchema(), right.getElementSchema(), ordered, visited);
+        }
+        case FIXED_SIZE_ARRAY: {
+          // fixed size array schema are equal if their size and element schemas are equal.
+          return left.getSize() == right.getSize()
+              && equals(left.getElementSchema(), right.getElementSchema(), ordered, visited);
+        }
+        case MAP: {
+          // map schemas are equal if the key and value schemas are equal.
+          return equals(left.getKeySchema(), right.getKeySchema(), ordered, visited)
+              && equals(left.getValueSchema(), right.getValueSchema(), ordered, visited);
+        }
+        case UNION: {
+          // union schemas are equal if their branch schemas are equal.
+          final List<Schema> leftBranchSchemas = left.getBranchSchemas();
+          final List<Schema> rightBranchSchemas = right.getBranchSchemas();
+          if (leftBranchSchemas.size() != rightBranchSchemas.size()) {
+            return false;
           }
-          case UNION: {
-            // union schemas are equal if their branch schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final List<Schema> leftBranchSchemas = left.getBranchSchemas();
-            final List<Schema> rightBranchSchemas = right.getBranchSchemas();
-            boolean equal = leftBranchSchemas.size() == rightBranchSchemas.size();
-            for (int i = 0; i < leftBranchSchemas.size(); i++) {
-              equal = equal && equals(leftBranchSchemas.get(i), rightBranchSchemas.get(i), knownPairs);
+          for (int i = 0; i < leftBranchSchemas.size(); i++) {
+            if (!equals(leftBranchSchemas.get(i), rightBranchSchemas.get(i), ordered, visited)) {
+              return false;
             }
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
           }
-          case OPTIONAL: {
-            // optional schemas are equal if their element schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final boolean equal = equals(left.getElementSchema(), right.getElementSchema(), knownPairs);
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
+          return true;
+        }
+        case RECORD: {
+          // record schemas are equal if their names are equal and their field names and schemas are equal.
+          final ImmutableMap<String, Schema> leftFieldSchemas = left.getFieldSchemas();
+          final ImmutableMap<String, Schema> rightFieldSchemas = right.getFieldSchemas();
+          if (!Objects.equals(left.getName(), right.getName()) || leftFieldSchemas.size() != rightFieldSchemas.size()) {
+            return false;
+          }
+          if (ordered && !leftFieldSchemas.keySet().asList().equals(rightFieldSchemas.keySet().asList())) {
+            return false;
           }
-          case RECORD: {
-            // record schemas are equal if their names are equal and their field names and schemas are equal.
-            knownPairs.put(pair, Optional.empty());
-            final Map<String, Schema> leftFieldSchemas = left.getFieldSchemas();
-            final Map<String, Schema> rightFieldSchemas = right.getFieldSchemas();
-            boolean equal = Objects.equals(leftFieldSchemas.keySet(), rightFieldSchemas.keySet());
-            for (String fieldName : leftFieldSchemas.keySet()) {
-              equal = equal && equals(leftFieldSchemas.get(fieldName), rightFieldSchemas.get(fieldName), knownPairs);
+          // equal sizes and every left field in the right record means the field names are equal.
+          final ImmutableList<String> leftFieldNames = leftFieldSchemas.keySet().asList();
+          for (int i = 0; i < leftFieldNames.size(); i++) {
+            final String fieldName = leftFieldNames.get(i);
+            if (!equals(leftFieldSchemas.get(fieldName), rightFieldSchemas.get(fieldName), ordered, visited)) {
+              return false;
             }
-            knownPairs.put(pair, Optional.of(equal));
-            return equal;
           }
-          default: throw new RuntimeException(String.format("Unknown schema type: '%s'", left.getType()));
+          return true;
         }
+        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", left.getType()));
       }
     }
   }
@@ -302,84 +358,220 @@ public final class SchemaRecursionHelpers {
     }
   }
 
-  private static int hashCode(
+  /**
+   * Accumulates the CRC-64-AVRO (Rabin) fingerprint of a canonical byte form of a Schema.
+   */
+  private static final class Fingerprinter {
+    private static final long EMPTY = 0xc15d213aa4d7a795L;
+    private static final long[] TABLE = new long[256];
+    static {
+      for (int i = 0; i < 256; i++) {
+        long fingerprint = i;
+        for (int j = 0; j < 8; j++) {
+          fingerprint = (fingerprint >>> 1) ^ (EMPTY & -(fingerprint & 1L));
+        }
+        TABLE[i] = fingerprint;
+      }
+    }
+
+    private long mValue = EMPTY;
+
+    private void update(
+        final int b
+    ) {
+      mValue = (mValue >>> 8) ^ TABLE[(int) (mValue ^ b) & 0xff];
+    }
+
+    private void updateInt(
+        final int value
+    ) {
+      update(value);
+      update(value >>> 8);
+      update(value >>> 16);
+      update(value >>> 24);
+    }
+
+    private void updateString(
+        final String value
+    ) {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      updateInt(bytes.length);
+      for (byte b : bytes) {
+        update(b);
+      }
+    }
+  }
+
+  /** Canonical form marker for a reference to a Schema which has already been written. */
+  private static final int BACK_REFERENCE = 0xff;
+
+  /**
+   * @param ordered Whether to keep the declared order, otherwise the names are sorted.
+   * @return Enum symbols or record field names in canonical order.
+   */
+  private static List<String> canonicalNames(
+      final ImmutableSet<String> names,
+      final boolean ordered
+  ) {
+    return ordered ? names.asList() : Ordering.natural().sortedCopy(names);
+  }
+
+  /**
+   * @return The children of a Schema in canonical order: record fields in canonical name order
+   *     and other children in their given order.
+   */
+  private static List<Schema> canonicalChildren(
       final Schema schema,
-      final Map<Schema, Optional<Integer>> knownSchemas
+      final boolean ordered
   ) {
-    final Optional<Integer> knownHashCode = knownSchemas.get(schema);
-    if (knownHashCode != null) {
-      // if absent, recursive hashCode in progress, break recursion.
-      return knownHashCode.orElse(0);
-    } else {
-      knownSchemas.put(schema, Optional.empty());
-      switch (schema.getType()) {
-        case UNSIGNED_8:
-        case UNSIGNED_16:
-        case UNSIGNED_32:
-        case UNSIGNED_64:
-        case UNSIGNED_BIG:
-        case SIGNED_8:
-        case SIGNED_16:
-        case SIGNED_32:
-        case SIGNED_64:
-        case SIGNED_BIG:
-        case FLOAT_32:
-        case FLOAT_64:
-        case FLOAT_BIG:
-        case BOOLEAN:
-        case STRING: {
-          final int hashCode = Objects.hashCode(schema.getType());
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case ENUM: {
-          final int hashCode = Objects.hash(schema.getType(), schema.getName(), schema.getEnumSymbols());
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case EXTENSION: {
-          final int hashCode = Objects.hash(schema.getType(), hashCode(schema.getTagSchema(), knownSchemas));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case ARRAY: {
-          final int hashCode = Objects.hash(schema.getType(), hashCode(schema.getElementSchema(), knownSchemas));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case FIXED_SIZE_ARRAY: {
-          final int hashCode = Objects.hash(schema.getType(), schema.getSize(), hashCode(schema.getElementSchema(), knownSchemas));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case SET: {
-          final int hashCode = Objects.hash(schema.getType(), hashCode(schema.getElementSchema(), knownSchemas));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
-        }
-        case MAP: {
-          final int hashCode = Objects.hash(schema.getType(), hashCode(schema.getKeySchema(), knownSchemas), hashCode(schema.getValueSchema()));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
+    if (Schema.Type.RECORD == schema.getType()) {
+      final Map<String, Schema> fieldSchemas = schema.getFieldSchemas();
+      return Lists.transform(canonicalNames(schema.getFieldSchemas().keySet(), ordered), fieldSchemas::get);
+    }
+    return children(schema);
+  }
+
+  /**
+   * @return The properties of a Schema, other than its children, which equality compares.
+   */
+  private static List<Object> label(
+      final Schema schema,
+      final boolean ordered
+  ) {
+    switch (schema.getType()) {
+      case ENUM: return ImmutableList.of(
+          schema.getType(),
+          schema.getName(),
+          canonicalNames(schema.getEnumSymbols(), ordered)
+      );
+      case FIXED_SIZE_ARRAY: return ImmutableList.of(schema.getType(), schema.getSize());
+      case UNION: return ImmutableList.of(schema.getType(), schema.getBranchSchemas().size());
+      case RECORD: return ImmutableList.of(
+          schema.getType(),
+          schema.getName(),
+          canonicalNames(schema.getFieldSchemas().keySet(), ordered)
+      );
+      default: return ImmutableList.of(schema.getType());
+    }
+  }
+
+  /**
+   * Partition the Schemas of a graph into classes of equal Schemas.
+   *
+   * Schemas start out partitioned by their labels and each round splits every class by the
+   * classes of its members' children, until a round splits no class. Members of a final class have
+   * the same label and children of the same classes, so they are equal according to
+   * {@link #equals(Schema, Schema)}, and Schemas in different classes are not.
+   *
+   * @param nodes Every Schema reachable from the root, the root first.
+   * @param children Indices in nodes of the canonical children of each Schema.
+   * @param ordered Whether Schemas whose enum symbols or record fields differ in order differ.
+   * @return The class of each Schema.
+   */
+  private static int[] equalityClasses(
+      final List<Schema> nodes,
+      final int[][] children,
+      final boolean ordered
+  ) {
+    final Map<List<Object>, Integer> labels = Maps.newHashMap();
+    int[] classes = new int[nodes.size()];
+    for (int i = 0; i < nodes.size(); i++) {
+      final List<Object> label = label(nodes.get(i), ordered);
+      Integer labelClass = labels.get(label);
+      if (null == labelClass) {
+        labelClass = labels.size();
+        labels.put(label, labelClass);
+      }
+      classes[i] = labelClass;
+    }
+    int classCount = labels.size();
+    while (true) {
+      final Map<List<Integer>, Integer> signatures = Maps.newHashMap();
+      final int[] refined = new int[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        final List<Integer> signature = Lists.newArrayListWithCapacity(children[i].length + 1);
+        signature.add(classes[i]);
+        for (int child : children[i]) {
+          signature.add(classes[child]);
         }
-        case UNION: {
-          final int hashCode = Objects.hash(schema.getType(), Lists.transform(schema.getBranchSchemas(), (Schema branchSchema) -> hashCode(branchSchema, knownSchemas)));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
+        Integer signatureClass = signatures.get(signature);
+        if (null == signatureClass) {
+          signatureClass = signatures.size();
+          signatures.put(signature, signatureClass);
         }
-        case OPTIONAL: {
-          final int hashCode = Objects.hash(schema.getType(), hashCode(schema.getElementSchema(), knownSchemas));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
+        refined[i] = signatureClass;
+      }
+      // signatures include the current class, so rounds only split classes and an equal count
+      // means no class was split.
+      if (signatures.size() == classCount) {
+        return classes;
+      }
+      classes = refined;
+      classCount = signatures.size();
+    }
+  }
+
+  /**
+   * Write the canonical form of the class of a Schema, which is its label followed by its children,
+   * or a back reference if the class has already been written.
+   *
+   * @param node Index of the Schema.
+   * @param canonicalIndices Order in which each class was first written, or -1 if it has not been.
+   * @param writtenCount Number of classes written so far.
+   * @return Number of classes written after writing this Schema.
+   */
+  private static int fingerprint(
+      final int node,
+      final List<Schema> nodes,
+      final int[][] children,
+      final int[] classes,
+      final int[] canonicalIndices,
+      final int writtenCount,
+      final boolean ordered,
+      final Fingerprinter fingerprinter
+  ) {
+    final int equalityClass = classes[node];
+    if (canonicalIndices[equalityClass] >= 0) {
+      fingerprinter.update(BACK_REFERENCE);
+      fingerprinter.updateInt(canonicalIndices[equalityClass]);
+      return writtenCount;
+    }
+    canonicalIndices[equalityClass] = writtenCount;
+    int written = writtenCount + 1;
+    final Schema schema = nodes.get(node);
+    // type names rather than ordinals, so fingerprints survive reordering of the Type constants.
+    fingerprinter.updateString(schema.getType().name());
+    switch (schema.getType()) {
+      case ENUM: {
+        fingerprinter.updateString(schema.getName());
+        fingerprinter.updateInt(schema.getEnumSymbols().size());
+        for (String symbol : canonicalNames(schema.getEnumSymbols(), ordered)) {
+          fingerprinter.updateString(symbol);
         }
-        case RECORD: {
-          final int hashCode = Objects.hash(schema.getType(), schema.getName(), Maps.transformValues(schema.getFieldSchemas(), (Schema fieldSchema) -> hashCode(fieldSchema, knownSchemas)));
-          knownSchemas.put(schema, Optional.of(hashCode));
-          return hashCode;
+        break;
+      }
+      case FIXED_SIZE_ARRAY: {
+        fingerprinter.updateInt(schema.getSize());
+        break;
+      }
+      case UNION: {
+        fingerprinter.updateInt(schema.getBranchSchemas().size());
+        break;
+      }
+      case RECORD: {
+        fingerprinter.updateString(schema.getName());
+        fingerprinter.updateInt(schema.getFieldSchemas().size());
+        for (String fieldName : canonicalNames(schema.getFieldSchemas().keySet(), ordered)) {
+          fingerprinter.updateString(fieldName);
         }
-        default: throw new RuntimeException(String.format("Unknown schema type: '%s'", schema.getType()));
+        break;
       }
+      default: break;
+    }
+    for (int child : children[node]) {
+      written = fingerprint(child, nodes, children, classes, canonicalIndices, written, ordered, fingerprinter);
     }
+    return written;
   }
 
   /**
@@ -400,22 +592,123 @@ public final class SchemaRecursionHelpers {
   }
 
   /**
-   * Hash a Schema to an integer.
+   * Compute a 64-bit structural fingerprint of a Schema.
+   *
+   * The fingerprint is the CRC-64-AVRO (Rabin) fingerprint of a canonical form of the Schema graph.
+   * The canonical form includes Schema types, names, enum symbols, record field names, union branch
+   * order, and fixed array sizes. Enum symbols and record fields are sorted by name so that Schemas
+   * which are equal according to {@link #equals(org.ajprax.serialization.schema.Schema,
+   * org.ajprax.serialization.schema.Schema)} have the same fingerprint.
+   *
+   * Equal Schemas may be built as graphs of different shapes, e.g. a recursive record and the same
+   * record written out one level before it refers back to itself. The canonical form is therefore
+   * written from the minimal graph: the Schemas reachable from the given Schema are partitioned
+   * into classes of equal Schemas, and each class is written once, in depth first order, with later
+   * references to it written as its position in that order. Each Schema instance is visited once
+   * however many paths lead to it.
    *
-   * If the Schema contains a recursive reference, the recursion is broken and the hash value up to
-   * that point is returned. Recursive loops are identified by reference equality. This recursive
-   * check may require a deeper traversal than the one defined by
-   * {@link #equals(org.ajprax.serialization.schema.Schema, org.ajprax.serialization.schema.Schema)}
-   * but equals relies on hashCode to break recursion so that it may use a hash map internally. As a
-   * result, `hashCode` must use a more fundamental system to break recursion.
+   * Fingerprints are expensive to compute. Use {@link Schema#getFingerprint()}, which memoizes the
+   * result.
    *
-   * @param schema Schema to hash to an integer.
-   * @return An integer reduction of the given Schema.
+   * @param schema Schema to fingerprint.
+   * @return The fingerprint of the given Schema.
    */
-  public static int hashCode(
+  public static long fingerprint(
       final Schema schema
   ) {
-    return hashCode(schema, Maps.newIdentityHashMap());
+    return fingerprint(schema, false);
+  }
+
+  /**
+   * Compute a 64-bit fingerprint of the binary layout of a Schema. Computed as
+   * {@link #fingerprint(Schema)} but with enum symbols and record fields in their declared order,
+   * so that Schemas with the same layout according to {@link #layoutEquals(Schema, Schema)} have
+   * the same layout fingerprint.
+   *
+   * Use {@link Schema#getLayoutFingerprint()}, which memoizes the result.
+   *
+   * @param schema Schema to fingerprint.
+   * @return The layout fingerprint of the given Schema.
+   */
+  public static long layoutFingerprint(
+      final Schema schema
+  ) {
+    return fingerprint(schema, true);
+  }
+
+  private static long fingerprint(
+      final Schema schema,
+      final boolean ordered
+  ) {
+    final List<Schema> nodes = Lists.newArrayList(schema);
+    final Map<Schema, Integer> indices = Maps.newIdentityHashMap();
+    indices.put(schema, 0);
+    final List<int[]> children = Lists.newArrayList();
+    for (int i = 0; i < nodes.size(); i++) {
+      final List<Schema> nodeChildren = canonicalChildren(nodes.get(i), ordered);
+      final int[] childIndices = new int[nodeChildren.size()];
+      for (int j = 0; j < childIndices.length; j++) {
+        final Schema child = nodeChildren.get(j);
+        Integer index = indices.get(child);
+        if (null == index) {
+          index = nodes.size();
+          indices.put(child, index);
+          nodes.add(child);
+        }
+        childIndices[j] = index;
+      }
+      children.add(childIndices);
+    }
+    final int[][] childArrays = children.toArray(new int[children.size()][]);
+    final int[] classes = equalityClasses(nodes, childArrays, ordered);
+    final int[] canonicalIndices = new int[nodes.size()];
+    Arrays.fill(canonicalIndices, -1);
+    final Fingerprinter fingerprinter = new Fingerprinter();
+    fingerprint(0, nodes, childArrays, classes, canonicalIndices, 0, ordered, fingerprinter);
+    return fingerprinter.mValue;
+  }
+
+  /**
+   * Whether a Schema refers back to itself.
+   *
+   * Recursive Schemas are built by filling a placeholder from
+   * {@link Schema.Builder#getPlaceholderSchema()}, so a recursive reference is a reference to the
+   * same Schema instance. Records which contain, but are not part of, a recursive Schema are not
+   * themselves recursive.
+   *
+   * @param schema Schema to check.
+   * @return Whether the given Schema is reachable from its own child Schemas.
+   */
+  public static boolean isRecursive(
+      final Schema schema
+  ) {
+    final Set<Schema> visited = Sets.newIdentityHashSet();
+    final Deque<Schema> pending = new ArrayDeque<>(children(schema));
+    while (!pending.isEmpty()) {
+      final Schema next = pending.pop();
+      if (next == schema) {
+        return true;
+      } else if (visited.add(next)) {
+        pending.addAll(children(next));
+      }
+    }
+    return false;
+  }
+
+  private static List<Schema> children(
+      final Schema schema
+  ) {
+    switch (schema.getType()) {
+      case EXTENSION: return ImmutableList.of(schema.getTagSchema());
+      case ARRAY:
+      case FIXED_SIZE_ARRAY:
+      case SET:
+      case OPTIONAL: return ImmutableList.of(schema.getElementSchema());
+      case MAP: return ImmutableList.of(schema.getKeySchema(), schema.getValueSchema());
+      case UNION: return schema.getBranchSchemas();
+      case RECORD: return schema.getFieldSchemas().values().asList();
+      default: return ImmutableList.of();
+    }
   }
 
   /**
@@ -433,6 +726,40 @@ public final class SchemaRecursionHelpers {
       final Schema left,
       final Schema right
   ) {
-    return equals(left, right, Maps.newHashMap());
+    final IdentityPairSet visited = IdentityPairSet.acquire();
+    try {
+      return equals(left, right, false, visited);
+    } finally {
+      visited.release();
+    }
+  }
+
+  /**
+   * Compare two Schemas for equality of their binary layout.
+   *
+   * Schemas with the same layout are equal according to {@link #equals(Schema, Schema)} and also
+   * declare their enum symbols and record fields in the same order. The binary form writes enums
+   * as the index of their symbol and record fields in declaration order, so only Schemas with the
+   * same layout may share binary codecs.
+   *
+   * @param left Left Schema to compare.
+   * @param right Right Schema to compare.
+   * @return Whether the two Schemas have the same layout.
+   */
+  public static boolean layoutEquals(
+      final Schema left,
+      final Schema right
+  ) {
+    if (left == right) {
+      return true;
+    } else if (left.getLayoutFingerprint() != right.getLayoutFingerprint()) {
+      return false;
+    }
+    final IdentityPairSet visited = IdentityPairSet.acquire();
+    try {
+      return equals(left, right, true, visited);
+    } finally {
+      visited.release();
+    }
   }
 }
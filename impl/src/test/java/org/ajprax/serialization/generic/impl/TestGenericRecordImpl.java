@@ -0,0 +1,73 @@
+package org.ajprax.serialization.generic.impl;
+
+import java.util.Objects;
+
+import com.google.common.collect.ImmutableMap;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGenericRecordImpl {
+
+  private static Schema schema() {
+    return Schema.builder(Type.RECORD)
+        .setName("r")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .setFieldSchema("b", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("c", Schema.primitive(Type.BOOLEAN))
+        .build();
+  }
+
+  @Test
+  public void testFieldValues() {
+    final Schema schema = schema();
+    final ImmutableMap<String, Object> value = ImmutableMap.of("a", "x", "b", 1, "c", true);
+    final Object[] fieldValues = new Object[3];
+    for (String fieldName : value.keySet()) {
+      fieldValues[schema.getFieldIndex(fieldName)] = value.get(fieldName);
+    }
+    final GenericRecordImpl fromMap = GenericRecordImpl.create(schema, value);
+    final GenericRecordImpl fromArray = GenericRecordImpl.create(schema, fieldValues);
+
+    Assert.assertEquals(-1, schema.getFieldIndex("d"));
+    for (String fieldName : value.keySet()) {
+      Assert.assertEquals(value.get(fieldName), fromArray.get(fieldName));
+      Assert.assertEquals(value.get(fieldName), fromArray.get(schema.getFieldIndex(fieldName)));
+      Assert.assertEquals(value.get(fieldName), fromMap.get(schema.getFieldIndex(fieldName)));
+    }
+    Assert.assertEquals(value, fromArray.getValue());
+    Assert.assertEquals(fromMap, fromArray);
+    Assert.assertEquals(Objects.hash(schema, value), fromArray.hashCode());
+    Assert.assertEquals(fromMap.hashCode(), fromArray.hashCode());
+
+    // an equal Schema instance with a different field order.
+    final Schema reordered = Schema.builder(Type.RECORD)
+        .setName("r")
+        .setFieldSchema("c", Schema.primitive(Type.BOOLEAN))
+        .setFieldSchema("b", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .build();
+    Assert.assertEquals(fromArray, GenericRecordImpl.create(reordered, value));
+    Assert.assertNotEquals(
+        fromArray,
+        GenericRecordImpl.create(schema, ImmutableMap.of("a", "x", "b", 2, "c", true))
+    );
+  }
+
+  @Test
+  public void testMismatchedFields() {
+    try {
+      GenericRecordImpl.create(schema(), ImmutableMap.of("a", "x"));
+      Assert.fail();
+    } catch (IllegalArgumentException iae) {
+      Assert.assertTrue(iae.getMessage().startsWith("Record value fields: '[a]' do not match Schema: 'r'"));
+    }
+    try {
+      GenericRecordImpl.create(schema(), new Object[1]);
+      Assert.fail();
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Record: 'r' has '3' fields, got '1' values.", iae.getMessage());
+    }
+  }
+}
@@ -0,0 +1,441 @@
+package org.ajprax.serialization.io.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericExtension;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.EncoderContext;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Builder;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBinaryEncodeDecodeLoops {
+
+  /** Shared by every test value so that reuse across Schemas is exercised. */
+  private static final EncoderContext CONTEXT = EncoderContext.create();
+
+  private static <T> void test(
+      final Schema schema,
+      final T input
+  ) {
+    final BinaryEncoder<T> encoder = BinaryEncoder.forSchema(schema);
+    final BinaryDecoder<T> decoder = BinaryDecoder.forSchema(schema);
+    final byte[] bytes = encoder.encode(input);
+    Assert.assertEquals(input, decoder.decode(bytes));
+    Assert.assertArrayEquals(bytes, encoder.encode(input, CONTEXT));
+    testBuffer(encoder, decoder, input, bytes, ByteBuffer.allocate(bytes.length + 2));
+    testBuffer(encoder, decoder, input, bytes, ByteBuffer.allocateDirect(bytes.length + 2));
+  }
+
+  /** Values written to and read from a ByteBuffer match the byte array form. */
+  private static <T> void testBuffer(
+      final BinaryEncoder<T> encoder,
+      final BinaryDecoder<T> decoder,
+      final T input,
+      final byte[] bytes,
+      final ByteBuffer buffer
+  ) {
+    buffer.put((byte) 7);
+    encoder.encodeTo(input, buffer);
+    Assert.assertEquals(bytes.length + 1, buffer.position());
+    buffer.put((byte) 8);
+    buffer.flip();
+    final byte[] written = new byte[bytes.length];
+    ((ByteBuffer) buffer.duplicate().position(1)).get(written);
+    Assert.assertArrayEquals(bytes, written);
+
+    buffer.get();
+    Assert.assertEquals(input, decoder.decodeFrom(buffer));
+    Assert.assertEquals(8, buffer.get());
+  }
+
+  private static void testUnsupportedPrimitive(
+      final Schema.Type type
+  ) {
+    try {
+      BinaryEncoder.forSchema(Schema.primitive(type));
+      BinaryDecoder.forSchema(Schema.primitive(type));
+    } catch (UnsupportedOperationException uoe) {
+      Assert.assertEquals(
+          String.format("Schema type: '%s' is unsupported in Java.", type.name()),
+          uoe.getMessage()
+      );
+    }
+  }
+
+  private static <T> void testSupportedPrimitive(
+      final Schema.Type type,
+      final T input
+  ) {
+    test(Schema.primitive(type), input);
+  }
+
+  @Test
+  public void testPrimitives() {
+    testUnsupportedPrimitive(Type.UNSIGNED_8);
+    testUnsupportedPrimitive(Type.UNSIGNED_16);
+    testUnsupportedPrimitive(Type.UNSIGNED_32);
+    testUnsupportedPrimitive(Type.UNSIGNED_64);
+    testUnsupportedPrimitive(Type.UNSIGNED_BIG);
+    testUnsupportedPrimitive(Type.SIGNED_8);
+
+    testSupportedPrimitive(Type.SIGNED_16, (short) 5);
+    testSupportedPrimitive(Type.SIGNED_32, 5);
+    testSupportedPrimitive(Type.SIGNED_64, 5l);
+    testSupportedPrimitive(Type.SIGNED_BIG, BigInteger.valueOf(5l));
+    testSupportedPrimitive(Type.FLOAT_32, 1.5f);
+    testSupportedPrimitive(Type.FLOAT_64, 1.5);
+    testSupportedPrimitive(Type.FLOAT_BIG, BigDecimal.valueOf(1.5));
+    testSupportedPrimitive(Type.BOOLEAN, true);
+    testSupportedPrimitive(Type.STRING, "abc");
+  }
+
+  @Test
+  public void testBufferOverflow() {
+    final BinaryEncoder<String> encoder = BinaryEncoder.forSchema(Schema.primitive(Type.STRING));
+    for (ByteBuffer buffer : Lists.newArrayList(ByteBuffer.allocate(4), ByteBuffer.allocateDirect(4))) {
+      buffer.position(1);
+      try {
+        encoder.encodeTo("abcd", buffer);
+        Assert.fail("Expected a BufferOverflowException.");
+      } catch (BufferOverflowException boe) {
+        Assert.assertEquals(1, buffer.position());
+      }
+      encoder.encodeTo("ab", buffer);
+      Assert.assertEquals(4, buffer.position());
+    }
+  }
+
+  @Test
+  public void testReadOnlyBuffer() {
+    final BinaryEncoder<String> encoder = BinaryEncoder.forSchema(Schema.primitive(Type.STRING));
+    for (ByteBuffer buffer : Lists.newArrayList(ByteBuffer.allocate(4), ByteBuffer.allocateDirect(4))) {
+      try {
+        encoder.encodeTo("ab", buffer.asReadOnlyBuffer());
+        Assert.fail("Expected an IllegalArgumentException.");
+      } catch (IllegalArgumentException iae) {
+        Assert.assertEquals("Cannot encode into a read-only ByteBuffer.", iae.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testExtensionSharesBuffer() {
+    final Schema schema = Schema.builder(Type.EXTENSION).setTagSchema(Schema.primitive(Type.STRING)).build();
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    BinaryEncoder.forSchema(schema).encodeTo(GenericExtensionImpl.create(schema, "t", new byte[] {1, 2, 3}), buffer);
+    buffer.flip();
+    final GenericExtension<String> decoded = BinaryDecoder.<GenericExtension<String>>forSchema(schema).decodeFrom(buffer);
+    final ByteBuffer value = decoded.getValueBuffer();
+    Assert.assertTrue(value.isDirect());
+    Assert.assertTrue(value.isReadOnly());
+    Assert.assertEquals(3, value.remaining());
+
+    // the value is a view of the buffer until it is copied out by getValue().
+    buffer.put(buffer.limit() - 1, (byte) 9);
+    Assert.assertEquals(9, value.get(2));
+    Assert.assertArrayEquals(new byte[] {1, 2, 9}, decoded.getValue());
+  }
+
+  @Test
+  public void testPrimitiveBounds() {
+    testSupportedPrimitive(Type.SIGNED_16, Short.MIN_VALUE);
+    testSupportedPrimitive(Type.SIGNED_16, Short.MAX_VALUE);
+    testSupportedPrimitive(Type.SIGNED_32, Integer.MIN_VALUE);
+    testSupportedPrimitive(Type.SIGNED_32, Integer.MAX_VALUE);
+    testSupportedPrimitive(Type.SIGNED_32, -1);
+    testSupportedPrimitive(Type.SIGNED_64, Long.MIN_VALUE);
+    testSupportedPrimitive(Type.SIGNED_64, Long.MAX_VALUE);
+    testSupportedPrimitive(Type.SIGNED_BIG, BigInteger.valueOf(Long.MIN_VALUE).multiply(BigInteger.TEN));
+    testSupportedPrimitive(Type.FLOAT_32, Float.NaN);
+    testSupportedPrimitive(Type.FLOAT_64, Double.NEGATIVE_INFINITY);
+    testSupportedPrimitive(Type.FLOAT_BIG, new BigDecimal("-12345678901234567890.0987654321"));
+    testSupportedPrimitive(Type.BOOLEAN, false);
+    testSupportedPrimitive(Type.STRING, "");
+    testSupportedPrimitive(Type.STRING, "h\u00e9llo \u4e16\u754c \ud83d\ude00");
+  }
+
+  public enum Weekdays {
+    MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY
+  }
+
+  @Test
+  public void testEnum() {
+    final ImmutableSet<String> symbols = ImmutableSet.of("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY", "SATURDAY", "SUNDAY");
+    test(Schema.builder(Type.ENUM).setName(Weekdays.class.getName()).setEnumSymbols(symbols).build(), Weekdays.FRIDAY);
+    // Enums whose name is not a Java enum class are decoded as their symbols.
+    test(Schema.builder(Type.ENUM).setName("unknown.Enum").setEnumSymbols(symbols).build(), "FRIDAY");
+  }
+
+  @Test
+  public void testExtension() {
+    final Schema schema = Schema.builder(Type.EXTENSION).setTagSchema(Schema.primitive(Type.STRING)).build();
+    test(schema, GenericExtensionImpl.create(schema, "tag", new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void testArray() {
+    test(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build(), Lists.newArrayList("a", "b", "c"));
+  }
+
+  @Test
+  public void testFixedSizeArray() {
+    final Schema schema = Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(3).setElementSchema(Schema.primitive(Type.STRING)).build();
+    test(schema, Lists.newArrayList("a", "b", "c"));
+
+    try {
+      BinaryEncoder.<List<String>>forSchema(schema).encode(Lists.newArrayList("a", "b"));
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Input size: '2' does not match fixed size: '3'.", iae.getMessage());
+    }
+    // the count is not written, so fewer elements than the Schema's size run off the end.
+    final Schema pair = Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.STRING)).build();
+    final byte[] twoElements = BinaryEncoder.<List<String>>forSchema(pair).encode(Lists.newArrayList("a", "b"));
+    try {
+      BinaryDecoder.forSchema(schema).decode(twoElements);
+      Assert.fail("Expected a BufferUnderflowException.");
+    } catch (BufferUnderflowException bue) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testMalformedInput() {
+    try {
+      BinaryDecoder.forSchema(Schema.primitive(Type.BOOLEAN)).decode(new byte[] {2});
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Invalid boolean byte: '2'.", iae.getMessage());
+    }
+
+    final Schema schema = Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build();
+    final byte[] bytes = BinaryEncoder.<List<String>>forSchema(schema).encode(Lists.newArrayList("abc", "def"));
+    final BinaryDecoder<List<String>> decoder = BinaryDecoder.forSchema(schema);
+    for (int length = 0; length < bytes.length; length++) {
+      try {
+        decoder.decode(Arrays.copyOf(bytes, length));
+        Assert.fail("Expected a BufferUnderflowException for truncated length: " + length);
+      } catch (BufferUnderflowException bue) {
+        // expected.
+      }
+    }
+    try {
+      decoder.decode(Arrays.copyOf(bytes, bytes.length + 1));
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Input contains trailing bytes after a value of Schema: 'array<STRING>'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testSet() {
+    test(
+        Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Sets.newHashSet("a", "b")
+    );
+  }
+
+  @Test
+  public void testMap() {
+    test(
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.BOOLEAN)).build(),
+        ImmutableMap.of("a", true, "b", false)
+    );
+    // a serialized map which does not obey the unique keys rule will not successfully loop.
+  }
+
+  @Test
+  public void testUnion() {
+    final Schema schema = Schema.builder(Type.UNION).addBranchSchema(Schema.primitive(Type.STRING)).addBranchSchema(Schema.primitive(Type.BOOLEAN)).build();
+    test(
+        schema,
+        GenericUnionImpl.create(schema, 0, "abc")
+    );
+    test(
+        schema,
+        GenericUnionImpl.create(schema, 1, true)
+    );
+  }
+
+  @Test
+  public void testOptional() {
+    final Schema schema = Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.STRING)).build();
+    test(
+        schema,
+        Optional.of("abc")
+    );
+    test(
+        schema,
+        Optional.empty()
+    );
+  }
+
+  @Test
+  public void testRecord() {
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("outer")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .setFieldSchema("b", Schema.primitive(Type.BOOLEAN))
+        .setFieldSchema("c", Schema.builder(Type.RECORD)
+                .setName("inner")
+                .setFieldSchema("c1", Schema.primitive(Type.SIGNED_16))
+                .setFieldSchema("c2", Schema.primitive(Type.FLOAT_32))
+                .build()
+        )
+        .build();
+    test(
+        schema,
+        GenericRecordImpl.create(
+            schema,
+            ImmutableMap.of(
+                "a", "a_value",
+                "b", true,
+                "c", GenericRecordImpl.create(schema.getFieldSchemas().get("c"), ImmutableMap.of(
+                    "c1", (short) 4,
+                    "c2", 1.5f
+                ))
+            )
+        )
+    );
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    test(
+        schema,
+        GenericRecordImpl.create(
+            schema,
+            ImmutableMap.of(
+                "head", "a",
+                "tail", Optional.of(
+                    GenericRecordImpl.create(
+                        schema,
+                        ImmutableMap.of(
+                            "head", "b",
+                            "tail", Optional.<GenericRecord>empty()
+                        )
+                    )
+                )
+            )
+        )
+    );
+  }
+
+  @Test
+  public void testMutuallyRecursiveRecord() {
+    final Builder builder1 = Schema.builder(Type.RECORD).setName("One");
+    final Builder builder2 = Schema.builder(Type.RECORD).setName("Two");
+    // TODO this slightly awkward construction is a result of the fact that we have to call
+    // getPlaceholderSchema on both builders before calling build on either or they will not both be
+    // properly filled. A better solution to this would be desirable, or at least calling
+    // getPlaceholderSchema after build should throw an error (which would mean each builder is one
+    // use).
+    builder1
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder2.getPlaceholderSchema()).build());
+    builder2
+        .setFieldSchema("head", Schema.primitive(Type.BOOLEAN))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder1.getPlaceholderSchema()).build());
+    final Schema schema1 = builder1.build();
+    final Schema schema2 = builder2.build();
+
+    test(
+        schema1,
+        GenericRecordImpl.create(
+            schema1,
+            ImmutableMap.of(
+                "head", "a",
+                "tail", Optional.of(
+                    GenericRecordImpl.create(
+                        schema2,
+                        ImmutableMap.of(
+                            "head", true,
+                            "tail", Optional.of(
+                                GenericRecordImpl.create(
+                                    schema1,
+                                    ImmutableMap.of(
+                                        "head", "b",
+                                        "tail", Optional.of(
+                                            GenericRecordImpl.create(
+                                                schema2,
+                                                ImmutableMap.of(
+                                                    "head", false,
+                                                    "tail", Optional.empty()
+                                                )
+                                            )
+                                        )
+                                    )
+                                )
+
+                            )
+                        )
+                    )
+                )
+            )
+        )
+    );
+  }
+
+  @Test
+  public void testRecursiveTwice() {
+    final Builder builder = Schema.builder(Type.RECORD).setName("Twice");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail_one", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .setFieldSchema("tail_two", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    test(
+        schema,
+        GenericRecordImpl.create(
+            schema,
+            ImmutableMap.of(
+                "head", "a",
+                "tail_one", Optional.of(
+                    GenericRecordImpl.create(
+                        schema,
+                        ImmutableMap.of(
+                            "head", "b_one",
+                            "tail_one", Optional.empty(),
+                            "tail_two", Optional.empty()
+                        )
+                    )
+                ),
+                "tail_two", Optional.of(
+                    GenericRecordImpl.create(
+                        schema,
+                        ImmutableMap.of(
+                            "head", "b_two",
+                            "tail_one", Optional.empty(),
+                            "tail_two", Optional.empty()
+                        )
+                    )
+                )
+            )
+        )
+    );
+  }
+}
@@ -0,0 +1,98 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBinaryEncoders {
+
+  private static byte[] bytes(
+      final int... values
+  ) {
+    final byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testZigZagVarints() {
+    final BinaryEncoder<Integer> encoder = BinaryEncoder.forSchema(Schema.primitive(Type.SIGNED_32));
+    Assert.assertArrayEquals(bytes(0x00), encoder.encode(0));
+    Assert.assertArrayEquals(bytes(0x01), encoder.encode(-1));
+    Assert.assertArrayEquals(bytes(0x02), encoder.encode(1));
+    Assert.assertArrayEquals(bytes(0x80, 0x01), encoder.encode(64));
+    Assert.assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), encoder.encode(Integer.MIN_VALUE));
+  }
+
+  @Test
+  public void testString() {
+    final BinaryEncoder<String> encoder = BinaryEncoder.forSchema(Schema.primitive(Type.STRING));
+    Assert.assertArrayEquals(bytes(0x03, 'a', 'b', 'c'), encoder.encode("abc"));
+    Assert.assertArrayEquals(bytes(0x02, 0xC3, 0xA9), encoder.encode("é"));
+  }
+
+  @Test
+  public void testRecord() {
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("outer")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .setFieldSchema("b", Schema.primitive(Type.BOOLEAN))
+        .build();
+    final BinaryEncoder<GenericRecord> encoder = BinaryEncoder.forSchema(schema);
+    final GenericRecord record = GenericRecordImpl.create(schema, ImmutableMap.of("a", "x", "b", true));
+    // field names are not written.
+    Assert.assertArrayEquals(bytes(0x01, 'x', 0x01), encoder.encode(record));
+  }
+
+  @Test
+  public void testUnionAndOptional() {
+    final Schema schema = Schema.builder(Type.UNION)
+        .addBranchSchema(Schema.primitive(Type.STRING))
+        .addBranchSchema(Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.SIGNED_64)).build())
+        .build();
+    final BinaryEncoder<GenericUnion> encoder = BinaryEncoder.forSchema(schema);
+    Assert.assertArrayEquals(bytes(0x00, 0x01, 'x'), encoder.encode(GenericUnionImpl.create(schema, 0, "x")));
+    Assert.assertArrayEquals(bytes(0x01, 0x01, 0x04), encoder.encode(GenericUnionImpl.create(schema, 1, Optional.of(2L))));
+    Assert.assertArrayEquals(bytes(0x01, 0x00), encoder.encode(GenericUnionImpl.create(schema, 1, Optional.empty())));
+  }
+
+  @Test
+  public void testFixedSizeArray() {
+    final Schema schema = Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.BOOLEAN)).build();
+    final BinaryEncoder<List<Boolean>> encoder = BinaryEncoder.forSchema(schema);
+    // no element count is written.
+    Assert.assertArrayEquals(bytes(0x01, 0x00), encoder.encode(Lists.newArrayList(true, false)));
+    try {
+      encoder.encode(Lists.newArrayList(true));
+      Assert.fail();
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Input size: '1' does not match fixed size: '2'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testTrailingBytes() {
+    final BinaryDecoder<Boolean> decoder = BinaryDecoder.forSchema(Schema.primitive(Type.BOOLEAN));
+    Assert.assertTrue(decoder.decode(bytes(0x01)));
+    try {
+      decoder.decode(bytes(0x01, 0x00));
+      Assert.fail();
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Input contains trailing bytes after a value of Schema: 'BOOLEAN'.", iae.getMessage());
+    }
+  }
+}
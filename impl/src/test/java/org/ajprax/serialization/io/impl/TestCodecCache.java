@@ -0,0 +1,124 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCodecCache {
+
+  private static Schema arraySchema() {
+    return Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build();
+  }
+
+  @Test
+  public void testIdentityAndStructuralHits() {
+    final AtomicInteger compilations = new AtomicInteger();
+    final CodecCache<Object> cache = CodecCache.create(schema -> {
+      compilations.incrementAndGet();
+      return new Object();
+    });
+    final Schema schema = arraySchema();
+    final Object codec = cache.get(schema);
+    Assert.assertSame(codec, cache.get(schema));
+    // an equal Schema built separately shares the compiled codec.
+    Assert.assertSame(codec, cache.get(arraySchema()));
+    Assert.assertEquals(1, compilations.get());
+    Assert.assertEquals(2, cache.stats().hitCount());
+    Assert.assertEquals(1, cache.stats().missCount());
+
+    Assert.assertNotSame(codec, cache.get(Schema.primitive(Type.STRING)));
+    Assert.assertEquals(2, compilations.get());
+  }
+
+  @Test
+  public void testRecordNamesAreDistinct() {
+    final CodecCache<Object> cache = CodecCache.create(schema -> new Object());
+    final Schema left = Schema.builder(Type.RECORD)
+        .setName("left")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .build();
+    final Schema right = Schema.builder(Type.RECORD)
+        .setName("right")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .build();
+    Assert.assertNotSame(cache.get(left), cache.get(right));
+  }
+
+  @Test
+  public void testOrderIsDistinct() {
+    final CodecCache<Object> cache = CodecCache.create(schema -> new Object());
+    final Schema ab = Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("X", "Y")).build();
+    final Schema ba = Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("Y", "X")).build();
+    Assert.assertEquals(ab, ba);
+    Assert.assertNotSame(cache.get(ab), cache.get(ba));
+  }
+
+  /** Schemas which are equal but declare their symbols or fields in another order round-trip. */
+  @Test
+  public void testOrderRoundTrip() {
+    final Schema xy = Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("X", "Y")).build();
+    final Schema yx = Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("Y", "X")).build();
+    final BinaryEncoder<String> xyEncoder = BinaryEncoder.forSchema(xy);
+    final BinaryEncoder<String> yxEncoder = BinaryEncoder.forSchema(yx);
+    Assert.assertEquals("X", BinaryDecoder.<String>forSchema(xy).decode(xyEncoder.encode("X")).toString());
+    Assert.assertEquals("X", BinaryDecoder.<String>forSchema(yx).decode(yxEncoder.encode("X")).toString());
+    Assert.assertFalse(Arrays.equals(xyEncoder.encode("X"), yxEncoder.encode("X")));
+
+    // field names with equal hash codes, so that the fields iterate in the same order in hashed
+    // collections.
+    final Schema aaBb = Schema.builder(Type.RECORD)
+        .setName("r")
+        .setFieldSchema("Aa", Schema.primitive(Type.STRING))
+        .setFieldSchema("BB", Schema.primitive(Type.SIGNED_32))
+        .build();
+    final Schema bbAa = Schema.builder(Type.RECORD)
+        .setName("r")
+        .setFieldSchema("BB", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("Aa", Schema.primitive(Type.STRING))
+        .build();
+    for (Schema schema : ImmutableList.of(bbAa, aaBb)) {
+      final GenericRecord record = GenericRecordImpl.create(schema, ImmutableMap.of("Aa", "a", "BB", 1));
+      final BinaryEncoder<GenericRecord> encoder = BinaryEncoder.forSchema(schema);
+      Assert.assertEquals(record, BinaryDecoder.<GenericRecord>forSchema(schema).decode(encoder.encode(record)));
+    }
+  }
+
+  @Test
+  public void testExceptionsPropagateUnchanged() {
+    final CodecCache<Object> cache = CodecCache.create(schema -> {
+      throw new UnsupportedOperationException("unsupported");
+    });
+    try {
+      cache.get(Schema.primitive(Type.STRING));
+      Assert.fail();
+    } catch (UnsupportedOperationException uoe) {
+      Assert.assertEquals("unsupported", uoe.getMessage());
+    }
+  }
+
+  @Test
+  public void testFactoryCache() {
+    final JsonEncoders.JsonEncoderImplFactory factory = new JsonEncoders.JsonEncoderImplFactory();
+    final Schema schema = arraySchema();
+    Assert.assertSame(factory.forSchema(schema), factory.forSchema(schema));
+    Assert.assertEquals(1, factory.cacheStats().missCount());
+    Assert.assertEquals(1, factory.cacheStats().hitCount());
+    try {
+      factory.forSchema(Schema.primitive(Type.UNSIGNED_8));
+      Assert.fail();
+    } catch (UnsupportedOperationException uoe) {
+      Assert.assertEquals("Schema type: 'UNSIGNED_8' is unsupported in Java.", uoe.getMessage());
+    }
+  }
+}
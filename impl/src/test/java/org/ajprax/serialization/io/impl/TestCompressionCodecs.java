@@ -0,0 +1,111 @@
+package org.ajprax.serialization.io.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCompressionCodecs {
+
+  private static final ImmutableList<CompressionCodec> CODECS = ImmutableList.of(
+      CompressionCodec.forName("none"),
+      CompressionCodec.forName("deflate"),
+      CompressionCodec.forName("lz")
+  );
+
+  private static byte[] bytes(
+      final ByteBuffer buffer
+  ) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Compress and decompress from heap, offset and direct buffers. */
+  private static void assertRoundTrip(
+      final CompressionCodec codec,
+      final byte[] input
+  ) {
+    final byte[] compressed = bytes(codec.compress(ByteBuffer.wrap(input)));
+    Assert.assertArrayEquals(input, bytes(codec.decompress(ByteBuffer.wrap(compressed), input.length)));
+
+    // buffers whose contents do not start at the start of their storage.
+    final byte[] padded = new byte[input.length + 7];
+    System.arraycopy(input, 0, padded, 3, input.length);
+    final ByteBuffer offset = ByteBuffer.wrap(padded, 3, input.length).slice();
+    final byte[] offsetCompressed = bytes(codec.compress(offset));
+    Assert.assertEquals(3, offset.arrayOffset());
+    Assert.assertArrayEquals(input, bytes(codec.decompress(ByteBuffer.wrap(offsetCompressed), input.length)));
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+    direct.put(input).flip();
+    final ByteBuffer directCompressed = ByteBuffer.allocateDirect(compressed.length);
+    directCompressed.put(bytes(codec.compress(direct))).flip();
+    Assert.assertArrayEquals(input, bytes(codec.decompress(directCompressed, input.length)));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    final Random random = new Random(1234);
+    final byte[] incompressible = new byte[100000];
+    random.nextBytes(incompressible);
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append("record-").append(i % 37).append(",true,").append(random.nextInt(100)).append(';');
+    }
+    final byte[] runs = new byte[70000];
+    Arrays.fill(runs, 20000, 70000, (byte) 7);
+    for (CompressionCodec codec : CODECS) {
+      assertRoundTrip(codec, new byte[0]);
+      assertRoundTrip(codec, new byte[] {1, 2, 3});
+      assertRoundTrip(codec, incompressible);
+      assertRoundTrip(codec, text.toString().getBytes(StandardCharsets.UTF_8));
+      assertRoundTrip(codec, runs);
+    }
+    // repetitive input compresses.
+    final byte[] textBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    Assert.assertTrue(CompressionCodecs.LZ.compress(ByteBuffer.wrap(textBytes)).remaining() < textBytes.length / 2);
+    Assert.assertTrue(CompressionCodecs.DEFLATE.compress(ByteBuffer.wrap(textBytes)).remaining() < textBytes.length / 4);
+  }
+
+  @Test
+  public void testLookup() {
+    for (CompressionCodec codec : CODECS) {
+      Assert.assertSame(codec, CompressionCodec.forId(codec.getId()));
+    }
+    Assert.assertSame(CompressionCodecs.LZ, CompressionCodec.forName("lz"));
+    try {
+      CompressionCodec.forId(200);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Unknown compression codec id: '200'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testMalformed() {
+    final byte[] input = "abcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8);
+    for (CompressionCodec codec : CODECS) {
+      final byte[] compressed = bytes(codec.compress(ByteBuffer.wrap(input)));
+      try {
+        codec.decompress(ByteBuffer.wrap(compressed), input.length + 1);
+        Assert.fail("Expected an IllegalArgumentException.");
+      } catch (IllegalArgumentException iae) {
+        // expected.
+      }
+      if (codec != CompressionCodecs.NONE) {
+        try {
+          codec.decompress(ByteBuffer.wrap(compressed, 0, compressed.length - 1), input.length);
+          Assert.fail("Expected an IllegalArgumentException.");
+        } catch (IllegalArgumentException iae) {
+          // expected.
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestContainerFiles {
+
+  @Rule
+  public final TemporaryFolder mFolder = new TemporaryFolder();
+
+  private static final Schema RECORD = Schema.builder(Type.RECORD)
+      .setName("Event")
+      .setFieldSchema("id", Schema.primitive(Type.SIGNED_32))
+      .setFieldSchema("name", Schema.primitive(Type.STRING))
+      .build();
+
+  private static GenericRecord event(
+      final int id
+  ) {
+    return GenericRecordImpl.create(RECORD, ImmutableMap.of("id", id, "name", "event-" + id));
+  }
+
+  private Path write(
+      final int records,
+      final int recordsPerBlock
+  ) throws IOException {
+    final Path file = mFolder.newFile().toPath();
+    try (ContainerWriter<GenericRecord> writer =
+        ContainerWriter.create(Files.newOutputStream(file), RECORD, recordsPerBlock)) {
+      for (int i = 0; i < records; i++) {
+        writer.append(event(i));
+      }
+    }
+    return file;
+  }
+
+  private static List<GenericRecord> readAll(
+      final ContainerReader<GenericRecord> reader
+  ) throws IOException {
+    final List<GenericRecord> records = Lists.newArrayList();
+    try (ContainerReader<GenericRecord> closed = reader) {
+      closed.forEachRemaining(records::add);
+    }
+    return records;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final Path file = write(250, 100);
+    final ContainerReader<GenericRecord> reader = ContainerReader.open(file);
+    Assert.assertEquals(RECORD, reader.getWriterSchema());
+    final List<GenericRecord> records = readAll(reader);
+    Assert.assertEquals(250, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      Assert.assertEquals(event(i), records.get(i));
+    }
+
+    // a file with no values has only a header.
+    Assert.assertTrue(readAll(ContainerReader.open(write(0, 100))).isEmpty());
+  }
+
+  @Test
+  public void testSplits() throws IOException {
+    final Path file = write(1000, 7);
+    final long size = Files.size(file);
+    for (long splitSize : new long[] {1, 50, 333, size}) {
+      final List<GenericRecord> records = Lists.newArrayList();
+      for (long start = 0; start < size; start += splitSize) {
+        records.addAll(readAll(ContainerReader.open(file, null, start, Math.min(size, start + splitSize))));
+      }
+      Assert.assertEquals(1000, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(event(i), records.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testMappedReader() throws IOException {
+    final Path file = write(1000, 7);
+    final long size = Files.size(file);
+    // segments smaller than the file, each holding a few blocks.
+    for (long splitSize : new long[] {333, size}) {
+      final List<GenericRecord> records = Lists.newArrayList();
+      for (long start = 0; start < size; start += splitSize) {
+        try (MappedContainerReader<GenericRecord> reader =
+            MappedContainerReader.open(file, null, start, Math.min(size, start + splitSize), 500)) {
+          reader.forEachRemaining(records::add);
+        }
+      }
+      Assert.assertEquals(1000, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(event(i), records.get(i));
+      }
+    }
+
+    try (MappedContainerReader<GenericRecord> reader = MappedContainerReader.open(write(25, 10))) {
+      Assert.assertEquals(RECORD, reader.getWriterSchema());
+      Assert.assertEquals(10, reader.skipBlock());
+      Assert.assertEquals(event(10), reader.next());
+      Assert.assertEquals(9, reader.skipBlock());
+      Assert.assertEquals(5, reader.skipBlock());
+      Assert.assertEquals(0, reader.skipBlock());
+      Assert.assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testCompressedBlocks() throws IOException {
+    for (CompressionCodec codec : new CompressionCodec[] {CompressionCodecs.DEFLATE, CompressionCodecs.LZ}) {
+      final Path file = mFolder.newFile().toPath();
+      try (ContainerWriter<GenericRecord> writer = ContainerWriter.create(Files.newOutputStream(file), RECORD, 100, codec)) {
+        for (int i = 0; i < 1000; i++) {
+          writer.append(event(i));
+        }
+      }
+      Assert.assertTrue(Files.size(file) < Files.size(write(1000, 100)) / 2);
+      final List<GenericRecord> records = readAll(ContainerReader.open(file));
+      final List<GenericRecord> mapped = Lists.newArrayList();
+      try (MappedContainerReader<GenericRecord> reader = MappedContainerReader.open(file)) {
+        Assert.assertEquals(100, reader.skipBlock());
+        reader.forEachRemaining(mapped::add);
+      }
+      Assert.assertEquals(1000, records.size());
+      Assert.assertEquals(records.subList(100, 1000), mapped);
+      for (int i = 0; i < records.size(); i++) {
+        Assert.assertEquals(event(i), records.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelStream() throws IOException {
+    final Path file = write(10000, 10);
+    final List<GenericRecord> expected = Lists.newArrayList();
+    for (int i = 0; i < 10000; i++) {
+      expected.add(event(i));
+    }
+    try (Stream<GenericRecord> stream = ContainerReader.<GenericRecord>open(file).parallelStream()) {
+      Assert.assertEquals(expected, stream.collect(Collectors.toList()));
+    }
+
+    // small splits, each of which reads the blocks which start in it.
+    try (ContainerReader<GenericRecord> reader = ContainerReader.open(file)) {
+      Assert.assertEquals(10, reader.skipBlock());
+      final Spliterator<GenericRecord> spliterator = reader.spliterator(100);
+      final Spliterator<GenericRecord> prefix = spliterator.trySplit();
+      Assert.assertNotNull(prefix);
+      final List<GenericRecord> records = Lists.newArrayList();
+      prefix.forEachRemaining(records::add);
+      Assert.assertFalse(records.isEmpty());
+      spliterator.forEachRemaining(records::add);
+      Assert.assertEquals(expected.subList(10, 10000), records);
+    }
+    try (ContainerReader<GenericRecord> reader = ContainerReader.open(file)) {
+      Assert.assertEquals(
+          expected,
+          StreamSupport.stream(reader.spliterator(100), true).collect(Collectors.toList())
+      );
+    }
+  }
+
+  @Test
+  public void testSkipBlock() throws IOException {
+    try (ContainerReader<GenericRecord> reader = ContainerReader.open(write(25, 10))) {
+      Assert.assertEquals(10, reader.skipBlock());
+      Assert.assertEquals(event(10), reader.next());
+      Assert.assertEquals(9, reader.skipBlock());
+      Assert.assertEquals(5, reader.skipBlock());
+      Assert.assertEquals(0, reader.skipBlock());
+      Assert.assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testReaderSchema() throws IOException {
+    final Schema readerSchema = Schema.builder(Type.RECORD)
+        .setName("Event")
+        .setFieldSchema("id", Schema.primitive(Type.SIGNED_64))
+        .setFieldSchema("source", Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.STRING)).build())
+        .build();
+    final List<GenericRecord> records = readAll(ContainerReader.open(write(3, 2), readerSchema));
+    Assert.assertEquals(3, records.size());
+    Assert.assertEquals(
+        GenericRecordImpl.create(readerSchema, ImmutableMap.of("id", 2L, "source", Optional.empty())),
+        records.get(2)
+    );
+  }
+
+  @Test
+  public void testHeaderFingerprint() {
+    // fields out of name order, so that the fingerprint and the layout fingerprint differ.
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Event")
+        .setFieldSchema("name", Schema.primitive(Type.STRING))
+        .setFieldSchema("id", Schema.primitive(Type.SIGNED_32))
+        .build();
+    final byte[] sync = new byte[ContainerFormat.SYNC_SIZE];
+    final byte[] header = ContainerFormat.writeHeader(schema, sync);
+    Assert.assertEquals(
+        ImmutableList.of("name", "id"),
+        ContainerFormat.readHeader(ByteBuffer.wrap(header)).getSchema().getFieldSchemas().keySet().asList()
+    );
+
+    // version 1 headers carry the order-insensitive fingerprint.
+    final int fingerprintPosition = ContainerFormat.MAGIC.length + 1;
+    final ByteBuffer previous = ByteBuffer.wrap(header.clone()).order(ByteOrder.LITTLE_ENDIAN);
+    previous.put(ContainerFormat.MAGIC.length, ContainerFormat.UNORDERED_FINGERPRINT_VERSION);
+    previous.putLong(fingerprintPosition, schema.getFingerprint());
+    Assert.assertEquals(schema, ContainerFormat.readHeader(previous).getSchema());
+
+    final ByteBuffer unordered = ByteBuffer.wrap(header.clone()).order(ByteOrder.LITTLE_ENDIAN);
+    unordered.putLong(fingerprintPosition, schema.getFingerprint());
+    try {
+      ContainerFormat.readHeader(unordered);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals(
+          String.format(
+              "Container file Schema: '%s' does not match its fingerprint: '%s'.",
+              schema.getName(),
+              schema.getFingerprint()
+          ),
+          iae.getMessage()
+      );
+    }
+  }
+
+  @Test
+  public void testCorruptBlock() throws IOException {
+    final Path file = write(20, 10);
+    final byte[] bytes = Files.readAllBytes(file);
+    // overwrite the last byte of the second block's sync marker, which ends the file.
+    bytes[bytes.length - 1] ^= 1;
+    Files.write(file, bytes);
+    try (ContainerReader<GenericRecord> reader = ContainerReader.open(file)) {
+      for (int i = 0; i < 10; i++) {
+        Assert.assertEquals(event(i), reader.next());
+      }
+      reader.hasNext();
+      Assert.fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException ise) {
+      Assert.assertEquals(
+          String.format(
+              "Container file is corrupt, expected a sync marker at: '%d'.",
+              bytes.length - ContainerFormat.SYNC_SIZE
+          ),
+          ise.getMessage()
+      );
+    }
+  }
+}
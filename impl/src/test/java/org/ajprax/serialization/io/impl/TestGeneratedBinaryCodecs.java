@@ -0,0 +1,246 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGeneratedBinaryCodecs {
+
+  private static final GeneratedBinaryEncoders.GeneratedBinaryEncoderImplFactory ENCODERS =
+      new GeneratedBinaryEncoders.GeneratedBinaryEncoderImplFactory();
+  private static final GeneratedBinaryDecoders.GeneratedBinaryDecoderImplFactory DECODERS =
+      new GeneratedBinaryDecoders.GeneratedBinaryDecoderImplFactory();
+  private static final String GENERATED_PACKAGE = "org.ajprax.serialization.io.impl.generated.";
+
+  /** Generated codecs write the same bytes as the interpreted codecs and read back equal values. */
+  private static void test(
+      final Schema schema,
+      final Object input
+  ) {
+    final BinaryEncoder<Object> encoder = ENCODERS.forSchema(schema);
+    final BinaryDecoder<Object> decoder = DECODERS.forSchema(schema);
+    final byte[] bytes = encoder.encode(input);
+    Assert.assertArrayEquals(BinaryEncoder.forSchema(schema).encode(input), bytes);
+    final Object decoded = decoder.decode(bytes);
+    Assert.assertEquals(BinaryDecoder.forSchema(schema).decode(bytes), decoded);
+    Assert.assertEquals(input, decoded);
+  }
+
+  private static boolean isGenerated(
+      final Schema schema
+  ) {
+    final String writerClass = GeneratedBinaryEncoders.forSchema(schema, Maps.newHashMap()).getClass().getName();
+    final String readerClass = GeneratedBinaryDecoders.forSchema(schema, Maps.newHashMap()).getClass().getName();
+    Assert.assertEquals(writerClass.startsWith(GENERATED_PACKAGE), readerClass.startsWith(GENERATED_PACKAGE));
+    return writerClass.startsWith(GENERATED_PACKAGE);
+  }
+
+  private static Schema primitive(
+      final Type type
+  ) {
+    return Schema.primitive(type);
+  }
+
+  private static Schema optional(
+      final Schema elementSchema
+  ) {
+    return Schema.builder(Type.OPTIONAL).setElementSchema(elementSchema).build();
+  }
+
+  @Test
+  public void testPrimitiveFields() {
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Primitives")
+        .setFieldSchema("s16", primitive(Type.SIGNED_16))
+        .setFieldSchema("s32", primitive(Type.SIGNED_32))
+        .setFieldSchema("s64", primitive(Type.SIGNED_64))
+        .setFieldSchema("f32", primitive(Type.FLOAT_32))
+        .setFieldSchema("f64", primitive(Type.FLOAT_64))
+        .setFieldSchema("bool", primitive(Type.BOOLEAN))
+        .setFieldSchema("string", primitive(Type.STRING))
+        .build();
+    final ImmutableMap<String, Object> value = ImmutableMap.<String, Object>builder()
+        .put("s16", Short.MIN_VALUE)
+        .put("s32", -1)
+        .put("s64", Long.MAX_VALUE)
+        .put("f32", Float.NaN)
+        .put("f64", 1.5)
+        .put("bool", true)
+        .put("string", "héllo")
+        .build();
+    Assert.assertTrue(isGenerated(schema));
+    test(schema, GenericRecordImpl.create(schema, value));
+  }
+
+  @Test
+  public void testNestedRecords() {
+    final Schema inner = Schema.builder(Type.RECORD)
+        .setName("Inner")
+        .setFieldSchema("a", primitive(Type.SIGNED_32))
+        .setFieldSchema("b", optional(primitive(Type.STRING)))
+        .build();
+    final Schema outer = Schema.builder(Type.RECORD)
+        .setName("Outer")
+        .setFieldSchema("first", inner)
+        .setFieldSchema("second", optional(inner))
+        .setFieldSchema("many", Schema.builder(Type.ARRAY).setElementSchema(inner).build())
+        .build();
+    final GenericRecord first = GenericRecordImpl.create(inner, ImmutableMap.of("a", 1, "b", Optional.of("x")));
+    final GenericRecord second = GenericRecordImpl.create(inner, ImmutableMap.of("a", 2, "b", Optional.empty()));
+    test(outer, GenericRecordImpl.create(outer, ImmutableMap.of(
+        "first", first,
+        "second", Optional.of(second),
+        "many", Lists.newArrayList(first, second)
+    )));
+    test(outer, GenericRecordImpl.create(outer, ImmutableMap.of(
+        "first", first,
+        "second", Optional.empty(),
+        "many", Lists.newArrayList()
+    )));
+  }
+
+  @Test
+  public void testRecordsWithOtherSchemaInstances() {
+    // records whose Schema is equal to but not the codec's Schema instance are read by name.
+    final Schema.Builder builder = Schema.builder(Type.RECORD)
+        .setName("Pair")
+        .setFieldSchema("left", primitive(Type.STRING))
+        .setFieldSchema("right", primitive(Type.SIGNED_64));
+    final Schema schema = builder.build();
+    final Schema other = builder.build();
+    test(schema, GenericRecordImpl.create(other, ImmutableMap.of("left", "l", "right", 2L)));
+  }
+
+  @Test
+  public void testFixedSizeArrays() {
+    final Schema doubles = Schema.builder(Type.FIXED_SIZE_ARRAY)
+        .setSize(3)
+        .setElementSchema(primitive(Type.FLOAT_64))
+        .build();
+    final Schema strings = Schema.builder(Type.FIXED_SIZE_ARRAY)
+        .setSize(2)
+        .setElementSchema(primitive(Type.STRING))
+        .build();
+    final Schema longs = Schema.builder(Type.FIXED_SIZE_ARRAY)
+        .setSize(GeneratedCodecs.MAX_UNROLLED_SIZE + 1)
+        .setElementSchema(primitive(Type.SIGNED_64))
+        .build();
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Arrays")
+        .setFieldSchema("doubles", doubles)
+        .setFieldSchema("strings", strings)
+        .setFieldSchema("longs", longs)
+        .build();
+    final long[] longValues = new long[GeneratedCodecs.MAX_UNROLLED_SIZE + 1];
+    for (int i = 0; i < longValues.length; i++) {
+      longValues[i] = i * 1000L;
+    }
+    test(schema, GenericRecordImpl.create(schema, ImmutableMap.of(
+        "doubles", PrimitiveLists.wrap(new double[] {1.0, -2.5, 3.25}),
+        "strings", Lists.newArrayList("a", "b"),
+        "longs", PrimitiveLists.wrap(longValues)
+    )));
+    // boxed Lists are written identically.
+    test(schema, GenericRecordImpl.create(schema, ImmutableMap.of(
+        "doubles", Lists.newArrayList(1.0, -2.5, 3.25),
+        "strings", Lists.newArrayList("a", "b"),
+        "longs", PrimitiveLists.wrap(longValues)
+    )));
+
+    try {
+      ENCODERS.forSchema(schema).encode(GenericRecordImpl.create(schema, ImmutableMap.of(
+          "doubles", Lists.newArrayList(1.0),
+          "strings", Lists.newArrayList("a", "b"),
+          "longs", PrimitiveLists.wrap(longValues)
+      )));
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Input size: '1' does not match fixed size: '3'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testDelegatedFields() {
+    final Schema union = Schema.builder(Type.UNION)
+        .addBranchSchema(primitive(Type.STRING))
+        .addBranchSchema(primitive(Type.SIGNED_32))
+        .build();
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Delegated")
+        .setFieldSchema("map", Schema.builder(Type.MAP)
+            .setKeySchema(primitive(Type.STRING))
+            .setValueSchema(primitive(Type.FLOAT_32))
+            .build())
+        .setFieldSchema("union", union)
+        .setFieldSchema("enum", Schema.builder(Type.ENUM)
+            .setName("Color")
+            .setEnumSymbols(ImmutableSet.of("RED", "GREEN"))
+            .build())
+        .setFieldSchema("big", primitive(Type.SIGNED_BIG))
+        .build();
+    test(schema, GenericRecordImpl.create(schema, ImmutableMap.of(
+        "map", ImmutableMap.of("x", 1.5f),
+        "union", GenericUnionImpl.create(union, 1, 7),
+        "enum", "GREEN",
+        "big", java.math.BigInteger.TEN.pow(30)
+    )));
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", primitive(Type.SIGNED_32))
+        .setFieldSchema("tail", optional(builder.getPlaceholderSchema()))
+        .build();
+    GenericRecord list = null;
+    for (int i = 0; i < 5; i++) {
+      list = GenericRecordImpl.create(schema, ImmutableMap.of("head", i, "tail", Optional.ofNullable(list)));
+    }
+    test(schema, list);
+  }
+
+  @Test
+  public void testWideRecord() {
+    // the generated class is larger than the method size limit, but its method is not.
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("Wide");
+    for (int i = 0; i < 150; i++) {
+      builder.setFieldSchema("f" + i, primitive((i % 2 == 0) ? Type.STRING : Type.SIGNED_32));
+    }
+    final Schema schema = builder.build();
+    final List<Object> values = Lists.newArrayList();
+    for (Schema fieldSchema : schema.getFieldSchemas().values()) {
+      values.add((Type.STRING == fieldSchema.getType()) ? "v" : (Object) 1);
+    }
+    Assert.assertTrue(isGenerated(schema));
+    test(schema, GenericRecordImpl.create(schema, values.toArray()));
+  }
+
+  @Test
+  public void testRecordTooLargeToGenerate() {
+    // too large for a generated class to be compiled by the JIT.
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("Huge");
+    final Object[] values = new Object[1000];
+    for (int i = 0; i < values.length; i++) {
+      builder.setFieldSchema("f" + i, primitive(Type.STRING));
+      values[i] = "v" + i;
+    }
+    final Schema schema = builder.build();
+    Assert.assertFalse(isGenerated(schema));
+    test(schema, GenericRecordImpl.create(schema, values));
+  }
+}
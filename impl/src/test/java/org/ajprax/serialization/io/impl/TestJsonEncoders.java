@@ -3,11 +3,14 @@ package org.ajprax.serialization.io.impl;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.ajprax.serialization.generic.GenericExtension;
 import org.ajprax.serialization.generic.GenericRecord;
 import org.ajprax.serialization.generic.GenericUnion;
@@ -308,4 +311,51 @@ public class TestJsonEncoders {
     final String actual = encoder.encode(extension).toString();
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void testParallelEncode() {
+    final Schema mapSchema = Schema.builder(Type.MAP)
+        .setKeySchema(Schema.primitive(Type.STRING))
+        .setValueSchema(Schema.primitive(Type.SIGNED_32))
+        .build();
+    final Schema recordSchema = Schema.builder(Type.RECORD)
+        .setName("Entry")
+        .setFieldSchema("id", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("tags", mapSchema)
+        .build();
+    final Schema schema = Schema.builder(Type.ARRAY).setElementSchema(recordSchema).build();
+
+    // one record's map is large enough to be encoded in parallel from within the array's tasks.
+    final Map<String, Integer> largeMap = Maps.newLinkedHashMap();
+    for (int i = 0; i < JsonEncoders.PARALLEL_THRESHOLD; i++) {
+      largeMap.put("tag-" + i, i);
+    }
+    final List<GenericRecord> records = Lists.newArrayList();
+    for (int i = 0; i < 3 * JsonEncoders.PARALLEL_THRESHOLD; i++) {
+      records.add(GenericRecordImpl.create(
+          recordSchema,
+          ImmutableMap.of("id", i, "tags", (i == 100) ? largeMap : ImmutableMap.of("tag", i))
+      ));
+    }
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final JsonNode expected = JsonEncoder.<List<GenericRecord>>forSchema(schema).encode(records);
+      final JsonNode actual = JsonEncoder.<List<GenericRecord>>parallelForSchema(schema, pool).encode(records);
+      Assert.assertTrue(expected.equals(actual));
+
+      final JsonNode expectedMap = JsonEncoder.<Map<String, Integer>>forSchema(mapSchema).encode(largeMap);
+      final JsonNode actualMap = JsonEncoder.<Map<String, Integer>>parallelForSchema(mapSchema, pool).encode(largeMap);
+      Assert.assertTrue(expectedMap.equals(actualMap));
+
+      // small values are encoded on the calling thread, with the same output.
+      final List<GenericRecord> small = records.subList(0, 10);
+      Assert.assertEquals(
+          JsonEncoder.<List<GenericRecord>>forSchema(schema).encode(small),
+          JsonEncoder.<List<GenericRecord>>parallelForSchema(schema, pool).encode(small)
+      );
+    } finally {
+      pool.shutdown();
+    }
+  }
 }
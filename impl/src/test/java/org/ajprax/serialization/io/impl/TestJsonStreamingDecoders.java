@@ -0,0 +1,182 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.GenericUnion;
+import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonStreamingDecoders {
+
+  private static <T> T decode(
+      final Schema schema,
+      final String json
+  ) {
+    final JsonStreamingDecoder<T> decoder = JsonStreamingDecoder.forSchema(schema);
+    return decoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /** Values encoded by the tree encoder must decode to the original value. */
+  private static <T> void test(
+      final Schema schema,
+      final T input
+  ) {
+    final JsonEncoder<T> encoder = JsonEncoder.forSchema(schema);
+    Assert.assertEquals(input, decode(schema, encoder.encode(input).toString()));
+  }
+
+  @Test
+  public void testPrimitives() {
+    test(Schema.primitive(Type.SIGNED_16), (short) 5);
+    test(Schema.primitive(Type.SIGNED_32), 5);
+    test(Schema.primitive(Type.SIGNED_64), 5L);
+    test(Schema.primitive(Type.SIGNED_BIG), BigInteger.valueOf(5L));
+    test(Schema.primitive(Type.FLOAT_32), 1.5f);
+    test(Schema.primitive(Type.FLOAT_64), 1.5);
+    test(Schema.primitive(Type.FLOAT_BIG), BigDecimal.valueOf(1.5));
+    test(Schema.primitive(Type.BOOLEAN), true);
+    test(Schema.primitive(Type.STRING), "abc");
+  }
+
+  public enum Weekdays {
+    MONDAY, TUESDAY
+  }
+
+  @Test
+  public void testEnum() {
+    test(
+        Schema.builder(Type.ENUM).setName(Weekdays.class.getName()).setEnumSymbols(ImmutableSet.of("MONDAY", "TUESDAY")).build(),
+        Weekdays.TUESDAY
+    );
+  }
+
+  @Test
+  public void testExtension() {
+    final Schema schema = Schema.builder(Type.EXTENSION).setTagSchema(Schema.primitive(Type.STRING)).build();
+    test(schema, GenericExtensionImpl.create(schema, "tag", new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void testCollections() {
+    test(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build(), Lists.newArrayList("a", "b"));
+    test(Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.STRING)).build(), Lists.newArrayList("a", "b"));
+    test(Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build(), Sets.newHashSet("a", "b"));
+    test(
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.SIGNED_32)).build(),
+        ImmutableMap.of("a", 1, "b", 2)
+    );
+  }
+
+  @Test
+  public void testUnion() {
+    final Schema schema = Schema.builder(Type.UNION)
+        .addBranchSchema(Schema.primitive(Type.STRING))
+        .addBranchSchema(Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.BOOLEAN)).build())
+        .build();
+    test(schema, GenericUnionImpl.create(schema, 0, "a"));
+    test(schema, GenericUnionImpl.create(schema, 1, Optional.of(true)));
+    test(schema, GenericUnionImpl.create(schema, 1, Optional.empty()));
+
+    // value before branch_index is buffered.
+    final GenericUnion outOfOrder = decode(schema, "{\"value\":\"abc\",\"branch_index\":0}");
+    Assert.assertEquals(GenericUnionImpl.create(schema, 0, "abc"), outOfOrder);
+  }
+
+  @Test
+  public void testRecordFieldOrder() {
+    final Schema inner = Schema.builder(Type.RECORD)
+        .setName("inner")
+        .setFieldSchema("c1", Schema.primitive(Type.SIGNED_16))
+        .setFieldSchema("c2", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_32)).build())
+        .build();
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("outer")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .setFieldSchema("b", Schema.primitive(Type.BOOLEAN))
+        .setFieldSchema("c", inner)
+        .build();
+    final GenericRecord expected = GenericRecordImpl.create(
+        schema,
+        ImmutableMap.of(
+            "a", "a_value",
+            "b", true,
+            "c", GenericRecordImpl.create(inner, ImmutableMap.of("c1", (short) 4, "c2", Lists.newArrayList(1.5f)))
+        )
+    );
+    test(schema, expected);
+    // out of order fields and unknown fields.
+    Assert.assertEquals(
+        expected,
+        decode(schema, "{\"c\":{\"c2\":[1.5],\"c1\":4},\"unknown\":{\"x\":[1,{}]},\"b\":true,\"a\":\"a_value\"}")
+    );
+    try {
+      decode(schema, "{\"a\":\"a_value\",\"b\":true}");
+      Assert.fail();
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Record: 'outer' is missing field: 'c'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    test(
+        schema,
+        GenericRecordImpl.create(
+            schema,
+            ImmutableMap.of(
+                "head", "a",
+                "tail", Optional.of(
+                    GenericRecordImpl.create(
+                        schema,
+                        ImmutableMap.of(
+                            "head", "b",
+                            "tail", Optional.<GenericRecord>empty()
+                        )
+                    )
+                )
+            )
+        )
+    );
+  }
+
+  @Test
+  public void testParser() throws IOException {
+    final Schema schema = Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.SIGNED_32)).build();
+    final JsonStreamingDecoder<List<Integer>> decoder = JsonStreamingDecoder.forSchema(schema);
+    try (final JsonParser parser = JsonUtils.MAPPER.getFactory().createParser("{\"values\":[1,2,3],\"after\":true}")) {
+      // values may be embedded in a larger document.
+      Assert.assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+      Assert.assertEquals(JsonToken.FIELD_NAME, parser.nextToken());
+      parser.nextToken();
+      Assert.assertEquals(Lists.newArrayList(1, 2, 3), decoder.decode(parser));
+      Assert.assertEquals(JsonToken.END_ARRAY, parser.getCurrentToken());
+      Assert.assertEquals(JsonToken.FIELD_NAME, parser.nextToken());
+      Assert.assertEquals("after", parser.getCurrentName());
+    }
+  }
+}
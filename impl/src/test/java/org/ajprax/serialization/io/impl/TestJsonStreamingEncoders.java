@@ -0,0 +1,170 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericExtensionImpl;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.EncoderContext;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonStreamingEncoders {
+
+  /** Shared by every test value so that reuse across Schemas is exercised. */
+  private static final EncoderContext CONTEXT = EncoderContext.create();
+
+  /** Streaming output must match the output of the tree encoder. */
+  private static <T> void test(
+      final Schema schema,
+      final T input
+  ) {
+    final JsonEncoder<T> treeEncoder = JsonEncoder.forSchema(schema);
+    final JsonStreamingEncoder<T> streamingEncoder = JsonStreamingEncoder.forSchema(schema);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    streamingEncoder.encode(input, output);
+    final String expected = treeEncoder.encode(input).toString();
+    Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+    Assert.assertEquals(expected, new String(streamingEncoder.encode(input, CONTEXT), StandardCharsets.UTF_8));
+
+    output.reset();
+    streamingEncoder.encode(input, output, CONTEXT);
+    Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testPrimitives() {
+    test(Schema.primitive(Type.SIGNED_16), (short) 5);
+    test(Schema.primitive(Type.SIGNED_32), 5);
+    test(Schema.primitive(Type.SIGNED_64), 5L);
+    test(Schema.primitive(Type.SIGNED_BIG), BigInteger.valueOf(5L));
+    test(Schema.primitive(Type.FLOAT_32), 1.5f);
+    test(Schema.primitive(Type.FLOAT_64), 1.5);
+    test(Schema.primitive(Type.FLOAT_BIG), BigDecimal.valueOf(1.5));
+    test(Schema.primitive(Type.BOOLEAN), true);
+    test(Schema.primitive(Type.STRING), "a \"quoted\" string");
+  }
+
+  public enum Weekdays {
+    MONDAY, TUESDAY
+  }
+
+  @Test
+  public void testEnum() {
+    test(
+        Schema.builder(Type.ENUM).setName(Weekdays.class.getName()).setEnumSymbols(ImmutableSet.of("MONDAY", "TUESDAY")).build(),
+        Weekdays.TUESDAY
+    );
+  }
+
+  @Test
+  public void testEnumSymbols() {
+    // enums without a Java class decode to their symbol Strings, which encode back.
+    final Schema schema = Schema.builder(Type.ENUM).setName("Color").setEnumSymbols(ImmutableSet.of("RED", "GREEN")).build();
+    test(schema, "GREEN");
+    final JsonStreamingEncoder<Object> encoder = JsonStreamingEncoder.forSchema(schema);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    encoder.encode("GREEN", output);
+    final Object decoded = JsonStreamingDecoder.forSchema(schema).decode(new ByteArrayInputStream(output.toByteArray()));
+    Assert.assertEquals("GREEN", decoded);
+    final ByteArrayOutputStream reencoded = new ByteArrayOutputStream();
+    encoder.encode(decoded, reencoded);
+    Assert.assertArrayEquals(output.toByteArray(), reencoded.toByteArray());
+
+    try {
+      encoder.encode("BLUE", new ByteArrayOutputStream());
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Symbol: 'BLUE' is not a member of enum: 'Color'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testExtension() {
+    final Schema schema = Schema.builder(Type.EXTENSION).setTagSchema(Schema.primitive(Type.STRING)).build();
+    test(schema, GenericExtensionImpl.create(schema, "tag", new byte[] {1, 2, 3}));
+  }
+
+  @Test
+  public void testCollections() {
+    test(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build(), Lists.newArrayList("a", "b"));
+    test(Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.STRING)).build(), Lists.newArrayList("a", "b"));
+    test(Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build(), Sets.newHashSet("a", "b"));
+    test(
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.SIGNED_32)).build(),
+        ImmutableMap.of("a", 1, "b", 2)
+    );
+  }
+
+  @Test
+  public void testUnionAndOptional() {
+    final Schema schema = Schema.builder(Type.UNION)
+        .addBranchSchema(Schema.primitive(Type.STRING))
+        .addBranchSchema(Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.BOOLEAN)).build())
+        .build();
+    test(schema, GenericUnionImpl.create(schema, 0, "a"));
+    test(schema, GenericUnionImpl.create(schema, 1, Optional.of(true)));
+    test(schema, GenericUnionImpl.create(schema, 1, Optional.empty()));
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    test(
+        schema,
+        GenericRecordImpl.create(
+            schema,
+            ImmutableMap.of(
+                "head", "a",
+                "tail", Optional.of(
+                    GenericRecordImpl.create(
+                        schema,
+                        ImmutableMap.of(
+                            "head", "b",
+                            "tail", Optional.<GenericRecord>empty()
+                        )
+                    )
+                )
+            )
+        )
+    );
+  }
+
+  @Test
+  public void testGenerator() throws IOException {
+    final Schema schema = Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.SIGNED_32)).build();
+    final JsonStreamingEncoder<List<Integer>> encoder = JsonStreamingEncoder.forSchema(schema);
+    final StringWriter writer = new StringWriter();
+    try (final JsonGenerator generator = JsonUtils.MAPPER.getFactory().createGenerator(writer)) {
+      // values may be embedded in a larger document.
+      generator.writeStartObject();
+      generator.writeFieldName("values");
+      encoder.encode(Lists.newArrayList(1, 2, 3), generator);
+      generator.writeEndObject();
+    }
+    Assert.assertEquals("{\"values\":[1,2,3]}", writer.toString());
+  }
+}
@@ -0,0 +1,147 @@
+package org.ajprax.serialization.io.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.LazyGenericRecord;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLazyRecords {
+
+  private static final Schema INNER = Schema.builder(Type.RECORD)
+      .setName("Inner")
+      .setFieldSchema("id", Schema.primitive(Type.SIGNED_64))
+      .setFieldSchema("tags", Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build())
+      .build();
+  private static final Schema UNION = Schema.builder(Type.UNION)
+      .addBranchSchema(Schema.primitive(Type.STRING))
+      .addBranchSchema(Schema.primitive(Type.FLOAT_64))
+      .build();
+  private static final Schema OUTER = Schema.builder(Type.RECORD)
+      .setName("Outer")
+      .setFieldSchema("name", Schema.primitive(Type.STRING))
+      .setFieldSchema("inner", INNER)
+      .setFieldSchema("values", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_64)).build())
+      .setFieldSchema("counts", Schema.builder(Type.MAP)
+          .setKeySchema(Schema.primitive(Type.STRING))
+          .setValueSchema(Schema.primitive(Type.SIGNED_32))
+          .build())
+      .setFieldSchema("maybe", Schema.builder(Type.OPTIONAL).setElementSchema(INNER).build())
+      .setFieldSchema("union", UNION)
+      .setFieldSchema("flag", Schema.primitive(Type.BOOLEAN))
+      .build();
+
+  private static GenericRecord value(
+      final String name
+  ) {
+    final GenericRecord inner = GenericRecordImpl.create(INNER, ImmutableMap.of("id", 7L, "tags", ImmutableSet.of("a", "b")));
+    return GenericRecordImpl.create(OUTER, ImmutableMap.<String, Object>builder()
+        .put("name", name)
+        .put("inner", inner)
+        .put("values", PrimitiveLists.wrap(new double[] {1.5, 2.5}))
+        .put("counts", ImmutableMap.of("x", 1, "y", -2))
+        .put("maybe", Optional.of(inner))
+        .put("union", GenericUnionImpl.create(UNION, 1, 0.5))
+        .put("flag", true)
+        .build());
+  }
+
+  @Test
+  public void testBinary() {
+    final GenericRecord value = value("binary");
+    final byte[] bytes = BinaryEncoder.forSchema(OUTER).encode(value);
+    final GenericRecord lazy = BinaryDecoder.<GenericRecord>lazyForSchema(OUTER).decode(bytes);
+    Assert.assertTrue(lazy instanceof LazyGenericRecord);
+    Assert.assertFalse(((LazyGenericRecord) lazy).isDecoded(OUTER.getFieldIndex("name")));
+
+    Assert.assertEquals("binary", lazy.get("name"));
+    Assert.assertTrue(((LazyGenericRecord) lazy).isDecoded(OUTER.getFieldIndex("name")));
+    Assert.assertFalse(((LazyGenericRecord) lazy).isDecoded(OUTER.getFieldIndex("counts")));
+    // RECORD fields are lazy as well.
+    Assert.assertTrue(lazy.get("inner") instanceof LazyGenericRecord);
+
+    Assert.assertEquals(value, lazy);
+    Assert.assertEquals(lazy, value);
+    Assert.assertEquals(value.hashCode(), lazy.hashCode());
+    Assert.assertArrayEquals(bytes, BinaryEncoder.forSchema(OUTER).encode(lazy));
+  }
+
+  @Test
+  public void testBinaryFieldsDecodedOnDemand() {
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Flagged")
+        .setFieldSchema("a", Schema.primitive(Type.STRING))
+        .setFieldSchema("b", Schema.primitive(Type.BOOLEAN))
+        .build();
+    final byte[] bytes = BinaryEncoder.forSchema(schema).encode(
+        GenericRecordImpl.create(schema, ImmutableMap.of("a", "corrupt", "b", true))
+    );
+    // the last byte is the BOOLEAN field, which skipping does not validate.
+    bytes[bytes.length - 1] = 2;
+    final GenericRecord lazy = BinaryDecoder.<GenericRecord>lazyForSchema(schema).decode(bytes);
+    Assert.assertEquals("corrupt", lazy.get("a"));
+    try {
+      lazy.get("b");
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Invalid boolean byte: '2'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testBinaryBuffer() {
+    final BinaryEncoder<GenericRecord> encoder = BinaryEncoder.forSchema(OUTER);
+    final BinaryDecoder<GenericRecord> decoder = BinaryDecoder.lazyForSchema(OUTER);
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+    encoder.encodeTo(value("first"), buffer);
+    encoder.encodeTo(value("second"), buffer);
+    buffer.flip();
+    final GenericRecord first = decoder.decodeFrom(buffer);
+    final GenericRecord second = decoder.decodeFrom(buffer);
+    Assert.assertFalse(buffer.hasRemaining());
+    Assert.assertEquals(value("second"), second);
+    Assert.assertEquals(value("first"), first);
+  }
+
+  @Test
+  public void testBinaryRecursive() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    GenericRecord list = null;
+    for (int i = 0; i < 5; i++) {
+      list = GenericRecordImpl.create(schema, ImmutableMap.of("head", "node-" + i, "tail", Optional.ofNullable(list)));
+    }
+    final byte[] bytes = BinaryEncoder.forSchema(schema).encode(list);
+    Assert.assertEquals(list, BinaryDecoder.lazyForSchema(schema).decode(bytes));
+  }
+
+  @Test
+  public void testJson() {
+    final GenericRecord value = value("json");
+    final JsonNode json = JsonEncoder.forSchema(OUTER).encode(value);
+    final GenericRecord lazy = JsonDecoder.<GenericRecord>lazyForSchema(OUTER).decode(json);
+    Assert.assertTrue(lazy instanceof LazyGenericRecord);
+    Assert.assertEquals(Lists.newArrayList(1.5, 2.5), lazy.get("values"));
+    Assert.assertFalse(((LazyGenericRecord) lazy).isDecoded(OUTER.getFieldIndex("name")));
+    Assert.assertEquals(value, lazy);
+    Assert.assertEquals(value.hashCode(), lazy.hashCode());
+  }
+}
@@ -0,0 +1,102 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.generic.impl.PrimitiveLists.DoubleList;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPrimitiveArrays {
+
+  private static Schema array(
+      final Type elementType
+  ) {
+    return Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(elementType)).build();
+  }
+
+  /** Primitive and boxed Lists encode identically and decode to an equal primitive List. */
+  private static void test(
+      final Schema schema,
+      final List<?> primitive,
+      final List<?> boxed
+  ) {
+    Assert.assertEquals(boxed, primitive);
+    Assert.assertEquals(boxed.hashCode(), primitive.hashCode());
+
+    final BinaryEncoder<List<?>> binaryEncoder = BinaryEncoder.forSchema(schema);
+    final BinaryDecoder<List<?>> binaryDecoder = BinaryDecoder.forSchema(schema);
+    final byte[] bytes = binaryEncoder.encode(primitive);
+    Assert.assertArrayEquals(binaryEncoder.encode(boxed), bytes);
+    final List<?> binaryDecoded = binaryDecoder.decode(bytes);
+    Assert.assertEquals(primitive.getClass(), binaryDecoded.getClass());
+    Assert.assertEquals(boxed, binaryDecoded);
+
+    final JsonEncoder<List<?>> jsonEncoder = JsonEncoder.forSchema(schema);
+    final JsonDecoder<List<?>> jsonDecoder = JsonDecoder.forSchema(schema);
+    final List<?> jsonDecoded = jsonDecoder.decode(jsonEncoder.encode(boxed));
+    Assert.assertEquals(primitive.getClass(), jsonDecoded.getClass());
+    Assert.assertEquals(boxed, jsonDecoded);
+
+    final JsonStreamingEncoder<List<?>> streamingEncoder = JsonStreamingEncoder.forSchema(schema);
+    final JsonStreamingDecoder<List<?>> streamingDecoder = JsonStreamingDecoder.forSchema(schema);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    streamingEncoder.encode(primitive, output);
+    Assert.assertEquals(jsonEncoder.encode(boxed).toString(), output.toString());
+    final List<?> streamingDecoded = streamingDecoder.decode(new ByteArrayInputStream(output.toByteArray()));
+    Assert.assertEquals(primitive.getClass(), streamingDecoded.getClass());
+    Assert.assertEquals(boxed, streamingDecoded);
+  }
+
+  @Test
+  public void testPrimitiveArrays() {
+    test(array(Type.SIGNED_16), PrimitiveLists.wrap(new short[] {1, -2, Short.MAX_VALUE}), Lists.newArrayList((short) 1, (short) -2, Short.MAX_VALUE));
+    test(array(Type.SIGNED_32), PrimitiveLists.wrap(new int[] {1, -2, Integer.MIN_VALUE}), Lists.newArrayList(1, -2, Integer.MIN_VALUE));
+    test(array(Type.SIGNED_64), PrimitiveLists.wrap(new long[] {1L, -2L, Long.MAX_VALUE}), Lists.newArrayList(1L, -2L, Long.MAX_VALUE));
+    test(array(Type.FLOAT_32), PrimitiveLists.wrap(new float[] {1.5f, -2.25f}), Lists.newArrayList(1.5f, -2.25f));
+    test(array(Type.FLOAT_64), PrimitiveLists.wrap(new double[] {1.5, -2.25, Double.MAX_VALUE}), Lists.newArrayList(1.5, -2.25, Double.MAX_VALUE));
+    test(array(Type.BOOLEAN), PrimitiveLists.wrap(new boolean[] {true, false}), Lists.newArrayList(true, false));
+    test(
+        Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.FLOAT_64)).build(),
+        PrimitiveLists.wrap(new double[] {1.5, -2.25}),
+        Lists.newArrayList(1.5, -2.25)
+    );
+  }
+
+  @Test
+  public void testLargeArray() {
+    final double[] values = new double[10000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i * 0.5;
+    }
+    final Schema schema = array(Type.FLOAT_64);
+    final BinaryEncoder<List<Double>> encoder = BinaryEncoder.forSchema(schema);
+    final BinaryDecoder<List<Double>> decoder = BinaryDecoder.forSchema(schema);
+    final DoubleList decoded = (DoubleList) decoder.decode(encoder.encode(PrimitiveLists.wrap(values)));
+    Assert.assertArrayEquals(values, decoded.getArray(), 0.0);
+  }
+
+  @Test
+  public void testTruncatedInput() {
+    final BinaryDecoder<List<Integer>> decoder = BinaryDecoder.forSchema(array(Type.SIGNED_32));
+    try {
+      // claims 100 elements with only one byte of input.
+      decoder.decode(new byte[] {100, 0});
+      Assert.fail();
+    } catch (BufferUnderflowException bue) {
+      // expected
+    }
+  }
+}
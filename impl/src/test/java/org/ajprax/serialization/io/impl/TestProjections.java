@@ -0,0 +1,214 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.JsonStreamingDecoder;
+import org.ajprax.serialization.io.JsonStreamingEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProjections {
+
+  private static final Schema STRING = Schema.primitive(Type.STRING);
+  private static final Schema UNION = Schema.builder(Type.UNION)
+      .addBranchSchema(STRING)
+      .addBranchSchema(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.SIGNED_32)).build())
+      .build();
+  private static final Schema ITEM = Schema.builder(Type.RECORD)
+      .setName("Item")
+      .setFieldSchema("name", STRING)
+      .setFieldSchema("weights", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_64)).build())
+      .setFieldSchema("attributes", Schema.builder(Type.MAP).setKeySchema(STRING).setValueSchema(STRING).build())
+      .build();
+  private static final Schema EVENT = Schema.builder(Type.RECORD)
+      .setName("Event")
+      .setFieldSchema("id", Schema.primitive(Type.SIGNED_64))
+      .setFieldSchema("items", Schema.builder(Type.ARRAY).setElementSchema(ITEM).build())
+      .setFieldSchema("meta", Schema.builder(Type.MAP).setKeySchema(STRING).setValueSchema(UNION).build())
+      .setFieldSchema("score", Schema.primitive(Type.FLOAT_64))
+      .setFieldSchema("flag", Schema.primitive(Type.BOOLEAN))
+      .setFieldSchema("point", Schema.builder(Type.FIXED_SIZE_ARRAY)
+          .setSize(2)
+          .setElementSchema(Schema.primitive(Type.FLOAT_32))
+          .build())
+      .setFieldSchema("first", Schema.builder(Type.OPTIONAL).setElementSchema(ITEM).build())
+      .setFieldSchema("name", STRING)
+      .build();
+
+  /** Only the id and name of an Event. */
+  private static final Schema SUMMARY = Schema.builder(Type.RECORD)
+      .setName("Event")
+      .setFieldSchema("name", STRING)
+      .setFieldSchema("id", Schema.primitive(Type.SIGNED_64))
+      .build();
+
+  /** Only the names of the items of an Event. */
+  private static final Schema ITEM_NAMES = Schema.builder(Type.RECORD)
+      .setName("Event")
+      .setFieldSchema("items", Schema.builder(Type.ARRAY)
+          .setElementSchema(Schema.builder(Type.RECORD).setName("Item").setFieldSchema("name", STRING).build())
+          .build())
+      .setFieldSchema("first", Schema.builder(Type.OPTIONAL)
+          .setElementSchema(Schema.builder(Type.RECORD).setName("Item").setFieldSchema("name", STRING).build())
+          .build())
+      .build();
+
+  private static GenericRecord item(
+      final String name
+  ) {
+    return GenericRecordImpl.create(ITEM, ImmutableMap.of(
+        "name", name,
+        "weights", PrimitiveLists.wrap(new double[] {0.5, 1.5}),
+        "attributes", ImmutableMap.of("color", "red")
+    ));
+  }
+
+  private static GenericRecord event() {
+    return GenericRecordImpl.create(EVENT, ImmutableMap.<String, Object>builder()
+        .put("id", 42L)
+        .put("items", Lists.newArrayList(item("a"), item("b")))
+        .put("meta", ImmutableMap.of(
+            "x", GenericUnionImpl.create(UNION, 0, "y"),
+            "z", GenericUnionImpl.create(UNION, 1, PrimitiveLists.wrap(new int[] {1, 2, 3}))
+        ))
+        .put("score", 0.25)
+        .put("flag", true)
+        .put("point", PrimitiveLists.wrap(new float[] {1.0f, 2.0f}))
+        .put("first", Optional.of(item("c")))
+        .put("name", "event")
+        .build());
+  }
+
+  private static GenericRecord itemName(
+      final String name
+  ) {
+    final Schema itemSchema = ITEM_NAMES.getFieldSchemas().get("items").getElementSchema();
+    return GenericRecordImpl.create(itemSchema, ImmutableMap.of("name", name));
+  }
+
+  private static GenericRecord expectedSummary() {
+    return GenericRecordImpl.create(SUMMARY, ImmutableMap.of("name", "event", "id", 42L));
+  }
+
+  private static GenericRecord expectedItemNames() {
+    return GenericRecordImpl.create(ITEM_NAMES, ImmutableMap.of(
+        "items", Lists.newArrayList(itemName("a"), itemName("b")),
+        "first", Optional.of(itemName("c"))
+    ));
+  }
+
+  @Test
+  public void testBinary() {
+    final byte[] bytes = BinaryEncoder.forSchema(EVENT).encode(event());
+    final BinaryDecoder<GenericRecord> decoder = BinaryDecoder.forSchema(EVENT);
+
+    final BinaryDecoder<GenericRecord> summary = decoder.withProjection(SUMMARY);
+    Assert.assertSame(summary, decoder.withProjection(SUMMARY));
+    final GenericRecord decodedSummary = summary.decode(bytes);
+    Assert.assertEquals(expectedSummary(), decodedSummary);
+    Assert.assertEquals(SUMMARY, decodedSummary.getSchema());
+
+    final BinaryDecoder<GenericRecord> itemNames = decoder.withProjection(ITEM_NAMES);
+    Assert.assertEquals(expectedItemNames(), itemNames.decode(bytes));
+    // projections of a projection still read the original encoded form.
+    Assert.assertEquals(expectedSummary(), itemNames.<GenericRecord>withProjection(SUMMARY).decode(bytes));
+    // projecting to the encoded Schema reads the whole value.
+    Assert.assertEquals(event(), decoder.<GenericRecord>withProjection(EVENT).decode(bytes));
+  }
+
+  @Test
+  public void testBinaryBuffer() {
+    final BinaryEncoder<GenericRecord> encoder = BinaryEncoder.forSchema(EVENT);
+    final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    encoder.encodeTo(event(), buffer);
+    encoder.encodeTo(event(), buffer);
+    buffer.flip();
+    final BinaryDecoder<GenericRecord> summary = BinaryDecoder.<GenericRecord>forSchema(EVENT).withProjection(SUMMARY);
+    // skipped fields advance the buffer past the whole encoded value.
+    Assert.assertEquals(expectedSummary(), summary.decodeFrom(buffer));
+    Assert.assertEquals(expectedSummary(), summary.decodeFrom(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void testBinaryRecursive() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema list = builder
+        .setFieldSchema("head", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("label", STRING)
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    final Schema.Builder projectionBuilder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema heads = projectionBuilder
+        .setFieldSchema("head", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL)
+            .setElementSchema(projectionBuilder.getPlaceholderSchema())
+            .build())
+        .build();
+    GenericRecord value = null;
+    GenericRecord expected = null;
+    for (int i = 0; i < 5; i++) {
+      value = GenericRecordImpl.create(list, ImmutableMap.of(
+          "head", i,
+          "label", "node-" + i,
+          "tail", Optional.ofNullable(value)
+      ));
+      expected = GenericRecordImpl.create(heads, ImmutableMap.of("head", i, "tail", Optional.ofNullable(expected)));
+    }
+    final byte[] bytes = BinaryEncoder.forSchema(list).encode(value);
+    Assert.assertEquals(expected, BinaryDecoder.forSchema(list).withProjection(heads).decode(bytes));
+  }
+
+  @Test
+  public void testJsonStreaming() {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    JsonStreamingEncoder.<GenericRecord>forSchema(EVENT).encode(event(), output);
+    final JsonStreamingDecoder<GenericRecord> decoder = JsonStreamingDecoder.forSchema(EVENT);
+    Assert.assertEquals(
+        expectedSummary(),
+        decoder.<GenericRecord>withProjection(SUMMARY).decode(new ByteArrayInputStream(output.toByteArray()))
+    );
+    Assert.assertEquals(
+        expectedItemNames(),
+        decoder.<GenericRecord>withProjection(ITEM_NAMES).decode(new ByteArrayInputStream(output.toByteArray()))
+    );
+  }
+
+  private static void assertNotProjection(
+      final Schema readerSchema
+  ) {
+    try {
+      BinaryDecoder.forSchema(EVENT).withProjection(readerSchema);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+    try {
+      JsonStreamingDecoder.forSchema(EVENT).withProjection(readerSchema);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testInvalidProjections() {
+    assertNotProjection(STRING);
+    assertNotProjection(Schema.builder(Type.RECORD).setName("Other").setFieldSchema("id", Schema.primitive(Type.SIGNED_64)).build());
+    assertNotProjection(Schema.builder(Type.RECORD).setName("Event").setFieldSchema("missing", STRING).build());
+    assertNotProjection(Schema.builder(Type.RECORD).setName("Event").setFieldSchema("id", STRING).build());
+  }
+}
@@ -0,0 +1,178 @@
+package org.ajprax.serialization.io.impl;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.Decoder;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Builder;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestReusableDecoding {
+
+  /** Decode a value into a value previously decoded from another input. */
+  private static <E, T> void testReuse(
+      final Function<T, E> encoder,
+      final Decoder<E, T> decoder,
+      final T previous,
+      final T input
+  ) {
+    final E encoded = encoder.apply(input);
+    Assert.assertEquals(input, decoder.decode(encoded, decoder.decode(encoded)));
+    Assert.assertEquals(input, decoder.decode(encoded, decoder.decode(encoder.apply(previous))));
+    Assert.assertEquals(input, decoder.decode(encoded, null));
+  }
+
+  /** Decode each value, with the binary and JSON decoders, into the value decoded before it. */
+  @SafeVarargs
+  private static <T> void test(
+      final Schema schema,
+      final T... inputs
+  ) {
+    final BinaryEncoder<T> binaryEncoder = BinaryEncoder.forSchema(schema);
+    final BinaryDecoder<T> binaryDecoder = BinaryDecoder.forSchema(schema);
+    final JsonEncoder<T> jsonEncoder = JsonEncoder.forSchema(schema);
+    final JsonDecoder<T> jsonDecoder = JsonDecoder.forSchema(schema);
+    for (int i = 0; i < inputs.length; i++) {
+      final T previous = inputs[(i + inputs.length - 1) % inputs.length];
+      testReuse(binaryEncoder::encode, binaryDecoder, previous, inputs[i]);
+      testReuse(jsonEncoder::encode, jsonDecoder, previous, inputs[i]);
+    }
+  }
+
+  @Test
+  public void testCollections() {
+    test(
+        Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Lists.newArrayList("a", "b", "c"),
+        Lists.newArrayList("d"),
+        Lists.newArrayList()
+    );
+    test(
+        Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.SIGNED_32)).build(),
+        Lists.newArrayList(1, 2),
+        Lists.newArrayList(3, 4),
+        Lists.newArrayList(5, 6, 7)
+    );
+    test(
+        Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Sets.newHashSet("a", "b"),
+        Sets.newHashSet("c")
+    );
+    test(
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.BOOLEAN)).build(),
+        ImmutableMap.of("a", true, "b", false),
+        ImmutableMap.of("c", true)
+    );
+  }
+
+  @Test
+  public void testUnionAndOptional() {
+    final Schema union = Schema.builder(Type.UNION)
+        .addBranchSchema(Schema.primitive(Type.STRING))
+        .addBranchSchema(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build())
+        .build();
+    // reuse across branches as well as within one.
+    test(
+        union,
+        GenericUnionImpl.create(union, 0, "abc"),
+        GenericUnionImpl.create(union, 1, Lists.newArrayList("a", "b")),
+        GenericUnionImpl.create(union, 1, Lists.newArrayList("c"))
+    );
+    test(
+        Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Optional.of("abc"),
+        Optional.empty(),
+        Optional.of("def")
+    );
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema schema = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+    final GenericRecord last = GenericRecordImpl.create(
+        schema,
+        ImmutableMap.of("head", "b", "tail", Optional.<GenericRecord>empty())
+    );
+    test(
+        schema,
+        GenericRecordImpl.create(schema, ImmutableMap.of("head", "a", "tail", Optional.of(last))),
+        last
+    );
+  }
+
+  /** Decode a second value into the first and check which parts were overwritten in place. */
+  private static <E> void testInPlace(
+      final Function<GenericRecord, E> encoder,
+      final Decoder<E, GenericRecord> decoder,
+      final GenericRecord first,
+      final GenericRecord second
+  ) {
+    final GenericRecord reuse = decoder.decode(encoder.apply(first));
+    final Object elements = reuse.get("elements");
+    final GenericRecord firstElement = reuse.<List<GenericRecord>>get("elements").get(0);
+    final Object firstValues = firstElement.get("values");
+    final Object counts = reuse.get("counts");
+
+    final GenericRecord decoded = decoder.decode(encoder.apply(second), reuse);
+    Assert.assertEquals(second, decoded);
+    // the record, its containers and nested records of equal size are overwritten in place.
+    Assert.assertSame(reuse, decoded);
+    Assert.assertSame(elements, decoded.get("elements"));
+    Assert.assertSame(firstElement, decoded.<List<GenericRecord>>get("elements").get(0));
+    Assert.assertSame(firstValues, firstElement.get("values"));
+    Assert.assertSame(counts, decoded.get("counts"));
+  }
+
+  @Test
+  public void testInPlace() {
+    final Schema element = Schema.builder(Type.RECORD)
+        .setName("Element")
+        .setFieldSchema("name", Schema.primitive(Type.STRING))
+        .setFieldSchema("values", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_64)).build())
+        .build();
+    final Schema schema = Schema.builder(Type.RECORD)
+        .setName("Container")
+        .setFieldSchema("elements", Schema.builder(Type.ARRAY).setElementSchema(element).build())
+        .setFieldSchema("counts", Schema.builder(Type.MAP)
+            .setKeySchema(Schema.primitive(Type.STRING))
+            .setValueSchema(Schema.primitive(Type.SIGNED_64))
+            .build())
+        .build();
+    final GenericRecord first = GenericRecordImpl.create(schema, ImmutableMap.of(
+        "elements", Lists.newArrayList(
+            GenericRecordImpl.create(element, ImmutableMap.of("name", "a", "values", Lists.newArrayList(1.0, 2.0))),
+            GenericRecordImpl.create(element, ImmutableMap.of("name", "b", "values", Lists.newArrayList(3.0)))
+        ),
+        "counts", ImmutableMap.of("x", 1L, "y", 2L)
+    ));
+    final GenericRecord second = GenericRecordImpl.create(schema, ImmutableMap.of(
+        "elements", Lists.newArrayList(
+            GenericRecordImpl.create(element, ImmutableMap.of("name", "c", "values", Lists.newArrayList(4.0, 5.0)))
+        ),
+        "counts", ImmutableMap.of("z", 3L)
+    ));
+
+    final BinaryEncoder<GenericRecord> binaryEncoder = BinaryEncoder.forSchema(schema);
+    testInPlace(binaryEncoder::encode, BinaryDecoder.forSchema(schema), first, second);
+    final JsonEncoder<GenericRecord> jsonEncoder = JsonEncoder.forSchema(schema);
+    testInPlace(jsonEncoder::encode, JsonDecoder.forSchema(schema), first, second);
+  }
+}
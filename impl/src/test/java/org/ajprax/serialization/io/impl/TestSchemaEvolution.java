@@ -0,0 +1,254 @@
+package org.ajprax.serialization.io.impl;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.generic.impl.GenericUnionImpl;
+import org.ajprax.serialization.generic.impl.PrimitiveLists;
+import org.ajprax.serialization.io.BinaryDecoder;
+import org.ajprax.serialization.io.BinaryEncoder;
+import org.ajprax.serialization.io.JsonDecoder;
+import org.ajprax.serialization.io.JsonEncoder;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSchemaEvolution {
+
+  private static final Schema STRING = Schema.primitive(Type.STRING);
+  private static final Schema SIGNED_32 = Schema.primitive(Type.SIGNED_32);
+  private static final Schema SIGNED_64 = Schema.primitive(Type.SIGNED_64);
+
+  private static Schema optional(
+      final Schema elementSchema
+  ) {
+    return Schema.builder(Type.OPTIONAL).setElementSchema(elementSchema).build();
+  }
+
+  private static Schema union(
+      final Schema... branchSchemas
+  ) {
+    final Schema.Builder builder = Schema.builder(Type.UNION);
+    for (Schema branchSchema : branchSchemas) {
+      builder.addBranchSchema(branchSchema);
+    }
+    return builder.build();
+  }
+
+  /** Version 1 of a record. */
+  private static final Schema WRITER_UNION = union(STRING, SIGNED_32);
+  private static final Schema WRITER = Schema.builder(Type.RECORD)
+      .setName("User")
+      .setFieldSchema("name", STRING)
+      .setFieldSchema("age", SIGNED_32)
+      .setFieldSchema("scores", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_32)).build())
+      .setFieldSchema("removed", Schema.builder(Type.MAP).setKeySchema(STRING).setValueSchema(WRITER_UNION).build())
+      .setFieldSchema("id", WRITER_UNION)
+      .setFieldSchema("nickname", STRING)
+      .build();
+
+  /**
+   * Version 2 of the record. Removes a field, adds a field, widens numbers, reorders and adds
+   * union branches and makes a field optional.
+   */
+  private static final Schema READER_UNION = union(SIGNED_64, Schema.primitive(Type.BOOLEAN), STRING);
+  private static final Schema READER = Schema.builder(Type.RECORD)
+      .setName("User")
+      .setFieldSchema("id", READER_UNION)
+      .setFieldSchema("name", STRING)
+      .setFieldSchema("email", optional(STRING))
+      .setFieldSchema("age", SIGNED_64)
+      .setFieldSchema("scores", Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.FLOAT_64)).build())
+      .setFieldSchema("nickname", optional(STRING))
+      .build();
+
+  private static GenericRecord written(
+      final int idBranch,
+      final Object id
+  ) {
+    return GenericRecordImpl.create(WRITER, ImmutableMap.<String, Object>builder()
+        .put("name", "alice")
+        .put("age", 30)
+        .put("scores", PrimitiveLists.wrap(new float[] {0.5f, 1.25f}))
+        .put("removed", ImmutableMap.of("k", GenericUnionImpl.create(WRITER_UNION, 0, "v")))
+        .put("id", GenericUnionImpl.create(WRITER_UNION, idBranch, id))
+        .put("nickname", "al")
+        .build());
+  }
+
+  private static GenericRecord read(
+      final int idBranch,
+      final Object id
+  ) {
+    return GenericRecordImpl.create(READER, ImmutableMap.<String, Object>builder()
+        .put("id", GenericUnionImpl.create(READER_UNION, idBranch, id))
+        .put("name", "alice")
+        .put("email", Optional.empty())
+        .put("age", 30L)
+        .put("scores", PrimitiveLists.wrap(new double[] {0.5, 1.25}))
+        .put("nickname", Optional.of("al"))
+        .build());
+  }
+
+  @Test
+  public void testBinary() {
+    final BinaryDecoder<GenericRecord> decoder = BinaryDecoder.forSchemas(WRITER, READER);
+    Assert.assertSame(decoder, BinaryDecoder.forSchemas(WRITER, READER));
+    final BinaryEncoder<GenericRecord> encoder = BinaryEncoder.forSchema(WRITER);
+    Assert.assertEquals(read(2, "x"), decoder.decode(encoder.encode(written(0, "x"))));
+    Assert.assertEquals(read(0, 7L), decoder.decode(encoder.encode(written(1, 7))));
+  }
+
+  @Test
+  public void testJson() {
+    final JsonDecoder<GenericRecord> decoder = JsonDecoder.forSchemas(WRITER, READER);
+    Assert.assertSame(decoder, JsonDecoder.forSchemas(WRITER, READER));
+    final JsonEncoder<GenericRecord> encoder = JsonEncoder.forSchema(WRITER);
+    Assert.assertEquals(read(2, "x"), decoder.decode(encoder.encode(written(0, "x"))));
+    Assert.assertEquals(read(0, 7L), decoder.decode(encoder.encode(written(1, 7))));
+  }
+
+  @Test
+  public void testWidening() {
+    final Schema writer = Schema.builder(Type.MAP)
+        .setKeySchema(Schema.primitive(Type.SIGNED_16))
+        .setValueSchema(SIGNED_64)
+        .build();
+    final Schema reader = Schema.builder(Type.MAP)
+        .setKeySchema(SIGNED_32)
+        .setValueSchema(Schema.primitive(Type.SIGNED_BIG))
+        .build();
+    final byte[] bytes = BinaryEncoder.forSchema(writer).encode(ImmutableMap.of((short) 3, Long.MIN_VALUE));
+    Assert.assertEquals(
+        ImmutableMap.of(3, BigInteger.valueOf(Long.MIN_VALUE)),
+        BinaryDecoder.forSchemas(writer, reader).decode(bytes)
+    );
+  }
+
+  @Test
+  public void testEnumSymbols() {
+    final Schema writer = Schema.builder(Type.ENUM)
+        .setName("Color")
+        .setEnumSymbols(ImmutableSet.of("RED", "GREEN", "BLUE"))
+        .build();
+    final Schema reader = Schema.builder(Type.ENUM)
+        .setName("Color")
+        .setEnumSymbols(ImmutableSet.of("BLUE", "YELLOW", "RED"))
+        .build();
+    final Schema writerArray = Schema.builder(Type.ARRAY).setElementSchema(writer).build();
+    final Schema readerArray = Schema.builder(Type.ARRAY).setElementSchema(reader).build();
+    final BinaryEncoder<Object> encoder = BinaryEncoder.forSchema(writerArray);
+    final BinaryDecoder<Object> decoder = BinaryDecoder.forSchemas(writerArray, readerArray);
+    Assert.assertEquals(Lists.newArrayList("BLUE", "RED"), decoder.decode(encoder.encode(Lists.newArrayList("BLUE", "RED"))));
+    try {
+      decoder.decode(encoder.encode(Lists.newArrayList("GREEN")));
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Symbol: 'GREEN' is not in reader enum: 'Color'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testWriterFieldOrder() {
+    final Schema reader = Schema.builder(Type.RECORD)
+        .setName("Pair")
+        .setFieldSchema("Aa", STRING)
+        .setFieldSchema("BB", SIGNED_64)
+        .build();
+    // equal writer Schemas which write their fields in a different order resolve separately.
+    for (Schema writer : Lists.newArrayList(
+        Schema.builder(Type.RECORD).setName("Pair").setFieldSchema("BB", SIGNED_32).setFieldSchema("Aa", STRING).build(),
+        Schema.builder(Type.RECORD).setName("Pair").setFieldSchema("Aa", STRING).setFieldSchema("BB", SIGNED_32).build()
+    )) {
+      final GenericRecord written = GenericRecordImpl.create(writer, ImmutableMap.of("Aa", "a", "BB", 1));
+      Assert.assertEquals(
+          GenericRecordImpl.create(reader, ImmutableMap.of("Aa", "a", "BB", 1L)),
+          BinaryDecoder.<GenericRecord>forSchemas(writer, reader).decode(BinaryEncoder.forSchema(writer).encode(written))
+      );
+    }
+  }
+
+  @Test
+  public void testUnreadableUnionBranch() {
+    final Schema writer = union(STRING, Schema.primitive(Type.FLOAT_64));
+    final Schema reader = union(STRING, Schema.primitive(Type.BOOLEAN));
+    final BinaryEncoder<Object> encoder = BinaryEncoder.forSchema(writer);
+    final BinaryDecoder<Object> decoder = BinaryDecoder.forSchemas(writer, reader);
+    Assert.assertEquals(
+        GenericUnionImpl.create(reader, 0, "s"),
+        decoder.decode(encoder.encode(GenericUnionImpl.create(writer, 0, "s")))
+    );
+    try {
+      decoder.decode(encoder.encode(GenericUnionImpl.create(writer, 1, 1.0)));
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final Schema.Builder writerBuilder = Schema.builder(Type.RECORD).setName("Tree");
+    final Schema writer = writerBuilder
+        .setFieldSchema("value", SIGNED_32)
+        .setFieldSchema("children", Schema.builder(Type.ARRAY).setElementSchema(writerBuilder.getPlaceholderSchema()).build())
+        .build();
+    final Schema.Builder readerBuilder = Schema.builder(Type.RECORD).setName("Tree");
+    final Schema reader = readerBuilder
+        .setFieldSchema("value", SIGNED_64)
+        .setFieldSchema("label", optional(STRING))
+        .setFieldSchema("children", Schema.builder(Type.ARRAY).setElementSchema(readerBuilder.getPlaceholderSchema()).build())
+        .build();
+    final GenericRecord leaf = GenericRecordImpl.create(writer, ImmutableMap.of("value", 1, "children", Lists.newArrayList()));
+    final GenericRecord root = GenericRecordImpl.create(writer, ImmutableMap.of("value", 0, "children", Lists.newArrayList(leaf)));
+    final GenericRecord readLeaf = GenericRecordImpl.create(reader, ImmutableMap.of(
+        "value", 1L,
+        "label", Optional.empty(),
+        "children", Lists.newArrayList()
+    ));
+    final GenericRecord readRoot = GenericRecordImpl.create(reader, ImmutableMap.of(
+        "value", 0L,
+        "label", Optional.empty(),
+        "children", Lists.newArrayList(readLeaf)
+    ));
+    Assert.assertEquals(readRoot, BinaryDecoder.forSchemas(writer, reader).decode(BinaryEncoder.forSchema(writer).encode(root)));
+    Assert.assertEquals(readRoot, JsonDecoder.forSchemas(writer, reader).decode(JsonEncoder.forSchema(writer).encode(root)));
+  }
+
+  private static void assertNotResolvable(
+      final Schema writerSchema,
+      final Schema readerSchema
+  ) {
+    try {
+      BinaryDecoder.forSchemas(writerSchema, readerSchema);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+    try {
+      JsonDecoder.forSchemas(writerSchema, readerSchema);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      // expected.
+    }
+  }
+
+  @Test
+  public void testInvalidEvolutions() {
+    // narrowing.
+    assertNotResolvable(SIGNED_64, SIGNED_32);
+    assertNotResolvable(Schema.primitive(Type.FLOAT_64), Schema.primitive(Type.FLOAT_32));
+    // added fields must be optional.
+    assertNotResolvable(WRITER, Schema.builder(Type.RECORD).setName("User").setFieldSchema("email", STRING).build());
+    // records must keep their names.
+    assertNotResolvable(WRITER, Schema.builder(Type.RECORD).setName("Account").setFieldSchema("name", STRING).build());
+    // no branch reads the writer Schema.
+    assertNotResolvable(STRING, union(SIGNED_32, SIGNED_64));
+  }
+}
@@ -0,0 +1,186 @@
+package org.ajprax.serialization.io.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.ajprax.serialization.generic.GenericRecord;
+import org.ajprax.serialization.generic.impl.GenericRecordImpl;
+import org.ajprax.serialization.io.CompressionCodec;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSchemaRegistry {
+
+  @Rule
+  public final TemporaryFolder mFolder = new TemporaryFolder();
+
+  private static final Schema RECORD = Schema.builder(Type.RECORD)
+      .setName("Point")
+      .setFieldSchema("x", Schema.primitive(Type.SIGNED_32))
+      .setFieldSchema("y", Schema.primitive(Type.SIGNED_32))
+      .build();
+
+  private static Schema linkedList() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    return builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+  }
+
+  private static void assertRoundTrip(
+      final Schema schema
+  ) {
+    final Schema read = SchemaSerializer.fromBytes(SchemaSerializer.toBytes(schema));
+    Assert.assertEquals(schema, read);
+    Assert.assertEquals(schema.getFingerprint(), read.getFingerprint());
+  }
+
+  @Test
+  public void testSerializer() {
+    assertRoundTrip(Schema.primitive(Type.FLOAT_BIG));
+    assertRoundTrip(Schema.builder(Type.ENUM).setName("Color").setEnumSymbols(ImmutableSet.of("RED", "GREEN")).build());
+    assertRoundTrip(Schema.builder(Type.EXTENSION).setTagSchema(Schema.primitive(Type.STRING)).build());
+    assertRoundTrip(Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(3).setElementSchema(RECORD).build());
+    assertRoundTrip(Schema.builder(Type.MAP)
+        .setKeySchema(Schema.primitive(Type.STRING))
+        .setValueSchema(Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.BOOLEAN)).build())
+        .build());
+    assertRoundTrip(Schema.builder(Type.UNION)
+        .addBranchSchema(RECORD)
+        .addBranchSchema(Schema.builder(Type.ARRAY).setElementSchema(RECORD).build())
+        .build());
+    assertRoundTrip(linkedList());
+  }
+
+  @Test
+  public void testFraming() {
+    final SchemaRegistry registry = SchemaRegistry.create();
+    final GenericRecord point = GenericRecordImpl.create(RECORD, ImmutableMap.of("x", 1, "y", -2));
+    final byte[] message = registry.encode(RECORD, point);
+    Assert.assertEquals(SchemaRegistry.MAGIC, message[0]);
+    Assert.assertEquals(RECORD.getLayoutFingerprint(), SchemaRegistry.getFingerprint(ByteBuffer.wrap(message)));
+    Assert.assertSame(RECORD, registry.getWriterSchema(message));
+    Assert.assertEquals(point, registry.decode(message));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(64);
+    registry.encodeTo(RECORD, point, buffer);
+    registry.encodeTo(RECORD, point, buffer);
+    buffer.flip();
+    Assert.assertEquals(point, registry.decodeFrom(buffer));
+    Assert.assertEquals(point, registry.decodeFrom(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+
+    // the writer Schema is found by fingerprint and evolved to the reader Schema.
+    final Schema reader = Schema.builder(Type.RECORD)
+        .setName("Point")
+        .setFieldSchema("y", Schema.primitive(Type.SIGNED_64))
+        .setFieldSchema("z", Schema.builder(Type.OPTIONAL).setElementSchema(Schema.primitive(Type.SIGNED_32)).build())
+        .build();
+    Assert.assertEquals(
+        GenericRecordImpl.create(reader, ImmutableMap.of("y", -2L, "z", Optional.empty())),
+        registry.decode(message, reader)
+    );
+
+    try {
+      SchemaRegistry.create().decode(message);
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals(
+          String.format("No Schema is registered with fingerprint: '%s'.", RECORD.getLayoutFingerprint()),
+          iae.getMessage()
+      );
+    }
+  }
+
+  @Test
+  public void testCompressedFraming() {
+    final SchemaRegistry registry = SchemaRegistry.create();
+    final GenericRecord point = GenericRecordImpl.create(RECORD, ImmutableMap.of("x", 1, "y", -2));
+    for (CompressionCodec codec : new CompressionCodec[] {CompressionCodecs.DEFLATE, CompressionCodecs.LZ}) {
+      final byte[] message = registry.encode(RECORD, point, codec);
+      Assert.assertEquals(SchemaRegistry.COMPRESSED_MAGIC, message[0]);
+      Assert.assertEquals(RECORD.getLayoutFingerprint(), SchemaRegistry.getFingerprint(ByteBuffer.wrap(message)));
+      Assert.assertEquals(point, registry.<GenericRecord>decode(message));
+
+      // compressed and uncompressed messages may follow each other in one buffer.
+      final byte[] uncompressed = registry.encode(RECORD, point);
+      final ByteBuffer buffer = ByteBuffer.allocate(message.length + uncompressed.length);
+      buffer.put(message).put(uncompressed).flip();
+      Assert.assertEquals(point, registry.<GenericRecord>decodeFrom(buffer));
+      Assert.assertEquals(point, registry.<GenericRecord>decodeFrom(buffer));
+      Assert.assertFalse(buffer.hasRemaining());
+    }
+  }
+
+  @Test
+  public void testCanonicalInstances() {
+    final SchemaRegistry registry = SchemaRegistry.create();
+    final Schema first = linkedList();
+    final Schema second = linkedList();
+    Assert.assertNotSame(first, second);
+    Assert.assertSame(first, registry.register(first));
+    Assert.assertSame(first, registry.register(second));
+    Assert.assertSame(first, registry.get(second.getLayoutFingerprint()).get());
+    Assert.assertFalse(registry.get(RECORD.getLayoutFingerprint()).isPresent());
+    Assert.assertSame(registry.getDecoder(first.getLayoutFingerprint()), registry.getDecoder(second.getLayoutFingerprint()));
+  }
+
+  @Test
+  public void testFieldOrder() {
+    final SchemaRegistry registry = SchemaRegistry.create();
+    // field names with equal hash codes, which keep the order in which they are set.
+    final Schema xy = Schema.builder(Type.RECORD)
+        .setName("Point")
+        .setFieldSchema("Aa", Schema.primitive(Type.STRING))
+        .setFieldSchema("BB", Schema.primitive(Type.SIGNED_32))
+        .build();
+    final Schema yx = Schema.builder(Type.RECORD)
+        .setName("Point")
+        .setFieldSchema("BB", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("Aa", Schema.primitive(Type.STRING))
+        .build();
+    // equal Schemas whose fields are written in a different order are registered separately.
+    Assert.assertSame(xy, registry.register(xy));
+    Assert.assertSame(yx, registry.register(yx));
+    for (Schema schema : new Schema[] {xy, yx}) {
+      final GenericRecord point = GenericRecordImpl.create(schema, ImmutableMap.of("Aa", "a", "BB", 2));
+      final byte[] message = registry.encode(schema, point);
+      Assert.assertSame(schema, registry.getWriterSchema(message));
+      Assert.assertEquals(point, registry.decode(message));
+    }
+  }
+
+  @Test
+  public void testPersistence() throws IOException {
+    final Path file = mFolder.getRoot().toPath().resolve("schemas");
+    final SchemaRegistry registry = SchemaRegistry.open(file);
+    final byte[] message = registry.encode(RECORD, GenericRecordImpl.create(RECORD, ImmutableMap.of("x", 3, "y", 4)));
+    registry.register(linkedList());
+    final long fileSize = Files.size(file);
+    // registering a known Schema does not append it again.
+    registry.register(RECORD);
+    Assert.assertEquals(fileSize, Files.size(file));
+
+    // a partially appended Schema is dropped.
+    try (OutputStream stream = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+      stream.write(new byte[] {100, 1, 2});
+    }
+    final SchemaRegistry reopened = SchemaRegistry.open(file);
+    Assert.assertEquals(fileSize, Files.size(file));
+    Assert.assertEquals(RECORD, reopened.getWriterSchema(message));
+    Assert.assertEquals(registry.<GenericRecord>decode(message), reopened.<GenericRecord>decode(message));
+    Assert.assertEquals(linkedList(), reopened.get(linkedList().getLayoutFingerprint()).get());
+  }
+}
@@ -0,0 +1,137 @@
+package org.ajprax.serialization.io.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.ajprax.serialization.schema.impl.SchemaInterner;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSchemaSerializer {
+
+  private static Schema linkedList() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    return builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+  }
+
+  /** A Schema using every type. */
+  private static Schema everyType() {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("Everything");
+    for (Type type : Type.values()) {
+      switch (type) {
+        case ENUM: {
+          builder.setFieldSchema("enum", Schema.builder(Type.ENUM)
+              .setName("Color")
+              .setEnumSymbols(ImmutableSet.of("RED", "GREEN"))
+              .build());
+          break;
+        }
+        case EXTENSION: {
+          builder.setFieldSchema("extension", Schema.builder(Type.EXTENSION)
+              .setTagSchema(Schema.primitive(Type.SIGNED_32))
+              .build());
+          break;
+        }
+        case ARRAY:
+        case SET:
+        case OPTIONAL: {
+          builder.setFieldSchema(type.name(), Schema.builder(type).setElementSchema(linkedList()).build());
+          break;
+        }
+        case FIXED_SIZE_ARRAY: {
+          builder.setFieldSchema("fixed", Schema.builder(type)
+              .setSize(4)
+              .setElementSchema(Schema.primitive(Type.FLOAT_32))
+              .build());
+          break;
+        }
+        case MAP: {
+          builder.setFieldSchema("map", Schema.builder(type)
+              .setKeySchema(Schema.primitive(Type.STRING))
+              .setValueSchema(builder.getPlaceholderSchema())
+              .build());
+          break;
+        }
+        case UNION: {
+          builder.setFieldSchema("union", Schema.builder(type)
+              .addBranchSchema(Schema.primitive(Type.STRING))
+              .addBranchSchema(builder.getPlaceholderSchema())
+              .build());
+          break;
+        }
+        case RECORD: break;
+        default: builder.setFieldSchema(type.name(), Schema.primitive(type));
+      }
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testRoundTrips() {
+    for (Schema schema : new Schema[] {Schema.primitive(Type.BOOLEAN), linkedList(), everyType()}) {
+      Assert.assertEquals(schema, SchemaSerializer.fromBytes(SchemaSerializer.toBytes(schema)));
+      Assert.assertEquals(schema, SchemaSerializer.fromJson(SchemaSerializer.toJson(schema)));
+      // the JSON form is canonical.
+      Assert.assertEquals(
+          SchemaSerializer.toJson(schema),
+          SchemaSerializer.toJson(SchemaSerializer.fromBytes(SchemaSerializer.toBytes(schema)))
+      );
+    }
+  }
+
+  @Test
+  public void testJson() {
+    Assert.assertEquals("\"SIGNED_64\"", SchemaSerializer.toJson(Schema.primitive(Type.SIGNED_64)));
+    Assert.assertEquals(
+        "{\"type\":\"RECORD\",\"name\":\"LinkedList\",\"fields\":["
+            + "{\"name\":\"head\",\"schema\":\"STRING\"},"
+            + "{\"name\":\"tail\",\"schema\":{\"type\":\"OPTIONAL\",\"element\":{\"type\":\"REFERENCE\",\"record\":0}}}"
+            + "]}",
+        SchemaSerializer.toJson(linkedList())
+    );
+    try {
+      SchemaSerializer.fromJson("{\"type\":\"ARRAY\"}");
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Schema JSON: '{\"type\":\"ARRAY\"}' is missing field: 'element'.", iae.getMessage());
+    }
+  }
+
+  @Test
+  public void testInterned() {
+    final SchemaInterner interner = SchemaInterner.create();
+    final byte[] bytes = SchemaSerializer.toBytes(everyType());
+    final Schema first = SchemaSerializer.fromBytes(bytes, interner);
+    Assert.assertSame(first, SchemaSerializer.fromBytes(bytes, interner));
+    Assert.assertSame(first, SchemaSerializer.fromJson(SchemaSerializer.toJson(first), interner));
+  }
+
+  @Test
+  public void testTypeCodes() {
+    // type codes are part of the persisted format and must not follow the Type constants' order.
+    final BinaryOutput expected = BinaryOutput.create();
+    expected.writeVarint(23);
+    expected.writeString("LinkedList");
+    expected.writeVarint(2);
+    expected.writeString("head");
+    expected.writeVarint(14);
+    expected.writeString("tail");
+    expected.writeVarint(22);
+    expected.writeVarint(24);
+    expected.writeVarint(0);
+    Assert.assertArrayEquals(expected.toByteArray(), SchemaSerializer.toBytes(linkedList()));
+    Assert.assertArrayEquals(new byte[] {17, 7}, SchemaSerializer.toBytes(
+        Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.SIGNED_32)).build()
+    ));
+
+    try {
+      SchemaSerializer.fromBytes(new byte[] {25});
+      Assert.fail("Expected an IllegalArgumentException.");
+    } catch (IllegalArgumentException iae) {
+      Assert.assertEquals("Unknown Schema type code: '25'.", iae.getMessage());
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.ajprax.serialization.schema.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSchemaInterner {
+
+  private static Schema linkedList(
+      final SchemaInterner interner
+  ) {
+    final Schema.Builder builder = interner.builder(Type.RECORD).setName("LinkedList");
+    return builder
+        .setFieldSchema("head", interner.builder(Type.STRING).build())
+        .setFieldSchema("tail", interner.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+  }
+
+  @Test
+  public void testIntern() {
+    final SchemaInterner interner = SchemaInterner.create();
+    final Schema array = interner.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build();
+    Assert.assertSame(array, interner.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build());
+    Assert.assertSame(array, interner.intern(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build()));
+    Assert.assertNotSame(array, interner.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build());
+    // separate interners have separate pools.
+    Assert.assertNotSame(array, SchemaInterner.create().intern(Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build()));
+  }
+
+  @Test
+  public void testRecursiveRecord() {
+    final SchemaInterner interner = SchemaInterner.create();
+    final Schema linkedList = linkedList(interner);
+    Assert.assertSame(linkedList, linkedList(interner));
+    Assert.assertSame(
+        linkedList,
+        interner.intern(linkedList(SchemaInterner.create()))
+    );
+  }
+
+  @Test
+  public void testEnumSymbolOrder() {
+    final SchemaInterner interner = SchemaInterner.create();
+    final Schema xy = interner.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("X", "Y")).build();
+    final Schema yx = interner.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("Y", "X")).build();
+    Assert.assertEquals(xy, yx);
+    Assert.assertEquals(ImmutableList.of("Y", "X"), yx.getEnumSymbols().asList());
+  }
+
+  @Test
+  public void testPlaceholderNotInterned() {
+    final SchemaInterner interner = SchemaInterner.create();
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("r");
+    final Schema optional = Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build();
+    Assert.assertSame(optional, interner.intern(optional));
+  }
+}
@@ -0,0 +1,220 @@
+package org.ajprax.serialization.schema.impl;
+
+import com.google.common.collect.ImmutableSet;
+import org.ajprax.serialization.schema.Schema;
+import org.ajprax.serialization.schema.Schema.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSchemaRecursionHelpers {
+
+  private static Schema linkedList(
+      final String name
+  ) {
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName(name);
+    return builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+        .build();
+  }
+
+  /** Records nested to the given depth, each with two fields holding the same next record. */
+  private static Schema sharedChildren(
+      final int depth,
+      final Type leafType
+  ) {
+    Schema schema = Schema.primitive(leafType);
+    for (int level = 0; level < depth; level++) {
+      schema = Schema.builder(Type.RECORD)
+          .setName("Level" + level)
+          .setFieldSchema("left", schema)
+          .setFieldSchema("right", schema)
+          .build();
+    }
+    return schema;
+  }
+
+  private static void assertEqual(
+      final Schema left,
+      final Schema right
+  ) {
+    Assert.assertEquals(left, right);
+    Assert.assertEquals(left.getFingerprint(), right.getFingerprint());
+    Assert.assertEquals(left.hashCode(), right.hashCode());
+  }
+
+  private static void assertNotEqual(
+      final Schema left,
+      final Schema right
+  ) {
+    Assert.assertNotEquals(left, right);
+    Assert.assertNotEquals(left.getFingerprint(), right.getFingerprint());
+  }
+
+  @Test
+  public void testFingerprint() {
+    assertEqual(Schema.primitive(Type.STRING), Schema.primitive(Type.STRING));
+    assertNotEqual(Schema.primitive(Type.STRING), Schema.primitive(Type.BOOLEAN));
+    assertNotEqual(
+        Schema.builder(Type.ARRAY).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.SET).setElementSchema(Schema.primitive(Type.STRING)).build()
+    );
+    assertNotEqual(
+        Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(1).setElementSchema(Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.FIXED_SIZE_ARRAY).setSize(2).setElementSchema(Schema.primitive(Type.STRING)).build()
+    );
+    // key and value schemas both contribute.
+    assertNotEqual(
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.MAP).setKeySchema(Schema.primitive(Type.STRING)).setValueSchema(Schema.primitive(Type.BOOLEAN)).build()
+    );
+    // union branch order is significant.
+    assertNotEqual(
+        Schema.builder(Type.UNION).addBranchSchema(Schema.primitive(Type.STRING)).addBranchSchema(Schema.primitive(Type.BOOLEAN)).build(),
+        Schema.builder(Type.UNION).addBranchSchema(Schema.primitive(Type.BOOLEAN)).addBranchSchema(Schema.primitive(Type.STRING)).build()
+    );
+    // enum symbol order is not.
+    assertEqual(
+        Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("A", "B")).build(),
+        Schema.builder(Type.ENUM).setName("e").setEnumSymbols(ImmutableSet.of("B", "A")).build()
+    );
+  }
+
+  @Test
+  public void testRecordFingerprint() {
+    assertEqual(
+        Schema.builder(Type.RECORD).setName("r").setFieldSchema("a", Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.RECORD).setName("r").setFieldSchema("a", Schema.primitive(Type.STRING)).build()
+    );
+    assertNotEqual(
+        Schema.builder(Type.RECORD).setName("r").setFieldSchema("a", Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.RECORD).setName("s").setFieldSchema("a", Schema.primitive(Type.STRING)).build()
+    );
+    assertNotEqual(
+        Schema.builder(Type.RECORD).setName("r").setFieldSchema("a", Schema.primitive(Type.STRING)).build(),
+        Schema.builder(Type.RECORD).setName("r").setFieldSchema("b", Schema.primitive(Type.STRING)).build()
+    );
+  }
+
+  @Test
+  public void testRecursiveFingerprint() {
+    final Schema linkedList = linkedList("LinkedList");
+    assertEqual(linkedList, linkedList("LinkedList"));
+    assertNotEqual(linkedList, linkedList("OtherList"));
+    // the same recursive record used twice without recursion between the uses.
+    final Schema pair = Schema.builder(Type.RECORD)
+        .setName("pair")
+        .setFieldSchema("left", linkedList)
+        .setFieldSchema("right", linkedList)
+        .build();
+    final Schema otherPair = Schema.builder(Type.RECORD)
+        .setName("pair")
+        .setFieldSchema("left", linkedList("LinkedList"))
+        .setFieldSchema("right", linkedList("LinkedList"))
+        .build();
+    assertEqual(pair, otherPair);
+  }
+
+  @Test
+  public void testUnrolledRecursiveFingerprint() {
+    // the same recursive record, written out one level before it refers back to itself.
+    final Schema recursive = linkedList("LinkedList");
+    final Schema unrolled = Schema.builder(Type.RECORD)
+        .setName("LinkedList")
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(linkedList("LinkedList")).build())
+        .build();
+    assertEqual(recursive, unrolled);
+    assertEqual(unrolled, recursive);
+
+    final Schema unrolledOther = Schema.builder(Type.RECORD)
+        .setName("LinkedList")
+        .setFieldSchema("head", Schema.primitive(Type.BOOLEAN))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(linkedList("LinkedList")).build())
+        .build();
+    assertNotEqual(recursive, unrolledOther);
+  }
+
+  @Test
+  public void testSharedSubSchemaFingerprint() {
+    // each shared child is fingerprinted once, not once per path.
+    assertEqual(sharedChildren(64, Type.STRING), sharedChildren(64, Type.STRING));
+    assertNotEqual(sharedChildren(64, Type.STRING), sharedChildren(64, Type.BOOLEAN));
+  }
+
+  @Test
+  public void testMemoized() {
+    final Schema schema = linkedList("LinkedList");
+    Assert.assertEquals(SchemaRecursionHelpers.fingerprint(schema), schema.getFingerprint());
+    Assert.assertEquals(schema.getFingerprint(), schema.getFingerprint());
+  }
+
+  @Test
+  public void testIsRecursive() {
+    final Schema linkedList = linkedList("LinkedList");
+    Assert.assertTrue(SchemaRecursionHelpers.isRecursive(linkedList));
+    // records containing a recursive record are not themselves recursive.
+    final Schema pair = Schema.builder(Type.RECORD)
+        .setName("pair")
+        .setFieldSchema("left", linkedList)
+        .setFieldSchema("right", linkedList)
+        .build();
+    Assert.assertFalse(SchemaRecursionHelpers.isRecursive(pair));
+    Assert.assertFalse(SchemaRecursionHelpers.isRecursive(Schema.primitive(Type.STRING)));
+
+    // mutually recursive records.
+    final Schema.Builder treeBuilder = Schema.builder(Type.RECORD).setName("Tree");
+    final Schema forest = Schema.builder(Type.RECORD)
+        .setName("Forest")
+        .setFieldSchema("trees", Schema.builder(Type.ARRAY).setElementSchema(treeBuilder.getPlaceholderSchema()).build())
+        .build();
+    final Schema tree = treeBuilder
+        .setFieldSchema("value", Schema.primitive(Type.SIGNED_32))
+        .setFieldSchema("children", forest)
+        .build();
+    Assert.assertTrue(SchemaRecursionHelpers.isRecursive(tree));
+    Assert.assertTrue(SchemaRecursionHelpers.isRecursive(tree.getFieldSchemas().get("children")));
+  }
+
+  @Test
+  public void testEqualsSharedSubSchemas() {
+    // each pair of shared children is compared once, not once per path.
+    final Schema schema = sharedChildren(64, Type.STRING);
+    Assert.assertTrue(SchemaRecursionHelpers.equals(schema, sharedChildren(64, Type.STRING)));
+    Assert.assertFalse(SchemaRecursionHelpers.equals(schema, sharedChildren(64, Type.BOOLEAN)));
+    Assert.assertTrue(SchemaRecursionHelpers.equals(schema, schema));
+
+    // mismatched recursion is unequal even though every field name matches.
+    final Schema.Builder builder = Schema.builder(Type.RECORD).setName("LinkedList");
+    final Schema skipList = builder
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(
+            Schema.builder(Type.RECORD)
+                .setName("LinkedList")
+                .setFieldSchema("head", Schema.primitive(Type.BOOLEAN))
+                .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(builder.getPlaceholderSchema()).build())
+                .build()
+        ).build())
+        .build();
+    Assert.assertFalse(SchemaRecursionHelpers.equals(linkedList("LinkedList"), skipList));
+  }
+
+  @Test
+  public void testEqualsWithMemoizedFingerprints() {
+    // the walk exits early on differing memoized fingerprints, which must not rule out equal
+    // Schemas of different shapes.
+    final Schema recursive = linkedList("LinkedList");
+    final Schema unrolled = Schema.builder(Type.RECORD)
+        .setName("LinkedList")
+        .setFieldSchema("head", Schema.primitive(Type.STRING))
+        .setFieldSchema("tail", Schema.builder(Type.OPTIONAL).setElementSchema(linkedList("LinkedList")).build())
+        .build();
+    Assert.assertTrue(SchemaRecursionHelpers.equals(recursive, unrolled));
+    recursive.getFingerprint();
+    unrolled.getFingerprint();
+    unrolled.getFieldSchemas().get("tail").getFingerprint();
+    Assert.assertTrue(SchemaRecursionHelpers.equals(recursive, unrolled));
+    Assert.assertTrue(SchemaRecursionHelpers.equals(unrolled, recursive));
+    Assert.assertFalse(SchemaRecursionHelpers.equals(recursive, linkedList("OtherList")));
+  }
+}